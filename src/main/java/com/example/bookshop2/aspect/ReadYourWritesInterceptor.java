@@ -0,0 +1,84 @@
+package com.example.bookshop2.aspect;
+
+import com.example.bookshop2.datasource.ReadYourWrites;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Set;
+import lombok.NonNull;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+/**
+ * После изменяющего запроса клиент получает cookie со сроком окна read-your-writes;
+ * пока окно не истекло, его запросы читают с primary, а не с отстающих реплик.
+ */
+public class ReadYourWritesInterceptor implements AsyncHandlerInterceptor {
+    static final String COOKIE_NAME = "bookshop-primary-until";
+    private static final Set<String> SAFE_METHODS = Set.of("GET", "HEAD", "OPTIONS", "TRACE");
+
+    private final Duration window;
+    private final Clock clock;
+
+    public ReadYourWritesInterceptor(Duration window, Clock clock) {
+        this.window = window;
+        this.clock = clock;
+    }
+
+    @Override
+    public boolean preHandle(@NonNull HttpServletRequest request,
+                             @NonNull HttpServletResponse response,
+                             @NonNull Object handler) {
+        long now = clock.millis();
+        long until = now + window.toMillis();
+        if (!SAFE_METHODS.contains(request.getMethod())) {
+            Cookie cookie = new Cookie(COOKIE_NAME, Long.toString(until));
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            cookie.setMaxAge((int) Math.max(1, window.toSeconds()));
+            response.addCookie(cookie);
+            ReadYourWrites.pin();
+        } else {
+            // Значения дальше окна от текущего момента не принимаются
+            long pinnedUntil = pinnedUntil(request);
+            if (pinnedUntil > now && pinnedUntil <= until) {
+                ReadYourWrites.pin();
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(@NonNull HttpServletRequest request,
+                                @NonNull HttpServletResponse response,
+                                @NonNull Object handler,
+                                Exception ex) {
+        ReadYourWrites.unpin();
+    }
+
+    // Для асинхронных ответов afterCompletion вызывается не в этом потоке
+    @Override
+    public void afterConcurrentHandlingStarted(@NonNull HttpServletRequest request,
+                                               @NonNull HttpServletResponse response,
+                                               @NonNull Object handler) {
+        ReadYourWrites.unpin();
+    }
+
+    private static long pinnedUntil(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return 0;
+        }
+        for (Cookie cookie : cookies) {
+            if (COOKIE_NAME.equals(cookie.getName())) {
+                try {
+                    return Long.parseLong(cookie.getValue());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+}
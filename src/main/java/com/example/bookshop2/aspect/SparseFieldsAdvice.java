@@ -0,0 +1,94 @@
+package com.example.bookshop2.aspect;
+
+import com.example.bookshop2.dto.AuthorDto;
+import com.example.bookshop2.dto.BookDto;
+import com.example.bookshop2.dto.PublisherDto;
+import com.example.bookshop2.mapper.AuthorMapper;
+import com.example.bookshop2.mapper.BookMapper;
+import com.example.bookshop2.mapper.Fields;
+import com.example.bookshop2.mapper.PublisherMapper;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import lombok.NonNull;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * Параметр fields= для ответов с книгами, авторами и издателями: вместо DTO сериализуется
+ * карта только с запрошенными свойствами. Остальные тела ответов не трогает.
+ */
+@RestControllerAdvice
+public class SparseFieldsAdvice implements ResponseBodyAdvice<Object> {
+    private static final String FIELDS_PARAM = "fields";
+
+    @Override
+    public boolean supports(@NonNull MethodParameter returnType,
+                            @NonNull Class<? extends HttpMessageConverter<?>> converterType) {
+        return MappingJackson2HttpMessageConverter.class.isAssignableFrom(converterType);
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body,
+                                  @NonNull MethodParameter returnType,
+                                  @NonNull MediaType selectedContentType,
+                                  @NonNull Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  @NonNull ServerHttpRequest request,
+                                  @NonNull ServerHttpResponse response) {
+        if (!(request instanceof ServletServerHttpRequest servletRequest)) {
+            return body;
+        }
+        String fields = servletRequest.getServletRequest().getParameter(FIELDS_PARAM);
+        if (fields == null || body == null) {
+            return body;
+        }
+        if (body instanceof Collection<?> items) {
+            List<Object> selected = new ArrayList<>(items.size());
+            Set<String> parsed = null;
+            for (Object item : items) {
+                if (parsed == null) {
+                    parsed = parse(fields, item);
+                    if (parsed == null) {
+                        return body;
+                    }
+                }
+                selected.add(select(item, parsed));
+            }
+            return selected;
+        }
+        Set<String> parsed = parse(fields, body);
+        return parsed != null ? select(body, parsed) : body;
+    }
+
+    private static Set<String> parse(String fields, Object dto) {
+        if (dto instanceof BookDto) {
+            return Fields.parse(fields, BookMapper.FIELDS);
+        }
+        if (dto instanceof AuthorDto) {
+            return Fields.parse(fields, AuthorMapper.FIELDS);
+        }
+        if (dto instanceof PublisherDto) {
+            return Fields.parse(fields, PublisherMapper.FIELDS);
+        }
+        return null;
+    }
+
+    private static Map<String, Object> select(Object dto, Set<String> fields) {
+        if (dto instanceof BookDto book) {
+            return BookMapper.toFieldMap(book, fields);
+        }
+        if (dto instanceof AuthorDto author) {
+            return AuthorMapper.toFieldMap(author, fields);
+        }
+        return PublisherMapper.toFieldMap((PublisherDto) dto, fields);
+    }
+}
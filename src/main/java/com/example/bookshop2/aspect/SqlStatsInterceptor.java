@@ -0,0 +1,52 @@
+package com.example.bookshop2.aspect;
+
+import com.example.bookshop2.monitoring.RequestSqlStats;
+import com.example.bookshop2.service.SqlStatsService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+@Component
+public class SqlStatsInterceptor implements AsyncHandlerInterceptor {
+    private final SqlStatsService sqlStatsService;
+
+    public SqlStatsInterceptor(SqlStatsService sqlStatsService) {
+        this.sqlStatsService = sqlStatsService;
+    }
+
+    @Override
+    public boolean preHandle(@NonNull HttpServletRequest request,
+                             @NonNull HttpServletResponse response,
+                             @NonNull Object handler) {
+        // Шаблон пути, а не URI: /books/{id} — один эндпоинт для всех ID
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        RequestSqlStats.begin(request.getMethod() + " " + (pattern != null ? pattern : request.getRequestURI()));
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(@NonNull HttpServletRequest request,
+                                @NonNull HttpServletResponse response,
+                                @NonNull Object handler,
+                                Exception ex) {
+        finish();
+    }
+
+    // Асинхронная часть ответа выполняется в других потоках и в статистику не попадает
+    @Override
+    public void afterConcurrentHandlingStarted(@NonNull HttpServletRequest request,
+                                               @NonNull HttpServletResponse response,
+                                               @NonNull Object handler) {
+        finish();
+    }
+
+    private void finish() {
+        RequestSqlStats stats = RequestSqlStats.end();
+        if (stats != null) {
+            sqlStatsService.record(stats);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.bookshop2.config;
+
+import com.example.bookshop2.aspect.ReadYourWritesInterceptor;
+import com.example.bookshop2.datasource.Replica;
+import com.example.bookshop2.datasource.ReplicaLagMonitor;
+import com.example.bookshop2.datasource.ReplicaCacheModeTransactionManager;
+import com.example.bookshop2.datasource.ReplicaProperties;
+import com.example.bookshop2.datasource.ReplicaRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.transaction.TransactionManagerCustomizers;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.orm.jpa.JpaTransactionManager;
+
+/**
+ * Включается, если задана хотя бы одна реплика. Основной DataSource — ленивый прокси:
+ * соединение берётся при первом запросе, когда флаг read-only транзакции уже известен,
+ * поэтому read-only транзакции уходят в {@link ReplicaRoutingDataSource}, остальные — в primary.
+ * Такие транзакции не пополняют кэш второго уровня ({@link ReplicaCacheModeTransactionManager}).
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "bookshop.datasource.replicas[0]", name = "url")
+@EnableConfigurationProperties(ReplicaProperties.class)
+public class DataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource replicaDataSource(HikariDataSource primaryDataSource,
+                                                      DataSourceProperties primaryProperties,
+                                                      ReplicaProperties properties) {
+        List<Replica> replicas = new ArrayList<>();
+        for (int i = 0; i < properties.getReplicas().size(); i++) {
+            ReplicaProperties.Node node = properties.getReplicas().get(i);
+            HikariDataSource pool = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(node.getUrl())
+                    .username(node.getUsername() != null ? node.getUsername() : primaryProperties.determineUsername())
+                    .password(node.getPassword() != null ? node.getPassword() : primaryProperties.determinePassword())
+                    .build();
+            pool.setPoolName("replica-" + i);
+            pool.setMaximumPoolSize(node.getMaximumPoolSize());
+            pool.setReadOnly(true);
+            replicas.add(new Replica(pool.getPoolName(), pool, properties.getMaxLag()));
+        }
+        return new ReplicaRoutingDataSource(primaryDataSource, replicas, properties.getBalancing());
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource, ReplicaRoutingDataSource replicaDataSource) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primaryDataSource);
+        dataSource.setReadOnlyDataSource(replicaDataSource);
+        return dataSource;
+    }
+
+    // Заменяет JpaTransactionManager из автоконфигурации; фабрику EntityManager он находит сам
+    @Bean
+    public JpaTransactionManager transactionManager(ObjectProvider<TransactionManagerCustomizers> customizers) {
+        JpaTransactionManager transactionManager = new ReplicaCacheModeTransactionManager();
+        customizers.ifAvailable(customizer -> customizer.customize(transactionManager));
+        return transactionManager;
+    }
+
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(ReplicaRoutingDataSource replicaDataSource,
+                                               ReplicaProperties properties) {
+        return new ReplicaLagMonitor(replicaDataSource.getReplicas(), properties.getLagQuery());
+    }
+
+    @Bean
+    public ReadYourWritesInterceptor readYourWritesInterceptor(ReplicaProperties properties) {
+        return new ReadYourWritesInterceptor(properties.getReadYourWritesWindow(), Clock.systemUTC());
+    }
+}
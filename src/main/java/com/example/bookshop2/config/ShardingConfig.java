@@ -0,0 +1,153 @@
+package com.example.bookshop2.config;
+
+import com.example.bookshop2.datasource.ShardDirectory;
+import com.example.bookshop2.datasource.ShardMirror;
+import com.example.bookshop2.datasource.ShardProperties;
+import com.example.bookshop2.datasource.ShardRing;
+import com.example.bookshop2.datasource.ShardRoutingDataSource;
+import com.example.bookshop2.datasource.ShardTransactions;
+import com.example.bookshop2.repository.BookRepository;
+import com.example.bookshop2.repository.ShardedBookRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import javax.sql.DataSource;
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayProperties;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.boot.jdbc.DatabaseDriver;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.incrementer.DataFieldMaxValueIncrementer;
+import org.springframework.jdbc.support.incrementer.H2SequenceMaxValueIncrementer;
+import org.springframework.jdbc.support.incrementer.PostgresSequenceMaxValueIncrementer;
+
+/**
+ * Включается, если задан хотя бы один шард книг. spring.datasource становится шардом 0 и основной базой
+ * авторов и издателей; остальные базы получают ту же схему через Flyway при старте. Все соединения
+ * идут через {@link ShardRoutingDataSource}, а сервисы получают {@link ShardedBookRepository}
+ * вместо репозитория Spring Data.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "bookshop.datasource.shards[0]", name = "url")
+@EnableConfigurationProperties(ShardProperties.class)
+public class ShardingConfig {
+    // Последовательность books_seq шарда k начинается с k·2^40: пул ID, выданный Hibernate из любого шарда,
+    // не пересекается с ID других шардов, в какой бы шард ни попала книга
+    static final int BOOK_ID_RANGE_BITS = 40;
+    private static final int BOOK_ID_ALLOCATION = 50;
+
+    public ShardingConfig(Environment environment) {
+        if (environment.containsProperty("bookshop.datasource.replicas[0].url")) {
+            throw new IllegalStateException("Book shards cannot be combined with read replicas");
+        }
+    }
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        dataSource.setPoolName("shard-0");
+        return dataSource;
+    }
+
+    @Bean
+    @Primary
+    public ShardRoutingDataSource dataSource(HikariDataSource primaryDataSource,
+                                             DataSourceProperties primaryProperties,
+                                             ShardProperties properties,
+                                             FlywayProperties flyway) {
+        List<DataSource> shards = new ArrayList<>();
+        for (int i = 0; i < properties.getShards().size(); i++) {
+            ShardProperties.Node node = properties.getShards().get(i);
+            HikariDataSource pool = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(node.getUrl())
+                    .username(node.getUsername() != null ? node.getUsername() : primaryProperties.determineUsername())
+                    .password(node.getPassword() != null ? node.getPassword() : primaryProperties.determinePassword())
+                    .build();
+            pool.setPoolName("shard-" + (i + 1));
+            pool.setMaximumPoolSize(node.getMaximumPoolSize());
+            migrate(pool, node.getUrl(), flyway);
+            reserveBookIds(pool, node.getUrl(), i + 1);
+            shards.add(pool);
+        }
+        return new ShardRoutingDataSource(primaryDataSource, shards);
+    }
+
+    @Bean
+    public ShardRing shardRing(ShardRoutingDataSource dataSource, ShardProperties properties) {
+        return new ShardRing(dataSource.getShardCount(), properties.getVirtualNodes());
+    }
+
+    @Bean
+    public ShardTransactions shardTransactions(EntityManagerFactory entityManagerFactory,
+                                               ShardRoutingDataSource dataSource,
+                                               ShardProperties properties) {
+        return new ShardTransactions(entityManagerFactory, dataSource.getShardCount(), properties.getScatterThreads());
+    }
+
+    @Bean
+    public ShardDirectory shardDirectory(ShardRoutingDataSource dataSource) {
+        return new ShardDirectory(dataSource.getShardCount());
+    }
+
+    @Bean
+    public ShardedBookRepository shardedBooks(@Qualifier("bookRepository") BookRepository bookRepository,
+                                              ShardRing shardRing,
+                                              ShardDirectory shardDirectory,
+                                              ShardTransactions shardTransactions,
+                                              EntityManager entityManager) {
+        return new ShardedBookRepository(bookRepository, shardRing, shardDirectory, shardTransactions, entityManager);
+    }
+
+    @Bean
+    @Primary
+    public BookRepository shardedBookRepository(ShardedBookRepository shardedBooks) {
+        return shardedBooks.proxy();
+    }
+
+    @Bean
+    public ShardMirror shardMirror(ShardTransactions shardTransactions,
+                                   EntityManager entityManager,
+                                   ShardRoutingDataSource dataSource) {
+        return new ShardMirror(shardTransactions, entityManager, new JdbcTemplate(dataSource));
+    }
+
+    // Та же схема, что и в основной базе; {vendor} Spring Boot подставляет только для spring.datasource
+    private static void migrate(DataSource shard, String url, FlywayProperties flyway) {
+        String vendor = DatabaseDriver.fromJdbcUrl(url).getId();
+        Flyway.configure()
+                .dataSource(shard)
+                .locations(flyway.getLocations().stream()
+                        .map(location -> location.replace("{vendor}", vendor))
+                        .toArray(String[]::new))
+                .baselineOnMigrate(flyway.isBaselineOnMigrate())
+                .load()
+                .migrate();
+    }
+
+    private static void reserveBookIds(DataSource shard, String url, int index) {
+        DataFieldMaxValueIncrementer sequence = switch (DatabaseDriver.fromJdbcUrl(url)) {
+            case H2 -> new H2SequenceMaxValueIncrementer(shard, "books_seq");
+            case POSTGRESQL -> new PostgresSequenceMaxValueIncrementer(shard, "books_seq");
+            default -> throw new IllegalStateException("Book shards support H2 and PostgreSQL, not " + url);
+        };
+        long start = ((long) index << BOOK_ID_RANGE_BITS) + BOOK_ID_ALLOCATION;
+        if (sequence.nextLongValue() < start) {
+            new JdbcTemplate(shard).execute("ALTER SEQUENCE books_seq RESTART WITH " + start);
+        }
+    }
+}
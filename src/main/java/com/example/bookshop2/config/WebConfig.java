@@ -1,6 +1,9 @@
 package com.example.bookshop2.config;
 
+import com.example.bookshop2.aspect.ReadYourWritesInterceptor;
+import com.example.bookshop2.aspect.SqlStatsInterceptor;
 import com.example.bookshop2.aspect.VisitCounterInterceptor;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
@@ -9,9 +12,16 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
     private final VisitCounterInterceptor visitCounterInterceptor;
+    private final SqlStatsInterceptor sqlStatsInterceptor;
+    // Есть только при настроенных репликах (DataSourceConfig)
+    private final ObjectProvider<ReadYourWritesInterceptor> readYourWritesInterceptor;
 
-    public WebConfig(VisitCounterInterceptor visitCounterInterceptor) {
+    public WebConfig(VisitCounterInterceptor visitCounterInterceptor,
+                     SqlStatsInterceptor sqlStatsInterceptor,
+                     ObjectProvider<ReadYourWritesInterceptor> readYourWritesInterceptor) {
         this.visitCounterInterceptor = visitCounterInterceptor;
+        this.sqlStatsInterceptor = sqlStatsInterceptor;
+        this.readYourWritesInterceptor = readYourWritesInterceptor;
     }
 
     @Override
@@ -24,5 +34,7 @@ public class WebConfig implements WebMvcConfigurer {
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
         registry.addInterceptor(visitCounterInterceptor);
+        registry.addInterceptor(sqlStatsInterceptor);
+        readYourWritesInterceptor.ifAvailable(registry::addInterceptor);
     }
 }
\ No newline at end of file
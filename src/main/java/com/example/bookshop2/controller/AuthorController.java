@@ -1,15 +1,22 @@
 package com.example.bookshop2.controller;
 
 import com.example.bookshop2.dto.AuthorDto;
+import com.example.bookshop2.dto.BookDto;
+import com.example.bookshop2.dto.SuggestionDto;
 import com.example.bookshop2.service.AuthorService;
+import com.example.bookshop2.service.BookService;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.enums.ParameterIn;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import jakarta.validation.Valid;
 import java.util.List;
+import java.util.Map;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
@@ -22,20 +29,35 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping("/authors")
 public class AuthorController {
     private final AuthorService authorService;
+    private final BookService bookService;
 
-    public AuthorController(AuthorService authorService) {
+    public AuthorController(AuthorService authorService, BookService bookService) {
         this.authorService = authorService;
+        this.bookService = bookService;
     }
 
     @Operation(summary = "Get all authors", description = "Retrieve all authors")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successfully retrieved all authors")
     })
+    @Parameter(name = "fields", in = ParameterIn.QUERY, description = "Comma-separated properties to return")
     @GetMapping
     public ResponseEntity<List<AuthorDto>> getAllAuthors() {
         return ResponseEntity.ok(authorService.findAll());
     }
 
+    @Operation(summary = "Get authors by IDs",
+            description = "Retrieve up to 1000 authors in the order of the comma-separated IDs; unknown IDs are skipped")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved authors"),
+            @ApiResponse(responseCode = "400", description = "Empty or too long ID list")
+    })
+    @Parameter(name = "fields", in = ParameterIn.QUERY, description = "Comma-separated properties to return")
+    @GetMapping(params = "ids")
+    public ResponseEntity<List<AuthorDto>> getAuthorsByIds(@RequestParam List<Long> ids) {
+        return ResponseEntity.ok(authorService.findAllByIds(ids));
+    }
+
     @Operation(summary = "Search authors by name", description = "Search authors by name (partial match)")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successfully retrieved authors"),
@@ -46,6 +68,19 @@ public class AuthorController {
         return ResponseEntity.ok(authorService.searchByName(name));
     }
 
+    @Operation(summary = "Suggest authors by name prefix",
+            description = "Autocomplete authors whose name starts with the prefix, most popular first")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved suggestions"),
+            @ApiResponse(responseCode = "400", description = "Invalid prefix or limit")
+    })
+    @GetMapping("/suggest")
+    public ResponseEntity<List<SuggestionDto>> suggestAuthors(
+            @Parameter(description = "Name prefix") @RequestParam String prefix,
+            @Parameter(description = "Maximum number of suggestions") @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(authorService.suggest(prefix, limit));
+    }
+
     @Operation(summary = "Get author by ID", description = "Retrieve an author by ID")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successfully retrieved author"),
@@ -56,6 +91,17 @@ public class AuthorController {
         return ResponseEntity.ok(authorService.findById(id));
     }
 
+    @Operation(summary = "Get books by author ID", description = "Retrieve all books of an author ordered by ID")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved books"),
+            @ApiResponse(responseCode = "404", description = "Author not found")
+    })
+    @Parameter(name = "fields", in = ParameterIn.QUERY, description = "Comma-separated properties to return")
+    @GetMapping("/{id}/books")
+    public ResponseEntity<List<BookDto>> getAuthorBooks(@PathVariable Long id) {
+        return ResponseEntity.ok(bookService.findByAuthorId(id));
+    }
+
     @Operation(summary = "Create an author", description = "Create a new author")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successfully created author"),
@@ -66,6 +112,18 @@ public class AuthorController {
         return ResponseEntity.ok(authorService.create(dto));
     }
 
+    @Operation(summary = "Resolve or create authors by name",
+            description = "Map each distinct name to the lowest id of the existing authors with that name "
+                    + "or to the id of a newly created one")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully resolved author names"),
+            @ApiResponse(responseCode = "400", description = "Empty or too long name list, or blank name")
+    })
+    @PostMapping("/upsert")
+    public ResponseEntity<Map<String, Long>> upsertAuthors(@RequestBody List<String> names) {
+        return ResponseEntity.ok(authorService.upsertByNames(names));
+    }
+
     @Operation(summary = "Update an author", description = "Update an existing author by ID")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successfully updated author"),
@@ -77,6 +135,21 @@ public class AuthorController {
         return ResponseEntity.ok(authorService.update(id, dto));
     }
 
+    @Operation(summary = "Rename an author",
+            description = "Change the name with one conditional UPDATE; the version must match the current one. "
+                    + "The new version is returned in ETag")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "204", description = "Successfully updated author"),
+            @ApiResponse(responseCode = "400", description = "Invalid request data"),
+            @ApiResponse(responseCode = "404", description = "Author not found"),
+            @ApiResponse(responseCode = "409", description = "Author was modified concurrently")
+    })
+    @PatchMapping("/{id}")
+    public ResponseEntity<Void> patchAuthor(@PathVariable Long id, @RequestBody AuthorDto changes) {
+        long version = authorService.patch(id, changes);
+        return ResponseEntity.noContent().eTag(Long.toString(version)).build();
+    }
+
     @Operation(summary = "Delete an author", description = "Delete an author by ID")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "204", description = "Successfully deleted author"),
@@ -87,4 +160,16 @@ public class AuthorController {
         authorService.delete(id);
         return ResponseEntity.noContent().build();
     }
+
+    @Operation(summary = "Delete authors in bulk", description = "Delete all authors with the given IDs in one transaction; nothing is deleted if any ID is missing")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "204", description = "Successfully deleted authors"),
+            @ApiResponse(responseCode = "400", description = "Empty or oversized ID list"),
+            @ApiResponse(responseCode = "404", description = "Some authors not found")
+    })
+    @DeleteMapping("/bulk")
+    public ResponseEntity<Void> deleteAuthors(@RequestBody List<Long> ids) {
+        authorService.deleteBulk(ids);
+        return ResponseEntity.noContent().build();
+    }
 }
\ No newline at end of file
@@ -1,20 +1,34 @@
 package com.example.bookshop2.controller;
 
 import com.example.bookshop2.dto.BookDto;
+import com.example.bookshop2.dto.BookRepriceDto;
+import com.example.bookshop2.dto.BookRepriceResultDto;
+import com.example.bookshop2.dto.BookSearchResultDto;
+import com.example.bookshop2.dto.CatalogStatsDto;
+import com.example.bookshop2.dto.SuggestionDto;
+import com.example.bookshop2.mapper.BookMapper;
+import com.example.bookshop2.mapper.Fields;
+import com.example.bookshop2.service.BookExportService;
+import com.example.bookshop2.service.BookRepricingService;
 import com.example.bookshop2.service.BookService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.enums.ParameterIn;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import java.util.List;
+import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
@@ -22,16 +36,24 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.WebAsyncTask;
 
 @RestController
 @RequestMapping("/books")
 @Tag(name = "Books", description = "API для работы с книгами")
 public class BookController {
     private static final Logger LOGGER = LoggerFactory.getLogger(BookController.class);
+    // Выгрузка большого каталога идёт дольше общего таймаута асинхронных запросов; для неё он снят (-1 — без ограничения)
+    private static final long EXPORT_TIMEOUT_MILLIS = -1;
     private final BookService bookService;
+    private final BookExportService bookExportService;
+    private final BookRepricingService bookRepricingService;
 
-    public BookController(BookService bookService) {
+    public BookController(BookService bookService, BookExportService bookExportService,
+                          BookRepricingService bookRepricingService) {
         this.bookService = bookService;
+        this.bookExportService = bookExportService;
+        this.bookRepricingService = bookRepricingService;
     }
 
     private String sanitize(String input) {
@@ -47,9 +69,49 @@ public class BookController {
             @ApiResponse(responseCode = "200", description = "Successfully retrieved all books")
     })
     @GetMapping
-    public ResponseEntity<List<BookDto>> getAllBooks() {
+    public ResponseEntity<List<BookDto>> getAllBooks(
+            @Parameter(description = "Comma-separated properties to return, e.g. id,name; all properties when omitted")
+            @RequestParam(required = false) String fields) {
         LOGGER.info("Fetching all books");
-        return ResponseEntity.ok(bookService.findAll());
+        return ResponseEntity.ok(bookService.findAll(Fields.parse(fields, BookMapper.FIELDS)));
+    }
+
+    @Operation(summary = "Get books by IDs",
+            description = "Retrieve up to 1000 books in the order of the comma-separated IDs; unknown IDs are skipped")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved books"),
+            @ApiResponse(responseCode = "400", description = "Empty or too long ID list")
+    })
+    @Parameter(name = "fields", in = ParameterIn.QUERY, description = "Comma-separated properties to return")
+    @GetMapping(params = "ids")
+    public ResponseEntity<List<BookDto>> getBooksByIds(@RequestParam List<Long> ids) {
+        LOGGER.info("Fetching {} books by ID", ids.size());
+        return ResponseEntity.ok(bookService.findAllByIds(ids));
+    }
+
+    @Operation(summary = "Get catalog statistics",
+            description = "Book count and min/avg/max price per genre and for the whole catalog, plus a price histogram")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved statistics")
+    })
+    @GetMapping("/statistics")
+    public ResponseEntity<CatalogStatsDto> getStatistics() {
+        return ResponseEntity.ok(bookService.findStatistics());
+    }
+
+    @Operation(summary = "Export all books",
+            description = "Stream the whole catalog as newline-delimited JSON, one book per line")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully started the export")
+    })
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public WebAsyncTask<Void> exportBooks(HttpServletResponse response) {
+        LOGGER.info("Exporting all books");
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        return new WebAsyncTask<>(EXPORT_TIMEOUT_MILLIS, () -> {
+            bookExportService.exportAll(response.getOutputStream());
+            return null;
+        });
     }
 
     @Operation(summary = "Get book by ID", description = "Retrieve a book by its ID")
@@ -74,6 +136,52 @@ public class BookController {
         return ResponseEntity.ok(bookService.findByPublisherId(publisherId));
     }
 
+    @Operation(summary = "Filter books by authors, publisher and genre",
+            description = "Retrieve books matching all given criteria, ordered by ID; "
+                    + "pass the last returned ID as afterId to get the next page")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved books"),
+            @ApiResponse(responseCode = "400", description = "No criteria or invalid limit")
+    })
+    @Parameter(name = "fields", in = ParameterIn.QUERY, description = "Comma-separated properties to return")
+    @GetMapping("/filter")
+    public ResponseEntity<List<BookDto>> filterBooks(
+            @Parameter(description = "Author IDs, all must be among the book's authors")
+            @RequestParam(required = false) Set<Long> authorId,
+            @Parameter(description = "Publisher ID") @RequestParam(required = false) Long publisherId,
+            @Parameter(description = "Genre") @RequestParam(required = false) String genre,
+            @Parameter(description = "Return books with ID greater than this") @RequestParam(defaultValue = "0")
+            long afterId,
+            @Parameter(description = "Number of books, 1-100") @RequestParam(defaultValue = "20") int limit) {
+        LOGGER.info("Filtering books by authors {}, publisher {}, genre {} after ID {}",
+                authorId, publisherId, sanitize(genre), afterId);
+        return ResponseEntity.ok(bookService.findByFilter(authorId, publisherId, genre, afterId, limit));
+    }
+
+    @Operation(summary = "Faceted book search",
+            description = "Retrieve books matching all given criteria ordered by ID, their total count "
+                    + "and match counts per genre, publisher, author and price band")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved books and facets"),
+            @ApiResponse(responseCode = "400", description = "Invalid price band or limit"),
+            @ApiResponse(responseCode = "503", description = "Search index is still loading, retry later")
+    })
+    @GetMapping("/search")
+    public ResponseEntity<BookSearchResultDto> searchBooks(
+            @Parameter(description = "Author IDs, all must be among the book's authors")
+            @RequestParam(required = false) Set<Long> authorId,
+            @Parameter(description = "Publisher ID") @RequestParam(required = false) Long publisherId,
+            @Parameter(description = "Genre") @RequestParam(required = false) String genre,
+            @Parameter(description = "Price band index as listed in facets.priceBands")
+            @RequestParam(required = false) Integer priceBand,
+            @Parameter(description = "Return books with ID greater than this") @RequestParam(defaultValue = "0")
+            long afterId,
+            @Parameter(description = "Number of books, 1-100") @RequestParam(defaultValue = "20") int limit) {
+        LOGGER.info("Searching books by authors {}, publisher {}, genre {}, price band {} after ID {}",
+                authorId, publisherId, sanitize(genre), priceBand, afterId);
+        return ResponseEntity.ok(bookService.search(authorId, publisherId, genre, priceBand, afterId, limit));
+    }
+
     @Operation(summary = "Get books by publisher name",
             description = "Retrieve all books by a publisher's name")
     @ApiResponses(value = {
@@ -87,6 +195,30 @@ public class BookController {
         return ResponseEntity.ok(bookService.findByPublisherName(publisherName));
     }
 
+    @Operation(summary = "Search books by name", description = "Search books by name (partial match)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved books"),
+            @ApiResponse(responseCode = "400", description = "Invalid search name")
+    })
+    @GetMapping("/name-search")
+    public ResponseEntity<List<BookDto>> searchBooksByName(@RequestParam String name) {
+        LOGGER.info("Searching books by name: {}", sanitize(name));
+        return ResponseEntity.ok(bookService.searchByName(name));
+    }
+
+    @Operation(summary = "Suggest books by name prefix",
+            description = "Autocomplete books whose name starts with the prefix, most popular first")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved suggestions"),
+            @ApiResponse(responseCode = "400", description = "Invalid prefix or limit")
+    })
+    @GetMapping("/suggest")
+    public ResponseEntity<List<SuggestionDto>> suggestBooks(
+            @Parameter(description = "Name prefix") @RequestParam String prefix,
+            @Parameter(description = "Maximum number of suggestions") @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(bookService.suggest(prefix, limit));
+    }
+
     @Operation(summary = "Create a book", description = "Create a new book")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successfully created book"),
@@ -112,6 +244,37 @@ public class BookController {
         return ResponseEntity.ok(bookService.update(id, dto));
     }
 
+    @Operation(summary = "Partially update a book",
+            description = "Change name, genre and/or price with one conditional UPDATE; "
+                    + "the version must match the current one. The new version is returned in ETag")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "204", description = "Successfully updated book"),
+            @ApiResponse(responseCode = "400", description = "Invalid request data"),
+            @ApiResponse(responseCode = "404", description = "Book not found"),
+            @ApiResponse(responseCode = "409", description = "Book was modified concurrently")
+    })
+    @PatchMapping("/{id}")
+    public ResponseEntity<Void> patchBook(@PathVariable Long id, @RequestBody BookDto changes) {
+        LOGGER.info("Patching book with ID: {}, version: {}", id, changes.getVersion());
+        long version = bookService.patch(id, changes);
+        return ResponseEntity.noContent().eTag(Long.toString(version)).build();
+    }
+
+    @Operation(summary = "Reprice books in bulk",
+            description = "Change prices by a percentage for all books of a publisher and/or genre, or for an ID list. "
+                    + "Books are updated in chunks, each in its own transaction")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully repriced books"),
+            @ApiResponse(responseCode = "400", description = "Invalid percentage or filter"),
+            @ApiResponse(responseCode = "404", description = "Publisher not found")
+    })
+    @PostMapping("/reprice")
+    public ResponseEntity<BookRepriceResultDto> repriceBooks(@RequestBody BookRepriceDto request) {
+        LOGGER.info("Repricing books: percent={}, publisherId={}, genre={}",
+                request.getPercent(), request.getPublisherId(), sanitize(request.getGenre()));
+        return ResponseEntity.ok(bookRepricingService.reprice(request));
+    }
+
     @Operation(summary = "Delete a book", description = "Delete a book by ID")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "204", description = "Successfully deleted book"),
@@ -124,6 +287,19 @@ public class BookController {
         return ResponseEntity.noContent().build();
     }
 
+    @Operation(summary = "Delete books in bulk", description = "Delete all books with the given IDs in one transaction; nothing is deleted if any ID is missing")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "204", description = "Successfully deleted books"),
+            @ApiResponse(responseCode = "400", description = "Empty or oversized ID list"),
+            @ApiResponse(responseCode = "404", description = "Some books not found")
+    })
+    @DeleteMapping("/bulk")
+    public ResponseEntity<Void> deleteBooks(@RequestBody List<Long> ids) {
+        LOGGER.info("Deleting {} books in bulk", ids.size());
+        bookService.deleteBulk(ids);
+        return ResponseEntity.noContent().build();
+    }
+
     @Operation(summary = "Get books by price range",
             description = "Retrieve books within a specified price range")
     @ApiResponses(value = {
@@ -138,6 +314,31 @@ public class BookController {
         return ResponseEntity.ok(bookService.findByPriceRange(minPrice, maxPrice));
     }
 
+    @Operation(summary = "Get cheapest books", description = "Retrieve books ordered by price, cheapest first")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved books"),
+            @ApiResponse(responseCode = "400", description = "Invalid limit")
+    })
+    @GetMapping("/cheapest")
+    public ResponseEntity<List<BookDto>> getCheapestBooks(
+            @Parameter(description = "Number of books, 1-100") @RequestParam(defaultValue = "10") int limit) {
+        LOGGER.info("Fetching {} cheapest books", limit);
+        return ResponseEntity.ok(bookService.findCheapest(limit));
+    }
+
+    @Operation(summary = "Get most expensive books",
+            description = "Retrieve books ordered by price, most expensive first")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved books"),
+            @ApiResponse(responseCode = "400", description = "Invalid limit")
+    })
+    @GetMapping("/most-expensive")
+    public ResponseEntity<List<BookDto>> getMostExpensiveBooks(
+            @Parameter(description = "Number of books, 1-100") @RequestParam(defaultValue = "10") int limit) {
+        LOGGER.info("Fetching {} most expensive books", limit);
+        return ResponseEntity.ok(bookService.findMostExpensive(limit));
+    }
+
     @Operation(summary = "Add multiple books", description = "Add multiple books in a single request")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successfully added books"),
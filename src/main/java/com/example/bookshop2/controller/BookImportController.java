@@ -0,0 +1,62 @@
+package com.example.bookshop2.controller;
+
+import com.example.bookshop2.dto.BookImportStatusDto;
+import com.example.bookshop2.service.BookImportService;
+import com.example.bookshop2.service.BookImportService.ImportFormat;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/books/import")
+@RequiredArgsConstructor
+@Tag(name = "Book import", description = "API для асинхронного импорта книг")
+public class BookImportController {
+    private static final Logger LOG = LoggerFactory.getLogger(BookImportController.class);
+    private static final String TEXT_CSV_VALUE = "text/csv";
+    private final BookImportService bookImportService;
+
+    @Operation(summary = "Запустить импорт книг",
+            description = "Принимает JSON-массив книг или CSV (name,genre,price,publisherId,authorIds; "
+                    + "authorIds через ';') и возвращает ID задачи импорта")
+    @PostMapping(consumes = {MediaType.APPLICATION_JSON_VALUE, TEXT_CSV_VALUE})
+    public ResponseEntity<String> startImport(HttpServletRequest request) throws IOException {
+        MediaType contentType = MediaType.parseMediaType(request.getContentType());
+        ImportFormat format = contentType.isCompatibleWith(MediaType.parseMediaType(TEXT_CSV_VALUE))
+                ? ImportFormat.CSV
+                : ImportFormat.JSON;
+        String id = bookImportService.startImportAsync(request.getInputStream(), format);
+        LOG.info("Started {} book import {}", format, id);
+        return ResponseEntity.accepted().body(id);
+    }
+
+    @Operation(summary = "Получить статус импорта",
+            description = "Возвращает статус задачи, число добавленных и ошибочных строк и скорость импорта")
+    @GetMapping("/status/{id}")
+    public ResponseEntity<BookImportStatusDto> getStatus(@PathVariable String id) {
+        return ResponseEntity.ok(bookImportService.getStatus(id));
+    }
+
+    @Operation(summary = "Скачать отчёт об ошибках импорта",
+            description = "Скачивает CSV со строками, которые не удалось импортировать")
+    @GetMapping("/file/{id}")
+    public ResponseEntity<byte[]> getErrorReport(@PathVariable String id) {
+        byte[] content = bookImportService.getErrorReport(id);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"import_" + id + "_errors.csv\"")
+                .contentType(MediaType.parseMediaType(TEXT_CSV_VALUE))
+                .body(content);
+    }
+}
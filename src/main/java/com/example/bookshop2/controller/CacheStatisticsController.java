@@ -0,0 +1,36 @@
+package com.example.bookshop2.controller;
+
+import com.example.bookshop2.dto.CacheRegionStatsDto;
+import com.example.bookshop2.service.CacheStatisticsService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/cache/statistics")
+@RequiredArgsConstructor
+@Tag(name = "Cache statistics", description = "API для статистики кэша второго уровня Hibernate")
+public class CacheStatisticsController {
+    private final CacheStatisticsService cacheStatisticsService;
+
+    @Operation(summary = "Получить статистику кэша",
+            description = "Возвращает попадания, промахи, записи и долю попаданий по регионам кэша "
+                    + "второго уровня и для кэша запросов")
+    @GetMapping
+    public ResponseEntity<List<CacheRegionStatsDto>> getStats() {
+        return ResponseEntity.ok(cacheStatisticsService.getSecondLevelCacheStats());
+    }
+
+    @Operation(summary = "Сбросить статистику кэша", description = "Обнуляет счётчики; содержимое кэша не меняется")
+    @DeleteMapping
+    public ResponseEntity<Void> resetStats() {
+        cacheStatisticsService.reset();
+        return ResponseEntity.noContent().build();
+    }
+}
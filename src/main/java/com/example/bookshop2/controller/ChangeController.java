@@ -0,0 +1,42 @@
+package com.example.bookshop2.controller;
+
+import com.example.bookshop2.dto.CatalogChangesDto;
+import com.example.bookshop2.service.ChangeFeedService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/changes")
+public class ChangeController {
+    private final ChangeFeedService changeFeedService;
+
+    public ChangeController(ChangeFeedService changeFeedService) {
+        this.changeFeedService = changeFeedService;
+    }
+
+    @Operation(summary = "Catalog changes since a sequence number",
+            description = "Return the current state of books, authors and publishers changed after 'since' "
+                    + "and the IDs of deleted ones, together with the sequence number to pass next time. "
+                    + "Sequence numbers are assigned in commit order and shared by all instances, so any instance "
+                    + "can serve the next request. If 'since' is outside the change log window, resync is true: "
+                    + "download the full catalog, then continue from 'next'. Repeat while hasMore is true")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved changes"),
+            @ApiResponse(responseCode = "400", description = "Invalid limit")
+    })
+    @GetMapping
+    public ResponseEntity<CatalogChangesDto> getChanges(
+            @Parameter(description = "Last sequence number the client has applied, 0 on first sync")
+            @RequestParam long since,
+            @Parameter(description = "Maximum number of change log entries, 1-1000")
+            @RequestParam(defaultValue = "500") int limit) {
+        return ResponseEntity.ok(changeFeedService.changesSince(since, limit));
+    }
+}
@@ -1,15 +1,22 @@
 package com.example.bookshop2.controller;
 
 import com.example.bookshop2.dto.PublisherDto;
+import com.example.bookshop2.dto.PublisherOverviewDto;
+import com.example.bookshop2.dto.SuggestionDto;
+import com.example.bookshop2.service.PublisherOverviewService;
 import com.example.bookshop2.service.PublisherService;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.enums.ParameterIn;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import jakarta.validation.Valid;
 import java.util.List;
+import java.util.Map;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
@@ -22,20 +29,36 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping("/publishers")
 public class PublisherController {
     private final PublisherService publisherService;
+    private final PublisherOverviewService publisherOverviewService;
 
-    public PublisherController(PublisherService publisherService) {
+    public PublisherController(PublisherService publisherService,
+                               PublisherOverviewService publisherOverviewService) {
         this.publisherService = publisherService;
+        this.publisherOverviewService = publisherOverviewService;
     }
 
     @Operation(summary = "Get all publishers", description = "Retrieve all publishers")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successfully retrieved all publishers")
     })
+    @Parameter(name = "fields", in = ParameterIn.QUERY, description = "Comma-separated properties to return")
     @GetMapping
     public ResponseEntity<List<PublisherDto>> getAllPublishers() {
         return ResponseEntity.ok(publisherService.findAll());
     }
 
+    @Operation(summary = "Get publishers by IDs",
+            description = "Retrieve up to 1000 publishers in the order of the comma-separated IDs; unknown IDs are skipped")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved publishers"),
+            @ApiResponse(responseCode = "400", description = "Empty or too long ID list")
+    })
+    @Parameter(name = "fields", in = ParameterIn.QUERY, description = "Comma-separated properties to return")
+    @GetMapping(params = "ids")
+    public ResponseEntity<List<PublisherDto>> getPublishersByIds(@RequestParam List<Long> ids) {
+        return ResponseEntity.ok(publisherService.findAllByIds(ids));
+    }
+
     @Operation(summary = "Get publisher by ID", description = "Retrieve a publisher by ID")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successfully retrieved publisher"),
@@ -46,6 +69,20 @@ public class PublisherController {
         return ResponseEntity.ok(publisherService.findById(id));
     }
 
+    @Operation(summary = "Get publisher overview",
+            description = "Retrieve the publisher, its books and their distinct authors in one response. "
+                    + "The sections are loaded concurrently; books or authors that do not load in time "
+                    + "are returned empty and listed in 'unavailable'")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved publisher overview"),
+            @ApiResponse(responseCode = "404", description = "Publisher not found"),
+            @ApiResponse(responseCode = "503", description = "Publisher did not load in time")
+    })
+    @GetMapping("/{id}/overview")
+    public ResponseEntity<PublisherOverviewDto> getPublisherOverview(@PathVariable Long id) {
+        return ResponseEntity.ok(publisherOverviewService.overview(id));
+    }
+
     @Operation(summary = "Search publishers by name",
             description = "Search publishers by name (partial match)")
     @ApiResponses(value = {
@@ -57,6 +94,19 @@ public class PublisherController {
         return ResponseEntity.ok(publisherService.searchByName(name));
     }
 
+    @Operation(summary = "Suggest publishers by name prefix",
+            description = "Autocomplete publishers whose name starts with the prefix, most popular first")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved suggestions"),
+            @ApiResponse(responseCode = "400", description = "Invalid prefix or limit")
+    })
+    @GetMapping("/suggest")
+    public ResponseEntity<List<SuggestionDto>> suggestPublishers(
+            @Parameter(description = "Name prefix") @RequestParam String prefix,
+            @Parameter(description = "Maximum number of suggestions") @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(publisherService.suggest(prefix, limit));
+    }
+
     @Operation(summary = "Create a publisher", description = "Create a new publisher")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successfully created publisher"),
@@ -67,6 +117,18 @@ public class PublisherController {
         return ResponseEntity.ok(publisherService.create(dto));
     }
 
+    @Operation(summary = "Resolve or create publishers by name",
+            description = "Map each distinct name to the lowest id of the existing publishers with that name "
+                    + "or to the id of a newly created one")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully resolved publisher names"),
+            @ApiResponse(responseCode = "400", description = "Empty or too long name list, or blank name")
+    })
+    @PostMapping("/upsert")
+    public ResponseEntity<Map<String, Long>> upsertPublishers(@RequestBody List<String> names) {
+        return ResponseEntity.ok(publisherService.upsertByNames(names));
+    }
+
     @Operation(summary = "Update a publisher", description = "Update an existing publisher by ID")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successfully updated publisher"),
@@ -79,6 +141,21 @@ public class PublisherController {
         return ResponseEntity.ok(publisherService.update(id, dto));
     }
 
+    @Operation(summary = "Rename a publisher",
+            description = "Change the name with one conditional UPDATE; the version must match the current one. "
+                    + "The new version is returned in ETag")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "204", description = "Successfully updated publisher"),
+            @ApiResponse(responseCode = "400", description = "Invalid publisher data"),
+            @ApiResponse(responseCode = "404", description = "Publisher not found"),
+            @ApiResponse(responseCode = "409", description = "Publisher was modified concurrently")
+    })
+    @PatchMapping("/{id}")
+    public ResponseEntity<Void> patchPublisher(@PathVariable Long id, @RequestBody PublisherDto changes) {
+        long version = publisherService.patch(id, changes);
+        return ResponseEntity.noContent().eTag(Long.toString(version)).build();
+    }
+
     @Operation(summary = "Delete a publisher", description = "Delete a publisher by ID")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "204", description = "Successfully deleted publisher"),
@@ -89,4 +166,16 @@ public class PublisherController {
         publisherService.delete(id);
         return ResponseEntity.noContent().build();
     }
+
+    @Operation(summary = "Delete publishers in bulk", description = "Delete all publishers with the given IDs in one transaction; nothing is deleted if any ID is missing")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "204", description = "Successfully deleted publishers"),
+            @ApiResponse(responseCode = "400", description = "Empty or oversized ID list, or some publishers still have books"),
+            @ApiResponse(responseCode = "404", description = "Some publishers not found")
+    })
+    @DeleteMapping("/bulk")
+    public ResponseEntity<Void> deletePublishers(@RequestBody List<Long> ids) {
+        publisherService.deleteBulk(ids);
+        return ResponseEntity.noContent().build();
+    }
 }
\ No newline at end of file
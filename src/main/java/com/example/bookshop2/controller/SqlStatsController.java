@@ -0,0 +1,36 @@
+package com.example.bookshop2.controller;
+
+import com.example.bookshop2.dto.EndpointSqlStatsDto;
+import com.example.bookshop2.service.SqlStatsService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/sql/statistics")
+@RequiredArgsConstructor
+@Tag(name = "SQL statistics", description = "API для статистики SQL по эндпоинтам")
+public class SqlStatsController {
+    private final SqlStatsService sqlStatsService;
+
+    @Operation(summary = "Получить статистику SQL по эндпоинтам",
+            description = "Возвращает число запросов, операторов SQL, строк и время в БД для каждого эндпоинта; "
+                    + "сначала эндпоинты с наибольшим суммарным временем")
+    @GetMapping
+    public ResponseEntity<List<EndpointSqlStatsDto>> getStats() {
+        return ResponseEntity.ok(sqlStatsService.getAllStats());
+    }
+
+    @Operation(summary = "Сбросить статистику SQL", description = "Обнуляет накопленные счётчики")
+    @DeleteMapping
+    public ResponseEntity<Void> resetStats() {
+        sqlStatsService.reset();
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.bookshop2.datasource;
+
+import java.util.function.Supplier;
+
+/**
+ * Привязка текущего потока к primary: пока она установлена, read-only транзакции
+ * не уходят на реплики и видят только что записанные данные.
+ */
+public final class ReadYourWrites {
+    private static final ThreadLocal<Boolean> PINNED = new ThreadLocal<>();
+
+    private ReadYourWrites() {
+    }
+
+    public static void pin() {
+        PINNED.set(Boolean.TRUE);
+    }
+
+    public static void unpin() {
+        PINNED.remove();
+    }
+
+    public static boolean isPinned() {
+        return PINNED.get() != null;
+    }
+
+    public static <T> T onPrimary(Supplier<T> action) {
+        if (isPinned()) {
+            return action.get();
+        }
+        pin();
+        try {
+            return action.get();
+        } finally {
+            unpin();
+        }
+    }
+}
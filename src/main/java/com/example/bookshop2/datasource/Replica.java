@@ -0,0 +1,59 @@
+package com.example.bookshop2.datasource;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
+
+// Пул одной реплики: отставание от primary и число выданных соединений
+public class Replica {
+    static final long UNKNOWN_LAG = Long.MAX_VALUE;
+
+    private final String name;
+    private final DataSource dataSource;
+    private final long maxLagMillis;
+    private final AtomicInteger active = new AtomicInteger();
+    // Пока отставание не измерено, реплика считается недоступной
+    private volatile long lagMillis = UNKNOWN_LAG;
+
+    public Replica(String name, DataSource dataSource, Duration maxLag) {
+        this.name = name;
+        this.dataSource = dataSource;
+        this.maxLagMillis = maxLag.toMillis();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+    public boolean isAvailable() {
+        return lagMillis <= maxLagMillis;
+    }
+
+    public long getLagMillis() {
+        return lagMillis;
+    }
+
+    public void updateLag(long lagMillis) {
+        this.lagMillis = Math.max(0, lagMillis);
+    }
+
+    public void markUnavailable() {
+        this.lagMillis = UNKNOWN_LAG;
+    }
+
+    public int getActiveConnections() {
+        return active.get();
+    }
+
+    void acquired() {
+        active.incrementAndGet();
+    }
+
+    void released() {
+        active.decrementAndGet();
+    }
+}
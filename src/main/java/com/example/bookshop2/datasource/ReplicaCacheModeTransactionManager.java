@@ -0,0 +1,27 @@
+package com.example.bookshop2.datasource;
+
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Read-only транзакции, которые могут уйти на реплику, только читают кэш второго уровня, но не пополняют его.
+ * Иначе после массового UPDATE/DELETE, очистившего регион, отстающая реплика вернула бы в общий кэш старую
+ * строку, и она отдавалась бы до истечения TTL региона, а не в пределах max-lag.
+ * Кэш заполняют транзакции на primary: пишущие и read-only внутри окна {@link ReadYourWrites}.
+ */
+public class ReplicaCacheModeTransactionManager extends JpaTransactionManager {
+
+    @Override
+    protected void doBegin(Object transaction, TransactionDefinition definition) {
+        super.doBegin(transaction, definition);
+        if (definition.isReadOnly() && !ReadYourWrites.isPinned()) {
+            EntityManagerHolder holder =
+                    (EntityManagerHolder) TransactionSynchronizationManager.getResource(obtainEntityManagerFactory());
+            holder.getEntityManager().unwrap(Session.class).setCacheMode(CacheMode.GET);
+        }
+    }
+}
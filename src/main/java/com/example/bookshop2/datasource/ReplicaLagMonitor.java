@@ -0,0 +1,60 @@
+package com.example.bookshop2.datasource;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ * Периодически измеряет отставание реплик запросом, возвращающим его в секундах.
+ * Реплика, на которой запрос не выполнился, исключается из чтения до следующей успешной проверки.
+ */
+@Slf4j
+public class ReplicaLagMonitor {
+    private final List<Replica> replicas;
+    private final String lagQuery;
+
+    public ReplicaLagMonitor(List<Replica> replicas, String lagQuery) {
+        this.replicas = replicas;
+        this.lagQuery = lagQuery;
+    }
+
+    @Scheduled(fixedDelayString = "${bookshop.datasource.lag-check-interval:1s}")
+    public void check() {
+        for (Replica replica : replicas) {
+            boolean wasAvailable = replica.isAvailable();
+            try {
+                replica.updateLag(Math.round(queryLagSeconds(replica) * 1000));
+            } catch (SQLException e) {
+                replica.markUnavailable();
+                if (wasAvailable) {
+                    log.warn("Не удалось измерить отставание реплики {}: {}", replica.getName(), e.getMessage());
+                }
+                continue;
+            }
+            if (wasAvailable != replica.isAvailable()) {
+                if (replica.isAvailable()) {
+                    log.info("Реплика {} доступна для чтения, отставание {} мс",
+                            replica.getName(), replica.getLagMillis());
+                } else {
+                    log.warn("Реплика {} отстаёт на {} мс, чтение идёт с других узлов",
+                            replica.getName(), replica.getLagMillis());
+                }
+            }
+        }
+    }
+
+    private double queryLagSeconds(Replica replica) throws SQLException {
+        try (Connection connection = replica.getDataSource().getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(lagQuery)) {
+            if (!rs.next()) {
+                throw new SQLException("Lag query returned no rows");
+            }
+            return rs.getDouble(1);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.bookshop2.datasource;
+
+import com.example.bookshop2.datasource.ReplicaRoutingDataSource.Balancing;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+// Настройки реплик для чтения (bookshop.datasource.*); без реплик всё идёт в spring.datasource
+@Data
+@ConfigurationProperties(prefix = "bookshop.datasource")
+public class ReplicaProperties {
+    // Отставание hot standby PostgreSQL; 0, если реплика догнала primary или это не standby
+    public static final String POSTGRES_LAG_QUERY = "SELECT COALESCE(CASE "
+            + "WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 "
+            + "ELSE EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) END, 0)";
+
+    private List<Node> replicas = new ArrayList<>();
+    private Balancing balancing = Balancing.ROUND_ROBIN;
+    private Duration maxLag = Duration.ofSeconds(5);
+    private Duration readYourWritesWindow = Duration.ofSeconds(5);
+    private String lagQuery = POSTGRES_LAG_QUERY;
+
+    @Data
+    public static class Node {
+        private String url;
+        // Если не заданы, берутся из spring.datasource
+        private String username;
+        private String password;
+        private int maximumPoolSize = 10;
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.bookshop2.datasource;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+/**
+ * Источник соединений для read-only транзакций: выбирает реплику, отставание которой
+ * укладывается в допустимое, по кругу или по наименьшему числу открытых соединений.
+ * Если поток привязан к primary ({@link ReadYourWrites}), подходящих реплик нет
+ * или реплика не отдала соединение, соединение берётся из primary.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractDataSource implements AutoCloseable {
+    public enum Balancing {
+        ROUND_ROBIN,
+        LEAST_LOADED
+    }
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final Balancing balancing;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaRoutingDataSource(DataSource primary, List<Replica> replicas, Balancing balancing) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.balancing = balancing;
+    }
+
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (ReadYourWrites.isPinned()) {
+            return primary.getConnection();
+        }
+        Replica replica = choose();
+        if (replica == null) {
+            return primary.getConnection();
+        }
+        replica.acquired();
+        try {
+            return track(replica.getDataSource().getConnection(), replica);
+        } catch (SQLException e) {
+            replica.released();
+            replica.markUnavailable();
+            log.warn("Реплика {} не выдала соединение, чтение переключено на primary: {}",
+                    replica.getName(), e.getMessage());
+            return primary.getConnection();
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Replica pools use their configured credentials");
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (Replica replica : replicas) {
+            if (replica.getDataSource() instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    private Replica choose() {
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        Replica chosen = null;
+        for (int i = 0; i < size; i++) {
+            Replica candidate = replicas.get((start + i) % size);
+            if (!candidate.isAvailable()) {
+                continue;
+            }
+            if (balancing == Balancing.ROUND_ROBIN) {
+                return candidate;
+            }
+            if (chosen == null || candidate.getActiveConnections() < chosen.getActiveConnections()) {
+                chosen = candidate;
+            }
+        }
+        return chosen;
+    }
+
+    // Счётчик открытых соединений уменьшается при первом close()
+    private static Connection track(Connection target, Replica replica) {
+        AtomicBoolean closed = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("close") && closed.compareAndSet(false, true)) {
+                        replica.released();
+                    }
+                    try {
+                        return method.invoke(target, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    }
+                });
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.bookshop2.datasource;
+
+import com.example.bookshop2.index.IdBitmap;
+import java.util.Collection;
+
+/**
+ * В каком шарде лежит книга: битовая карта ID на каждый шард. Карты дополняются при записи книг
+ * через этот процесс; книга, которой нет ни в одной карте (её создал другой экземпляр) или которая
+ * оказалась в нескольких (перенос совпал с загрузкой), ищется во всех шардах.
+ */
+public class ShardDirectory {
+    public static final int UNKNOWN = -1;
+    private final IdBitmap[] shards;
+
+    public ShardDirectory(int shardCount) {
+        this.shards = new IdBitmap[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new IdBitmap();
+        }
+    }
+
+    public synchronized int shardOf(long id) {
+        int found = UNKNOWN;
+        for (int shard = 0; shard < shards.length; shard++) {
+            if (shards[shard].contains(id)) {
+                if (found != UNKNOWN) {
+                    return UNKNOWN;
+                }
+                found = shard;
+            }
+        }
+        return found;
+    }
+
+    // Загрузка при старте объединяется с записями, сделанными до неё
+    public synchronized void addAll(int shard, Collection<Long> ids) {
+        ids.forEach(shards[shard]::add);
+    }
+
+    public synchronized void put(long id, int shard) {
+        for (int other = 0; other < shards.length; other++) {
+            if (other == shard) {
+                shards[other].add(id);
+            } else {
+                shards[other].remove(id);
+            }
+        }
+    }
+
+    public synchronized void remove(long id) {
+        for (IdBitmap shard : shards) {
+            shard.remove(id);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.bookshop2.datasource;
+
+import com.example.bookshop2.event.CatalogChangeEvent;
+import com.example.bookshop2.event.CatalogChangeEvent.EntityType;
+import com.example.bookshop2.model.Book;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Авторы и издатели живут в основной базе (шард 0), а на них ссылаются внешние ключи books
+ * и book_author каждого шарда, поэтому шарды держат их копии. Изменение копируется сразу при событии
+ * в транзакциях шардов той же внешней транзакции: откат записи откатывает и копии. Удаление автора
+ * убирает его связи с книгами, как массовое удаление в основной базе; издатель, у которого в шарде
+ * остались книги, не удаляется — запись откатывается с нарушением целостности.
+ */
+public class ShardMirror {
+    private final ShardTransactions transactions;
+    private final EntityManager entityManager;
+    private final JdbcTemplate home;
+
+    public ShardMirror(ShardTransactions transactions, EntityManager entityManager, JdbcTemplate home) {
+        this.transactions = transactions;
+        this.entityManager = entityManager;
+        this.home = home;
+    }
+
+    @EventListener
+    public void onCatalogChange(CatalogChangeEvent event) {
+        if (event.getId() == null || event.getEntityType() == EntityType.BOOK) {
+            return;
+        }
+        String table = event.getEntityType() == EntityType.AUTHOR ? "authors" : "publishers";
+        long id = event.getId();
+        // Текущее состояние строки, а не содержимое события: версия должна совпасть с основной базой
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            flush(entityManager);
+        }
+        List<Map<String, Object>> rows = home.queryForList("SELECT name, version FROM " + table + " WHERE id = ?", id);
+        for (int shard = 1; shard < transactions.getShardCount(); shard++) {
+            int target = shard;
+            transactions.call(shard, () -> {
+                flush(entityManager);
+                try {
+                    entityManager.unwrap(Session.class).doWork(connection -> {
+                        if (rows.isEmpty()) {
+                            delete(connection, event.getEntityType(), id, target);
+                        } else {
+                            upsert(connection, table, id, (String) rows.get(0).get("name"),
+                                    ((Number) rows.get(0).get("version")).longValue());
+                        }
+                    });
+                } catch (PersistenceException e) {
+                    throw translate(e);
+                }
+                return null;
+            });
+        }
+        if (rows.isEmpty() && event.getEntityType() == EntityType.AUTHOR) {
+            entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getCache()
+                    .evictCollectionData(Book.class.getName() + ".authors");
+        }
+    }
+
+    private static void upsert(Connection connection, String table, long id, String name, long version)
+            throws SQLException {
+        try (PreparedStatement update = connection.prepareStatement(
+                "UPDATE " + table + " SET name = ?, version = ? WHERE id = ?")) {
+            update.setString(1, name);
+            update.setLong(2, version);
+            update.setLong(3, id);
+            if (update.executeUpdate() > 0) {
+                return;
+            }
+        }
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO " + table + " (id, name, version) VALUES (?, ?, ?)")) {
+            insert.setLong(1, id);
+            insert.setString(2, name);
+            insert.setLong(3, version);
+            insert.executeUpdate();
+        }
+    }
+
+    private static void delete(Connection connection, EntityType type, long id, int shard) throws SQLException {
+        if (type == EntityType.AUTHOR) {
+            execute(connection, "DELETE FROM book_author WHERE author_id = ?", id);
+            execute(connection, "DELETE FROM authors WHERE id = ?", id);
+            return;
+        }
+        try (PreparedStatement books = connection.prepareStatement(
+                "SELECT COUNT(*) FROM books WHERE publisher_id = ?")) {
+            books.setLong(1, id);
+            try (ResultSet rs = books.executeQuery()) {
+                if (rs.next() && rs.getLong(1) > 0) {
+                    throw new DataIntegrityViolationException(
+                            "Publisher " + id + " still has books on shard " + shard);
+                }
+            }
+        }
+        execute(connection, "DELETE FROM publishers WHERE id = ?", id);
+    }
+
+    private static void execute(Connection connection, String sql, long id) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setLong(1, id);
+            statement.executeUpdate();
+        }
+    }
+
+    private static void flush(EntityManager entityManager) {
+        try {
+            entityManager.flush();
+        } catch (PersistenceException e) {
+            throw translate(e);
+        }
+    }
+
+    private static RuntimeException translate(PersistenceException e) {
+        DataAccessException translated = EntityManagerFactoryUtils.convertJpaAccessExceptionIfPossible(e);
+        return translated != null ? translated : e;
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.bookshop2.datasource;
+
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+// Шарды книг (bookshop.datasource.shards); spring.datasource — шард 0 и основная база авторов и издателей
+@Data
+@ConfigurationProperties(prefix = "bookshop.datasource")
+public class ShardProperties {
+    private List<Node> shards = new ArrayList<>();
+    // Точек на кольце у каждого шарда: чем больше, тем ровнее издатели делятся между шардами
+    private int virtualNodes = 160;
+    // Потоки для параллельных запросов ко всем шардам; один из запросов выполняет сам вызывающий поток
+    private int scatterThreads = 8;
+
+    @Data
+    public static class Node {
+        private String url;
+        // Если не заданы, берутся из spring.datasource
+        private String username;
+        private String password;
+        private int maximumPoolSize = 10;
+    }
+}
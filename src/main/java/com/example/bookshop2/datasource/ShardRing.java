@@ -0,0 +1,50 @@
+package com.example.bookshop2.datasource;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Консистентное хеширование издателей по шардам: у каждого шарда virtualNodes точек на кольце,
+ * издатель принадлежит первой точке не меньше хеша своего ID. Шард, добавленный в конец списка,
+ * забирает примерно 1/N издателей, остальные остаются на прежних шардах.
+ */
+public class ShardRing {
+    private final int shardCount;
+    private final TreeMap<Long, Integer> points = new TreeMap<>();
+
+    public ShardRing(int shardCount, int virtualNodes) {
+        if (shardCount < 1 || virtualNodes < 1) {
+            throw new IllegalArgumentException("Shard count and virtual nodes must be positive");
+        }
+        this.shardCount = shardCount;
+        for (int shard = 0; shard < shardCount; shard++) {
+            for (int node = 0; node < virtualNodes; node++) {
+                points.putIfAbsent(mix(((long) shard << 32) | node), shard);
+            }
+        }
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    // Книги без издателя лежат в шарде 0
+    public int shardOf(Long publisherId) {
+        if (publisherId == null || shardCount == 1) {
+            return Shards.HOME;
+        }
+        Map.Entry<Long, Integer> point = points.ceilingEntry(mix(publisherId));
+        return (point != null ? point : points.firstEntry()).getValue();
+    }
+
+    // Финализатор MurmurHash3: соседние ID издателей расходятся по всему кольцу
+    private static long mix(long value) {
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
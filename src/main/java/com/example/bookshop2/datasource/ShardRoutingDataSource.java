@@ -0,0 +1,46 @@
+package com.example.bookshop2.datasource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.List;
+import javax.sql.DataSource;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+// Соединение с базой шарда, выбранного в текущем потоке ({@link Shards}); без выбора — с основной базой
+public class ShardRoutingDataSource extends AbstractDataSource implements AutoCloseable {
+    private final List<DataSource> shards;
+
+    public ShardRoutingDataSource(DataSource home, List<DataSource> others) {
+        List<DataSource> all = new ArrayList<>(others.size() + 1);
+        all.add(home);
+        all.addAll(others);
+        this.shards = List.copyOf(all);
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Integer shard = Shards.current();
+        return shards.get(shard != null ? shard : Shards.HOME).getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Shard pools use their configured credentials");
+    }
+
+    // Основная база — отдельный бин, её пул закрывает контекст
+    @Override
+    public void close() throws Exception {
+        for (DataSource shard : shards.subList(1, shards.size())) {
+            if (shard instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package com.example.bookshop2.datasource;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.springframework.dao.DataAccessException;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.transaction.UnexpectedRollbackException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Транзакции на шардах книг. Внутри транзакции Spring на каждый затронутый шард открывается свой
+ * EntityManager с транзакцией на соединении этого шарда; он живёт до конца внешней транзакции,
+ * поэтому ленивые связи загруженных книг дочитываются из их шарда, а блокировки держатся до её конца.
+ * Перед коммитом внешней транзакции сбрасываются основная база и все шарды, затем шарды фиксируются
+ * по очереди: ошибка в данных откатывает всё, но сбой самого коммита не откатывает уже зафиксированные
+ * шарды — распределённых транзакций здесь нет. Без внешней транзакции каждый вызов идёт в своей.
+ */
+@Slf4j
+public class ShardTransactions implements AutoCloseable {
+    private final EntityManagerFactory entityManagerFactory;
+    private final int shardCount;
+    private final ExecutorService executor;
+
+    public ShardTransactions(EntityManagerFactory entityManagerFactory, int shardCount, int threads) {
+        if (shardCount < 1 || threads < 1) {
+            throw new IllegalArgumentException("Shard count and scatter threads must be positive");
+        }
+        this.entityManagerFactory = entityManagerFactory;
+        this.shardCount = shardCount;
+        this.executor = Executors.newFixedThreadPool(threads, daemonThreads());
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    public List<Integer> allShards() {
+        List<Integer> shards = new ArrayList<>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            shards.add(shard);
+        }
+        return shards;
+    }
+
+    // Вызов репозитория в транзакции шарда: внутри action общий EntityManager — EntityManager шарда
+    public <T> T call(int shard, Supplier<T> action) {
+        Sessions sessions = currentSessions();
+        return sessions != null ? run(sessions.get(shard), action) : runLocal(shard, action);
+    }
+
+    /**
+     * action на каждом из shards параллельно; результаты в порядке shards. Первый шард обслуживает
+     * вызывающий поток, пока остальные выполняются в пуле.
+     */
+    public <T> List<T> scatter(List<Integer> shards, IntFunction<T> action) {
+        if (shards.isEmpty()) {
+            return List.of();
+        }
+        Sessions sessions = currentSessions();
+        if (sessions != null) {
+            // Сессии регистрируются во внешней транзакции, поэтому открываются в её потоке
+            shards.forEach(sessions::get);
+        }
+        List<Future<T>> pending = new ArrayList<>(shards.size());
+        for (int shard : shards.subList(1, shards.size())) {
+            pending.add(executor.submit(() -> invoke(sessions, shard, action)));
+        }
+        List<T> results = new ArrayList<>(shards.size());
+        try {
+            results.add(invoke(sessions, shards.get(0), action));
+            for (Future<T> future : pending) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for book shards", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Book shard query failed", e.getCause());
+        } finally {
+            pending.forEach(future -> future.cancel(false));
+        }
+        return results;
+    }
+
+    // Сброс открытых во внешней транзакции шардов, как flush() у основной базы
+    public void flush() {
+        Sessions sessions = currentSessions();
+        if (sessions != null) {
+            sessions.flushAll();
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private <T> T invoke(Sessions sessions, int shard, IntFunction<T> action) {
+        Supplier<T> bound = () -> action.apply(shard);
+        return sessions != null ? run(sessions.get(shard), bound) : runLocal(shard, bound);
+    }
+
+    private <T> T runLocal(int shard, Supplier<T> action) {
+        ShardSession session = open(shard, false);
+        try {
+            T result = run(session, action);
+            if (session.isRollbackOnly()) {
+                throw new UnexpectedRollbackException(
+                        "Transaction on book shard " + shard + " was marked as rollback-only");
+            }
+            session.commit();
+            return result;
+        } catch (RuntimeException | Error e) {
+            session.rollbackQuietly();
+            throw e;
+        } finally {
+            session.close();
+        }
+    }
+
+    // Подменяет EntityManager потока на EntityManager шарда на время action
+    private <T> T run(ShardSession session, Supplier<T> action) {
+        Object outer = TransactionSynchronizationManager.unbindResourceIfPossible(entityManagerFactory);
+        TransactionSynchronizationManager.bindResource(entityManagerFactory, session);
+        try {
+            return Shards.on(session.shard, action);
+        } finally {
+            TransactionSynchronizationManager.unbindResource(entityManagerFactory);
+            if (outer != null) {
+                TransactionSynchronizationManager.bindResource(entityManagerFactory, outer);
+            }
+        }
+    }
+
+    // Соединение берётся сразу, пока выбран шард: ленивые загрузки позже пойдут по нему же
+    private ShardSession open(int shard, boolean readOnly) {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            Session session = entityManager.unwrap(Session.class);
+            if (readOnly) {
+                session.setDefaultReadOnly(true);
+                session.setHibernateFlushMode(FlushMode.MANUAL);
+            }
+            Shards.on(shard, () -> {
+                entityManager.getTransaction().begin();
+                session.doWork(connection -> { });
+                return null;
+            });
+            return new ShardSession(shard, entityManager, readOnly);
+        } catch (RuntimeException e) {
+            entityManager.close();
+            throw e;
+        }
+    }
+
+    // Сессии шардов внешней транзакции хранятся в её синхронизации: при REQUIRES_NEW Spring
+    // приостанавливает синхронизации, и вложенная транзакция открывает свои
+    private Sessions currentSessions() {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()
+                || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof Sessions sessions && sessions.owner() == this) {
+                return sessions;
+            }
+        }
+        Sessions sessions = new Sessions(TransactionSynchronizationManager.isCurrentTransactionReadOnly());
+        TransactionSynchronizationManager.registerSynchronization(sessions);
+        return sessions;
+    }
+
+    private static RuntimeException translate(RuntimeException e) {
+        if (e instanceof PersistenceException) {
+            DataAccessException translated = EntityManagerFactoryUtils.convertJpaAccessExceptionIfPossible(e);
+            if (translated != null) {
+                return translated;
+            }
+        }
+        return e;
+    }
+
+    private static ThreadFactory daemonThreads() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "shard-scatter-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private final class Sessions implements TransactionSynchronization {
+        private final boolean readOnly;
+        private final ShardSession[] open = new ShardSession[shardCount];
+
+        private Sessions(boolean readOnly) {
+            this.readOnly = readOnly;
+        }
+
+        private ShardTransactions owner() {
+            return ShardTransactions.this;
+        }
+
+        private synchronized ShardSession get(int shard) {
+            if (open[shard] == null) {
+                open[shard] = open(shard, readOnly);
+            }
+            return open[shard];
+        }
+
+        private void flushAll() {
+            for (ShardSession session : open) {
+                if (session != null) {
+                    session.flush();
+                }
+            }
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            for (ShardSession session : open) {
+                if (session != null && session.isRollbackOnly()) {
+                    throw new UnexpectedRollbackException(
+                            "Transaction on book shard " + session.shard + " was marked as rollback-only");
+                }
+            }
+            if (!readOnly) {
+                // Ошибки основной базы всплывают до того, как зафиксирован хоть один шард
+                EntityManager home = EntityManagerFactoryUtils.getTransactionalEntityManager(entityManagerFactory);
+                if (home != null) {
+                    try {
+                        home.flush();
+                    } catch (RuntimeException e) {
+                        throw translate(e);
+                    }
+                }
+                flushAll();
+            }
+            for (ShardSession session : open) {
+                if (session != null) {
+                    session.commit();
+                }
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            for (ShardSession session : open) {
+                if (session != null) {
+                    session.rollbackQuietly();
+                    session.close();
+                }
+            }
+        }
+    }
+
+    // Держатель, который репозитории Spring Data принимают за EntityManager текущей транзакции
+    private static final class ShardSession extends EntityManagerHolder {
+        private final int shard;
+        private final boolean readOnly;
+
+        private ShardSession(int shard, EntityManager entityManager, boolean readOnly) {
+            super(entityManager);
+            this.shard = shard;
+            this.readOnly = readOnly;
+            setTransactionActive(true);
+            setSynchronizedWithTransaction(true);
+        }
+
+        private void flush() {
+            if (!readOnly) {
+                try {
+                    getEntityManager().flush();
+                } catch (RuntimeException e) {
+                    throw translate(e);
+                }
+            }
+        }
+
+        private void commit() {
+            try {
+                getEntityManager().getTransaction().commit();
+            } catch (RuntimeException e) {
+                throw translate(e);
+            }
+        }
+
+        private void rollbackQuietly() {
+            try {
+                if (getEntityManager().getTransaction().isActive()) {
+                    getEntityManager().getTransaction().rollback();
+                }
+            } catch (RuntimeException e) {
+                log.warn("Не удалось откатить транзакцию шарда {}: {}", shard, e.getMessage());
+            }
+        }
+
+        private void close() {
+            if (getEntityManager().isOpen()) {
+                getEntityManager().close();
+            }
+        }
+    }
+}
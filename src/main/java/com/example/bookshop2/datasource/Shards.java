@@ -0,0 +1,33 @@
+package com.example.bookshop2.datasource;
+
+import java.util.function.Supplier;
+
+/**
+ * Шард текущего потока: {@link ShardRoutingDataSource} выдаёт соединение его базы.
+ * Вне {@link #on} соединения идут в шард 0 — основную базу.
+ */
+public final class Shards {
+    public static final int HOME = 0;
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    private Shards() {
+    }
+
+    public static Integer current() {
+        return CURRENT.get();
+    }
+
+    public static <T> T on(int shard, Supplier<T> action) {
+        Integer outer = CURRENT.get();
+        CURRENT.set(shard);
+        try {
+            return action.get();
+        } finally {
+            if (outer == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(outer);
+            }
+        }
+    }
+}
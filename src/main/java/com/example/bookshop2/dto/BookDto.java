@@ -17,4 +17,6 @@ public class BookDto {
     private String publisherName;
     private Set<Long> authorIds;
     private Set<String> authorNames;
-}
\ No newline at end of file
+    // Версия для оптимистической блокировки: обязательна в PATCH, в PUT проверяется, если передана
+    private Long version;
+}
@@ -0,0 +1,15 @@
+package com.example.bookshop2.dto;
+
+import java.util.List;
+import java.util.Map;
+import lombok.Data;
+
+@Data
+public class BookFacetsDto {
+    // Значение измерения -> число совпадений при остальных условиях поиска, по убыванию
+    private Map<String, Long> genres;
+    private Map<Long, Long> publishers;
+    private Map<Long, Long> authors;
+    // Все интервалы цен по порядку: номер интервала и есть параметр priceBand
+    private List<PriceBucketDto> priceBands;
+}
@@ -0,0 +1,12 @@
+package com.example.bookshop2.dto;
+
+import lombok.Data;
+
+@Data
+public class BookImportStatusDto {
+    private String id;
+    private String status;
+    private long rowsDone;
+    private long rowsFailed;
+    private double rowsPerSecond;
+}
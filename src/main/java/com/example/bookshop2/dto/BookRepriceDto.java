@@ -0,0 +1,14 @@
+package com.example.bookshop2.dto;
+
+import java.util.List;
+import lombok.Data;
+
+@Data
+public class BookRepriceDto {
+    // Изменение цены в процентах: 5 — поднять на 5%, -10 — снизить на 10%
+    private Double percent;
+    private Long publisherId;
+    private String genre;
+    // Явный список книг; вместе с publisherId и genre не используется
+    private List<Long> ids;
+}
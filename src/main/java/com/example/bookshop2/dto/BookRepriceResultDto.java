@@ -0,0 +1,11 @@
+package com.example.bookshop2.dto;
+
+import lombok.Data;
+
+@Data
+public class BookRepriceResultDto {
+    private long updated;
+    // Книги, оставленные с прежней ценой: после переоценки она округлилась бы до нуля
+    private long skipped;
+    private int chunks;
+}
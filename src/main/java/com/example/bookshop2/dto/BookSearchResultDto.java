@@ -0,0 +1,11 @@
+package com.example.bookshop2.dto;
+
+import java.util.List;
+import lombok.Data;
+
+@Data
+public class BookSearchResultDto {
+    private List<BookDto> books;
+    private long total;
+    private BookFacetsDto facets;
+}
@@ -0,0 +1,12 @@
+package com.example.bookshop2.dto;
+
+import lombok.Data;
+
+@Data
+public class CacheRegionStatsDto {
+    private String region;
+    private long hits;
+    private long misses;
+    private long puts;
+    private double hitRate;
+}
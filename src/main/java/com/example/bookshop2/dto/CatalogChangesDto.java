@@ -0,0 +1,17 @@
+package com.example.bookshop2.dto;
+
+import java.util.List;
+import lombok.Data;
+
+@Data
+public class CatalogChangesDto {
+    private long next;
+    private boolean resync;
+    private boolean hasMore;
+    private List<BookDto> books = List.of();
+    private List<AuthorDto> authors = List.of();
+    private List<PublisherDto> publishers = List.of();
+    private List<Long> deletedBooks = List.of();
+    private List<Long> deletedAuthors = List.of();
+    private List<Long> deletedPublishers = List.of();
+}
@@ -0,0 +1,15 @@
+package com.example.bookshop2.dto;
+
+import java.util.List;
+import lombok.Data;
+
+@Data
+public class CatalogStatsDto {
+    private long books;
+    private long pricedBooks;
+    private Double minPrice;
+    private Double avgPrice;
+    private Double maxPrice;
+    private List<GenreStatsDto> genres;
+    private List<PriceBucketDto> priceHistogram;
+}
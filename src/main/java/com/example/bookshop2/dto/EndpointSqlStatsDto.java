@@ -0,0 +1,15 @@
+package com.example.bookshop2.dto;
+
+import lombok.Data;
+
+@Data
+public class EndpointSqlStatsDto {
+    private String endpoint;
+    private long requests;
+    private long statements;
+    private long rows;
+    private long dbTimeMillis;
+    private double avgStatements;
+    private long maxStatements;
+    private long overBudget;
+}
@@ -0,0 +1,14 @@
+package com.example.bookshop2.dto;
+
+import lombok.Data;
+
+@Data
+public class GenreStatsDto {
+    // null — книги без жанра
+    private String genre;
+    private long books;
+    private long pricedBooks;
+    private Double minPrice;
+    private Double avgPrice;
+    private Double maxPrice;
+}
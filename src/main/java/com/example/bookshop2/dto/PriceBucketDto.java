@@ -0,0 +1,11 @@
+package com.example.bookshop2.dto;
+
+import lombok.Data;
+
+@Data
+public class PriceBucketDto {
+    // Цены from <= price < to; у последнего интервала to = null
+    private double from;
+    private Double to;
+    private long books;
+}
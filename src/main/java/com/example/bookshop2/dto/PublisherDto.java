@@ -8,4 +8,5 @@ public class PublisherDto {
     private Long id;
     @NotBlank(message = "Name is required for creation")
     private String name;
-}
\ No newline at end of file
+    private Long version;
+}
@@ -0,0 +1,13 @@
+package com.example.bookshop2.dto;
+
+import java.util.List;
+import lombok.Data;
+
+@Data
+public class PublisherOverviewDto {
+    private PublisherDto publisher;
+    private List<BookDto> books = List.of();
+    private List<AuthorDto> authors = List.of();
+    // Разделы, не успевшие загрузиться за отведённое время: их списки пусты
+    private List<String> unavailable = List.of();
+}
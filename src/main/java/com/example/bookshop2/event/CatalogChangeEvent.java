@@ -0,0 +1,63 @@
+package com.example.bookshop2.event;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+// Публикуется сервисами после каждой записи; payload — DTO сохранённой сущности (null при удалении),
+// previous — DTO до изменения, если сервис его передал. У PATCHED в payload заполнены только id,
+// version и изменённые поля: остальные не менялись; previous у книг в PATCHED есть, если менялись жанр или цена
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class CatalogChangeEvent {
+    private final EntityType entityType;
+    private final ChangeType changeType;
+    private final Long id;
+    private final Object payload;
+    private final Object previous;
+
+    public static CatalogChangeEvent created(EntityType entityType, Long id, Object payload) {
+        return new CatalogChangeEvent(entityType, ChangeType.CREATED, id, payload, null);
+    }
+
+    public static CatalogChangeEvent updated(EntityType entityType, Long id, Object payload) {
+        return updated(entityType, id, payload, null);
+    }
+
+    public static CatalogChangeEvent updated(EntityType entityType, Long id, Object payload, Object previous) {
+        return new CatalogChangeEvent(entityType, ChangeType.UPDATED, id, payload, previous);
+    }
+
+    public static CatalogChangeEvent patched(EntityType entityType, Long id, Object changes) {
+        return patched(entityType, id, changes, null);
+    }
+
+    public static CatalogChangeEvent patched(EntityType entityType, Long id, Object changes, Object previous) {
+        return new CatalogChangeEvent(entityType, ChangeType.PATCHED, id, changes, previous);
+    }
+
+    public static CatalogChangeEvent deleted(EntityType entityType, Long id) {
+        return deleted(entityType, id, null);
+    }
+
+    public static CatalogChangeEvent deleted(EntityType entityType, Long id, Object previous) {
+        return new CatalogChangeEvent(entityType, ChangeType.DELETED, id, null, previous);
+    }
+
+    public <T> T getPayload(Class<T> type) {
+        return type.cast(payload);
+    }
+
+    public <T> T getPrevious(Class<T> type) {
+        return type.cast(previous);
+    }
+
+    public enum EntityType {
+        AUTHOR, PUBLISHER, BOOK
+    }
+
+    public enum ChangeType {
+        CREATED, UPDATED, PATCHED, DELETED
+    }
+}
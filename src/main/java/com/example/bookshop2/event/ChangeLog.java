@@ -0,0 +1,124 @@
+package com.example.bookshop2.event;
+
+import com.example.bookshop2.datasource.ReadYourWrites;
+import com.example.bookshop2.model.CatalogChange;
+import com.example.bookshop2.repository.CatalogChangeRepository;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Журнал изменений каталога для дельта-синхронизации. Записи лежат в таблице catalog_changes основной
+ * базы и пишутся в транзакции самого изменения, поэтому журнал общий для всех экземпляров приложения
+ * и не теряется при перезапуске. Изменения транзакции получают номера одной пачкой перед её коммитом:
+ * счётчик catalog_change_head остаётся заблокированным до конца транзакции, и номера становятся видимы
+ * строго по возрастанию — клиент, дочитавший до номера N, не пропустит меньший номер, зафиксированный позже.
+ * Хранятся последние retentionEntries записей; клиент с более старым номером пересинхронизируется.
+ */
+@Slf4j
+@Component
+public class ChangeLog {
+    private final CatalogChangeRepository changeRepository;
+    private final TransactionTemplate transaction;
+    private final long retentionEntries;
+
+    public ChangeLog(CatalogChangeRepository changeRepository,
+                     PlatformTransactionManager transactionManager,
+                     @Value("${bookshop.changes.retention-entries:1000000}") long retentionEntries) {
+        if (retentionEntries < 1) {
+            throw new IllegalArgumentException("Change log retention must be positive");
+        }
+        this.changeRepository = changeRepository;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.retentionEntries = retentionEntries;
+    }
+
+    @EventListener
+    public void onCatalogChange(CatalogChangeEvent event) {
+        if (event.getId() == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            currentChanges().events.add(event);
+        } else {
+            transaction.executeWithoutResult(status -> write(List.of(event)));
+        }
+    }
+
+    public long head() {
+        return ReadYourWrites.onPrimary(changeRepository::findHead);
+    }
+
+    /**
+     * До limit записей с номерами больше since. Если since старше окна журнала или больше последнего
+     * выданного номера, страница помечается expired.
+     */
+    public ChangeLogPage read(long since, int limit) {
+        // Реплики отстают от журнала: он читается с primary
+        return ReadYourWrites.onPrimary(() -> {
+            List<ChangeLogEntry> entries = changeRepository.findEntriesAfter(since, PageRequest.of(0, limit));
+            long head = changeRepository.findHead();
+            // Окно проверяется после чтения записей: очистка удаляет только начало журнала, и если оно
+            // всё ещё не дальше since + 1, прочитанная страница полна
+            long first = changeRepository.findFirstByOrderBySeqAsc().map(CatalogChange::getSeq).orElse(head + 1);
+            if (since > head || since + 1 < first) {
+                return ChangeLogPage.expired(head);
+            }
+            return new ChangeLogPage(false, head, entries);
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${bookshop.changes.prune-interval:1m}")
+    public void prune() {
+        Integer deleted = transaction.execute(status ->
+                changeRepository.deleteUpTo(changeRepository.findHead() - retentionEntries));
+        if (deleted != null && deleted > 0) {
+            log.debug("Из журнала изменений удалено {} старых записей", deleted);
+        }
+    }
+
+    // Изменения текущей транзакции; при REQUIRES_NEW у вложенной транзакции свой список
+    private PendingChanges currentChanges() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof PendingChanges pending && pending.owner() == this) {
+                return pending;
+            }
+        }
+        PendingChanges pending = new PendingChanges();
+        TransactionSynchronizationManager.registerSynchronization(pending);
+        return pending;
+    }
+
+    private void write(List<CatalogChangeEvent> events) {
+        changeRepository.advanceHead(events.size());
+        long seq = changeRepository.findHead() - events.size();
+        List<CatalogChange> changes = new ArrayList<>(events.size());
+        for (CatalogChangeEvent event : events) {
+            changes.add(new CatalogChange(++seq, event.getEntityType(), event.getChangeType(), event.getId()));
+        }
+        changeRepository.saveAll(changes);
+    }
+
+    private final class PendingChanges implements TransactionSynchronization {
+        private final List<CatalogChangeEvent> events = new ArrayList<>();
+
+        private ChangeLog owner() {
+            return ChangeLog.this;
+        }
+
+        // Номера берутся как можно позже, чтобы счётчик был заблокирован только на время коммита
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            write(events);
+        }
+    }
+}
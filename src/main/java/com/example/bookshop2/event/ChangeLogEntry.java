@@ -0,0 +1,18 @@
+package com.example.bookshop2.event;
+
+import com.example.bookshop2.event.CatalogChangeEvent.ChangeType;
+import com.example.bookshop2.event.CatalogChangeEvent.EntityType;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+// Запись журнала изменений: только номер и что изменилось, само состояние читается из БД при выдаче
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class ChangeLogEntry {
+    private final long seq;
+    private final EntityType entityType;
+    private final ChangeType changeType;
+    private final long id;
+}
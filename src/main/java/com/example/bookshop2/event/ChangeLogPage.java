@@ -0,0 +1,19 @@
+package com.example.bookshop2.event;
+
+import java.util.List;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+// Страница журнала после клиентского номера. expired — номер вне окна журнала, записей нет и клиенту
+// нужна полная пересинхронизация; head — последний выданный номер на момент чтения
+@Getter
+@RequiredArgsConstructor
+public class ChangeLogPage {
+    private final boolean expired;
+    private final long head;
+    private final List<ChangeLogEntry> entries;
+
+    static ChangeLogPage expired(long head) {
+        return new ChangeLogPage(true, head, List.of());
+    }
+}
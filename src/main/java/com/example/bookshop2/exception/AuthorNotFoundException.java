@@ -1,11 +1,16 @@
 package com.example.bookshop2.exception;
 
+import java.util.Collection;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
 @ResponseStatus(HttpStatus.NOT_FOUND)
 public class AuthorNotFoundException extends RuntimeException {
     public AuthorNotFoundException(Long id) {
-        super("Author with ID " + id + " not found");
+        super("Author with ID " + id + " not found", null, false, false);
+    }
+
+    public AuthorNotFoundException(Collection<Long> ids) {
+        super("Authors with IDs " + ids + " not found", null, false, false);
     }
 }
@@ -1,11 +1,16 @@
 package com.example.bookshop2.exception;
 
+import java.util.Collection;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
 @ResponseStatus(HttpStatus.NOT_FOUND)
 public class BookNotFoundException extends RuntimeException {
     public BookNotFoundException(Long id) {
-        super("Book with ID " + id + " not found");
+        super("Book with ID " + id + " not found", null, false, false);
+    }
+
+    public BookNotFoundException(Collection<Long> ids) {
+        super("Books with IDs " + ids + " not found", null, false, false);
     }
 }
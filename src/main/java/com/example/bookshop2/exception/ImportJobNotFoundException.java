@@ -0,0 +1,7 @@
+package com.example.bookshop2.exception;
+
+public class ImportJobNotFoundException extends RuntimeException {
+    public ImportJobNotFoundException(String message) {
+        super(message);
+    }
+}
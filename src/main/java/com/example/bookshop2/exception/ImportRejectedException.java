@@ -0,0 +1,7 @@
+package com.example.bookshop2.exception;
+
+public class ImportRejectedException extends RuntimeException {
+    public ImportRejectedException(String message) {
+        super(message);
+    }
+}
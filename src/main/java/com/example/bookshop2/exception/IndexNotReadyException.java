@@ -0,0 +1,7 @@
+package com.example.bookshop2.exception;
+
+public class IndexNotReadyException extends RuntimeException {
+    public IndexNotReadyException(String index) {
+        super("Index '" + index + "' is still loading");
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.bookshop2.exception;
+
+import java.time.Duration;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class OverviewTimeoutException extends RuntimeException {
+    public OverviewTimeoutException(String section, Duration timeout) {
+        super("Overview section '" + section + "' did not load within " + timeout.toMillis() + " ms");
+    }
+}
@@ -1,15 +1,20 @@
 package com.example.bookshop2.exception;
 
+import java.util.Collection;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
 @ResponseStatus(HttpStatus.NOT_FOUND)
 public class PublisherNotFoundException extends RuntimeException {
     public PublisherNotFoundException(Long id) {
-        super("Publisher with ID " + id + " not found");
+        super("Publisher with ID " + id + " not found", null, false, false);
     }
 
     public PublisherNotFoundException(String name) {
-        super("Publisher with name " + name + " not found");
+        super("Publisher with name " + name + " not found", null, false, false);
     }
-}
\ No newline at end of file
+
+    public PublisherNotFoundException(Collection<Long> ids) {
+        super("Publishers with IDs " + ids + " not found", null, false, false);
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.bookshop2.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.CONFLICT)
+public class VersionConflictException extends RuntimeException {
+    public VersionConflictException(String entity, Long id, Long expectedVersion) {
+        super(entity + " with ID " + id + " was modified concurrently: version " + expectedVersion + " is stale");
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.bookshop2.index;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+// Связи одной книги для RelationIndex: по строке на автора, authorId = null у книги без авторов
+@Getter
+@ToString
+@EqualsAndHashCode
+@RequiredArgsConstructor
+public class BookRelation {
+    private final long bookId;
+    private final Long publisherId;
+    private final String genre;
+    private final Double price;
+    private final Long authorId;
+}
@@ -0,0 +1,246 @@
+package com.example.bookshop2.index;
+
+import com.example.bookshop2.dto.BookDto;
+import com.example.bookshop2.dto.CatalogStatsDto;
+import com.example.bookshop2.dto.GenreStatsDto;
+import com.example.bookshop2.event.CatalogChangeEvent;
+import com.example.bookshop2.event.CatalogChangeEvent.ChangeType;
+import com.example.bookshop2.event.CatalogChangeEvent.EntityType;
+import com.example.bookshop2.repository.BookRepository;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Счётчики каталога по жанрам и гистограмма цен. Строятся одним GROUP BY при старте и дальше
+ * меняются событиями записи книг, так что чтение не зависит от размера каталога.
+ * Изменения вычитают прежнее состояние из события; если его нет, счётчики перестраиваются запросом
+ * в фоновой задаче, а не в потоке, зафиксировавшем изменение.
+ */
+@Slf4j
+@Component
+public class CatalogStatsIndex {
+    private final BookRepository bookRepository;
+    private final PriceBands bands;
+    // Загрузки идут по одной; события, пришедшие во время загрузки, копятся в pending (под this)
+    // и применяются к новым счётчикам
+    private final Object loading = new Object();
+    private Totals totals;
+    private List<CatalogChangeEvent> pending;
+    // Было событие без прежнего состояния: счётчики неточны до перестройки
+    private volatile boolean stale;
+    private volatile boolean ready;
+
+    public CatalogStatsIndex(BookRepository bookRepository,
+                             @Value("${bookshop.stats.price-buckets:10,20,50,100,200,500}") double[] bucketBounds) {
+        this.bookRepository = bookRepository;
+        this.bands = new PriceBands(bucketBounds);
+        this.totals = new Totals(bands);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        synchronized (loading) {
+            long start = System.nanoTime();
+            synchronized (this) {
+                pending = new ArrayList<>();
+                stale = false;
+            }
+            Totals loaded;
+            try {
+                loaded = aggregate(bookRepository.findGenrePriceCounts());
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    pending = null;
+                }
+                throw e;
+            }
+            synchronized (this) {
+                totals = loaded;
+                // Изменения, зафиксированные во время GROUP BY, иначе затёрла бы замена счётчиков
+                pending.forEach(this::apply);
+                pending = null;
+                ready = true;
+            }
+            log.info("Статистика каталога построена за {} мс: книг {}, жанров {}",
+                    (System.nanoTime() - start) / 1_000_000, loaded.books, loaded.genres.size());
+        }
+    }
+
+    // Перестройка после события без прежнего состояния идёт здесь, а не в потоке запроса
+    @Scheduled(fixedDelayString = "${bookshop.stats.rebuild-check-interval:1s}")
+    public void rebuildIfStale() {
+        if (stale) {
+            load();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChange(CatalogChangeEvent event) {
+        if (event.getEntityType() != EntityType.BOOK) {
+            return;
+        }
+        BookDto current = event.getPayload(BookDto.class);
+        if (event.getChangeType() == ChangeType.PATCHED && current.getGenre() == null && current.getPrice() == null) {
+            return;
+        }
+        synchronized (this) {
+            if (pending != null) {
+                pending.add(event);
+            } else if (ready) {
+                apply(event);
+            }
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public synchronized CatalogStatsDto snapshot() {
+        return totals.toDto();
+    }
+
+    // Та же статистика по готовой выборке, без изменения индекса: пока он не построен
+    public CatalogStatsDto snapshotOf(Iterable<GenrePriceCount> rows) {
+        return aggregate(rows).toDto();
+    }
+
+    // Под this
+    private void apply(CatalogChangeEvent event) {
+        BookDto current = event.getPayload(BookDto.class);
+        BookDto previous = event.getPrevious(BookDto.class);
+        if (event.getChangeType() != ChangeType.CREATED && previous == null) {
+            log.warn("Событие {} книги {} без прежнего состояния, статистика будет перестроена",
+                    event.getChangeType(), event.getId());
+            stale = true;
+            return;
+        }
+        switch (event.getChangeType()) {
+            case CREATED -> totals.add(current.getGenre(), current.getPrice(), 1);
+            case DELETED -> totals.add(previous.getGenre(), previous.getPrice(), -1);
+            case UPDATED -> {
+                totals.add(previous.getGenre(), previous.getPrice(), -1);
+                totals.add(current.getGenre(), current.getPrice(), 1);
+            }
+            case PATCHED -> {
+                totals.add(previous.getGenre(), previous.getPrice(), -1);
+                totals.add(current.getGenre() != null ? current.getGenre() : previous.getGenre(),
+                        current.getPrice() != null ? current.getPrice() : previous.getPrice(), 1);
+            }
+        }
+    }
+
+    private Totals aggregate(Iterable<GenrePriceCount> rows) {
+        Totals aggregated = new Totals(bands);
+        rows.forEach(row -> aggregated.add(row.getGenre(), row.getPrice(), row.getCount()));
+        return aggregated;
+    }
+
+    private static final class Totals {
+        private final PriceBands bands;
+        private final long[] buckets;
+        // HashMap, потому что у книги может не быть жанра
+        private final Map<String, GenreTotals> genres = new HashMap<>();
+        private long books;
+
+        private Totals(PriceBands bands) {
+            this.bands = bands;
+            this.buckets = new long[bands.count()];
+        }
+
+        private void add(String genre, Double price, long count) {
+            books += count;
+            GenreTotals totals = genres.computeIfAbsent(genre, g -> new GenreTotals());
+            totals.add(price, count);
+            if (totals.books <= 0) {
+                genres.remove(genre);
+            }
+            if (price != null) {
+                buckets[bands.of(price)] += count;
+            }
+        }
+
+        private CatalogStatsDto toDto() {
+            GenreTotals all = new GenreTotals();
+            List<GenreStatsDto> genreStats = new ArrayList<>(genres.size());
+            genres.forEach((genre, totals) -> {
+                all.merge(totals);
+                GenreStatsDto dto = new GenreStatsDto();
+                dto.setGenre(genre);
+                dto.setBooks(totals.books);
+                dto.setPricedBooks(totals.priced);
+                dto.setMinPrice(totals.min());
+                dto.setAvgPrice(totals.avg());
+                dto.setMaxPrice(totals.max());
+                genreStats.add(dto);
+            });
+            genreStats.sort(Comparator.comparing(GenreStatsDto::getGenre,
+                    Comparator.nullsLast(Comparator.naturalOrder())));
+
+            CatalogStatsDto dto = new CatalogStatsDto();
+            dto.setBooks(books);
+            dto.setPricedBooks(all.priced);
+            dto.setMinPrice(all.min());
+            dto.setAvgPrice(all.avg());
+            dto.setMaxPrice(all.max());
+            dto.setGenres(genreStats);
+            dto.setPriceHistogram(bands.toDtos(buckets));
+            return dto;
+        }
+    }
+
+    private static final class GenreTotals {
+        // Сумма в копейках: при вычитании удалённых цен double копил бы ошибку
+        private long centsSum;
+        private long books;
+        private long priced;
+        // Цены с числом книг по каждой: для min и max после удалений
+        private final TreeMap<Double, Long> prices = new TreeMap<>();
+
+        private void add(Double price, long count) {
+            books += count;
+            if (price == null) {
+                return;
+            }
+            priced += count;
+            centsSum += Math.round(price * 100) * count;
+            prices.merge(price, count, Long::sum);
+            if (prices.get(price) <= 0) {
+                prices.remove(price);
+            }
+        }
+
+        private void merge(GenreTotals other) {
+            books += other.books;
+            priced += other.priced;
+            centsSum += other.centsSum;
+            if (!other.prices.isEmpty()) {
+                prices.merge(other.prices.firstKey(), 1L, Long::sum);
+                prices.merge(other.prices.lastKey(), 1L, Long::sum);
+            }
+        }
+
+        private Double min() {
+            return prices.isEmpty() ? null : prices.firstKey();
+        }
+
+        private Double max() {
+            return prices.isEmpty() ? null : prices.lastKey();
+        }
+
+        private Double avg() {
+            return priced == 0 ? null : Math.round((double) centsSum / priced) / 100.0;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.bookshop2.index;
+
+import com.example.bookshop2.event.CatalogChangeEvent;
+import com.example.bookshop2.event.CatalogChangeEvent.ChangeType;
+import com.example.bookshop2.event.CatalogChangeEvent.EntityType;
+import com.example.bookshop2.event.ChangeLog;
+import com.example.bookshop2.event.ChangeLogEntry;
+import com.example.bookshop2.event.ChangeLogPage;
+import com.example.bookshop2.repository.AuthorRepository;
+import com.example.bookshop2.repository.BookRepository;
+import com.example.bookshop2.repository.PublisherRepository;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Id существующих книг, авторов и издателей в сжатых битовых картах. Строятся при старте и дальше
+ * догоняют общий журнал изменений {@link ChangeLog}: создания и удаления любого экземпляра приложения
+ * попадают в карты по номеру журнала, свои — ещё и сразу после коммита. Id из карты существует без
+ * запроса к таблицам. Id, которого в карте нет, отвергается после того, как карта догнала журнал
+ * не раньше прихода запроса: запись, зафиксированная до запроса, уже есть в журнале. Догоняет один
+ * поток за раз, и все промахи, пришедшие во время чтения журнала, ждут одно следующее чтение, так что
+ * поток неизвестных id даёт не больше одного запроса по первичному ключу журнала одновременно.
+ */
+@Slf4j
+@Component
+public class ExistenceIndex {
+    private static final int SYNC_PAGE = 1000;
+
+    private final BookRepository bookRepository;
+    private final AuthorRepository authorRepository;
+    private final PublisherRepository publisherRepository;
+    private final ChangeLog changeLog;
+    private final Map<EntityType, IdBitmap> known = new EnumMap<>(EntityType.class);
+    // Чтения журнала идут по одному: syncStarts — сколько их начато, syncedThrough — номер
+    // последнего завершённого в порядке начала
+    private final Object syncing = new Object();
+    private final AtomicLong syncStarts = new AtomicLong();
+    private volatile long syncedThrough;
+    // Номер журнала, до которого изменения применены к картам. Под this
+    private long applied;
+    private volatile boolean ready;
+
+    public ExistenceIndex(BookRepository bookRepository,
+                          AuthorRepository authorRepository,
+                          PublisherRepository publisherRepository,
+                          ChangeLog changeLog) {
+        this.bookRepository = bookRepository;
+        this.authorRepository = authorRepository;
+        this.publisherRepository = publisherRepository;
+        this.changeLog = changeLog;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        synchronized (syncing) {
+            reload();
+        }
+    }
+
+    // Изменения других экземпляров приходят не позже этого интервала, даже если промахов нет
+    @Scheduled(fixedDelayString = "${bookshop.existence.sync-interval:1s}")
+    public void poll() {
+        if (ready) {
+            catchUp();
+        }
+    }
+
+    // Свои изменения видны сразу, не дожидаясь чтения журнала; повтор из журнала их не меняет
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChange(CatalogChangeEvent event) {
+        if (event.getId() != null && ready) {
+            synchronized (this) {
+                apply(event.getEntityType(), event.getChangeType(), event.getId());
+            }
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // true, только если записи точно нет
+    public boolean isMissing(EntityType type, Long id) {
+        if (id == null || !ready || contains(type, id)) {
+            return false;
+        }
+        catchUp();
+        return !contains(type, id);
+    }
+
+    // Id из набора, которых точно нет, в порядке ids
+    public Set<Long> missing(EntityType type, Collection<Long> ids) {
+        Set<Long> missing = unknown(type, ids);
+        if (!missing.isEmpty()) {
+            catchUp();
+            missing = unknown(type, missing);
+        }
+        return missing;
+    }
+
+    // Существует ли запись; пока карты не построены, отвечает БД
+    public boolean exists(EntityType type, Long id) {
+        if (!ready) {
+            return switch (type) {
+                case BOOK -> bookRepository.existsById(id);
+                case AUTHOR -> authorRepository.existsById(id);
+                case PUBLISHER -> publisherRepository.existsById(id);
+            };
+        }
+        return !isMissing(type, id);
+    }
+
+    private synchronized boolean contains(EntityType type, long id) {
+        return known.get(type).contains(id);
+    }
+
+    private synchronized Set<Long> unknown(EntityType type, Collection<Long> ids) {
+        Set<Long> unknown = new LinkedHashSet<>();
+        if (ready) {
+            IdBitmap typeIds = known.get(type);
+            for (Long id : ids) {
+                if (id != null && !typeIds.contains(id)) {
+                    unknown.add(id);
+                }
+            }
+        }
+        return unknown;
+    }
+
+    // Возвращается, когда завершено чтение журнала, начатое после вызова
+    private void catchUp() {
+        long arrived = syncStarts.get();
+        synchronized (syncing) {
+            if (syncedThrough > arrived) {
+                return;
+            }
+            long started = syncStarts.incrementAndGet();
+            sync();
+            syncedThrough = started;
+        }
+    }
+
+    // Под syncing
+    private void reload() {
+        long start = System.nanoTime();
+        // Номер читается до id: изменения после него применятся повторно, и повтор по порядку журнала
+        // приводит карту к тому же состоянию
+        long head = changeLog.head();
+        Map<EntityType, IdBitmap> loaded = new EnumMap<>(EntityType.class);
+        loaded.put(EntityType.BOOK, bitmapOf(bookRepository.findAllIds()));
+        loaded.put(EntityType.AUTHOR, bitmapOf(authorRepository.findAllIds()));
+        loaded.put(EntityType.PUBLISHER, bitmapOf(publisherRepository.findAllIds()));
+        synchronized (this) {
+            known.putAll(loaded);
+            applied = head;
+        }
+        sync();
+        ready = true;
+        log.info("Битовые карты существующих id построены за {} мс: книг {}, авторов {}, издателей {}",
+                (System.nanoTime() - start) / 1_000_000, loaded.get(EntityType.BOOK).cardinality(),
+                loaded.get(EntityType.AUTHOR).cardinality(), loaded.get(EntityType.PUBLISHER).cardinality());
+    }
+
+    // Под syncing
+    private void sync() {
+        long since;
+        synchronized (this) {
+            since = applied;
+        }
+        List<ChangeLogEntry> entries;
+        do {
+            ChangeLogPage page = changeLog.read(since, SYNC_PAGE);
+            if (page.isExpired()) {
+                log.warn("Журнал изменений уже очищен после номера {}, битовые карты перестраиваются", since);
+                reload();
+                return;
+            }
+            entries = page.getEntries();
+            synchronized (this) {
+                for (ChangeLogEntry entry : entries) {
+                    apply(entry.getEntityType(), entry.getChangeType(), entry.getId());
+                    applied = entry.getSeq();
+                }
+                since = applied;
+            }
+        } while (entries.size() == SYNC_PAGE);
+    }
+
+    private void apply(EntityType type, ChangeType change, long id) {
+        if (change == ChangeType.CREATED) {
+            known.get(type).add(id);
+        } else if (change == ChangeType.DELETED) {
+            known.get(type).remove(id);
+        }
+    }
+
+    private static IdBitmap bitmapOf(List<Long> rows) {
+        IdBitmap ids = new IdBitmap();
+        rows.forEach(ids::add);
+        return ids;
+    }
+}
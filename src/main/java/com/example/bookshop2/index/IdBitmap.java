@@ -0,0 +1,471 @@
+package com.example.bookshop2.index;
+
+import java.util.Arrays;
+
+/**
+ * Сжатое множество неотрицательных ID по схеме Roaring: старшие биты ID выбирают контейнер,
+ * младшие 16 бит лежат в нём отсортированным массивом char (до {@link #ARRAY_LIMIT} значений)
+ * или битовой картой на 65536 бит. Плотные диапазоны ID стоят 8 КБ на 65536 книг,
+ * разреженные — 2 байта на книгу. Маленькие множества (до {@link #SMALL_LIMIT} ID) хранятся одним
+ * отсортированным long[]: у автора с десятком книг ID разбросаны по разным контейнерам, и обход
+ * объектов-контейнеров стоил бы дороже самих сравнений. Не потокобезопасно: синхронизирует владелец.
+ */
+public final class IdBitmap {
+    static final int ARRAY_LIMIT = 4096;
+    static final int SMALL_LIMIT = 64;
+    private static final long[] NO_KEYS = new long[0];
+    private static final Container[] NO_CONTAINERS = new Container[0];
+
+    // Старшие части ID по возрастанию и контейнеры с младшими; используются первые size
+    private long[] keys = NO_KEYS;
+    private Container[] containers = NO_CONTAINERS;
+    private int size;
+    // ID маленького множества по возрастанию; null после перехода на контейнеры, обратно не возвращается
+    private long[] small = NO_KEYS;
+    private int smallSize;
+
+    public void add(long id) {
+        long key = key(id);
+        if (small != null) {
+            int pos = Arrays.binarySearch(small, 0, smallSize, id);
+            if (pos >= 0) {
+                return;
+            }
+            if (smallSize < SMALL_LIMIT) {
+                pos = -pos - 1;
+                if (smallSize == small.length) {
+                    small = Arrays.copyOf(small, Math.min(SMALL_LIMIT, Math.max(4, smallSize * 2)));
+                }
+                System.arraycopy(small, pos, small, pos + 1, smallSize - pos);
+                small[pos] = id;
+                smallSize++;
+                return;
+            }
+            long[] ids = Arrays.copyOf(small, smallSize);
+            small = null;
+            smallSize = 0;
+            for (long value : ids) {
+                add(value);
+            }
+        }
+        int pos = Arrays.binarySearch(keys, 0, size, key);
+        if (pos >= 0) {
+            containers[pos] = containers[pos].add(low(id));
+            return;
+        }
+        pos = -pos - 1;
+        if (size == keys.length) {
+            int capacity = Math.max(4, size * 2);
+            keys = Arrays.copyOf(keys, capacity);
+            containers = Arrays.copyOf(containers, capacity);
+        }
+        System.arraycopy(keys, pos, keys, pos + 1, size - pos);
+        System.arraycopy(containers, pos, containers, pos + 1, size - pos);
+        keys[pos] = key;
+        containers[pos] = new ArrayContainer().add(low(id));
+        size++;
+    }
+
+    public void remove(long id) {
+        long key = key(id);
+        if (small != null) {
+            int pos = Arrays.binarySearch(small, 0, smallSize, id);
+            if (pos >= 0) {
+                System.arraycopy(small, pos + 1, small, pos, smallSize - pos - 1);
+                smallSize--;
+            }
+            return;
+        }
+        int pos = Arrays.binarySearch(keys, 0, size, key);
+        if (pos < 0) {
+            return;
+        }
+        Container container = containers[pos].remove(low(id));
+        if (container.cardinality() > 0) {
+            containers[pos] = container;
+            return;
+        }
+        System.arraycopy(keys, pos + 1, keys, pos, size - pos - 1);
+        System.arraycopy(containers, pos + 1, containers, pos, size - pos - 1);
+        size--;
+        containers[size] = null;
+    }
+
+    public boolean contains(long id) {
+        if (small != null) {
+            return Arrays.binarySearch(small, 0, smallSize, id) >= 0;
+        }
+        int pos = Arrays.binarySearch(keys, 0, size, key(id));
+        return pos >= 0 && containers[pos].contains(low(id));
+    }
+
+    public long cardinality() {
+        if (small != null) {
+            return smallSize;
+        }
+        long cardinality = 0;
+        for (int i = 0; i < size; i++) {
+            cardinality += containers[i].cardinality();
+        }
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return small != null ? smallSize == 0 : size == 0;
+    }
+
+    // Пересечение: контейнеры сравниваются только при совпадении старших частей
+    public static IdBitmap and(IdBitmap first, IdBitmap second) {
+        if (first.small != null || second.small != null) {
+            IdBitmap probe = first.small != null ? first : second;
+            IdBitmap other = probe == first ? second : first;
+            IdBitmap result = new IdBitmap();
+            result.small = new long[probe.smallSize];
+            result.smallSize = probe(probe, other, result.small);
+            return result;
+        }
+        IdBitmap result = new IdBitmap();
+        result.small = null;
+        int capacity = Math.min(first.size, second.size);
+        result.keys = new long[capacity];
+        result.containers = new Container[capacity];
+        int i = 0;
+        int j = 0;
+        while (i < first.size && j < second.size) {
+            int cmp = Long.compare(first.keys[i], second.keys[j]);
+            if (cmp < 0) {
+                i++;
+            } else if (cmp > 0) {
+                j++;
+            } else {
+                Container container = first.containers[i].and(second.containers[j]);
+                if (container.cardinality() > 0) {
+                    result.keys[result.size] = first.keys[i];
+                    result.containers[result.size] = container;
+                    result.size++;
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    // Мощность пересечения без построения результата: для подсчёта фасетов
+    public static long andCardinality(IdBitmap first, IdBitmap second) {
+        if (first.small != null || second.small != null) {
+            IdBitmap probe = first.small != null ? first : second;
+            IdBitmap other = probe == first ? second : first;
+            return probe(probe, other, null);
+        }
+        long cardinality = 0;
+        int i = 0;
+        int j = 0;
+        while (i < first.size && j < second.size) {
+            int cmp = Long.compare(first.keys[i], second.keys[j]);
+            if (cmp < 0) {
+                i++;
+            } else if (cmp > 0) {
+                j++;
+            } else {
+                cardinality += first.containers[i].andCardinality(second.containers[j]);
+                i++;
+                j++;
+            }
+        }
+        return cardinality;
+    }
+
+    // ID маленького множества, которые есть в other, в target (если не null). ID идут по возрастанию,
+    // поэтому контейнеры other проходятся одним курсором, без двоичного поиска на каждый ID
+    private static int probe(IdBitmap small, IdBitmap other, long[] target) {
+        int count = 0;
+        if (other.small != null) {
+            for (int i = 0; i < small.smallSize; i++) {
+                if (other.contains(small.small[i])) {
+                    count = collect(target, count, small.small[i]);
+                }
+            }
+            return count;
+        }
+        int j = 0;
+        for (int i = 0; i < small.smallSize && j < other.size; i++) {
+            long id = small.small[i];
+            long key = id >>> 16;
+            while (j < other.size && other.keys[j] < key) {
+                j++;
+            }
+            if (j < other.size && other.keys[j] == key && other.containers[j].contains(low(id))) {
+                count = collect(target, count, id);
+            }
+        }
+        return count;
+    }
+
+    private static int collect(long[] target, int count, long id) {
+        if (target != null) {
+            target[count] = id;
+        }
+        return count + 1;
+    }
+
+    public long[] toArray() {
+        return toArray(-1, Integer.MAX_VALUE);
+    }
+
+    // Не больше limit ID строго больше afterId, по возрастанию: страница для курсорной выдачи
+    public long[] toArray(long afterId, int limit) {
+        if (small != null) {
+            int start = 0;
+            if (afterId >= 0) {
+                int pos = Arrays.binarySearch(small, 0, smallSize, afterId);
+                start = pos >= 0 ? pos + 1 : -pos - 1;
+            }
+            return Arrays.copyOfRange(small, start, start + Math.min(limit, smallSize - start));
+        }
+        long[] ids = new long[(int) Math.min(limit, cardinality())];
+        int count = 0;
+        int start = afterId < 0 ? 0 : Arrays.binarySearch(keys, 0, size, key(afterId));
+        if (start < 0) {
+            start = -start - 1;
+        }
+        for (int i = start; i < size && count < ids.length; i++) {
+            count = containers[i].copyTo(keys[i] << 16, afterId, ids, count);
+        }
+        return count == ids.length ? ids : Arrays.copyOf(ids, count);
+    }
+
+    private static long key(long id) {
+        if (id < 0) {
+            throw new IllegalArgumentException("ID must not be negative: " + id);
+        }
+        return id >>> 16;
+    }
+
+    private static char low(long id) {
+        return (char) id;
+    }
+
+    private interface Container {
+        Container add(char value);
+
+        Container remove(char value);
+
+        boolean contains(char value);
+
+        int cardinality();
+
+        Container and(Container other);
+
+        int andCardinality(Container other);
+
+        // Копирует значения больше afterId, пока есть место; возвращает новую позицию в target
+        int copyTo(long high, long afterId, long[] target, int offset);
+    }
+
+    private static final class ArrayContainer implements Container {
+        private char[] values = new char[4];
+        private int cardinality;
+
+        @Override
+        public Container add(char value) {
+            int pos = Arrays.binarySearch(values, 0, cardinality, value);
+            if (pos >= 0) {
+                return this;
+            }
+            if (cardinality == ARRAY_LIMIT) {
+                return toBitmap().add(value);
+            }
+            pos = -pos - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_LIMIT, cardinality * 2));
+            }
+            System.arraycopy(values, pos, values, pos + 1, cardinality - pos);
+            values[pos] = value;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        public Container remove(char value) {
+            int pos = Arrays.binarySearch(values, 0, cardinality, value);
+            if (pos >= 0) {
+                System.arraycopy(values, pos + 1, values, pos, cardinality - pos - 1);
+                cardinality--;
+            }
+            return this;
+        }
+
+        @Override
+        public boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+        }
+
+        @Override
+        public int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        public Container and(Container other) {
+            ArrayContainer result = new ArrayContainer();
+            result.values = new char[Math.max(1, cardinality)];
+            if (other instanceof ArrayContainer array) {
+                int i = 0;
+                int j = 0;
+                while (i < cardinality && j < array.cardinality) {
+                    if (values[i] < array.values[j]) {
+                        i++;
+                    } else if (values[i] > array.values[j]) {
+                        j++;
+                    } else {
+                        result.values[result.cardinality++] = values[i];
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                for (int i = 0; i < cardinality; i++) {
+                    if (other.contains(values[i])) {
+                        result.values[result.cardinality++] = values[i];
+                    }
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public int andCardinality(Container other) {
+            int count = 0;
+            if (other instanceof ArrayContainer array) {
+                int i = 0;
+                int j = 0;
+                while (i < cardinality && j < array.cardinality) {
+                    if (values[i] < array.values[j]) {
+                        i++;
+                    } else if (values[i] > array.values[j]) {
+                        j++;
+                    } else {
+                        count++;
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                // Без ветвлений: бит значения из слова карты прибавляется к счётчику
+                long[] words = ((BitmapContainer) other).words;
+                for (int i = 0; i < cardinality; i++) {
+                    count += (int) (words[values[i] >>> 6] >>> values[i]) & 1;
+                }
+            }
+            return count;
+        }
+
+        @Override
+        public int copyTo(long high, long afterId, long[] target, int offset) {
+            for (int i = 0; i < cardinality && offset < target.length; i++) {
+                long id = high | values[i];
+                if (id > afterId) {
+                    target[offset++] = id;
+                }
+            }
+            return offset;
+        }
+
+        private BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer();
+            for (int i = 0; i < cardinality; i++) {
+                bitmap.add(values[i]);
+            }
+            return bitmap;
+        }
+    }
+
+    private static final class BitmapContainer implements Container {
+        private final long[] words = new long[1024];
+        private int cardinality;
+
+        @Override
+        public Container add(char value) {
+            long bit = 1L << value;
+            if ((words[value >>> 6] & bit) == 0) {
+                words[value >>> 6] |= bit;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        public Container remove(char value) {
+            long bit = 1L << value;
+            if ((words[value >>> 6] & bit) != 0) {
+                words[value >>> 6] &= ~bit;
+                cardinality--;
+            }
+            return cardinality <= ARRAY_LIMIT ? toArrayContainer() : this;
+        }
+
+        @Override
+        public boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        public int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        public Container and(Container other) {
+            if (!(other instanceof BitmapContainer bitmap)) {
+                return other.and(this);
+            }
+            BitmapContainer result = new BitmapContainer();
+            for (int i = 0; i < words.length; i++) {
+                result.words[i] = words[i] & bitmap.words[i];
+                result.cardinality += Long.bitCount(result.words[i]);
+            }
+            return result.cardinality <= ARRAY_LIMIT ? result.toArrayContainer() : result;
+        }
+
+        @Override
+        public int andCardinality(Container other) {
+            if (!(other instanceof BitmapContainer bitmap)) {
+                return other.andCardinality(this);
+            }
+            int count = 0;
+            for (int i = 0; i < words.length; i++) {
+                count += Long.bitCount(words[i] & bitmap.words[i]);
+            }
+            return count;
+        }
+
+        @Override
+        public int copyTo(long high, long afterId, long[] target, int offset) {
+            for (int i = 0; i < words.length && offset < target.length; i++) {
+                long word = words[i];
+                while (word != 0 && offset < target.length) {
+                    long id = high | ((long) i << 6) | Long.numberOfTrailingZeros(word);
+                    if (id > afterId) {
+                        target[offset++] = id;
+                    }
+                    word &= word - 1;
+                }
+            }
+            return offset;
+        }
+
+        private ArrayContainer toArrayContainer() {
+            ArrayContainer array = new ArrayContainer();
+            array.values = new char[Math.max(1, cardinality)];
+            for (int i = 0; i < words.length; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    array.values[array.cardinality++] = (char) ((i << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return array;
+        }
+    }
+}
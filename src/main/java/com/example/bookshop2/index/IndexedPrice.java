@@ -0,0 +1,15 @@
+package com.example.bookshop2.index;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+@Getter
+@ToString
+@EqualsAndHashCode
+@RequiredArgsConstructor
+public class IndexedPrice {
+    private final long id;
+    private final Double price;
+}
@@ -0,0 +1,85 @@
+package com.example.bookshop2.index;
+
+import com.example.bookshop2.dto.AuthorDto;
+import com.example.bookshop2.dto.BookDto;
+import com.example.bookshop2.dto.PublisherDto;
+import com.example.bookshop2.event.CatalogChangeEvent;
+import com.example.bookshop2.event.CatalogChangeEvent.ChangeType;
+import com.example.bookshop2.event.CatalogChangeEvent.EntityType;
+import com.example.bookshop2.repository.AuthorRepository;
+import com.example.bookshop2.repository.BookRepository;
+import com.example.bookshop2.repository.PublisherRepository;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+// Триграммные индексы имён авторов, издателей и книг; строятся при старте и обновляются после коммита записи
+@Slf4j
+@Component
+public class NameIndex {
+    private final Map<EntityType, TrigramIndex> indexes = new EnumMap<>(EntityType.class);
+    private final AuthorRepository authorRepository;
+    private final PublisherRepository publisherRepository;
+    private final BookRepository bookRepository;
+    private volatile boolean ready;
+
+    public NameIndex(AuthorRepository authorRepository,
+                     PublisherRepository publisherRepository,
+                     BookRepository bookRepository) {
+        this.authorRepository = authorRepository;
+        this.publisherRepository = publisherRepository;
+        this.bookRepository = bookRepository;
+        for (EntityType type : EntityType.values()) {
+            indexes.put(type, new TrigramIndex());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long start = System.nanoTime();
+        indexes.get(EntityType.AUTHOR).reload(authorRepository::findAllNames);
+        indexes.get(EntityType.PUBLISHER).reload(publisherRepository::findAllNames);
+        indexes.get(EntityType.BOOK).reload(bookRepository::findAllNames);
+        ready = true;
+        log.info("Индекс имён построен за {} мс: авторов {}, издателей {}, книг {}",
+                (System.nanoTime() - start) / 1_000_000,
+                indexes.get(EntityType.AUTHOR).size(),
+                indexes.get(EntityType.PUBLISHER).size(),
+                indexes.get(EntityType.BOOK).size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChange(CatalogChangeEvent event) {
+        TrigramIndex index = indexes.get(event.getEntityType());
+        if (event.getChangeType() == ChangeType.DELETED) {
+            index.remove(event.getId());
+            return;
+        }
+        String name = nameOf(event);
+        // В PATCHED имя null, если оно не менялось
+        if (name != null || event.getChangeType() != ChangeType.PATCHED) {
+            index.put(event.getId(), name);
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public List<IndexedName> search(EntityType type, String query) {
+        return indexes.get(type).search(query);
+    }
+
+    private static String nameOf(CatalogChangeEvent event) {
+        return switch (event.getEntityType()) {
+            case AUTHOR -> event.getPayload(AuthorDto.class).getName();
+            case PUBLISHER -> event.getPayload(PublisherDto.class).getName();
+            case BOOK -> event.getPayload(BookDto.class).getName();
+        };
+    }
+}
@@ -0,0 +1,413 @@
+package com.example.bookshop2.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Префиксное дерево по именам, приведённым к верхнему регистру, для автодополнения.
+ * Узлы хранятся в параллельных массивах (символ, первый потомок, следующий брат);
+ * в каждом узле ветвления лежат top-k id по весу, так что ответ — это спуск по префиксу
+ * без обхода поддерева. Узлы-цепочки (один потомок, нет имён) top-k не хранят и
+ * берут его у потомка. Узлы, оставшиеся без имён и потомков после удаления или переименования,
+ * отцепляются от дерева и уходят в список свободных, откуда их берут следующие вставки.
+ */
+public class PrefixTrie {
+    public static final int TOP_K = 10;
+    private static final int ROOT = 0;
+    private static final int NONE = -1;
+    private static final long[] EMPTY = new long[0];
+
+    private char[] labels;
+    private int[] firstChild;
+    private int[] nextSibling;
+    private long[][] terminals;
+    private long[][] top;
+    private int nodeCount;
+    // Голова списка свободных узлов, связанного через nextSibling
+    private int free;
+
+    private final Map<Long, String> names = new HashMap<>();
+    private final Map<Long, Long> weights = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public PrefixTrie() {
+        clear(16);
+    }
+
+    public void put(long id, String name, long weight) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(id);
+            weights.put(id, weight);
+            if (name == null) {
+                return;
+            }
+            names.put(id, name);
+            int[] path = insertPath(TrigramIndex.fold(name));
+            int last = path[path.length - 1];
+            terminals[last] = append(terminals[last], id);
+            recompute(path);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Переименование без потери накопленного веса
+    public void rename(long id, String name) {
+        lock.writeLock().lock();
+        try {
+            put(id, name, weights.getOrDefault(id, 0L));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(id);
+            weights.remove(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void addWeight(long id, long delta) {
+        if (delta == 0) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            addWeightInternal(id, delta);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Пачка приращений за одно взятие блокировки записи
+    public void addWeights(Map<Long, Long> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            deltas.forEach((id, delta) -> {
+                if (delta != 0) {
+                    addWeightInternal(id, delta);
+                }
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Источник читается под блокировкой записи, как и в TrigramIndex
+    public void reload(Supplier<? extends Iterable<WeightedName>> source) {
+        lock.writeLock().lock();
+        try {
+            clear(labels.length);
+            names.clear();
+            weights.clear();
+            for (WeightedName entry : source.get()) {
+                weights.put(entry.getId(), entry.getWeight());
+                if (entry.getName() == null) {
+                    continue;
+                }
+                names.put(entry.getId(), entry.getName());
+                int[] path = insertPath(TrigramIndex.fold(entry.getName()));
+                int last = path[path.length - 1];
+                terminals[last] = append(terminals[last], entry.getId());
+            }
+            // Потомок всегда создаётся позже родителя, поэтому обратный проход считает снизу вверх
+            for (int node = nodeCount - 1; node >= ROOT; node--) {
+                top[node] = collect(node);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return names.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long weight(long id) {
+        lock.readLock().lock();
+        try {
+            return weights.getOrDefault(id, 0L);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // До limit имён с данным префиксом по убыванию веса, при равенстве — по id
+    public List<IndexedName> suggest(String prefix, int limit) {
+        String folded = TrigramIndex.fold(prefix);
+        lock.readLock().lock();
+        try {
+            int node = ROOT;
+            for (int i = 0; i < folded.length() && node != NONE; i++) {
+                node = child(node, folded.charAt(i));
+            }
+            if (node == NONE) {
+                return List.of();
+            }
+            while (top[node] == null) {
+                node = firstChild[node];
+            }
+            long[] ids = top[node];
+            List<IndexedName> result = new ArrayList<>(Math.min(limit, ids.length));
+            for (int i = 0; i < ids.length && i < limit; i++) {
+                result.add(new IndexedName(ids[i], names.get(ids[i])));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void addWeightInternal(long id, long delta) {
+        String name = names.get(id);
+        // Просмотры книги, удалённой до сброса счётчиков, не должны оставлять вес без имени
+        if (name == null) {
+            return;
+        }
+        weights.merge(id, delta, Long::sum);
+        int[] path = findPath(TrigramIndex.fold(name));
+        if (delta > 0) {
+            promote(path, id);
+        } else {
+            recompute(path);
+        }
+    }
+
+    private void removeInternal(long id) {
+        String previous = names.remove(id);
+        if (previous == null) {
+            return;
+        }
+        int[] path = findPath(TrigramIndex.fold(previous));
+        int last = path[path.length - 1];
+        terminals[last] = without(terminals[last], id);
+        recompute(Arrays.copyOf(path, prune(path) + 1));
+    }
+
+    // Освобождает опустевший хвост пути; возвращает индекс в path последнего оставшегося узла
+    private int prune(int[] path) {
+        int depth = path.length - 1;
+        while (depth > 0 && firstChild[path[depth]] == NONE
+                && (terminals[path[depth]] == null || terminals[path[depth]].length == 0)) {
+            int node = path[depth];
+            unlink(path[depth - 1], node);
+            terminals[node] = null;
+            top[node] = null;
+            nextSibling[node] = free;
+            free = node;
+            depth--;
+        }
+        return depth;
+    }
+
+    private void unlink(int parent, int node) {
+        if (firstChild[parent] == node) {
+            firstChild[parent] = nextSibling[node];
+            return;
+        }
+        int previous = firstChild[parent];
+        while (nextSibling[previous] != node) {
+            previous = nextSibling[previous];
+        }
+        nextSibling[previous] = nextSibling[node];
+    }
+
+    private int[] insertPath(String folded) {
+        int[] path = new int[folded.length() + 1];
+        int node = ROOT;
+        path[0] = node;
+        for (int i = 0; i < folded.length(); i++) {
+            char c = folded.charAt(i);
+            int next = child(node, c);
+            if (next == NONE) {
+                next = newNode(c);
+                nextSibling[next] = firstChild[node];
+                firstChild[node] = next;
+            }
+            node = next;
+            path[i + 1] = node;
+        }
+        return path;
+    }
+
+    // Вызывается только для имён, уже находящихся в дереве
+    private int[] findPath(String folded) {
+        int[] path = new int[folded.length() + 1];
+        int node = ROOT;
+        path[0] = node;
+        for (int i = 0; i < folded.length(); i++) {
+            node = child(node, folded.charAt(i));
+            path[i + 1] = node;
+        }
+        return path;
+    }
+
+    private int child(int node, char c) {
+        for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+            if (labels[child] == c) {
+                return child;
+            }
+        }
+        return NONE;
+    }
+
+    private void recompute(int[] path) {
+        for (int i = path.length - 1; i >= 0; i--) {
+            top[path[i]] = collect(path[i]);
+        }
+    }
+
+    // Рост веса может только поднять id в списках, поэтому пересчёт поддерева не нужен
+    private void promote(int[] path, long id) {
+        for (int i = path.length - 1; i >= 0; i--) {
+            long[] current = top[path[i]];
+            if (current != null) {
+                top[path[i]] = offer(without(current, id), id);
+            }
+        }
+    }
+
+    private long[] collect(int node) {
+        int only = firstChild[node];
+        boolean hasTerminals = terminals[node] != null && terminals[node].length > 0;
+        if (!hasTerminals && only != NONE && nextSibling[only] == NONE) {
+            return null;
+        }
+        long[] best = EMPTY;
+        if (hasTerminals) {
+            for (long id : terminals[node]) {
+                best = offer(best, id);
+            }
+        }
+        for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+            int source = child;
+            while (top[source] == null) {
+                source = firstChild[source];
+            }
+            for (long id : top[source]) {
+                long[] next = offer(best, id);
+                if (next == best) {
+                    // Список потомка отсортирован: остальные его кандидаты ещё хуже
+                    break;
+                }
+                best = next;
+            }
+        }
+        return best;
+    }
+
+    // Вставляет id в отсортированный список, обрезая до TOP_K; при отказе возвращает тот же массив
+    private long[] offer(long[] list, long id) {
+        int size = list.length;
+        int pos = size;
+        while (pos > 0 && better(id, list[pos - 1])) {
+            pos--;
+        }
+        if (pos >= TOP_K) {
+            return list;
+        }
+        int newSize = Math.min(size + 1, TOP_K);
+        long[] result = new long[newSize];
+        System.arraycopy(list, 0, result, 0, pos);
+        result[pos] = id;
+        System.arraycopy(list, pos, result, pos + 1, newSize - pos - 1);
+        return result;
+    }
+
+    private boolean better(long a, long b) {
+        long weightA = weights.getOrDefault(a, 0L);
+        long weightB = weights.getOrDefault(b, 0L);
+        return weightA != weightB ? weightA > weightB : a < b;
+    }
+
+    // Сколько узлов занято в массивах, включая свободные; для тестов
+    int allocatedNodes() {
+        lock.readLock().lock();
+        try {
+            return nodeCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int newNode(char c) {
+        int node;
+        if (free != NONE) {
+            node = free;
+            free = nextSibling[node];
+        } else {
+            node = allocate();
+        }
+        labels[node] = c;
+        firstChild[node] = NONE;
+        nextSibling[node] = NONE;
+        terminals[node] = null;
+        top[node] = EMPTY;
+        return node;
+    }
+
+    private int allocate() {
+        if (nodeCount == labels.length) {
+            int capacity = labels.length * 2;
+            labels = Arrays.copyOf(labels, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            nextSibling = Arrays.copyOf(nextSibling, capacity);
+            terminals = Arrays.copyOf(terminals, capacity);
+            top = Arrays.copyOf(top, capacity);
+        }
+        return nodeCount++;
+    }
+
+    private void clear(int capacity) {
+        labels = new char[capacity];
+        firstChild = new int[capacity];
+        nextSibling = new int[capacity];
+        terminals = new long[capacity][];
+        top = new long[capacity][];
+        nodeCount = 0;
+        free = NONE;
+        newNode('\0');
+    }
+
+    private static long[] append(long[] ids, long id) {
+        if (ids == null) {
+            return new long[] {id};
+        }
+        long[] result = Arrays.copyOf(ids, ids.length + 1);
+        result[ids.length] = id;
+        return result;
+    }
+
+    private static long[] without(long[] ids, long id) {
+        if (ids == null) {
+            return EMPTY;
+        }
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] == id) {
+                long[] result = new long[ids.length - 1];
+                System.arraycopy(ids, 0, result, 0, i);
+                System.arraycopy(ids, i + 1, result, i, ids.length - i - 1);
+                return result;
+            }
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.bookshop2.index;
+
+import com.example.bookshop2.dto.PriceBucketDto;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Ценовые интервалы по верхним границам из bookshop.stats.price-buckets: гистограмма статистики
+ * и фасет цены в поиске делят каталог одинаково. Последний интервал открыт сверху.
+ */
+final class PriceBands {
+    private final double[] bounds;
+
+    PriceBands(double[] bounds) {
+        for (int i = 0; i < bounds.length; i++) {
+            if (bounds[i] <= 0 || i > 0 && bounds[i] <= bounds[i - 1]) {
+                throw new IllegalArgumentException("Price bucket bounds must be positive and ascending: "
+                        + Arrays.toString(bounds));
+            }
+        }
+        this.bounds = bounds.clone();
+    }
+
+    int count() {
+        return bounds.length + 1;
+    }
+
+    int of(double price) {
+        int pos = Arrays.binarySearch(bounds, price);
+        // Цена, равная границе, относится к следующему интервалу
+        return pos >= 0 ? pos + 1 : -pos - 1;
+    }
+
+    List<PriceBucketDto> toDtos(long[] books) {
+        List<PriceBucketDto> dtos = new ArrayList<>(books.length);
+        for (int i = 0; i < books.length; i++) {
+            PriceBucketDto dto = new PriceBucketDto();
+            dto.setFrom(i == 0 ? 0 : bounds[i - 1]);
+            dto.setTo(i < bounds.length ? bounds[i] : null);
+            dto.setBooks(books[i]);
+            dtos.add(dto);
+        }
+        return dtos;
+    }
+}
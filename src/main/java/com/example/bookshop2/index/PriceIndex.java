@@ -0,0 +1,65 @@
+package com.example.bookshop2.index;
+
+import com.example.bookshop2.dto.BookDto;
+import com.example.bookshop2.event.CatalogChangeEvent;
+import com.example.bookshop2.event.CatalogChangeEvent.ChangeType;
+import com.example.bookshop2.event.CatalogChangeEvent.EntityType;
+import com.example.bookshop2.repository.BookRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+// Индекс цен книг для диапазонных запросов и выборок самых дешёвых/дорогих без обращения к БД
+@Slf4j
+@Component
+public class PriceIndex {
+    private final SortedPrices prices = new SortedPrices();
+    private final BookRepository bookRepository;
+    private volatile boolean ready;
+
+    public PriceIndex(BookRepository bookRepository) {
+        this.bookRepository = bookRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long start = System.nanoTime();
+        prices.reload(bookRepository::findAllPrices);
+        ready = true;
+        log.info("Индекс цен построен за {} мс: книг {}", (System.nanoTime() - start) / 1_000_000, prices.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChange(CatalogChangeEvent event) {
+        if (event.getEntityType() != EntityType.BOOK) {
+            return;
+        }
+        if (event.getChangeType() == ChangeType.DELETED) {
+            prices.remove(event.getId());
+            return;
+        }
+        Double price = event.getPayload(BookDto.class).getPrice();
+        // В PATCHED цена null, если она не менялась
+        if (price != null || event.getChangeType() != ChangeType.PATCHED) {
+            prices.put(event.getId(), price);
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public long[] range(double min, double max) {
+        return prices.range(min, max);
+    }
+
+    public long[] cheapest(int limit) {
+        return prices.cheapest(limit);
+    }
+
+    public long[] mostExpensive(int limit) {
+        return prices.mostExpensive(limit);
+    }
+}
@@ -0,0 +1,357 @@
+package com.example.bookshop2.index;
+
+import com.example.bookshop2.dto.BookDto;
+import com.example.bookshop2.dto.BookFacetsDto;
+import com.example.bookshop2.event.CatalogChangeEvent;
+import com.example.bookshop2.event.CatalogChangeEvent.ChangeType;
+import com.example.bookshop2.event.CatalogChangeEvent.EntityType;
+import com.example.bookshop2.repository.BookRepository;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Книги автора, издателя, жанра и ценового интервала в виде {@link IdBitmap}. Строится одним запросом
+ * при старте и меняется событиями записи книг; связи до изменения берутся из previous события.
+ * Событие без прежнего состояния помечает индекс устаревшим, и он перестраивается фоновой задачей.
+ * Пересечение критериев — AND битовых карт, начиная с самой маленькой, а счётчик фасета —
+ * мощность пересечения карты значения с совпадениями по остальным критериям.
+ */
+@Slf4j
+@Component
+public class RelationIndex {
+    private static final long[] NO_IDS = new long[0];
+    private static final IdBitmap EMPTY = new IdBitmap();
+    // Значений авторов и издателей тысячи: в фасетах только самые частые
+    private static final int FACET_LIMIT = 20;
+    private static final int AUTHORS = 0;
+    private static final int PUBLISHER = 1;
+    private static final int GENRE = 2;
+    private static final int PRICE = 3;
+
+    private final BookRepository bookRepository;
+    private final PriceBands bands;
+    // Загрузки идут по одной; события, пришедшие во время загрузки, копятся в pending (под this)
+    // и применяются поверх прочитанного среза
+    private final Object loading = new Object();
+    private Relations relations;
+    private List<CatalogChangeEvent> pending;
+    // Было событие без прежнего состояния: индекс неточен до перестройки
+    private volatile boolean stale;
+    private volatile boolean ready;
+
+    public RelationIndex(BookRepository bookRepository,
+                         @Value("${bookshop.stats.price-buckets:10,20,50,100,200,500}") double[] bucketBounds) {
+        this.bookRepository = bookRepository;
+        this.bands = new PriceBands(bucketBounds);
+        this.relations = new Relations(bands);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        synchronized (loading) {
+            long start = System.nanoTime();
+            synchronized (this) {
+                pending = new ArrayList<>();
+                stale = false;
+            }
+            Relations loaded;
+            try {
+                loaded = build(bookRepository.findAllRelations());
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    pending = null;
+                }
+                throw e;
+            }
+            synchronized (this) {
+                relations = loaded;
+                // Запись, зафиксированная во время чтения, иначе потерялась бы вместе со старым индексом
+                pending.forEach(this::apply);
+                pending = null;
+                ready = true;
+            }
+            log.info("Индекс связей построен за {} мс: книг {}, авторов {}, издателей {}, жанров {}",
+                    (System.nanoTime() - start) / 1_000_000, loaded.all.cardinality(), loaded.byAuthor.size(),
+                    loaded.byPublisher.size(), loaded.byGenre.size());
+        }
+    }
+
+    // Перестройка после события без прежнего состояния идёт здесь, а не в потоке запроса
+    @Scheduled(fixedDelayString = "${bookshop.stats.rebuild-check-interval:1s}")
+    public void rebuildIfStale() {
+        if (stale) {
+            load();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChange(CatalogChangeEvent event) {
+        if (event.getEntityType() != EntityType.BOOK) {
+            if (event.getChangeType() != ChangeType.DELETED) {
+                return;
+            }
+        } else if (event.getChangeType() == ChangeType.PATCHED) {
+            // PATCHED меняет из связей только жанр и цену
+            BookDto current = event.getPayload(BookDto.class);
+            if (current.getGenre() == null && current.getPrice() == null) {
+                return;
+            }
+        }
+        synchronized (this) {
+            if (pending != null) {
+                pending.add(event);
+            } else if (ready) {
+                apply(event);
+            }
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int priceBands() {
+        return bands.count();
+    }
+
+    public synchronized long[] booksByAuthor(long authorId) {
+        IdBitmap books = relations.byAuthor.get(authorId);
+        return books != null ? books.toArray() : NO_IDS;
+    }
+
+    // Книги, у которых есть все authorIds и совпадают заданные издатель и жанр; null и пустой список — без условия
+    public synchronized long[] filter(Collection<Long> authorIds, Long publisherId, String genre,
+                                      long afterId, int limit) {
+        IdBitmap[] criteria = relations.criteria(authorIds, publisherId, genre, null);
+        if (criteria[AUTHORS] == null && criteria[PUBLISHER] == null && criteria[GENRE] == null) {
+            throw new IllegalArgumentException("At least one criterion is required");
+        }
+        return relations.intersect(criteria, -1).toArray(afterId, limit);
+    }
+
+    public synchronized SearchHits search(Collection<Long> authorIds, Long publisherId, String genre,
+                                          Integer priceBand, long afterId, int limit) {
+        return relations.search(authorIds, publisherId, genre, priceBand, afterId, limit);
+    }
+
+    // Под this
+    private void apply(CatalogChangeEvent event) {
+        if (event.getEntityType() != EntityType.BOOK) {
+            forget(event.getEntityType(), event.getId());
+            return;
+        }
+        BookDto current = event.getPayload(BookDto.class);
+        BookDto previous = event.getPrevious(BookDto.class);
+        if (event.getChangeType() != ChangeType.CREATED && previous == null) {
+            log.warn("Событие {} книги {} без прежнего состояния, индекс связей будет перестроен",
+                    event.getChangeType(), event.getId());
+            stale = true;
+            return;
+        }
+        long id = event.getId();
+        switch (event.getChangeType()) {
+            case CREATED -> relations.link(id, current);
+            case DELETED -> relations.unlink(id, previous);
+            case UPDATED -> {
+                relations.unlink(id, previous);
+                relations.link(id, current);
+            }
+            case PATCHED -> {
+                relations.unlinkAttributes(id, previous.getGenre(), previous.getPrice());
+                relations.linkAttributes(id,
+                        current.getGenre() != null ? current.getGenre() : previous.getGenre(),
+                        current.getPrice() != null ? current.getPrice() : previous.getPrice());
+            }
+        }
+    }
+
+    private Relations build(Iterable<BookRelation> rows) {
+        Relations built = new Relations(bands);
+        for (BookRelation row : rows) {
+            built.linkAttributes(row.getBookId(), row.getGenre(), row.getPrice());
+            add(built.byPublisher, row.getPublisherId(), row.getBookId());
+            add(built.byAuthor, row.getAuthorId(), row.getBookId());
+        }
+        return built;
+    }
+
+    private void forget(EntityType type, Long id) {
+        if (type == EntityType.AUTHOR) {
+            relations.byAuthor.remove(id);
+        } else if (type == EntityType.PUBLISHER) {
+            relations.byPublisher.remove(id);
+        }
+    }
+
+    private static <K> void add(Map<K, IdBitmap> index, K key, long id) {
+        if (key != null) {
+            index.computeIfAbsent(key, k -> new IdBitmap()).add(id);
+        }
+    }
+
+    private static <K> void remove(Map<K, IdBitmap> index, K key, long id) {
+        IdBitmap books = key != null ? index.get(key) : null;
+        if (books != null) {
+            books.remove(id);
+            if (books.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    private static final class Relations {
+        private final PriceBands bands;
+        private final IdBitmap all = new IdBitmap();
+        private final Map<Long, IdBitmap> byAuthor = new HashMap<>();
+        private final Map<Long, IdBitmap> byPublisher = new HashMap<>();
+        private final Map<String, IdBitmap> byGenre = new HashMap<>();
+        // Книги без цены не попадают ни в один интервал
+        private final IdBitmap[] byBand;
+
+        private Relations(PriceBands bands) {
+            this.bands = bands;
+            this.byBand = new IdBitmap[bands.count()];
+            for (int i = 0; i < byBand.length; i++) {
+                byBand[i] = new IdBitmap();
+            }
+        }
+
+        private void link(long id, BookDto book) {
+            linkAttributes(id, book.getGenre(), book.getPrice());
+            add(byPublisher, book.getPublisherId(), id);
+            if (book.getAuthorIds() != null) {
+                book.getAuthorIds().forEach(authorId -> add(byAuthor, authorId, id));
+            }
+        }
+
+        private void unlink(long id, BookDto book) {
+            unlinkAttributes(id, book.getGenre(), book.getPrice());
+            all.remove(id);
+            remove(byPublisher, book.getPublisherId(), id);
+            if (book.getAuthorIds() != null) {
+                book.getAuthorIds().forEach(authorId -> remove(byAuthor, authorId, id));
+            }
+        }
+
+        private void linkAttributes(long id, String genre, Double price) {
+            all.add(id);
+            add(byGenre, genre, id);
+            if (price != null) {
+                byBand[bands.of(price)].add(id);
+            }
+        }
+
+        private void unlinkAttributes(long id, String genre, Double price) {
+            remove(byGenre, genre, id);
+            if (price != null) {
+                byBand[bands.of(price)].remove(id);
+            }
+        }
+
+        // Карта на каждое измерение; null — измерение не ограничено, неизвестное значение — пустая карта
+        private IdBitmap[] criteria(Collection<Long> authorIds, Long publisherId, String genre, Integer priceBand) {
+            IdBitmap[] criteria = new IdBitmap[4];
+            if (authorIds != null && !authorIds.isEmpty()) {
+                List<IdBitmap> authors = new ArrayList<>(authorIds.size());
+                authorIds.forEach(authorId -> authors.add(byAuthor.getOrDefault(authorId, EMPTY)));
+                criteria[AUTHORS] = and(authors);
+            }
+            if (publisherId != null) {
+                criteria[PUBLISHER] = byPublisher.getOrDefault(publisherId, EMPTY);
+            }
+            if (genre != null) {
+                criteria[GENRE] = byGenre.getOrDefault(genre, EMPTY);
+            }
+            if (priceBand != null) {
+                criteria[PRICE] = byBand[priceBand];
+            }
+            return criteria;
+        }
+
+        // Пересечение всех критериев, кроме измерения skip
+        private IdBitmap intersect(IdBitmap[] criteria, int skip) {
+            List<IdBitmap> bitmaps = new ArrayList<>(criteria.length);
+            for (int i = 0; i < criteria.length; i++) {
+                if (i != skip && criteria[i] != null) {
+                    bitmaps.add(criteria[i]);
+                }
+            }
+            return bitmaps.isEmpty() ? all : and(bitmaps);
+        }
+
+        private SearchHits search(Collection<Long> authorIds, Long publisherId, String genre, Integer priceBand,
+                                  long afterId, int limit) {
+            IdBitmap[] criteria = criteria(authorIds, publisherId, genre, priceBand);
+            IdBitmap matches = intersect(criteria, -1);
+
+            BookFacetsDto facets = new BookFacetsDto();
+            facets.setGenres(counts(byGenre, intersect(criteria, GENRE)));
+            facets.setPublishers(counts(byPublisher, intersect(criteria, PUBLISHER)));
+            facets.setAuthors(counts(byAuthor, intersect(criteria, AUTHORS)));
+            IdBitmap base = intersect(criteria, PRICE);
+            long[] books = new long[byBand.length];
+            for (int i = 0; i < byBand.length; i++) {
+                books[i] = count(base, byBand[i]);
+            }
+            facets.setPriceBands(bands.toDtos(books));
+            return new SearchHits(matches.toArray(afterId, limit), matches.cardinality(), facets);
+        }
+
+        // Лучшие FACET_LIMIT значений в куче с худшим наверху: значение, в котором книг меньше, чем
+        // совпадений у худшего, пересекать уже незачем
+        private <K extends Comparable<K>> Map<K, Long> counts(Map<K, IdBitmap> index, IdBitmap base) {
+            Comparator<Map.Entry<K, Long>> order = Map.Entry.<K, Long>comparingByValue().reversed()
+                    .thenComparing(Map.Entry.comparingByKey());
+            PriorityQueue<Map.Entry<K, Long>> top = new PriorityQueue<>(order.reversed());
+            if (!base.isEmpty()) {
+                index.forEach((key, books) -> {
+                    if (top.size() == FACET_LIMIT && books.cardinality() < top.peek().getValue()) {
+                        return;
+                    }
+                    long count = count(base, books);
+                    if (count == 0) {
+                        return;
+                    }
+                    Map.Entry<K, Long> entry = Map.entry(key, count);
+                    if (top.size() < FACET_LIMIT) {
+                        top.add(entry);
+                    } else if (order.compare(entry, top.peek()) < 0) {
+                        top.poll();
+                        top.add(entry);
+                    }
+                });
+            }
+            List<Map.Entry<K, Long>> sorted = new ArrayList<>(top);
+            sorted.sort(order);
+            Map<K, Long> counts = new LinkedHashMap<>();
+            sorted.forEach(entry -> counts.put(entry.getKey(), entry.getValue()));
+            return counts;
+        }
+
+        private long count(IdBitmap base, IdBitmap books) {
+            return base == all ? books.cardinality() : IdBitmap.andCardinality(base, books);
+        }
+
+        private static IdBitmap and(List<IdBitmap> bitmaps) {
+            bitmaps.sort(Comparator.comparingLong(IdBitmap::cardinality));
+            IdBitmap result = bitmaps.get(0);
+            for (int i = 1; i < bitmaps.size() && !result.isEmpty(); i++) {
+                result = IdBitmap.and(result, bitmaps.get(i));
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.bookshop2.index;
+
+import com.example.bookshop2.dto.BookFacetsDto;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+// Результат поиска по RelationIndex: страница ID по возрастанию, число всех совпадений и фасеты
+@Getter
+@RequiredArgsConstructor
+public class SearchHits {
+    private final long[] ids;
+    private final long total;
+    private final BookFacetsDto facets;
+}
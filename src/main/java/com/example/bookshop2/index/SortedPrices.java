@@ -0,0 +1,261 @@
+package com.example.bookshop2.index;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Цены книг в параллельных примитивных массивах, отсортированных по (цена, id).
+ * Читатели работают с неизменяемым снимком без блокировок. Писатели копируют только
+ * небольшую дельту (добавленные пары и id, удалённые из основы) и сливают её с основой,
+ * когда дельта вырастает до {@link #DELTA_LIMIT}.
+ */
+public class SortedPrices {
+    static final int DELTA_LIMIT = 1024;
+    private static final long[] NO_IDS = new long[0];
+    private static final double[] NO_PRICES = new double[0];
+
+    private volatile Snapshot snapshot = new Snapshot(NO_PRICES, NO_IDS, NO_PRICES, NO_IDS, NO_IDS);
+    // Текущая цена каждого id; используется только писателями под this
+    private final Map<Long, Double> current = new HashMap<>();
+
+    public synchronized void put(long id, Double price) {
+        Snapshot s = snapshot;
+        double[] addedPrices = s.addedPrices;
+        long[] addedIds = s.addedIds;
+        long[] removed = s.removed;
+        Double previous = current.remove(id);
+        if (previous != null) {
+            int pos = find(addedPrices, addedIds, addedIds.length, previous, id);
+            if (pos >= 0) {
+                addedPrices = cut(addedPrices, pos);
+                addedIds = cut(addedIds, pos);
+            } else {
+                removed = insertSorted(removed, id);
+            }
+        }
+        if (price != null) {
+            current.put(id, price);
+            int pos = -find(addedPrices, addedIds, addedIds.length, price, id) - 1;
+            addedPrices = insert(addedPrices, pos, price);
+            addedIds = insert(addedIds, pos, id);
+        }
+        s = new Snapshot(s.prices, s.ids, addedPrices, addedIds, removed);
+        snapshot = addedIds.length + removed.length > DELTA_LIMIT ? s.compact() : s;
+    }
+
+    public void remove(long id) {
+        put(id, null);
+    }
+
+    public synchronized void reload(Supplier<? extends Iterable<IndexedPrice>> source) {
+        current.clear();
+        for (IndexedPrice entry : source.get()) {
+            if (entry.getPrice() != null) {
+                current.put(entry.getId(), entry.getPrice());
+            }
+        }
+        long[] ids = new long[current.size()];
+        double[] prices = new double[current.size()];
+        Long[] order = current.keySet().toArray(new Long[0]);
+        Arrays.sort(order, (a, b) -> compare(current.get(a), a, current.get(b), b));
+        for (int i = 0; i < order.length; i++) {
+            ids[i] = order[i];
+            prices[i] = current.get(order[i]);
+        }
+        snapshot = new Snapshot(prices, ids, NO_PRICES, NO_IDS, NO_IDS);
+    }
+
+    public int size() {
+        return snapshot.size();
+    }
+
+    // id книг с min <= price <= max в порядке возрастания цены
+    public long[] range(double min, double max) {
+        Snapshot s = snapshot;
+        int from = lowerBound(s.prices, min);
+        int to = upperBound(s.prices, max);
+        int addedFrom = lowerBound(s.addedPrices, min);
+        int addedTo = upperBound(s.addedPrices, max);
+        return s.merge(from, to, addedFrom, addedTo, Integer.MAX_VALUE);
+    }
+
+    public long[] cheapest(int limit) {
+        Snapshot s = snapshot;
+        return s.merge(0, s.ids.length, 0, s.addedIds.length, limit);
+    }
+
+    // id книг в порядке убывания цены
+    public long[] mostExpensive(int limit) {
+        Snapshot s = snapshot;
+        long[] result = new long[Math.min(limit, s.size())];
+        int i = s.ids.length - 1;
+        int j = s.addedIds.length - 1;
+        int count = 0;
+        while (count < result.length) {
+            if (i >= 0 && s.isRemoved(s.ids[i])) {
+                i--;
+                continue;
+            }
+            boolean takeBase = j < 0
+                    || i >= 0 && compare(s.prices[i], s.ids[i], s.addedPrices[j], s.addedIds[j]) > 0;
+            result[count++] = takeBase ? s.ids[i--] : s.addedIds[j--];
+        }
+        return result;
+    }
+
+    private static int compare(double priceA, long idA, double priceB, long idB) {
+        int byPrice = Double.compare(priceA, priceB);
+        return byPrice != 0 ? byPrice : Long.compare(idA, idB);
+    }
+
+    // Позиция пары (price, id) либо -(точка вставки) - 1, как у Arrays.binarySearch
+    private static int find(double[] prices, long[] ids, int size, double price, long id) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compare(prices[mid], ids[mid], price, id);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private static int lowerBound(double[] prices, double value) {
+        int low = 0;
+        int high = prices.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (prices[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int upperBound(double[] prices, double value) {
+        int low = 0;
+        int high = prices.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (prices[mid] <= value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static long[] insertSorted(long[] values, long value) {
+        int pos = Arrays.binarySearch(values, value);
+        return pos >= 0 ? values : insert(values, -pos - 1, value);
+    }
+
+    private static long[] insert(long[] values, int pos, long value) {
+        long[] result = new long[values.length + 1];
+        System.arraycopy(values, 0, result, 0, pos);
+        result[pos] = value;
+        System.arraycopy(values, pos, result, pos + 1, values.length - pos);
+        return result;
+    }
+
+    private static double[] insert(double[] values, int pos, double value) {
+        double[] result = new double[values.length + 1];
+        System.arraycopy(values, 0, result, 0, pos);
+        result[pos] = value;
+        System.arraycopy(values, pos, result, pos + 1, values.length - pos);
+        return result;
+    }
+
+    private static long[] cut(long[] values, int pos) {
+        long[] result = new long[values.length - 1];
+        System.arraycopy(values, 0, result, 0, pos);
+        System.arraycopy(values, pos + 1, result, pos, values.length - pos - 1);
+        return result;
+    }
+
+    private static double[] cut(double[] values, int pos) {
+        double[] result = new double[values.length - 1];
+        System.arraycopy(values, 0, result, 0, pos);
+        System.arraycopy(values, pos + 1, result, pos, values.length - pos - 1);
+        return result;
+    }
+
+    private static final class Snapshot {
+        private final double[] prices;
+        private final long[] ids;
+        private final double[] addedPrices;
+        private final long[] addedIds;
+        // Отсортированные id, удалённые из основы или перемещённые в дельту
+        private final long[] removed;
+
+        private Snapshot(double[] prices, long[] ids, double[] addedPrices, long[] addedIds, long[] removed) {
+            this.prices = prices;
+            this.ids = ids;
+            this.addedPrices = addedPrices;
+            this.addedIds = addedIds;
+            this.removed = removed;
+        }
+
+        private int size() {
+            return ids.length - removed.length + addedIds.length;
+        }
+
+        private boolean isRemoved(long id) {
+            return removed.length > 0 && Arrays.binarySearch(removed, id) >= 0;
+        }
+
+        // Слияние base[from, to) без удалённых и added[addedFrom, addedTo), не более limit id
+        private long[] merge(int from, int to, int addedFrom, int addedTo, int limit) {
+            long[] result = new long[Math.min(limit, to - from + addedTo - addedFrom)];
+            int i = from;
+            int j = addedFrom;
+            int count = 0;
+            while (count < result.length && (i < to || j < addedTo)) {
+                if (i < to && isRemoved(ids[i])) {
+                    i++;
+                    continue;
+                }
+                boolean takeBase = j >= addedTo
+                        || i < to && compare(prices[i], ids[i], addedPrices[j], addedIds[j]) < 0;
+                result[count++] = takeBase ? ids[i++] : addedIds[j++];
+            }
+            return count == result.length ? result : Arrays.copyOf(result, count);
+        }
+
+        private Snapshot compact() {
+            int size = size();
+            double[] mergedPrices = new double[size];
+            long[] mergedIds = new long[size];
+            int i = 0;
+            int j = 0;
+            int count = 0;
+            while (i < ids.length || j < addedIds.length) {
+                if (i < ids.length && isRemoved(ids[i])) {
+                    i++;
+                    continue;
+                }
+                boolean takeBase = j >= addedIds.length
+                        || i < ids.length && compare(prices[i], ids[i], addedPrices[j], addedIds[j]) < 0;
+                if (takeBase) {
+                    mergedPrices[count] = prices[i];
+                    mergedIds[count++] = ids[i++];
+                } else {
+                    mergedPrices[count] = addedPrices[j];
+                    mergedIds[count++] = addedIds[j++];
+                }
+            }
+            return new Snapshot(mergedPrices, mergedIds, NO_PRICES, NO_IDS, NO_IDS);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.bookshop2.index;
+
+import com.example.bookshop2.dto.AuthorDto;
+import com.example.bookshop2.dto.BookDto;
+import com.example.bookshop2.dto.PublisherDto;
+import com.example.bookshop2.event.CatalogChangeEvent;
+import com.example.bookshop2.event.CatalogChangeEvent.ChangeType;
+import com.example.bookshop2.event.CatalogChangeEvent.EntityType;
+import com.example.bookshop2.repository.AuthorRepository;
+import com.example.bookshop2.repository.BookRepository;
+import com.example.bookshop2.repository.PublisherRepository;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+// Префиксные деревья для автодополнения. Вес автора и издателя — число их книг, вес книги — число просмотров
+@Slf4j
+@Component
+public class SuggestIndex {
+    private final Map<EntityType, PrefixTrie> tries = new EnumMap<>(EntityType.class);
+    // Просмотры копятся без блокировок и переносятся в деревья пачкой: чтение по ID не ждёт блокировку записи
+    private final Map<EntityType, Map<Long, LongAdder>> pendingViews = new EnumMap<>(EntityType.class);
+    private final AuthorRepository authorRepository;
+    private final PublisherRepository publisherRepository;
+    private final BookRepository bookRepository;
+    private volatile boolean ready;
+
+    public SuggestIndex(AuthorRepository authorRepository,
+                        PublisherRepository publisherRepository,
+                        BookRepository bookRepository) {
+        this.authorRepository = authorRepository;
+        this.publisherRepository = publisherRepository;
+        this.bookRepository = bookRepository;
+        for (EntityType type : EntityType.values()) {
+            tries.put(type, new PrefixTrie());
+            pendingViews.put(type, new ConcurrentHashMap<>());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long start = System.nanoTime();
+        tries.get(EntityType.AUTHOR).reload(authorRepository::findAllNamesWithBookCount);
+        tries.get(EntityType.PUBLISHER).reload(publisherRepository::findAllNamesWithBookCount);
+        tries.get(EntityType.BOOK).reload(() -> bookRepository.findAllNames().stream()
+                .map(name -> new WeightedName(name.getId(), name.getName(), 0))
+                .toList());
+        ready = true;
+        log.info("Индекс автодополнения построен за {} мс: авторов {}, издателей {}, книг {}",
+                (System.nanoTime() - start) / 1_000_000,
+                tries.get(EntityType.AUTHOR).size(),
+                tries.get(EntityType.PUBLISHER).size(),
+                tries.get(EntityType.BOOK).size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChange(CatalogChangeEvent event) {
+        PrefixTrie trie = tries.get(event.getEntityType());
+        switch (event.getChangeType()) {
+            case CREATED -> trie.put(event.getId(), nameOf(event), 0);
+            case UPDATED -> trie.rename(event.getId(), nameOf(event));
+            case PATCHED -> {
+                // Издатель и авторы через PATCH не меняются, веса остаются прежними
+                if (nameOf(event) != null) {
+                    trie.rename(event.getId(), nameOf(event));
+                }
+                return;
+            }
+            case DELETED -> trie.remove(event.getId());
+        }
+        if (event.getEntityType() == EntityType.BOOK) {
+            BookDto previous = event.getChangeType() == ChangeType.CREATED ? null : event.getPrevious(BookDto.class);
+            BookDto current = event.getChangeType() == ChangeType.DELETED ? null : event.getPayload(BookDto.class);
+            moveBookWeight(previous, current);
+        }
+    }
+
+    public void recordView(EntityType type, long id) {
+        Map<Long, LongAdder> views = pendingViews.get(type);
+        LongAdder counter = views.get(id);
+        if (counter == null) {
+            counter = views.computeIfAbsent(id, key -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    /**
+     * Переносит накопленные просмотры в веса деревьев, по одному взятию блокировки на дерево.
+     * Просмотр, пришедший в счётчик в момент его изъятия, может потеряться — для ранжирования
+     * подсказок это несущественно.
+     */
+    @Scheduled(fixedDelayString = "${bookshop.suggest.view-flush-interval:5s}")
+    public void flushViews() {
+        pendingViews.forEach((type, views) -> {
+            Map<Long, Long> deltas = new HashMap<>();
+            for (Long id : views.keySet()) {
+                LongAdder counter = views.remove(id);
+                if (counter != null) {
+                    deltas.put(id, counter.sum());
+                }
+            }
+            tries.get(type).addWeights(deltas);
+        });
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public List<IndexedName> suggest(EntityType type, String prefix, int limit) {
+        return tries.get(type).suggest(prefix, limit);
+    }
+
+    private void moveBookWeight(BookDto previous, BookDto current) {
+        Long oldPublisher = previous != null ? previous.getPublisherId() : null;
+        Long newPublisher = current != null ? current.getPublisherId() : null;
+        if (!Objects.equals(oldPublisher, newPublisher)) {
+            adjust(EntityType.PUBLISHER, oldPublisher, -1);
+            adjust(EntityType.PUBLISHER, newPublisher, 1);
+        }
+        Set<Long> oldAuthors = previous != null && previous.getAuthorIds() != null ? previous.getAuthorIds() : Set.of();
+        Set<Long> newAuthors = current != null && current.getAuthorIds() != null ? current.getAuthorIds() : Set.of();
+        oldAuthors.stream().filter(id -> !newAuthors.contains(id)).forEach(id -> adjust(EntityType.AUTHOR, id, -1));
+        newAuthors.stream().filter(id -> !oldAuthors.contains(id)).forEach(id -> adjust(EntityType.AUTHOR, id, 1));
+    }
+
+    private void adjust(EntityType type, Long id, long delta) {
+        if (id != null) {
+            tries.get(type).addWeight(id, delta);
+        }
+    }
+
+    private static String nameOf(CatalogChangeEvent event) {
+        return switch (event.getEntityType()) {
+            case AUTHOR -> event.getPayload(AuthorDto.class).getName();
+            case PUBLISHER -> event.getPayload(PublisherDto.class).getName();
+            case BOOK -> event.getPayload(BookDto.class).getName();
+        };
+    }
+}
@@ -0,0 +1,260 @@
+package com.example.bookshop2.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Инвертированный индекс по триграммам имён для поиска подстроки без учёта регистра.
+ * Списки вхождений — отсортированные массивы long; кандидаты после пересечения
+ * проверяются на точное вхождение, поэтому результат совпадает с
+ * {@code UPPER(name) LIKE UPPER('%query%')}.
+ */
+public class TrigramIndex {
+    private static final int GRAM = 3;
+    private static final long[] EMPTY = new long[0];
+
+    private final Map<Long, String> names = new HashMap<>();
+    private final Map<Long, Postings> postings = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public void put(long id, String name) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(id);
+            if (name != null) {
+                names.put(id, name);
+                for (long key : trigrams(fold(name))) {
+                    postings.computeIfAbsent(key, k -> new Postings()).insert(id);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Источник читается под блокировкой записи, чтобы изменения, пришедшие во время загрузки, не потерялись
+    public void reload(Supplier<? extends Iterable<IndexedName>> source) {
+        lock.writeLock().lock();
+        try {
+            names.clear();
+            postings.clear();
+            for (IndexedName entry : source.get()) {
+                if (entry.getName() == null) {
+                    continue;
+                }
+                names.put(entry.getId(), entry.getName());
+                for (long key : trigrams(fold(entry.getName()))) {
+                    postings.computeIfAbsent(key, k -> new Postings()).append(entry.getId());
+                }
+            }
+            postings.values().forEach(Postings::sortAndTrim);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return names.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Результат отсортирован по id
+    public List<IndexedName> search(String query) {
+        String needle = fold(query);
+        lock.readLock().lock();
+        try {
+            if (needle.length() < GRAM) {
+                return scan(needle);
+            }
+            long[] candidates = candidates(trigrams(needle));
+            List<IndexedName> result = new ArrayList<>();
+            for (long id : candidates) {
+                String name = names.get(id);
+                if (fold(name).contains(needle)) {
+                    result.add(new IndexedName(id, name));
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<IndexedName> scan(String needle) {
+        List<IndexedName> result = new ArrayList<>();
+        names.forEach((id, name) -> {
+            if (fold(name).contains(needle)) {
+                result.add(new IndexedName(id, name));
+            }
+        });
+        result.sort(Comparator.comparingLong(IndexedName::getId));
+        return result;
+    }
+
+    private long[] candidates(long[] keys) {
+        Postings[] lists = new Postings[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            lists[i] = postings.get(keys[i]);
+            if (lists[i] == null) {
+                return EMPTY;
+            }
+        }
+        // Пересекаем начиная с самых коротких списков
+        Arrays.sort(lists, Comparator.comparingInt(p -> p.size));
+        long[] result = Arrays.copyOf(lists[0].ids, lists[0].size);
+        int size = result.length;
+        for (int i = 1; i < lists.length && size > 0; i++) {
+            size = intersect(result, size, lists[i]);
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    // Пересечение на месте: result[0..size) ∩ other, возвращает новый размер
+    private static int intersect(long[] result, int size, Postings other) {
+        int count = 0;
+        if ((long) size * 8 < other.size) {
+            int from = 0;
+            for (int i = 0; i < size; i++) {
+                int pos = Arrays.binarySearch(other.ids, from, other.size, result[i]);
+                if (pos >= 0) {
+                    result[count++] = result[i];
+                    from = pos + 1;
+                } else {
+                    from = -pos - 1;
+                }
+                if (from >= other.size) {
+                    break;
+                }
+            }
+            return count;
+        }
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            long a = result[i];
+            long b = other.ids[j];
+            if (a == b) {
+                result[count++] = a;
+                i++;
+                j++;
+            } else if (a < b) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return count;
+    }
+
+    private void removeInternal(long id) {
+        String previous = names.remove(id);
+        if (previous == null) {
+            return;
+        }
+        for (long key : trigrams(fold(previous))) {
+            Postings list = postings.get(key);
+            if (list != null && list.remove(id)) {
+                postings.remove(key);
+            }
+        }
+    }
+
+    // Посимвольное приведение к верхнему регистру: длина строки сохраняется, как у UPPER в БД
+    static String fold(String value) {
+        char[] chars = value.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toUpperCase(chars[i]);
+        }
+        return new String(chars);
+    }
+
+    static long[] trigrams(String folded) {
+        int count = folded.length() - GRAM + 1;
+        if (count <= 0) {
+            return EMPTY;
+        }
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = ((long) folded.charAt(i) << 32)
+                    | ((long) folded.charAt(i + 1) << 16)
+                    | folded.charAt(i + 2);
+        }
+        Arrays.sort(keys);
+        int unique = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (i == 0 || keys[i] != keys[i - 1]) {
+                keys[unique++] = keys[i];
+            }
+        }
+        return Arrays.copyOf(keys, unique);
+    }
+
+    private static final class Postings {
+        private long[] ids = new long[2];
+        private int size;
+
+        private void append(long id) {
+            grow();
+            ids[size++] = id;
+        }
+
+        private void insert(long id) {
+            int pos = Arrays.binarySearch(ids, 0, size, id);
+            if (pos >= 0) {
+                return;
+            }
+            pos = -pos - 1;
+            grow();
+            System.arraycopy(ids, pos, ids, pos + 1, size - pos);
+            ids[pos] = id;
+            size++;
+        }
+
+        // true, если список стал пустым
+        private boolean remove(long id) {
+            int pos = Arrays.binarySearch(ids, 0, size, id);
+            if (pos >= 0) {
+                System.arraycopy(ids, pos + 1, ids, pos, size - pos - 1);
+                size--;
+            }
+            return size == 0;
+        }
+
+        private void sortAndTrim() {
+            Arrays.sort(ids, 0, size);
+            int unique = 0;
+            for (int i = 0; i < size; i++) {
+                if (i == 0 || ids[i] != ids[i - 1]) {
+                    ids[unique++] = ids[i];
+                }
+            }
+            size = unique;
+            ids = Arrays.copyOf(ids, size);
+        }
+
+        private void grow() {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, Math.max(2, size * 2));
+            }
+        }
+    }
+}
@@ -2,17 +2,47 @@ package com.example.bookshop2.mapper;
 
 import com.example.bookshop2.dto.AuthorDto;
 import com.example.bookshop2.model.Author;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class AuthorMapper {
+    public static final Set<String> FIELDS =
+            Collections.unmodifiableSet(new LinkedHashSet<>(List.of("id", "name", "version")));
+
     private AuthorMapper() {}
 
     public static AuthorDto toDto(Author author) {
         AuthorDto dto = new AuthorDto();
         dto.setId(author.getId());
         dto.setName(author.getName());
+        dto.setVersion(author.getVersion());
+        return dto;
+    }
+
+    public static AuthorDto toDto(Long id, String name) {
+        AuthorDto dto = new AuthorDto();
+        dto.setId(id);
+        dto.setName(name);
         return dto;
     }
 
+    public static Map<String, Object> toFieldMap(AuthorDto dto, Set<String> fields) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (String field : fields) {
+            map.put(field, switch (field) {
+                case "id" -> dto.getId();
+                case "name" -> dto.getName();
+                case "version" -> dto.getVersion();
+                default -> throw new IllegalArgumentException("Unknown author field: " + field);
+            });
+        }
+        return map;
+    }
+
     public static Author fromDto(AuthorDto dto) {
         Author author = new Author();
         author.setName(dto.getName());
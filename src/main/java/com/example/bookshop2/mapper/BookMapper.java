@@ -4,11 +4,23 @@ import com.example.bookshop2.dto.BookDto;
 import com.example.bookshop2.model.Author;
 import com.example.bookshop2.model.Book;
 import com.example.bookshop2.model.Publisher;
+import com.example.bookshop2.repository.BookAuthorRow;
+import com.example.bookshop2.repository.BookSummaryRow;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
 public class BookMapper {
+    // Имена свойств BookDto для fields=, в порядке вывода
+    public static final Set<String> FIELDS = Collections.unmodifiableSet(new LinkedHashSet<>(List.of(
+            "id", "name", "genre", "price", "publisherId", "publisherName", "authorIds", "authorNames", "version")));
+
     private BookMapper() {}
 
     public static BookDto toDto(Book book) {
@@ -17,6 +29,7 @@ public class BookMapper {
         dto.setName(book.getName());
         dto.setGenre(book.getGenre());
         dto.setPrice(book.getPrice());
+        dto.setVersion(book.getVersion());
         Publisher publisher = book.getPublisher();
         if (publisher != null) {
             dto.setPublisherId(publisher.getId());
@@ -33,6 +46,63 @@ public class BookMapper {
         return dto;
     }
 
+    // Строки «книга × автор» сворачиваются в одну DTO на книгу
+    public static List<BookDto> toDtos(List<BookAuthorRow> rows) {
+        Map<Long, BookDto> books = new LinkedHashMap<>();
+        for (BookAuthorRow row : rows) {
+            BookDto dto = books.computeIfAbsent(row.getBookId(), id -> {
+                BookDto created = new BookDto();
+                created.setId(id);
+                created.setName(row.getName());
+                created.setGenre(row.getGenre());
+                created.setPrice(row.getPrice());
+                created.setVersion(row.getVersion());
+                created.setPublisherId(row.getPublisherId());
+                created.setPublisherName(row.getPublisherName());
+                created.setAuthorIds(new HashSet<>());
+                created.setAuthorNames(new HashSet<>());
+                return created;
+            });
+            if (row.getAuthorId() != null) {
+                dto.getAuthorIds().add(row.getAuthorId());
+                dto.getAuthorNames().add(row.getAuthorName());
+            }
+        }
+        return new ArrayList<>(books.values());
+    }
+
+    // Авторов в строке нет: authorIds и authorNames остаются null и в ответ не попадают
+    public static BookDto toDto(BookSummaryRow row) {
+        BookDto dto = new BookDto();
+        dto.setId(row.getBookId());
+        dto.setName(row.getName());
+        dto.setGenre(row.getGenre());
+        dto.setPrice(row.getPrice());
+        dto.setVersion(row.getVersion());
+        dto.setPublisherId(row.getPublisherId());
+        dto.setPublisherName(row.getPublisherName());
+        return dto;
+    }
+
+    public static Map<String, Object> toFieldMap(BookDto dto, Set<String> fields) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (String field : fields) {
+            map.put(field, switch (field) {
+                case "id" -> dto.getId();
+                case "name" -> dto.getName();
+                case "genre" -> dto.getGenre();
+                case "price" -> dto.getPrice();
+                case "publisherId" -> dto.getPublisherId();
+                case "publisherName" -> dto.getPublisherName();
+                case "authorIds" -> dto.getAuthorIds();
+                case "authorNames" -> dto.getAuthorNames();
+                case "version" -> dto.getVersion();
+                default -> throw new IllegalArgumentException("Unknown book field: " + field);
+            });
+        }
+        return map;
+    }
+
     public static Book fromDto(BookDto dto, Set<Author> authors, Publisher publisher) {
         Book book = new Book();
         book.setName(dto.getName());
@@ -0,0 +1,33 @@
+package com.example.bookshop2.mapper;
+
+import com.example.bookshop2.exception.ValidationException;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+// Разбор параметра fields=id,name: null — все поля, неизвестное имя — ошибка клиента
+public final class Fields {
+
+    private Fields() {
+    }
+
+    public static Set<String> parse(String fields, Set<String> allowed) {
+        if (fields == null) {
+            return null;
+        }
+        Set<String> parsed = new LinkedHashSet<>();
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (!allowed.contains(name)) {
+                throw new ValidationException("Unknown field '" + name + "', expected one of " + allowed);
+            }
+            parsed.add(name);
+        }
+        if (parsed.isEmpty()) {
+            throw new ValidationException("Fields cannot be empty");
+        }
+        return parsed;
+    }
+}
@@ -2,17 +2,47 @@ package com.example.bookshop2.mapper;
 
 import com.example.bookshop2.dto.PublisherDto;
 import com.example.bookshop2.model.Publisher;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class PublisherMapper {
+    public static final Set<String> FIELDS =
+            Collections.unmodifiableSet(new LinkedHashSet<>(List.of("id", "name", "version")));
+
     private PublisherMapper() {}
 
     public static PublisherDto toDto(Publisher publisher) {
         PublisherDto dto = new PublisherDto();
         dto.setId(publisher.getId());
         dto.setName(publisher.getName());
+        dto.setVersion(publisher.getVersion());
+        return dto;
+    }
+
+    public static PublisherDto toDto(Long id, String name) {
+        PublisherDto dto = new PublisherDto();
+        dto.setId(id);
+        dto.setName(name);
         return dto;
     }
 
+    public static Map<String, Object> toFieldMap(PublisherDto dto, Set<String> fields) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (String field : fields) {
+            map.put(field, switch (field) {
+                case "id" -> dto.getId();
+                case "name" -> dto.getName();
+                case "version" -> dto.getVersion();
+                default -> throw new IllegalArgumentException("Unknown publisher field: " + field);
+            });
+        }
+        return map;
+    }
+
     public static Publisher fromDto(PublisherDto dto) {
         Publisher publisher = new Publisher();
         publisher.setName(dto.getName());
@@ -0,0 +1,60 @@
+package com.example.bookshop2.model;
+
+import com.example.bookshop2.event.CatalogChangeEvent.ChangeType;
+import com.example.bookshop2.event.CatalogChangeEvent.EntityType;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+// Запись журнала изменений каталога. Номер назначает ChangeLog, поэтому новая запись помечается явно:
+// иначе save() по заданному id сначала искал бы её в базе
+@Entity
+@Table(name = "catalog_changes")
+@Getter
+@NoArgsConstructor
+public class CatalogChange implements Persistable<Long> {
+    @Id
+    private Long seq;
+
+    @Enumerated(EnumType.STRING)
+    private EntityType entityType;
+
+    @Enumerated(EnumType.STRING)
+    private ChangeType changeType;
+
+    private Long entityId;
+
+    @Transient
+    private boolean stored;
+
+    public CatalogChange(long seq, EntityType entityType, ChangeType changeType, long entityId) {
+        this.seq = seq;
+        this.entityType = entityType;
+        this.changeType = changeType;
+        this.entityId = entityId;
+    }
+
+    @Override
+    public Long getId() {
+        return seq;
+    }
+
+    @Override
+    public boolean isNew() {
+        return !stored;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markStored() {
+        stored = true;
+    }
+}
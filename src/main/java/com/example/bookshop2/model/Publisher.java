@@ -1,20 +1,27 @@
 package com.example.bookshop2.model;
 
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Entity;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.OneToMany;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import java.util.Set;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Table(name = "publishers")
 @Getter
 @Setter
@@ -22,11 +29,15 @@ import lombok.Setter;
 @AllArgsConstructor
 public class Publisher {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "publishers_seq")
+    @SequenceGenerator(name = "publishers_seq", sequenceName = "publishers_seq", allocationSize = 50)
     private Long id;
 
     private String name;
 
+    @Version
+    private Long version;
+
     @OneToMany(mappedBy = "publisher", fetch = FetchType.LAZY)
     private Set<Book> books;
 }
@@ -0,0 +1,157 @@
+package com.example.bookshop2.monitoring;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * SQL-нагрузка одного HTTP-запроса: число выполненных операторов, прочитанные и изменённые строки, время в БД.
+ * Привязана к потоку запроса; хуки Hibernate ({@link SqlStatementInspector}, {@link SqlTimingListener},
+ * {@link RequestStatisticsFactory}) пишут в неё, пока запрос не завершён, а вне запросов ничего не делают.
+ */
+public final class RequestSqlStats {
+    private static final ThreadLocal<RequestSqlStats> CURRENT = new ThreadLocal<>();
+    // Одинаковые операторы складываются в одну запись, так что предел касается только разных текстов SQL
+    private static final int MAX_DISTINCT_STATEMENTS = 100;
+
+    private final String endpoint;
+    private final Map<String, Statement> statements = new LinkedHashMap<>();
+    private Statement last;
+    private int statementCount;
+    private long rows;
+    private long dbNanos;
+
+    private RequestSqlStats(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    public static RequestSqlStats begin(String endpoint) {
+        RequestSqlStats stats = new RequestSqlStats(endpoint);
+        CURRENT.set(stats);
+        return stats;
+    }
+
+    /** Отвязывает статистику от потока; null, если запрос не отслеживался. */
+    public static RequestSqlStats end() {
+        RequestSqlStats stats = CURRENT.get();
+        CURRENT.remove();
+        return stats;
+    }
+
+    /** Статистика запроса, который обслуживает текущий поток; null вне отслеживаемого запроса. */
+    public static RequestSqlStats current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Выполняет action, общий для нескольких запросов (например, пакет multi-get в потоке планировщика), со своей
+     * статистикой и добавляет её каждому из requests. Статистика самого потока на это время откладывается.
+     * Запросы в это время ждут результата action, поэтому их статистику можно дополнять из чужого потока.
+     */
+    public static <T> T chargeShared(Collection<RequestSqlStats> requests, String endpoint, Supplier<T> action) {
+        RequestSqlStats outer = CURRENT.get();
+        RequestSqlStats shared = new RequestSqlStats(endpoint);
+        CURRENT.set(shared);
+        try {
+            return action.get();
+        } finally {
+            if (outer != null) {
+                CURRENT.set(outer);
+            } else {
+                CURRENT.remove();
+            }
+            requests.forEach(request -> request.add(shared));
+        }
+    }
+
+    void prepared(String sql) {
+        statementCount++;
+        last = statements.get(sql);
+        if (last == null && statements.size() < MAX_DISTINCT_STATEMENTS) {
+            last = new Statement(sql);
+            statements.put(sql, last);
+        }
+        if (last != null) {
+            last.count++;
+        }
+    }
+
+    // Время выполнения относится к последнему подготовленному оператору: Hibernate выполняет его сразу
+    // после подготовки, а пакет — перед подготовкой следующего оператора
+    void executed(long nanos) {
+        dbNanos += nanos;
+        if (last != null) {
+            last.nanos += nanos;
+        }
+    }
+
+    void rows(long count) {
+        rows += count;
+    }
+
+    private void add(RequestSqlStats other) {
+        statementCount += other.statementCount;
+        rows += other.rows;
+        dbNanos += other.dbNanos;
+        other.statements.forEach((sql, statement) -> {
+            Statement own = statements.get(sql);
+            if (own == null && statements.size() < MAX_DISTINCT_STATEMENTS) {
+                own = new Statement(sql);
+                statements.put(sql, own);
+            }
+            if (own != null) {
+                own.count += statement.count;
+                own.nanos += statement.nanos;
+            }
+        });
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public int getStatementCount() {
+        return statementCount;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getDbNanos() {
+        return dbNanos;
+    }
+
+    public List<Statement> slowest(int limit) {
+        List<Statement> sorted = new ArrayList<>(statements.values());
+        sorted.sort(Comparator.comparingLong(Statement::getNanos).reversed()
+                .thenComparing(Comparator.comparingInt(Statement::getCount).reversed()));
+        return sorted.subList(0, Math.min(limit, sorted.size()));
+    }
+
+    public static final class Statement {
+        private final String sql;
+        private int count;
+        private long nanos;
+
+        private Statement(String sql) {
+            this.sql = sql;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.bookshop2.monitoring;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.internal.StatisticsImpl;
+import org.hibernate.stat.spi.StatisticsFactory;
+import org.hibernate.stat.spi.StatisticsImplementor;
+
+/**
+ * Обычная статистика Hibernate, которая дополнительно считает строки текущего запроса:
+ * строки результатов запросов, сущности, загруженные из БД по ID, и записанные сущности.
+ * Подключается через hibernate.stats.factory и работает при hibernate.generate_statistics=true.
+ */
+public class RequestStatisticsFactory implements StatisticsFactory {
+
+    @Override
+    public StatisticsImplementor buildStatistics(SessionFactoryImplementor sessionFactory) {
+        return new RequestStatistics(sessionFactory);
+    }
+
+    static class RequestStatistics extends StatisticsImpl {
+
+        RequestStatistics(SessionFactoryImplementor sessionFactory) {
+            super(sessionFactory);
+        }
+
+        @Override
+        public void queryExecuted(String hql, int rows, long time) {
+            super.queryExecuted(hql, rows, time);
+            addRows(rows);
+        }
+
+        @Override
+        public void fetchEntity(String entityName) {
+            super.fetchEntity(entityName);
+            addRows(1);
+        }
+
+        @Override
+        public void insertEntity(String entityName) {
+            super.insertEntity(entityName);
+            addRows(1);
+        }
+
+        @Override
+        public void updateEntity(String entityName) {
+            super.updateEntity(entityName);
+            addRows(1);
+        }
+
+        @Override
+        public void deleteEntity(String entityName) {
+            super.deleteEntity(entityName);
+            addRows(1);
+        }
+
+        private static void addRows(long rows) {
+            RequestSqlStats stats = RequestSqlStats.current();
+            if (stats != null && rows > 0) {
+                stats.rows(rows);
+            }
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.bookshop2.monitoring;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+// Считает подготовленные операторы текущего запроса и запоминает их текст; SQL не меняет
+public class SqlStatementInspector implements StatementInspector {
+
+    @Override
+    public String inspect(String sql) {
+        RequestSqlStats stats = RequestSqlStats.current();
+        if (stats != null) {
+            stats.prepared(sql);
+        }
+        return sql;
+    }
+}
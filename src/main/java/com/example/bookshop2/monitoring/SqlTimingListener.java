@@ -0,0 +1,35 @@
+package com.example.bookshop2.monitoring;
+
+import org.hibernate.SessionEventListener;
+
+// Создаётся Hibernate на каждую сессию (hibernate.session.events.auto) и замеряет выполнение операторов и пакетов
+public class SqlTimingListener implements SessionEventListener {
+    private long started;
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        started = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        record();
+    }
+
+    @Override
+    public void jdbcExecuteBatchStart() {
+        started = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd() {
+        record();
+    }
+
+    private void record() {
+        RequestSqlStats stats = RequestSqlStats.current();
+        if (stats != null) {
+            stats.executed(System.nanoTime() - started);
+        }
+    }
+}
@@ -1,12 +1,58 @@
 package com.example.bookshop2.repository;
 
+import com.example.bookshop2.index.IndexedName;
+import com.example.bookshop2.index.WeightedName;
 import com.example.bookshop2.model.Author;
+import jakarta.persistence.QueryHint;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
 public interface AuthorRepository extends JpaRepository<Author, Long> {
+    // Результат в кэше запросов Hibernate; любая запись в таблицу делает его устаревшим
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<Author> findByName(String name);
 
     List<Author> findByNameContainingIgnoreCase(String name);
-}
\ No newline at end of file
+
+    // Поиск пачки имён по индексу idx_authors_name; у одного имени может быть несколько авторов
+    List<Author> findByNameIn(Collection<String> names);
+
+    // Блокирует строку AUTHOR в name_upsert_locks до конца транзакции: пакетные upsert авторов идут по одному
+    @Query(value = "SELECT entity_type FROM name_upsert_locks WHERE entity_type = 'AUTHOR' FOR UPDATE",
+            nativeQuery = true)
+    String lockNameUpserts();
+
+    @Query("SELECT new com.example.bookshop2.index.IndexedName(a.id, a.name) FROM Author a")
+    List<IndexedName> findAllNames();
+
+    // Только первичный ключ: для битовой карты существующих авторов
+    @Query("SELECT a.id FROM Author a")
+    List<Long> findAllIds();
+
+    @Query("SELECT new com.example.bookshop2.index.WeightedName(a.id, a.name, COUNT(b)) "
+            + "FROM Author a LEFT JOIN a.books b GROUP BY a.id, a.name")
+    List<WeightedName> findAllNamesWithBookCount();
+
+    List<Author> findTop10ByNameStartingWithIgnoreCaseOrderByNameAscIdAsc(String prefix);
+
+    // Переименование одним условным UPDATE; 0 — строки нет или версия устарела
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Author a SET a.name = :name, a.version = a.version + 1 "
+            + "WHERE a.id = :id AND a.version = :version")
+    int patchName(@Param("id") Long id, @Param("version") Long version, @Param("name") String name);
+
+    @Query("SELECT new com.example.bookshop2.index.IndexedName(a.id, a.name) FROM Author a WHERE a.id IN :ids")
+    List<IndexedName> findNamesByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Связи из book_author Hibernate удаляет тем же вызовом, до DELETE авторов; сами книги остаются
+    @Modifying(clearAutomatically = true)
+    @Query("DELETE FROM Author a WHERE a.id IN :ids")
+    int deleteAllByIdIn(@Param("ids") Collection<Long> ids);
+}
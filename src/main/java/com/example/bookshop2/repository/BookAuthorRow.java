@@ -0,0 +1,23 @@
+package com.example.bookshop2.repository;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+// Строка книги с издателем и одним из авторов (authorId = null, если авторов нет)
+@Getter
+@ToString
+@EqualsAndHashCode
+@RequiredArgsConstructor
+public class BookAuthorRow {
+    private final long bookId;
+    private final String name;
+    private final String genre;
+    private final Double price;
+    private final Long version;
+    private final Long publisherId;
+    private final String publisherName;
+    private final Long authorId;
+    private final String authorName;
+}
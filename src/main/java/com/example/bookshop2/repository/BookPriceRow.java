@@ -0,0 +1,18 @@
+package com.example.bookshop2.repository;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+// Жанр, цена и версия книги: состояние до и после изменения цены
+@Getter
+@ToString
+@EqualsAndHashCode
+@RequiredArgsConstructor
+public class BookPriceRow {
+    private final long bookId;
+    private final String genre;
+    private final Double price;
+    private final Long version;
+}
@@ -1,18 +1,134 @@
 package com.example.bookshop2.repository;
 
+import com.example.bookshop2.index.BookRelation;
+import com.example.bookshop2.index.GenrePriceCount;
+import com.example.bookshop2.index.IndexedName;
+import com.example.bookshop2.index.IndexedPrice;
 import com.example.bookshop2.model.Book;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
 public interface BookRepository extends JpaRepository<Book, Long> {
     List<Book> findByPublisherId(Long publisherId);
 
-    @Query(value = "SELECT b.id, b.name, b.genre, b.price, b.publisher_id FROM books b "
+    // Явный JOIN: производный findByAuthorsId строит LEFT JOIN, и H2 начинает с полного чтения books
+    @Query("SELECT b FROM Book b JOIN b.authors a WHERE a.id = :authorId")
+    List<Book> findByAuthorId(@Param("authorId") Long authorId);
+
+    List<Book> findByGenre(String genre);
+
+    @Query(value = "SELECT b.id, b.name, b.genre, b.price, b.version, b.publisher_id FROM books b "
             + "JOIN publishers p ON b.publisher_id = p.id "
             + "WHERE p.name = :publisherName", nativeQuery = true)
     List<Book> findByPublisherNameNative(@Param("publisherName") String publisherName);
 
     List<Book> findByPriceBetween(Double minPrice, Double maxPrice);
-}
\ No newline at end of file
+
+    List<Book> findByPriceNotNullOrderByPriceAscIdAsc(Pageable pageable);
+
+    List<Book> findByPriceNotNullOrderByPriceDescIdDesc(Pageable pageable);
+
+    List<Book> findByNameContainingIgnoreCase(String name);
+
+    @Query("SELECT new com.example.bookshop2.index.IndexedName(b.id, b.name) FROM Book b")
+    List<IndexedName> findAllNames();
+
+    // Только первичный ключ: для каталога шардов и битовой карты существующих книг
+    @Query("SELECT b.id FROM Book b")
+    List<Long> findAllIds();
+
+    List<Book> findTop10ByNameStartingWithIgnoreCaseOrderByNameAscIdAsc(String prefix);
+
+    @Query("SELECT new com.example.bookshop2.index.IndexedPrice(b.id, b.price) FROM Book b WHERE b.price IS NOT NULL")
+    List<IndexedPrice> findAllPrices();
+
+    // Статистика каталога: строк столько, сколько различных пар (жанр, цена), а не книг
+    @Query("SELECT new com.example.bookshop2.index.GenrePriceCount(b.genre, b.price, COUNT(b)) "
+            + "FROM Book b GROUP BY b.genre, b.price")
+    List<GenrePriceCount> findGenrePriceCounts();
+
+    @Query("SELECT new com.example.bookshop2.index.BookRelation(b.id, b.publisher.id, b.genre, b.price, a.id) "
+            + "FROM Book b LEFT JOIN b.authors a")
+    List<BookRelation> findAllRelations();
+
+    @Query("SELECT b FROM Book b LEFT JOIN FETCH b.publisher ORDER BY b.id")
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false")
+    })
+    Stream<Book> streamAll();
+
+    // Каталог для fields= без авторов: b.publisher.id читается из внешнего ключа, без соединения
+    @Query("SELECT new com.example.bookshop2.repository.BookSummaryRow("
+            + "b.id, b.name, b.genre, b.price, b.version, b.publisher.id) FROM Book b")
+    List<BookSummaryRow> findAllSummaries();
+
+    @Query("SELECT new com.example.bookshop2.repository.BookSummaryRow("
+            + "b.id, b.name, b.genre, b.price, b.version, p.id, p.name) FROM Book b LEFT JOIN b.publisher p")
+    List<BookSummaryRow> findAllSummariesWithPublisher();
+
+    // Книги для multi-get вместе с издателем и авторами: DTO собирается и вне сессии
+    @Query("SELECT DISTINCT b FROM Book b LEFT JOIN FETCH b.publisher LEFT JOIN FETCH b.authors WHERE b.id IN :ids")
+    List<Book> findWithReferencesByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Условное обновление одним UPDATE без загрузки сущности: null-поля не меняются.
+    // 0 — строки нет или версия устарела
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Book b SET b.name = COALESCE(:name, b.name), b.genre = COALESCE(:genre, b.genre), "
+            + "b.price = COALESCE(:price, b.price), b.version = b.version + 1 "
+            + "WHERE b.id = :id AND b.version = :version")
+    int patch(@Param("id") Long id, @Param("version") Long version,
+              @Param("name") String name, @Param("genre") String genre, @Param("price") Double price);
+
+    // Прежнее состояние удаляемых книг одним запросом: для событий и сброса кэшей
+    @Query("SELECT new com.example.bookshop2.repository.BookAuthorRow("
+            + "b.id, b.name, b.genre, b.price, b.version, p.id, p.name, a.id, a.name) "
+            + "FROM Book b LEFT JOIN b.publisher p LEFT JOIN b.authors a WHERE b.id IN :ids")
+    List<BookAuthorRow> findRowsByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Hibernate сам предваряет его DELETE FROM book_author WHERE book_id IN (...): связи принадлежат Book
+    @Modifying(clearAutomatically = true)
+    @Query("DELETE FROM Book b WHERE b.id IN :ids")
+    int deleteAllByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Пачки для массовой переоценки: следующие limit книг с ценой после afterId. Строки блокируются до конца
+    // транзакции, чтобы прочитанные до UPDATE цены точно были теми, что он заменит
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b.id FROM Book b WHERE b.publisher.id = :publisherId AND (:genre IS NULL OR b.genre = :genre) "
+            + "AND b.price IS NOT NULL AND b.id > :afterId ORDER BY b.id")
+    List<Long> findRepricingIdsByPublisher(@Param("publisherId") Long publisherId, @Param("genre") String genre,
+                                           @Param("afterId") long afterId, Pageable pageable);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b.id FROM Book b WHERE b.genre = :genre AND b.price IS NOT NULL AND b.id > :afterId ORDER BY b.id")
+    List<Long> findRepricingIdsByGenre(@Param("genre") String genre, @Param("afterId") long afterId,
+                                       Pageable pageable);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b.id FROM Book b WHERE b.id IN :ids AND b.price IS NOT NULL AND b.id > :afterId ORDER BY b.id")
+    List<Long> findRepricingIdsByIdIn(@Param("ids") Collection<Long> ids, @Param("afterId") long afterId,
+                                      Pageable pageable);
+
+    // Цена округляется до копеек в самом UPDATE; FLOOR от double есть и в PostgreSQL, и в H2.
+    // Книги, чья цена округлилась бы до нуля, не меняются: цена книги всегда положительна
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Book b SET b.price = FLOOR(b.price * :factor * 100 + 0.5) / 100, b.version = b.version + 1 "
+            + "WHERE b.id IN :ids AND b.price IS NOT NULL AND FLOOR(b.price * :factor * 100 + 0.5) > 0")
+    int repriceByIdIn(@Param("ids") Collection<Long> ids, @Param("factor") double factor);
+
+    @Query("SELECT new com.example.bookshop2.repository.BookPriceRow(b.id, b.genre, b.price, b.version) "
+            + "FROM Book b WHERE b.id IN :ids")
+    List<BookPriceRow> findPricesByIdIn(@Param("ids") Collection<Long> ids);
+}
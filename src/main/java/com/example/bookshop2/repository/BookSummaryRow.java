@@ -0,0 +1,25 @@
+package com.example.bookshop2.repository;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+// Книга без авторов для fields=: издатель только по внешнему ключу или с именем через LEFT JOIN
+@Getter
+@ToString
+@EqualsAndHashCode
+@RequiredArgsConstructor
+public class BookSummaryRow {
+    private final long bookId;
+    private final String name;
+    private final String genre;
+    private final Double price;
+    private final Long version;
+    private final Long publisherId;
+    private final String publisherName;
+
+    public BookSummaryRow(long bookId, String name, String genre, Double price, Long version, Long publisherId) {
+        this(bookId, name, genre, price, version, publisherId, null);
+    }
+}
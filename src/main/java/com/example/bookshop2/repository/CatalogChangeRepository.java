@@ -0,0 +1,31 @@
+package com.example.bookshop2.repository;
+
+import com.example.bookshop2.event.ChangeLogEntry;
+import com.example.bookshop2.model.CatalogChange;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface CatalogChangeRepository extends JpaRepository<CatalogChange, Long> {
+    // Резервирует count номеров; строка счётчика остаётся заблокированной до конца транзакции
+    @Modifying
+    @Query(value = "UPDATE catalog_change_head SET seq = seq + :count WHERE id = 1", nativeQuery = true)
+    int advanceHead(@Param("count") int count);
+
+    @Query(value = "SELECT seq FROM catalog_change_head WHERE id = 1", nativeQuery = true)
+    long findHead();
+
+    Optional<CatalogChange> findFirstByOrderBySeqAsc();
+
+    @Query("SELECT new com.example.bookshop2.event.ChangeLogEntry(c.seq, c.entityType, c.changeType, c.entityId) "
+            + "FROM CatalogChange c WHERE c.seq > :since ORDER BY c.seq")
+    List<ChangeLogEntry> findEntriesAfter(@Param("since") long since, Pageable pageable);
+
+    @Modifying
+    @Query("DELETE FROM CatalogChange c WHERE c.seq <= :seq")
+    int deleteUpTo(@Param("seq") long seq);
+}
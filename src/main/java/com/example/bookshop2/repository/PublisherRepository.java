@@ -1,12 +1,55 @@
 package com.example.bookshop2.repository;
 
+import com.example.bookshop2.index.IndexedName;
+import com.example.bookshop2.index.WeightedName;
 import com.example.bookshop2.model.Publisher;
+import jakarta.persistence.QueryHint;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
 public interface PublisherRepository extends JpaRepository<Publisher, Long> {
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<Publisher> findByName(String name);
 
     List<Publisher> findByNameContainingIgnoreCase(String name);
-}
\ No newline at end of file
+
+    List<Publisher> findByNameIn(Collection<String> names);
+
+    @Query(value = "SELECT entity_type FROM name_upsert_locks WHERE entity_type = 'PUBLISHER' FOR UPDATE",
+            nativeQuery = true)
+    String lockNameUpserts();
+
+    @Query("SELECT new com.example.bookshop2.index.IndexedName(p.id, p.name) FROM Publisher p")
+    List<IndexedName> findAllNames();
+
+    // Только первичный ключ: для битовой карты существующих издателей
+    @Query("SELECT p.id FROM Publisher p")
+    List<Long> findAllIds();
+
+    @Query("SELECT new com.example.bookshop2.index.WeightedName(p.id, p.name, COUNT(b)) "
+            + "FROM Publisher p LEFT JOIN p.books b GROUP BY p.id, p.name")
+    List<WeightedName> findAllNamesWithBookCount();
+
+    List<Publisher> findTop10ByNameStartingWithIgnoreCaseOrderByNameAscIdAsc(String prefix);
+
+    // Переименование одним условным UPDATE; 0 — строки нет или версия устарела
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Publisher p SET p.name = :name, p.version = p.version + 1 "
+            + "WHERE p.id = :id AND p.version = :version")
+    int patchName(@Param("id") Long id, @Param("version") Long version, @Param("name") String name);
+
+    @Query("SELECT new com.example.bookshop2.index.WeightedName(p.id, p.name, COUNT(b)) "
+            + "FROM Publisher p LEFT JOIN p.books b WHERE p.id IN :ids GROUP BY p.id, p.name")
+    List<WeightedName> findNamesWithBookCountByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Modifying(clearAutomatically = true)
+    @Query("DELETE FROM Publisher p WHERE p.id IN :ids")
+    int deleteAllByIdIn(@Param("ids") Collection<Long> ids);
+}
@@ -0,0 +1,571 @@
+package com.example.bookshop2.repository;
+
+import com.example.bookshop2.datasource.ShardDirectory;
+import com.example.bookshop2.datasource.ShardRing;
+import com.example.bookshop2.datasource.ShardTransactions;
+import com.example.bookshop2.index.GenrePriceCount;
+import com.example.bookshop2.model.Author;
+import com.example.bookshop2.model.Book;
+import com.example.bookshop2.model.Publisher;
+import jakarta.persistence.EntityManager;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.sql.PreparedStatement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.collection.spi.PersistentCollection;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * {@link BookRepository} поверх шардов книг. Книги издателя лежат в шарде, который {@link ShardRing}
+ * выбирает по publisher_id: запросы по издателю и записи книг идут в один шард, запросы по ID книг —
+ * в шарды из {@link ShardDirectory}, остальные выполняются на всех шардах параллельно и сливаются,
+ * с повторной сортировкой и обрезкой для запросов с ORDER BY и лимитом. Книга, у которой сменился
+ * издатель, переносится в шард нового издателя. Каждый метод репозитория должен быть в таблице
+ * маршрутов: неизвестный метод отвергается, а не уходит молча в один шард.
+ */
+@Slf4j
+public class ShardedBookRepository implements InvocationHandler {
+    private static final Comparator<Book> BY_PRICE = Comparator.comparing(Book::getPrice).thenComparing(Book::getId);
+    private static final Comparator<Book> BY_NAME = Comparator.comparing(Book::getName).thenComparing(Book::getId);
+    private static final String AUTHORS_ROLE = Book.class.getName() + ".authors";
+
+    private final BookRepository target;
+    private final ShardRing ring;
+    private final ShardDirectory directory;
+    private final ShardTransactions transactions;
+    private final EntityManager entityManager;
+    private final Map<String, Route> routes = new HashMap<>();
+
+    public ShardedBookRepository(BookRepository target,
+                                 ShardRing ring,
+                                 ShardDirectory directory,
+                                 ShardTransactions transactions,
+                                 EntityManager entityManager) {
+        this.target = target;
+        this.ring = ring;
+        this.directory = directory;
+        this.transactions = transactions;
+        this.entityManager = entityManager;
+
+        route("findByPublisherId", 1, this::onPublisherShard);
+        route("findRepricingIdsByPublisher", 4, this::onPublisherShard);
+        Map<String, Integer> everywhere = Map.ofEntries(
+                Map.entry("findAll", 0), Map.entry("findByAuthorId", 1), Map.entry("findByGenre", 1),
+                Map.entry("findByPublisherNameNative", 1), Map.entry("findByPriceBetween", 2),
+                Map.entry("findByNameContainingIgnoreCase", 1), Map.entry("findAllNames", 0),
+                Map.entry("findAllIds", 0), Map.entry("findAllPrices", 0), Map.entry("findAllRelations", 0),
+                Map.entry("findAllSummaries", 0), Map.entry("findAllSummariesWithPublisher", 0));
+        everywhere.forEach((name, parameterCount) ->
+                route(name, parameterCount, (method, args) -> concat(scatter(method, args))));
+        route("findGenrePriceCounts", 0, (method, args) -> mergeCounts(scatter(method, args)));
+        route("findByPriceNotNullOrderByPriceAscIdAsc", 1, (method, args) -> top(method, args, BY_PRICE));
+        route("findByPriceNotNullOrderByPriceDescIdDesc", 1, (method, args) -> top(method, args, BY_PRICE.reversed()));
+        route("findTop10ByNameStartingWithIgnoreCaseOrderByNameAscIdAsc", 1,
+                (method, args) -> ShardedBookRepository.<Book>concat(scatter(method, args)).stream()
+                        .sorted(BY_NAME)
+                        .limit(10)
+                        .toList());
+        route("findRepricingIdsByGenre", 3, this::topIds);
+        route("streamAll", 0, (method, args) -> streamAll());
+        route("count", 0, (method, args) -> scatter(method, args).stream().mapToLong(Long.class::cast).sum());
+
+        route("findById", 1, (method, args) -> onBookShard(method, args, (Long) args[0], parts -> parts.stream()
+                .map(Optional.class::cast)
+                .filter(Optional::isPresent)
+                .findFirst()
+                .orElse(Optional.empty())));
+        route("existsById", 1, (method, args) -> onBookShard(method, args, (Long) args[0],
+                parts -> parts.stream().anyMatch(Boolean.TRUE::equals)));
+        route("patch", 5, (method, args) -> onBookShard(method, args, (Long) args[0],
+                ShardedBookRepository::sumInts));
+        route("deleteById", 1, (method, args) -> {
+            onBookShard(method, args, (Long) args[0], parts -> null);
+            directory.remove((Long) args[0]);
+            return null;
+        });
+        for (String byIds : List.of("findAllById", "findWithReferencesByIdIn", "findRowsByIdIn", "findPricesByIdIn")) {
+            route(byIds, 1, (method, args) -> concat(onBookShards(method, args)));
+        }
+        route("findRepricingIdsByIdIn", 3, this::topIds);
+        route("repriceByIdIn", 2, (method, args) -> sumInts(onBookShards(method, args)));
+        route("deleteAllByIdIn", 1, (method, args) -> {
+            int deleted = sumInts(onBookShards(method, args));
+            ids(args[0]).forEach(directory::remove);
+            return deleted;
+        });
+
+        route("save", 1, this::save);
+        route("saveAndFlush", 1, this::save);
+        route("saveAll", 1, this::saveAll);
+        route("saveAllAndFlush", 1, this::saveAll);
+        route("delete", 1, this::delete);
+        route("flush", 0, (method, args) -> {
+            transactions.flush();
+            return null;
+        });
+    }
+
+    public BookRepository proxy() {
+        return (BookRepository) Proxy.newProxyInstance(BookRepository.class.getClassLoader(),
+                new Class<?>[]{BookRepository.class}, this);
+    }
+
+    static Set<String> routedMethods(ShardedBookRepository repository) {
+        return repository.routes.keySet();
+    }
+
+    static String key(String name, int parameterCount) {
+        return name + "/" + parameterCount;
+    }
+
+    /**
+     * ID книг каждого шарда, чтобы запросы по ID сразу шли в нужный шард. До загрузки
+     * такие запросы просто выполняются на всех шардах.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadDirectory() {
+        List<List<Long>> ids = transactions.scatter(transactions.allShards(), shard -> target.findAllIds());
+        for (int shard = 0; shard < ids.size(); shard++) {
+            directory.addAll(shard, ids.get(shard));
+            log.info("Шард книг {}: {} книг", shard, ids.get(shard).size());
+        }
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            return switch (method.getName()) {
+                case "equals" -> proxy == args[0];
+                case "hashCode" -> System.identityHashCode(proxy);
+                default -> "ShardedBookRepository(" + ring.getShardCount() + " shards)";
+            };
+        }
+        Object[] arguments = args != null ? args : new Object[0];
+        Route route = routes.get(key(method.getName(), arguments.length));
+        if (route == null) {
+            throw new UnsupportedOperationException("BookRepository." + method.getName()
+                    + " is not supported on sharded book storage");
+        }
+        return route.invoke(method, arguments);
+    }
+
+    private void route(String name, int parameterCount, Route route) {
+        routes.put(key(name, parameterCount), route);
+    }
+
+    private Object onPublisherShard(Method method, Object[] args) {
+        return transactions.call(ring.shardOf((Long) args[0]), () -> invokeTarget(method, args));
+    }
+
+    private List<Object> scatter(Method method, Object[] args) {
+        return transactions.scatter(transactions.allShards(), shard -> invokeTarget(method, args));
+    }
+
+    // Одна книга: её шард, а если он неизвестен — все шарды
+    private Object onBookShard(Method method, Object[] args, long id, Function<List<Object>, Object> merge) {
+        int shard = directory.shardOf(id);
+        if (shard != ShardDirectory.UNKNOWN) {
+            return transactions.call(shard, () -> invokeTarget(method, args));
+        }
+        return merge.apply(scatter(method, args));
+    }
+
+    // Коллекция ID первым аргументом: каждому шарду — его ID, неизвестные — всем шардам
+    private List<Object> onBookShards(Method method, Object[] args) {
+        Map<Integer, List<Long>> byShard = new TreeMap<>();
+        List<Long> unknown = new ArrayList<>();
+        for (Long id : ids(args[0])) {
+            int shard = directory.shardOf(id);
+            if (shard == ShardDirectory.UNKNOWN) {
+                unknown.add(id);
+            } else {
+                byShard.computeIfAbsent(shard, key -> new ArrayList<>()).add(id);
+            }
+        }
+        if (!unknown.isEmpty()) {
+            transactions.allShards().forEach(shard -> byShard.computeIfAbsent(shard, key -> new ArrayList<>())
+                    .addAll(unknown));
+        }
+        if (byShard.isEmpty()) {
+            return List.of(invokeTarget(method, args));
+        }
+        List<Integer> shards = new ArrayList<>(byShard.keySet());
+        return transactions.scatter(shards, shard -> {
+            Object[] shardArgs = args.clone();
+            shardArgs[0] = byShard.get(shard);
+            return invokeTarget(method, shardArgs);
+        });
+    }
+
+    // Первые книги по ORDER BY с лимитом: каждый шард отдаёт свои первые offset + size, затем общий отбор
+    private Object top(Method method, Object[] args, Comparator<Book> order) {
+        Pageable page = (Pageable) args[args.length - 1];
+        Object[] shardArgs = args.clone();
+        shardArgs[args.length - 1] = PageRequest.of(0, (int) page.getOffset() + page.getPageSize(), page.getSort());
+        return ShardedBookRepository.<Book>concat(scatter(method, shardArgs)).stream()
+                .sorted(order)
+                .skip(page.getOffset())
+                .limit(page.getPageSize())
+                .toList();
+    }
+
+    // Пачки переоценки: ID по возрастанию после afterId, не больше размера страницы
+    private Object topIds(Method method, Object[] args) {
+        Pageable page = (Pageable) args[args.length - 1];
+        List<Object> parts = method.getName().equals("findRepricingIdsByIdIn")
+                ? onBookShards(method, args)
+                : scatter(method, args);
+        return ShardedBookRepository.<Long>concat(parts).stream()
+                .sorted()
+                .limit(page.getPageSize())
+                .toList();
+    }
+
+    /**
+     * Курсоры всех шардов открыты одновременно в их сессиях внешней транзакции, общий порядок по ID
+     * восстанавливается k-путевым слиянием. Книга отсоединяется от сессии шарда, когда из него читается
+     * следующая, поэтому в памяти держится не больше одной книги на шард, а не весь каталог.
+     */
+    private Stream<Book> streamAll() {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            // Без внешней транзакции сессия шарда закрылась бы вместе с курсором сразу после открытия
+            throw new InvalidDataAccessApiUsageException("BookRepository.streamAll requires a surrounding transaction");
+        }
+        List<Stream<Book>> parts = new ArrayList<>(transactions.getShardCount());
+        try {
+            for (int shard : transactions.allShards()) {
+                parts.add(transactions.call(shard, () ->
+                        releasingPrevious(target.streamAll(), entityManager.unwrap(Session.class))));
+            }
+        } catch (RuntimeException | Error e) {
+            parts.forEach(Stream::close);
+            throw e;
+        }
+        return mergeSorted(parts, Comparator.comparing(Book::getId));
+    }
+
+    // Книга, которую потребитель уже обработал, больше не нужна сессии шарда
+    private static Stream<Book> releasingPrevious(Stream<Book> books, Session session) {
+        Iterator<Book> rows = books.iterator();
+        Iterator<Book> releasing = new Iterator<>() {
+            private Book previous;
+
+            @Override
+            public boolean hasNext() {
+                return rows.hasNext();
+            }
+
+            @Override
+            public Book next() {
+                if (previous != null && session.contains(previous)) {
+                    session.evict(previous);
+                }
+                previous = rows.next();
+                return previous;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(releasing, Spliterator.ORDERED | Spliterator.NONNULL),
+                false).onClose(books::close);
+    }
+
+    /**
+     * Слияние упорядоченных потоков. Следующий элемент источника читается только тогда, когда потребитель
+     * просит следующий элемент результата, поэтому из каждого источника прочитано не больше одного
+     * ещё не отданного элемента. Закрытие результата закрывает все источники.
+     */
+    static <T> Stream<T> mergeSorted(List<Stream<T>> parts, Comparator<? super T> order) {
+        List<Iterator<T>> sources = parts.stream().map(Stream::iterator).toList();
+        Spliterator<T> merged = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            private final PriorityQueue<Head<T>> heads = new PriorityQueue<>(Math.max(1, parts.size()),
+                    (left, right) -> order.compare(left.value, right.value));
+            private boolean started;
+            private Head<T> last;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                if (!started) {
+                    started = true;
+                    sources.forEach(source -> advance(new Head<>(source)));
+                } else if (last != null) {
+                    advance(last);
+                }
+                last = heads.poll();
+                if (last == null) {
+                    return false;
+                }
+                action.accept(last.value);
+                return true;
+            }
+
+            private void advance(Head<T> head) {
+                if (head.source.hasNext()) {
+                    head.value = head.source.next();
+                    heads.add(head);
+                }
+            }
+        };
+        return StreamSupport.stream(merged, false).onClose(() -> closeAll(parts));
+    }
+
+    private static void closeAll(List<? extends Stream<?>> parts) {
+        RuntimeException failure = null;
+        for (Stream<?> part : parts) {
+            try {
+                part.close();
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private Object save(Method method, Object[] args) {
+        Book book = (Book) args[0];
+        int shard = ring.shardOf(publisherId(book));
+        if (book.getId() != null) {
+            int current = directory.shardOf(book.getId());
+            if (current != ShardDirectory.UNKNOWN && current != shard) {
+                return move(book, current, shard);
+            }
+        }
+        Book saved = transactions.call(shard, () -> {
+            attach(book);
+            return (Book) invokeTarget(method, args);
+        });
+        directory.put(saved.getId(), shard);
+        return saved;
+    }
+
+    // saveAll по шардам издателей; результат в порядке входного списка
+    private Object saveAll(Method method, Object[] args) {
+        List<Book> books = new ArrayList<>();
+        ((Iterable<?>) args[0]).forEach(book -> books.add((Book) book));
+        Book[] saved = new Book[books.size()];
+        Map<Integer, List<Integer>> positions = new TreeMap<>();
+        Map<Integer, Integer> moving = new LinkedHashMap<>();
+        for (int i = 0; i < books.size(); i++) {
+            Book book = books.get(i);
+            int shard = ring.shardOf(publisherId(book));
+            int current = book.getId() != null ? directory.shardOf(book.getId()) : ShardDirectory.UNKNOWN;
+            if (current != ShardDirectory.UNKNOWN && current != shard) {
+                moving.put(i, current);
+            } else {
+                positions.computeIfAbsent(shard, key -> new ArrayList<>()).add(i);
+            }
+        }
+        // Удаление из прежнего шарда сбрасывает его сессию: переносимые книги с новым издателем
+        // отсоединяются заранее, иначе каскад PERSIST наткнулся бы на издателя из основной базы
+        moving.forEach((i, from) -> release(books.get(i), from));
+        moving.forEach((i, from) -> saved[i] = move(books.get(i), from, ring.shardOf(publisherId(books.get(i)))));
+        List<Integer> shards = new ArrayList<>(positions.keySet());
+        List<List<Book>> parts = transactions.scatter(shards, shard -> {
+            List<Book> group = positions.get(shard).stream().map(books::get).toList();
+            group.forEach(this::attach);
+            @SuppressWarnings("unchecked")
+            List<Book> result = (List<Book>) invokeTarget(method, new Object[]{group});
+            return result;
+        });
+        for (int i = 0; i < shards.size(); i++) {
+            List<Integer> groupPositions = positions.get(shards.get(i));
+            List<Book> result = parts.get(i);
+            for (int j = 0; j < groupPositions.size(); j++) {
+                saved[groupPositions.get(j)] = result.get(j);
+                directory.put(result.get(j).getId(), shards.get(i));
+            }
+        }
+        return new ArrayList<>(Arrays.asList(saved));
+    }
+
+    private Object delete(Method method, Object[] args) {
+        Book book = (Book) args[0];
+        if (book.getId() == null) {
+            return null;
+        }
+        onBookShard(method, args, book.getId(), parts -> null);
+        directory.remove(book.getId());
+        return null;
+    }
+
+    /**
+     * Перенос книги, сменившей издателя: строка с новым состоянием и связи с авторами вставляются
+     * в шард нового издателя, затем книга удаляется из прежнего. Версия растёт на единицу, как при
+     * обычном UPDATE. Вставка идёт первой: сбой между шагами оставляет копию, а не теряет книгу.
+     */
+    private Book move(Book book, int from, int to) {
+        Long id = book.getId();
+        long version = book.getVersion() != null ? book.getVersion() + 1 : 0;
+        Set<Long> authorIds = book.getAuthors() != null
+                ? book.getAuthors().stream().map(Author::getId).collect(Collectors.toCollection(LinkedHashSet::new))
+                : Set.of();
+        Book moved = transactions.call(to, () -> {
+            entityManager.unwrap(Session.class).doWork(connection -> {
+                try (PreparedStatement insert = connection.prepareStatement("INSERT INTO books "
+                        + "(id, name, genre, price, version, publisher_id) VALUES (?, ?, ?, ?, ?, ?)")) {
+                    insert.setLong(1, id);
+                    insert.setString(2, book.getName());
+                    insert.setString(3, book.getGenre());
+                    insert.setObject(4, book.getPrice(), Types.DOUBLE);
+                    insert.setLong(5, version);
+                    insert.setObject(6, publisherId(book), Types.BIGINT);
+                    insert.executeUpdate();
+                }
+                try (PreparedStatement link = connection.prepareStatement(
+                        "INSERT INTO book_author (book_id, author_id) VALUES (?, ?)")) {
+                    for (Long authorId : authorIds) {
+                        link.setLong(1, id);
+                        link.setLong(2, authorId);
+                        link.addBatch();
+                    }
+                    link.executeBatch();
+                }
+            });
+            // Связи вставлены в обход Hibernate: закэшированный список авторов книги мог устареть
+            entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getCache()
+                    .evictCollectionData(AUTHORS_ROLE, id);
+            return target.findById(id).orElseThrow();
+        });
+        release(book, from);
+        transactions.call(from, () -> target.deleteAllByIdIn(List.of(id)));
+        directory.put(id, to);
+        log.debug("Книга {} перенесена из шарда {} в шард {}", id, from, to);
+        return moved;
+    }
+
+    // Книга покидает сессию шарда; список авторов дочитывается до отсоединения
+    private void release(Book book, int shard) {
+        transactions.call(shard, () -> {
+            if (entityManager.contains(book)) {
+                Hibernate.initialize(book.getAuthors());
+                entityManager.detach(book);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Издатель и авторы книги загружены в основной базе; в шарде вместо них ставятся ссылки его
+     * EntityManager, иначе каскад PERSIST/MERGE принял бы их за отсоединённые сущности.
+     */
+    private void attach(Book book) {
+        Long publisherId = publisherId(book);
+        if (publisherId != null) {
+            book.setPublisher(entityManager.getReference(Publisher.class, publisherId));
+        }
+        Set<Author> authors = book.getAuthors();
+        if (authors == null) {
+            return;
+        }
+        List<Author> references = authors.stream()
+                .map(author -> author.getId() != null ? entityManager.getReference(Author.class, author.getId()) : author)
+                .toList();
+        if (authors instanceof PersistentCollection<?>) {
+            // Коллекция уже принадлежит сессии шарда: без замены Hibernate не пересоздаёт все связи
+            authors.clear();
+            authors.addAll(references);
+        } else {
+            book.setAuthors(new LinkedHashSet<>(references));
+        }
+    }
+
+    private static Long publisherId(Book book) {
+        return book.getPublisher() != null ? book.getPublisher().getId() : null;
+    }
+
+    private Object invokeTarget(Method method, Object[] args) {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getTargetException();
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new UndeclaredThrowableException(cause);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot call BookRepository." + method.getName(), e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Long> ids(Object ids) {
+        List<Long> result = new ArrayList<>();
+        ((Iterable<Long>) ids).forEach(result::add);
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> concat(List<Object> parts) {
+        List<T> merged = new ArrayList<>();
+        parts.forEach(part -> merged.addAll((Collection<T>) part));
+        return merged;
+    }
+
+    private static int sumInts(List<Object> parts) {
+        return parts.stream().mapToInt(Integer.class::cast).sum();
+    }
+
+    // Одна пара (жанр, цена) может встретиться в нескольких шардах
+    private static List<GenrePriceCount> mergeCounts(List<Object> parts) {
+        Map<List<Object>, Long> counts = new LinkedHashMap<>();
+        ShardedBookRepository.<GenrePriceCount>concat(parts).forEach(row ->
+                counts.merge(Arrays.asList(row.getGenre(), row.getPrice()), row.getCount(), Long::sum));
+        List<GenrePriceCount> merged = new ArrayList<>(counts.size());
+        counts.forEach((key, count) -> merged.add(new GenrePriceCount((String) key.get(0), (Double) key.get(1), count)));
+        return merged;
+    }
+
+    private static final class Head<T> {
+        private final Iterator<T> source;
+        private T value;
+
+        private Head(Iterator<T> source) {
+            this.source = source;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Route {
+        Object invoke(Method method, Object[] args);
+    }
+}
@@ -94,33 +94,67 @@ public class AuthorService {
 package com.example.bookshop2.service;
 
 import com.example.bookshop2.dto.AuthorDto;
+import com.example.bookshop2.dto.BookDto;
+import com.example.bookshop2.dto.SuggestionDto;
+import com.example.bookshop2.event.CatalogChangeEvent;
+import com.example.bookshop2.event.CatalogChangeEvent.EntityType;
 import com.example.bookshop2.exception.AuthorNotFoundException;
 import com.example.bookshop2.exception.ValidationException;
+import com.example.bookshop2.exception.VersionConflictException;
+import com.example.bookshop2.index.ExistenceIndex;
+import com.example.bookshop2.index.IndexedName;
+import com.example.bookshop2.index.NameIndex;
+import com.example.bookshop2.index.PrefixTrie;
+import com.example.bookshop2.index.SuggestIndex;
 import com.example.bookshop2.mapper.AuthorMapper;
 import com.example.bookshop2.model.Author;
 import com.example.bookshop2.repository.AuthorRepository;
-import jakarta.transaction.Transactional;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 @Service
 public class AuthorService {
+    private static final String SEARCH_PREFIX = "author_search_";
     private final AuthorRepository authorRepository;
     private final CacheManager cacheManager;
+    private final NameIndex nameIndex;
+    private final SuggestIndex suggestIndex;
+    private final ExistenceIndex existenceIndex;
+    private final ApplicationEventPublisher eventPublisher;
+    private final BatchLoader<AuthorDto> authorLoader;
 
-    public AuthorService(AuthorRepository authorRepository, CacheManager cacheManager) {
+    public AuthorService(AuthorRepository authorRepository,
+                         CacheManager cacheManager,
+                         NameIndex nameIndex,
+                         SuggestIndex suggestIndex,
+                         ExistenceIndex existenceIndex,
+                         ApplicationEventPublisher eventPublisher,
+                         MultiGetBatcher multiGetBatcher) {
         this.authorRepository = authorRepository;
         this.cacheManager = cacheManager;
+        this.nameIndex = nameIndex;
+        this.suggestIndex = suggestIndex;
+        this.existenceIndex = existenceIndex;
+        this.eventPublisher = eventPublisher;
+        this.authorLoader = multiGetBatcher.loader("authors", this::loadAuthors);
     }
 
-    @Transactional
+    @Transactional(readOnly = true)
     public List<AuthorDto> findAll() {
         return authorRepository.findAll().stream()
                 .map(AuthorMapper::toDto)
                 .toList();
     }
 
-    @Transactional
+    // Без транзакции: промах ждёт общий пакет, не занимая соединение пула (см. BatchLoader)
     public AuthorDto findById(Long id) {
         String cacheKey = "author_" + id;
         AuthorDto cachedAuthor = cacheManager.getFromCache(cacheKey, AuthorDto.class);
@@ -128,19 +162,38 @@ public class AuthorService {
             return cachedAuthor;
         }
 
-        Author author = authorRepository.findById(id)
-                .orElseThrow(() -> new AuthorNotFoundException(id));
-        AuthorDto authorDto = AuthorMapper.toDto(author);
+        rejectUnknown(id);
+        AuthorDto authorDto = authorLoader.load(id);
+        if (authorDto == null) {
+            throw new AuthorNotFoundException(id);
+        }
         cacheManager.saveToCache(cacheKey, authorDto);
         return authorDto;
     }
 
-    @Transactional
+    @Transactional(readOnly = true)
+    public List<AuthorDto> findAllByIds(Collection<Long> ids) {
+        Set<Long> requested = BulkIds.distinct(ids);
+        requested.removeAll(existenceIndex.missing(EntityType.AUTHOR, requested));
+        return MultiGet.load(requested, "author_", AuthorDto.class, cacheManager, this::loadAuthors);
+    }
+
+    private Map<Long, AuthorDto> loadAuthors(Set<Long> ids) {
+        return authorRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Author::getId, AuthorMapper::toDto));
+    }
+
+    @Transactional(readOnly = true)
     public List<AuthorDto> searchByName(String name) {
         if (name == null || name.trim().isEmpty()) {
             throw new ValidationException("Search name cannot be null or empty");
         }
-        String cacheKey = "author_search_" + name.toLowerCase();
+        if (nameIndex.isReady()) {
+            return nameIndex.search(EntityType.AUTHOR, name).stream()
+                    .map(match -> AuthorMapper.toDto(match.getId(), match.getName()))
+                    .toList();
+        }
+        String cacheKey = SEARCH_PREFIX + name.toLowerCase();
         @SuppressWarnings("unchecked")
         List<AuthorDto> cachedAuthors = cacheManager.getFromCache(cacheKey, List.class);
         if (cachedAuthors != null) {
@@ -154,32 +207,158 @@ public class AuthorService {
         return authors;
     }
 
+    @Transactional(readOnly = true)
+    public List<SuggestionDto> suggest(String prefix, int limit) {
+        if (prefix == null || prefix.trim().isEmpty()) {
+            throw new ValidationException("Prefix cannot be null or empty");
+        }
+        if (limit < 1 || limit > PrefixTrie.TOP_K) {
+            throw new ValidationException("Limit must be between 1 and " + PrefixTrie.TOP_K);
+        }
+        if (suggestIndex.isReady()) {
+            return suggestIndex.suggest(EntityType.AUTHOR, prefix, limit).stream()
+                    .map(match -> new SuggestionDto(match.getId(), match.getName()))
+                    .toList();
+        }
+        return authorRepository.findTop10ByNameStartingWithIgnoreCaseOrderByNameAscIdAsc(prefix).stream()
+                .limit(limit)
+                .map(author -> new SuggestionDto(author.getId(), author.getName()))
+                .toList();
+    }
+
     @Transactional
     public AuthorDto create(AuthorDto dto) {
         // Валидация через @NotBlank в DTO, здесь не нужна
         Author author = AuthorMapper.fromDto(dto);
         Author savedAuthor = authorRepository.save(author);
         cacheManager.clearAuthorCache(savedAuthor.getId());
-        return AuthorMapper.toDto(savedAuthor);
+        AuthorDto savedDto = AuthorMapper.toDto(savedAuthor);
+        eventPublisher.publishEvent(CatalogChangeEvent.created(EntityType.AUTHOR, savedDto.getId(), savedDto));
+        return savedDto;
+    }
+
+    // Имя -> id для фида: известные имена одним IN, новые одной пачкой INSERT. Из одноимённых авторов
+    // берётся наименьший id. Upsert авторов идут по одному: иначе два запроса вставили бы новое имя дважды
+    @Transactional
+    public Map<String, Long> upsertByNames(Collection<String> names) {
+        Set<String> requested = BulkNames.distinct(names);
+        authorRepository.lockNameUpserts();
+        Map<String, Long> ids = new HashMap<>();
+        authorRepository.findByNameIn(requested)
+                .forEach(author -> ids.merge(author.getName(), author.getId(), Math::min));
+
+        List<Author> missing = requested.stream()
+                .filter(name -> !ids.containsKey(name))
+                .map(name -> {
+                    Author author = new Author();
+                    author.setName(name);
+                    return author;
+                })
+                .toList();
+        List<Author> saved = missing.isEmpty() ? missing : authorRepository.saveAllAndFlush(missing);
+        for (Author author : saved) {
+            ids.put(author.getName(), author.getId());
+            cacheManager.clearAuthorCache(author.getId());
+            AuthorDto created = AuthorMapper.toDto(author);
+            eventPublisher.publishEvent(CatalogChangeEvent.created(EntityType.AUTHOR, created.getId(), created));
+        }
+
+        Map<String, Long> result = new LinkedHashMap<>();
+        requested.forEach(name -> result.put(name, ids.get(name)));
+        return result;
     }
 
     @Transactional
     public void delete(Long id) {
-        if (!authorRepository.existsById(id)) {
+        if (!existenceIndex.exists(EntityType.AUTHOR, id)) {
             throw new AuthorNotFoundException(id);
         }
         authorRepository.deleteById(id);
         cacheManager.clearAuthorCache(id);
+        eventPublisher.publishEvent(CatalogChangeEvent.deleted(EntityType.AUTHOR, id));
+    }
+
+    /**
+     * Удаление пачки авторов вместе с их связями с книгами; сами книги остаются.
+     * Если хотя бы одного автора нет, не удаляется ни один.
+     */
+    @Transactional
+    public void deleteBulk(Collection<Long> ids) {
+        Set<Long> requested = BulkIds.distinct(ids);
+        Set<Long> unknown = existenceIndex.missing(EntityType.AUTHOR, requested);
+        if (!unknown.isEmpty()) {
+            throw new AuthorNotFoundException(unknown);
+        }
+        Set<Long> missing = BulkIds.missing(requested, authorRepository.findNamesByIdIn(requested).stream()
+                .map(IndexedName::getId)
+                .toList());
+        if (!missing.isEmpty()) {
+            throw new AuthorNotFoundException(missing);
+        }
+
+        authorRepository.deleteAllByIdIn(requested);
+
+        cacheManager.clearMatching(value -> value instanceof AuthorDto author && requested.contains(author.getId())
+                || value instanceof BookDto book && book.getAuthorIds() != null
+                        && book.getAuthorIds().stream().anyMatch(requested::contains));
+        requested.forEach(id -> eventPublisher.publishEvent(CatalogChangeEvent.deleted(EntityType.AUTHOR, id)));
     }
 
     @Transactional
     public AuthorDto update(Long id, AuthorDto dto) {
+        rejectUnknown(id);
         Author author = authorRepository.findById(id)
                 .orElseThrow(() -> new AuthorNotFoundException(id));
+        if (dto.getVersion() != null && !dto.getVersion().equals(author.getVersion())) {
+            throw new VersionConflictException("Author", id, dto.getVersion());
+        }
 
         AuthorMapper.updateFromDto(author, dto);
         Author savedAuthor = authorRepository.save(author);
         cacheManager.clearAuthorCache(id);
-        return AuthorMapper.toDto(savedAuthor);
+        AuthorDto savedDto = AuthorMapper.toDto(savedAuthor);
+        eventPublisher.publishEvent(CatalogChangeEvent.updated(EntityType.AUTHOR, id, savedDto));
+        return savedDto;
+    }
+
+    /**
+     * Переименование одним условным UPDATE, без загрузки сущности.
+     *
+     * @return новая версия
+     */
+    @Transactional
+    public long patch(Long id, AuthorDto changes) {
+        if (changes.getVersion() == null) {
+            throw new ValidationException("Version is required for a partial update");
+        }
+        if (changes.getName() == null || changes.getName().trim().isEmpty()) {
+            throw new ValidationException("Name cannot be null or empty");
+        }
+        rejectUnknown(id);
+        if (authorRepository.patchName(id, changes.getVersion(), changes.getName()) == 0) {
+            if (!authorRepository.existsById(id)) {
+                throw new AuthorNotFoundException(id);
+            }
+            throw new VersionConflictException("Author", id, changes.getVersion());
+        }
+
+        // Сбрасываются записи с этим автором (в том числе DTO его книг) и поиски, под которые подходит новое имя
+        String folded = changes.getName().toLowerCase();
+        cacheManager.clearMatching(
+                key -> key.startsWith(SEARCH_PREFIX) && folded.contains(key.substring(SEARCH_PREFIX.length())),
+                value -> value instanceof AuthorDto author && id.equals(author.getId())
+                        || value instanceof BookDto book && book.getAuthorIds() != null
+                                && book.getAuthorIds().contains(id));
+
+        AuthorDto patched = AuthorMapper.toDto(id, changes.getName());
+        patched.setVersion(changes.getVersion() + 1);
+        eventPublisher.publishEvent(CatalogChangeEvent.patched(EntityType.AUTHOR, id, patched));
+        return patched.getVersion();
+    }
+
+    private void rejectUnknown(Long id) {
+        if (existenceIndex.isMissing(EntityType.AUTHOR, id)) {
+            throw new AuthorNotFoundException(id);
+        }
     }
-}
\ No newline at end of file
+}
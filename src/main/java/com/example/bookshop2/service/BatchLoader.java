@@ -0,0 +1,142 @@
+package com.example.bookshop2.service;
+
+import com.example.bookshop2.datasource.ReadYourWrites;
+import com.example.bookshop2.monitoring.RequestSqlStats;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Склеивает одиночные загрузки по ID из разных потоков: ID, запрошенные в течение окна,
+ * уходят в loader одним вызовом, а каждый вызывающий получает своё значение.
+ * Один и тот же ID в окне загружается один раз.
+ * Пакет выполняется в потоке планировщика в своей read-only транзакции, поэтому ждать его можно только
+ * вне транзакции: вызывающий в транзакции уже держит соединение пула, и при исчерпании пула пакет, которому
+ * нужно ещё одно, не дождался бы его. Такой вызывающий, как и поток, привязанный к primary, грузит сам.
+ * SQL пакета засчитывается в статистику каждого запроса, который его ждал.
+ * После остановки планировщика пакет грузит вызывающий поток.
+ */
+@Slf4j
+public final class BatchLoader<V> {
+    private final String name;
+    private final Function<Set<Long>, Map<Long, V>> loader;
+    private final ScheduledExecutorService scheduler;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private Batch<V> pending = new Batch<>();
+
+    BatchLoader(String name, Function<Set<Long>, Map<Long, V>> loader,
+                ScheduledExecutorService scheduler, long windowNanos, int maxBatchSize) {
+        this.name = name;
+        this.loader = loader;
+        this.scheduler = scheduler;
+        this.windowNanos = windowNanos;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    // null, если строки с таким ID нет
+    public V load(long id) {
+        if (scheduler == null || mustLoadInline()) {
+            return loader.apply(Set.of(id)).get(id);
+        }
+        CompletableFuture<V> future;
+        Batch<V> full = null;
+        RequestSqlStats request = RequestSqlStats.current();
+        synchronized (this) {
+            if (request != null) {
+                pending.requests.add(request);
+            }
+            future = pending.futures.get(id);
+            if (future == null) {
+                future = new CompletableFuture<>();
+                pending.futures.put(id, future);
+                if (pending.futures.size() >= maxBatchSize) {
+                    full = takePending();
+                } else if (pending.futures.size() == 1) {
+                    // Таймер от прошлого пакета, ушедшего по размеру, может отправить этот раньше окна — не страшно
+                    try {
+                        scheduler.schedule(this::flush, windowNanos, TimeUnit.NANOSECONDS);
+                    } catch (RejectedExecutionException e) {
+                        full = takePending();
+                    }
+                }
+            }
+        }
+        if (full != null) {
+            Batch<V> batch = full;
+            try {
+                scheduler.execute(() -> dispatch(batch));
+            } catch (RejectedExecutionException e) {
+                dispatch(batch);
+            }
+        }
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    // Ожидающим, чей пакет уже не отправит остановленный планировщик, — ошибка вместо вечного ожидания
+    void failPending(RuntimeException error) {
+        Batch<V> batch;
+        synchronized (this) {
+            batch = takePending();
+        }
+        batch.futures.values().forEach(future -> future.completeExceptionally(error));
+    }
+
+    private static boolean mustLoadInline() {
+        return ReadYourWrites.isPinned() || TransactionSynchronizationManager.isActualTransactionActive();
+    }
+
+    private void flush() {
+        Batch<V> batch;
+        synchronized (this) {
+            batch = takePending();
+        }
+        if (!batch.futures.isEmpty()) {
+            dispatch(batch);
+        }
+    }
+
+    private Batch<V> takePending() {
+        Batch<V> batch = pending;
+        pending = new Batch<>();
+        return batch;
+    }
+
+    private void dispatch(Batch<V> batch) {
+        try {
+            Map<Long, V> loaded = RequestSqlStats.chargeShared(batch.requests, "multi-get " + name,
+                    () -> loader.apply(batch.futures.keySet()));
+            log.debug("Пакет {}: {} ID одним запросом, найдено {}", name, batch.futures.size(), loaded.size());
+            batch.futures.forEach((id, future) -> future.complete(loaded.get(id)));
+        } catch (Throwable e) {
+            // Даже Error должен разбудить всех склеенных вызывающих, иначе они ждут вечно
+            batch.futures.values().forEach(future -> future.completeExceptionally(e));
+        }
+    }
+
+    // Ожидающие одного пакета и статистика их запросов (запрос ждёт не больше одного пакета за раз)
+    private static final class Batch<V> {
+        private final Map<Long, CompletableFuture<V>> futures = new HashMap<>();
+        private final Set<RequestSqlStats> requests = Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+}
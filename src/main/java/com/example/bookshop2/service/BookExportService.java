@@ -0,0 +1,66 @@
+package com.example.bookshop2.service;
+
+import com.example.bookshop2.mapper.BookMapper;
+import com.example.bookshop2.model.Book;
+import com.example.bookshop2.repository.BookRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.persistence.EntityManager;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+@Service
+public class BookExportService {
+    private static final Logger LOG = LoggerFactory.getLogger(BookExportService.class);
+    // Совпадает с fetch size курсора в BookRepository.streamAll
+    static final int CLEAR_INTERVAL = 500;
+
+    private final BookRepository bookRepository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+
+    public BookExportService(BookRepository bookRepository,
+                             EntityManager entityManager,
+                             ObjectMapper objectMapper) {
+        this.bookRepository = bookRepository;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Пишет все книги в формате NDJSON (одна книга на строку), читая их курсором.
+     * Контекст персистентности очищается каждые {@link #CLEAR_INTERVAL} строк,
+     * поэтому потребление памяти не зависит от размера каталога.
+     */
+    @Transactional(readOnly = true)
+    public long exportAll(OutputStream out) throws IOException {
+        long count = 0;
+        ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        try (Stream<Book> books = bookRepository.streamAll()) {
+            Iterator<Book> iterator = books.iterator();
+            while (iterator.hasNext()) {
+                writer.writeValue(generator, BookMapper.toDto(iterator.next()));
+                generator.writeRaw('\n');
+                count++;
+                if (count % CLEAR_INTERVAL == 0) {
+                    generator.flush();
+                    entityManager.clear();
+                }
+            }
+        } finally {
+            generator.close();
+        }
+        LOG.info("Экспортировано {} книг", count);
+        return count;
+    }
+}
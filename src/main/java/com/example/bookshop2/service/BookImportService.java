@@ -0,0 +1,579 @@
+package com.example.bookshop2.service;
+
+import com.example.bookshop2.dto.BookDto;
+import com.example.bookshop2.dto.BookImportStatusDto;
+import com.example.bookshop2.exception.ImportJobNotFoundException;
+import com.example.bookshop2.exception.ImportRejectedException;
+import com.example.bookshop2.exception.LogReadException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+@Slf4j
+@Service
+public class BookImportService {
+    private static final List<ImportRow> END_OF_INPUT = List.of();
+    private static final String CSV_AUTHOR_SEPARATOR = ";";
+    // Как часто читатель и писатель проверяют, не остановилась ли другая сторона
+    private static final long HANDOFF_CHECK_MILLIS = 1000;
+
+    private final Map<String, ImportJob> jobs = new ConcurrentHashMap<>();
+    private final ExecutorService executor;
+    private final Semaphore slots;
+    private final BookService bookService;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final int chunkSize;
+    private final int queueCapacity;
+    private final Duration retention;
+    private final Duration shutdownTimeout;
+
+    @Autowired
+    public BookImportService(BookService bookService,
+                             ObjectMapper objectMapper,
+                             Validator validator,
+                             @Value("${bookshop.import.chunk-size:500}") int chunkSize,
+                             @Value("${bookshop.import.queue-capacity:4}") int queueCapacity,
+                             @Value("${bookshop.import.max-concurrent:2}") int maxConcurrent,
+                             @Value("${bookshop.import.retention:1h}") Duration retention,
+                             @Value("${bookshop.import.shutdown-timeout:30s}") Duration shutdownTimeout) {
+        this(bookService, objectMapper, validator, chunkSize, queueCapacity, maxConcurrent, retention,
+                shutdownTimeout, importThreads(maxConcurrent));
+    }
+
+    BookImportService(BookService bookService, ObjectMapper objectMapper, Validator validator, int chunkSize,
+                      int queueCapacity, int maxConcurrent, Duration retention, Duration shutdownTimeout,
+                      ExecutorService executor) {
+        this.bookService = bookService;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.chunkSize = chunkSize;
+        this.queueCapacity = queueCapacity;
+        this.retention = retention;
+        this.shutdownTimeout = shutdownTimeout;
+        this.slots = new Semaphore(maxConcurrent);
+        this.executor = executor;
+    }
+
+    public String startImportAsync(InputStream body, ImportFormat format) throws IOException {
+        if (!slots.tryAcquire()) {
+            throw new ImportRejectedException("Слишком много импортов выполняется одновременно, повторите позже");
+        }
+        Path upload = null;
+        ImportJob job = null;
+        boolean writing = false;
+        try {
+            // Тело запроса копируется на диск потоково: после ответа клиенту servlet-поток уже не прочитать
+            upload = Files.createTempFile("book-import-", format.extension);
+            Files.copy(body, upload, StandardCopyOption.REPLACE_EXISTING);
+
+            String id = UUID.randomUUID().toString();
+            job = new ImportJob(Files.createTempFile("book-import-errors-", ".csv"));
+
+            // Парсер не может опередить запись больше чем на queueCapacity пачек
+            BlockingQueue<List<ImportRow>> queue = new ArrayBlockingQueue<>(queueCapacity);
+            Path input = upload;
+            ImportJob accepted = job;
+            // Писатель запускается первым: если пул не примет читателя, писатель увидит его остановку,
+            // закончит с пустой очередью и сам освободит слот
+            executor.execute(() -> write(accepted, queue));
+            writing = true;
+            executor.execute(() -> read(accepted, input, format, queue));
+
+            // Клиент видит задачу, только когда пул принял и чтение, и запись
+            jobs.put(id, job);
+            return id;
+        } catch (IOException | RuntimeException e) {
+            if (upload != null) {
+                deleteQuietly(upload);
+            }
+            if (job != null) {
+                job.discard();
+            }
+            if (writing) {
+                // Доля читателя; слот освободит писатель
+                release(job);
+            } else {
+                slots.release();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Завершённые задачи хранятся retention после окончания, чтобы клиент успел забрать статус
+     * и отчёт об ошибках; затем задача забывается, а файл отчёта удаляется.
+     */
+    @Scheduled(fixedDelayString = "${bookshop.import.cleanup-interval:1m}")
+    public void evictFinished() {
+        long now = System.nanoTime();
+        jobs.entrySet().removeIf(entry -> {
+            ImportJob job = entry.getValue();
+            if (job.finishedAt == 0 || now - job.finishedAt < retention.toNanos()) {
+                return false;
+            }
+            deleteQuietly(job.report);
+            return true;
+        });
+    }
+
+    /**
+     * Новые импорты больше не принимаются, запущенные дописываются не дольше shutdownTimeout;
+     * затем потоки прерываются, и незавершённые задачи заканчиваются со статусом FAILED.
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(shutdownTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                log.warn("Импорты не завершились за {}, прерываем", shutdownTimeout);
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+        }
+    }
+
+    public BookImportStatusDto getStatus(String id) {
+        ImportJob job = jobs.get(id);
+        BookImportStatusDto dto = new BookImportStatusDto();
+        dto.setId(id);
+        if (job == null) {
+            dto.setStatus(ImportStatus.NOT_FOUND.name());
+            return dto;
+        }
+        dto.setStatus(job.status.name());
+        dto.setRowsDone(job.rowsDone.get());
+        dto.setRowsFailed(job.rowsFailed.get());
+        dto.setRowsPerSecond(job.rowsPerSecond());
+        return dto;
+    }
+
+    public byte[] getErrorReport(String id) {
+        ImportJob job = jobs.get(id);
+        if (job == null || job.status == ImportStatus.IN_PROGRESS) {
+            throw new ImportJobNotFoundException("Импорт ещё не завершён или не существует");
+        }
+        try {
+            return Files.readAllBytes(job.report);
+        } catch (IOException e) {
+            throw new LogReadException("Ошибка чтения отчёта импорта", e);
+        }
+    }
+
+    private void read(ImportJob job, Path upload, ImportFormat format, BlockingQueue<List<ImportRow>> queue) {
+        ChunkSink sink = new ChunkSink(job, queue);
+        try {
+            if (format == ImportFormat.CSV) {
+                readCsv(job, upload, sink);
+            } else {
+                readJson(job, upload, sink);
+            }
+            sink.flush();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            job.abort("Импорт был прерван");
+            log.error("Импорт книг был прерван", ie);
+        } catch (WriterStoppedException e) {
+            log.warn("Чтение файла импорта остановлено: запись завершилась раньше");
+        } catch (IOException | RuntimeException e) {
+            job.abort("Ошибка чтения входных данных: " + e.getMessage());
+            log.error("Ошибка чтения файла импорта", e);
+        } finally {
+            try {
+                if (!job.writerStopped) {
+                    sink.put(END_OF_INPUT);
+                }
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            } catch (WriterStoppedException e) {
+                // Конец ввода писателю уже не нужен
+            }
+            job.readerStopped = true;
+            deleteQuietly(upload);
+            release(job);
+        }
+    }
+
+    private void readJson(ImportJob job, Path upload, ChunkSink sink) throws IOException, InterruptedException {
+        try (JsonParser parser = objectMapper.createParser(upload.toFile())) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Expected a JSON array of books");
+            }
+            long row = 0;
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token == null) {
+                    throw new IOException("Unexpected end of JSON input after row " + row);
+                }
+                row++;
+                if (token != JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                    job.fail(row, "Expected a JSON object");
+                    continue;
+                }
+                JsonNode node = parser.readValueAsTree();
+                try {
+                    accept(job, sink, row, objectMapper.treeToValue(node, BookDto.class));
+                } catch (JsonProcessingException e) {
+                    job.fail(row, e.getOriginalMessage());
+                }
+            }
+        }
+    }
+
+    private void readCsv(ImportJob job, Path upload, ChunkSink sink) throws IOException, InterruptedException {
+        try (BufferedReader reader = Files.newBufferedReader(upload, StandardCharsets.UTF_8)) {
+            String header = reader.readLine();
+            if (header == null) {
+                return;
+            }
+            Map<String, Integer> columns = new HashMap<>();
+            List<String> names = parseCsvLine(header.replace("\uFEFF", ""));
+            for (int i = 0; i < names.size(); i++) {
+                columns.put(names.get(i).trim().toLowerCase(Locale.ROOT), i);
+            }
+            if (!columns.containsKey("name")) {
+                throw new IOException("CSV header must contain a 'name' column");
+            }
+
+            long row = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                row++;
+                BookDto dto;
+                try {
+                    dto = fromCsv(parseCsvLine(line), columns);
+                } catch (IllegalArgumentException e) {
+                    job.fail(row, e.getMessage());
+                    continue;
+                }
+                accept(job, sink, row, dto);
+            }
+        }
+    }
+
+    private BookDto fromCsv(List<String> values, Map<String, Integer> columns) {
+        BookDto dto = new BookDto();
+        dto.setName(csvValue(values, columns, "name"));
+        dto.setGenre(csvValue(values, columns, "genre"));
+        String price = csvValue(values, columns, "price");
+        dto.setPrice(price != null ? Double.valueOf(price) : null);
+        String publisherId = csvValue(values, columns, "publisherid");
+        dto.setPublisherId(publisherId != null ? Long.valueOf(publisherId) : null);
+        String authorIds = csvValue(values, columns, "authorids");
+        if (authorIds != null) {
+            dto.setAuthorIds(Arrays.stream(authorIds.split(CSV_AUTHOR_SEPARATOR))
+                    .map(String::trim)
+                    .filter(value -> !value.isEmpty())
+                    .map(Long::valueOf)
+                    .collect(Collectors.toCollection(LinkedHashSet::new)));
+        }
+        return dto;
+    }
+
+    private static String csvValue(List<String> values, Map<String, Integer> columns, String column) {
+        Integer index = columns.get(column);
+        if (index == null || index >= values.size()) {
+            return null;
+        }
+        String value = values.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    // RFC 4180 для одной строки: поля в кавычках, "" внутри кавычек — экранированная кавычка
+    static List<String> parseCsvLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        values.add(current.toString());
+        return values;
+    }
+
+    private void accept(ImportJob job, ChunkSink sink, long row, BookDto dto) throws InterruptedException {
+        Set<ConstraintViolation<BookDto>> violations = validator.validate(dto);
+        if (!violations.isEmpty()) {
+            job.fail(row, violations.stream()
+                    .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                    .collect(Collectors.joining("; ")));
+            return;
+        }
+        sink.add(new ImportRow(row, dto));
+    }
+
+    private void write(ImportJob job, BlockingQueue<List<ImportRow>> queue) {
+        try {
+            List<ImportRow> chunk;
+            while ((chunk = take(job, queue)) != END_OF_INPUT) {
+                writeChunk(job, chunk);
+            }
+            log.info("Импорт книг завершён: добавлено {}, ошибок {}", job.rowsDone.get(), job.rowsFailed.get());
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            job.abort("Импорт был прерван");
+            log.error("Запись импортируемых книг была прервана", ie);
+        } catch (RuntimeException | Error e) {
+            job.abort("Ошибка записи: " + e.getMessage());
+            log.error("Ошибка записи импортируемых книг", e);
+        } finally {
+            job.writerStopped = true;
+            job.finish();
+            release(job);
+        }
+    }
+
+    // Читатель, умерший без конца ввода, не оставляет писателя ждать вечно
+    private static List<ImportRow> take(ImportJob job, BlockingQueue<List<ImportRow>> queue)
+            throws InterruptedException {
+        while (true) {
+            boolean readerStopped = job.readerStopped;
+            List<ImportRow> chunk = queue.poll(HANDOFF_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+            if (chunk != null) {
+                return chunk;
+            }
+            if (readerStopped) {
+                return END_OF_INPUT;
+            }
+        }
+    }
+
+    private void release(ImportJob job) {
+        if (job.running.decrementAndGet() == 0) {
+            slots.release();
+        }
+    }
+
+    private void writeChunk(ImportJob job, List<ImportRow> chunk) {
+        try {
+            // Каждая пачка — отдельная транзакция, блокировки не держатся дольше одной пачки
+            bookService.addBooksBulk(chunk.stream().map(row -> row.book).toList());
+            job.rowsDone.addAndGet(chunk.size());
+        } catch (RuntimeException chunkError) {
+            // Пачка откатилась целиком: повторяем построчно тем же путём с теми же проверками,
+            // чтобы найти и отчитать плохие строки
+            for (ImportRow row : chunk) {
+                try {
+                    bookService.addBooksBulk(List.of(row.book));
+                    job.rowsDone.incrementAndGet();
+                } catch (RuntimeException rowError) {
+                    job.fail(row.number, rowError.getMessage());
+                }
+            }
+        }
+    }
+
+    private static ExecutorService importThreads(int maxConcurrent) {
+        if (maxConcurrent < 1) {
+            throw new IllegalArgumentException("Max concurrent imports must be positive");
+        }
+        // Каждый импорт занимает два потока, читателя и писателя, поэтому пул вдвое больше числа импортов
+        return Executors.newFixedThreadPool(2 * maxConcurrent, daemonThreads());
+    }
+
+    private static ThreadFactory daemonThreads() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "book-import-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Не удалось удалить временный файл {}", path, e);
+        }
+    }
+
+    public enum ImportStatus {
+        IN_PROGRESS, READY, FAILED, NOT_FOUND
+    }
+
+    public enum ImportFormat {
+        JSON(".json"), CSV(".csv");
+
+        private final String extension;
+
+        ImportFormat(String extension) {
+            this.extension = extension;
+        }
+    }
+
+    private static final class ImportRow {
+        private final long number;
+        private final BookDto book;
+
+        private ImportRow(long number, BookDto book) {
+            this.number = number;
+            this.book = book;
+        }
+    }
+
+    private final class ChunkSink {
+        private final ImportJob job;
+        private final BlockingQueue<List<ImportRow>> queue;
+        private List<ImportRow> current = new ArrayList<>(chunkSize);
+
+        private ChunkSink(ImportJob job, BlockingQueue<List<ImportRow>> queue) {
+            this.job = job;
+            this.queue = queue;
+        }
+
+        private void add(ImportRow row) throws InterruptedException {
+            current.add(row);
+            if (current.size() >= chunkSize) {
+                flush();
+            }
+        }
+
+        private void flush() throws InterruptedException {
+            if (!current.isEmpty()) {
+                put(current);
+                current = new ArrayList<>(chunkSize);
+            }
+        }
+
+        // Если писатель остановился, очередь больше никто не разберёт
+        private void put(List<ImportRow> chunk) throws InterruptedException {
+            while (!queue.offer(chunk, HANDOFF_CHECK_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (job.writerStopped) {
+                    throw new WriterStoppedException();
+                }
+            }
+        }
+    }
+
+    private static final class WriterStoppedException extends RuntimeException {
+        private WriterStoppedException() {
+            super("Import writer has stopped", null, false, false);
+        }
+    }
+
+    private static final class ImportJob {
+        private final Path report;
+        private final AtomicLong rowsDone = new AtomicLong();
+        private final AtomicLong rowsFailed = new AtomicLong();
+        // Читатель и писатель: слот импорта освобождается, когда завершились оба
+        private final AtomicInteger running = new AtomicInteger(2);
+        private volatile boolean readerStopped;
+        private volatile boolean writerStopped;
+        private final long startedAt = System.nanoTime();
+        private volatile long finishedAt;
+        private volatile ImportStatus status = ImportStatus.IN_PROGRESS;
+
+        private ImportJob(Path report) throws IOException {
+            this.report = report;
+            Files.writeString(report, "row,error\n");
+        }
+
+        private void fail(long row, String message) {
+            rowsFailed.incrementAndGet();
+            appendReport(row + "," + csvEscape(message) + "\n");
+        }
+
+        private void abort(String message) {
+            appendReport("," + csvEscape(message) + "\n");
+            status = ImportStatus.FAILED;
+        }
+
+        // Пул не принял задачу: она не зарегистрирована, и отчёт никто не запросит
+        private void discard() {
+            status = ImportStatus.FAILED;
+            readerStopped = true;
+            deleteQuietly(report);
+        }
+
+        private void finish() {
+            finishedAt = System.nanoTime();
+            if (status == ImportStatus.IN_PROGRESS) {
+                status = ImportStatus.READY;
+            }
+        }
+
+        private double rowsPerSecond() {
+            long end = finishedAt != 0 ? finishedAt : System.nanoTime();
+            double seconds = (end - startedAt) / 1_000_000_000.0;
+            return seconds > 0 ? rowsDone.get() / seconds : 0;
+        }
+
+        private synchronized void appendReport(String line) {
+            try (BufferedWriter writer = Files.newBufferedWriter(report, StandardCharsets.UTF_8,
+                    StandardOpenOption.APPEND)) {
+                writer.write(line);
+            } catch (IOException e) {
+                log.error("Не удалось записать отчёт импорта", e);
+            }
+        }
+
+        private static String csvEscape(String value) {
+            String text = value != null ? value.replaceAll("[\\r\\n]", " ") : "";
+            return "\"" + text.replace("\"", "\"\"") + "\"";
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.bookshop2.service;
+
+import com.example.bookshop2.dto.BookDto;
+import com.example.bookshop2.exception.ValidationException;
+import com.example.bookshop2.model.Author;
+import com.example.bookshop2.model.Publisher;
+import com.example.bookshop2.repository.AuthorRepository;
+import com.example.bookshop2.repository.PublisherRepository;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+// Карта идентичности авторов и издателей для одной операции записи:
+// все ссылки из пачки книг загружаются одним findAllById на каждый тип сущности.
+final class BookReferences {
+    private final Map<Long, Publisher> publishers = new HashMap<>();
+    private final Map<Long, Author> authors = new HashMap<>();
+
+    private BookReferences() {
+    }
+
+    static BookReferences resolve(Collection<BookDto> books,
+                                  AuthorRepository authorRepository,
+                                  PublisherRepository publisherRepository) {
+        Set<Long> publisherIds = books.stream()
+                .map(BookDto::getPublisherId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(TreeSet::new));
+        Set<Long> authorIds = books.stream()
+                .map(BookDto::getAuthorIds)
+                .filter(Objects::nonNull)
+                .flatMap(Set::stream)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(TreeSet::new));
+
+        BookReferences references = new BookReferences();
+        if (!publisherIds.isEmpty()) {
+            publisherRepository.findAllById(publisherIds)
+                    .forEach(publisher -> references.publishers.put(publisher.getId(), publisher));
+        }
+        if (!authorIds.isEmpty()) {
+            authorRepository.findAllById(authorIds)
+                    .forEach(author -> references.authors.put(author.getId(), author));
+        }
+
+        Set<Long> missingPublishers = publisherIds.stream()
+                .filter(id -> !references.publishers.containsKey(id))
+                .collect(Collectors.toCollection(TreeSet::new));
+        Set<Long> missingAuthors = authorIds.stream()
+                .filter(id -> !references.authors.containsKey(id))
+                .collect(Collectors.toCollection(TreeSet::new));
+        if (!missingPublishers.isEmpty() || !missingAuthors.isEmpty()) {
+            throw new ValidationException(missingMessage(missingPublishers, missingAuthors));
+        }
+        return references;
+    }
+
+    private static String missingMessage(Set<Long> missingPublishers, Set<Long> missingAuthors) {
+        StringBuilder message = new StringBuilder("Unknown references:");
+        if (!missingPublishers.isEmpty()) {
+            message.append(" publisher IDs ").append(missingPublishers);
+        }
+        if (!missingAuthors.isEmpty()) {
+            if (!missingPublishers.isEmpty()) {
+                message.append(";");
+            }
+            message.append(" author IDs ").append(missingAuthors);
+        }
+        return message.toString();
+    }
+
+    Publisher publisher(Long id) {
+        return id != null ? publishers.get(id) : null;
+    }
+
+    Set<Author> authors(Set<Long> ids) {
+        if (ids == null) {
+            return null;
+        }
+        return ids.stream()
+                .filter(Objects::nonNull)
+                .map(authors::get)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+}
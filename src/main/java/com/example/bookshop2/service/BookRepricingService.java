@@ -0,0 +1,81 @@
+package com.example.bookshop2.service;
+
+import com.example.bookshop2.dto.BookRepriceDto;
+import com.example.bookshop2.dto.BookRepriceResultDto;
+import com.example.bookshop2.exception.PublisherNotFoundException;
+import com.example.bookshop2.exception.ValidationException;
+import com.example.bookshop2.repository.PublisherRepository;
+import java.util.ArrayList;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Массовая переоценка книг по издателю, жанру или списку ID. Каждая пачка из chunkSize книг —
+ * отдельная транзакция {@link BookService#repriceChunk}, поэтому блокировки строк не держатся
+ * до конца всей переоценки. Уже изменённые пачки при ошибке в следующей не откатываются.
+ * Книги, чья цена округлилась бы до нуля, остаются прежними и попадают в skipped.
+ */
+@Slf4j
+@Service
+public class BookRepricingService {
+    private final BookService bookService;
+    private final PublisherRepository publisherRepository;
+    private final int chunkSize;
+
+    public BookRepricingService(BookService bookService,
+                                PublisherRepository publisherRepository,
+                                @Value("${bookshop.reprice.chunk-size:500}") int chunkSize) {
+        this.bookService = bookService;
+        this.publisherRepository = publisherRepository;
+        this.chunkSize = chunkSize;
+    }
+
+    public BookRepriceResultDto reprice(BookRepriceDto request) {
+        double factor = validate(request);
+
+        BookRepriceResultDto result = new BookRepriceResultDto();
+        long afterId = Long.MIN_VALUE;
+        BookService.RepriceChunk chunk;
+        do {
+            chunk = bookService.repriceChunk(request, factor, afterId, chunkSize);
+            afterId = chunk.getLastId();
+            if (chunk.getSelected() > 0) {
+                result.setChunks(result.getChunks() + 1);
+                result.setUpdated(result.getUpdated() + chunk.getUpdated());
+                result.setSkipped(result.getSkipped() + chunk.getSkipped());
+            }
+        } while (chunk.getSelected() == chunkSize);
+
+        log.info("Переоценка на {}%: изменено {} книг за {} пачек, пропущено {}",
+                request.getPercent(), result.getUpdated(), result.getChunks(), result.getSkipped());
+        return result;
+    }
+
+    private double validate(BookRepriceDto request) {
+        if (request == null || request.getPercent() == null) {
+            throw new ValidationException("Percent is required");
+        }
+        if (request.getPercent() <= -100) {
+            throw new ValidationException("Percent must be greater than -100");
+        }
+        if (request.getPercent() == 0) {
+            throw new ValidationException("Nothing to update");
+        }
+        if (request.getGenre() != null && request.getGenre().isBlank()) {
+            throw new ValidationException("Genre cannot be blank");
+        }
+        if (request.getIds() != null) {
+            if (request.getPublisherId() != null || request.getGenre() != null) {
+                throw new ValidationException("Use either an ID list or publisher and genre filters");
+            }
+            request.setIds(new ArrayList<>(BulkIds.distinct(request.getIds())));
+        } else if (request.getPublisherId() == null && request.getGenre() == null) {
+            // Переоценка всего каталога без фильтра почти наверняка ошибка клиента
+            throw new ValidationException("Publisher ID, genre or an ID list is required");
+        } else if (request.getPublisherId() != null && !publisherRepository.existsById(request.getPublisherId())) {
+            throw new PublisherNotFoundException(request.getPublisherId());
+        }
+        return 1 + request.getPercent() / 100;
+    }
+}
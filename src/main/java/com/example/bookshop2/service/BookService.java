@@ -1,65 +1,190 @@
 package com.example.bookshop2.service;
 
 import com.example.bookshop2.dto.BookDto;
+import com.example.bookshop2.dto.BookRepriceDto;
+import com.example.bookshop2.dto.BookSearchResultDto;
+import com.example.bookshop2.dto.CatalogStatsDto;
+import com.example.bookshop2.dto.SuggestionDto;
+import com.example.bookshop2.event.CatalogChangeEvent;
+import com.example.bookshop2.event.CatalogChangeEvent.EntityType;
 import com.example.bookshop2.exception.AuthorNotFoundException;
 import com.example.bookshop2.exception.BookNotFoundException;
+import com.example.bookshop2.exception.IndexNotReadyException;
 import com.example.bookshop2.exception.PublisherNotFoundException;
 import com.example.bookshop2.exception.ValidationException;
+import com.example.bookshop2.exception.VersionConflictException;
+import com.example.bookshop2.index.CatalogStatsIndex;
+import com.example.bookshop2.index.ExistenceIndex;
+import com.example.bookshop2.index.IndexedName;
+import com.example.bookshop2.index.NameIndex;
+import com.example.bookshop2.index.PrefixTrie;
+import com.example.bookshop2.index.PriceIndex;
+import com.example.bookshop2.index.RelationIndex;
+import com.example.bookshop2.index.SearchHits;
+import com.example.bookshop2.index.SuggestIndex;
 import com.example.bookshop2.mapper.BookMapper;
 import com.example.bookshop2.model.Author;
 import com.example.bookshop2.model.Book;
 import com.example.bookshop2.model.Publisher;
 import com.example.bookshop2.repository.AuthorRepository;
+import com.example.bookshop2.repository.BookPriceRow;
 import com.example.bookshop2.repository.BookRepository;
+import com.example.bookshop2.repository.BookSummaryRow;
 import com.example.bookshop2.repository.PublisherRepository;
-import jakarta.transaction.Transactional;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 @Service
 public class BookService {
     private static final Logger LOG = LoggerFactory.getLogger(BookService.class);
+    private static final int MAX_TOP_LIMIT = 100;
+    private static final String PRICE_RANGE_PREFIX = "books_price_";
     private final BookRepository bookRepository;
     private final AuthorRepository authorRepository;
     private final PublisherRepository publisherRepository;
     private final CacheManager cacheManager;
+    private final NameIndex nameIndex;
+    private final SuggestIndex suggestIndex;
+    private final PriceIndex priceIndex;
+    private final CatalogStatsIndex catalogStatsIndex;
+    private final RelationIndex relationIndex;
+    private final ExistenceIndex existenceIndex;
+    private final ApplicationEventPublisher eventPublisher;
+    private final BatchLoader<BookDto> bookLoader;
 
     public BookService(BookRepository bookRepository,
                        AuthorRepository authorRepository,
                        PublisherRepository publisherRepository,
-                       CacheManager cacheManager) {
+                       CacheManager cacheManager,
+                       NameIndex nameIndex,
+                       SuggestIndex suggestIndex,
+                       PriceIndex priceIndex,
+                       CatalogStatsIndex catalogStatsIndex,
+                       RelationIndex relationIndex,
+                       ExistenceIndex existenceIndex,
+                       ApplicationEventPublisher eventPublisher,
+                       MultiGetBatcher multiGetBatcher) {
         this.bookRepository = bookRepository;
         this.authorRepository = authorRepository;
         this.publisherRepository = publisherRepository;
         this.cacheManager = cacheManager;
+        this.nameIndex = nameIndex;
+        this.suggestIndex = suggestIndex;
+        this.priceIndex = priceIndex;
+        this.catalogStatsIndex = catalogStatsIndex;
+        this.relationIndex = relationIndex;
+        this.existenceIndex = existenceIndex;
+        this.eventPublisher = eventPublisher;
+        this.bookLoader = multiGetBatcher.loader("books", this::loadBooks);
     }
 
-    @Transactional
+    @Transactional(readOnly = true)
     public List<BookDto> findAll() {
         return bookRepository.findAll().stream()
                 .map(BookMapper::toDto)
                 .toList();
     }
 
-    @Transactional
+    // fields — запрошенные свойства (null — все): без авторов каталог читается проекцией без соединения
+    // с book_author, а издатель присоединяется, только если нужно его имя
+    @Transactional(readOnly = true)
+    public List<BookDto> findAll(Set<String> fields) {
+        if (fields == null || fields.contains("authorIds") || fields.contains("authorNames")) {
+            return findAll();
+        }
+        List<BookSummaryRow> rows = fields.contains("publisherName")
+                ? bookRepository.findAllSummariesWithPublisher()
+                : bookRepository.findAllSummaries();
+        return rows.stream()
+                .map(BookMapper::toDto)
+                .toList();
+    }
+
+    // Без транзакции: промах ждёт общий пакет, не занимая соединение пула (см. BatchLoader)
     public BookDto findById(Long id) {
         String cacheKey = "book_" + id;
         BookDto cachedBook = cacheManager.getFromCache(cacheKey, BookDto.class);
         if (cachedBook != null) {
+            suggestIndex.recordView(EntityType.BOOK, id);
             return cachedBook;
         }
 
-        Book book = bookRepository.findById(id)
-                .orElseThrow(() -> new BookNotFoundException(id));
-        BookDto bookDto = BookMapper.toDto(book);
+        rejectUnknown(id);
+        BookDto bookDto = bookLoader.load(id);
+        if (bookDto == null) {
+            throw new BookNotFoundException(id);
+        }
         cacheManager.saveToCache(cacheKey, bookDto);
+        suggestIndex.recordView(EntityType.BOOK, id);
         return bookDto;
     }
 
+    @Transactional(readOnly = true)
+    public List<BookDto> findAllByIds(Collection<Long> ids) {
+        Set<Long> requested = BulkIds.distinct(ids);
+        requested.removeAll(existenceIndex.missing(EntityType.BOOK, requested));
+        List<BookDto> books = MultiGet.load(requested, "book_", BookDto.class,
+                cacheManager, this::loadBooks);
+        books.forEach(book -> suggestIndex.recordView(EntityType.BOOK, book.getId()));
+        return books;
+    }
+
+    @Transactional(readOnly = true)
+    public List<BookDto> searchByName(String name) {
+        if (name == null || name.trim().isEmpty()) {
+            throw new ValidationException("Search name cannot be null or empty");
+        }
+        if (!nameIndex.isReady()) {
+            return bookRepository.findByNameContainingIgnoreCase(name).stream()
+                    .sorted(Comparator.comparing(Book::getId))
+                    .map(BookMapper::toDto)
+                    .toList();
+        }
+        List<Long> ids = nameIndex.search(EntityType.BOOK, name).stream()
+                .map(IndexedName::getId)
+                .toList();
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return BulkIds.loadInChunks(ids, bookRepository::findAllById).stream()
+                .sorted(Comparator.comparing(Book::getId))
+                .map(BookMapper::toDto)
+                .toList();
+    }
+
+    @Transactional(readOnly = true)
+    public List<SuggestionDto> suggest(String prefix, int limit) {
+        if (prefix == null || prefix.trim().isEmpty()) {
+            throw new ValidationException("Prefix cannot be null or empty");
+        }
+        if (limit < 1 || limit > PrefixTrie.TOP_K) {
+            throw new ValidationException("Limit must be between 1 and " + PrefixTrie.TOP_K);
+        }
+        if (suggestIndex.isReady()) {
+            return suggestIndex.suggest(EntityType.BOOK, prefix, limit).stream()
+                    .map(match -> new SuggestionDto(match.getId(), match.getName()))
+                    .toList();
+        }
+        return bookRepository.findTop10ByNameStartingWithIgnoreCaseOrderByNameAscIdAsc(prefix).stream()
+                .limit(limit)
+                .map(book -> new SuggestionDto(book.getId(), book.getName()))
+                .toList();
+    }
+
     @Transactional
     public BookDto create(BookDto dto) {
         if (dto.getPublisherId() == null) {
@@ -69,13 +194,9 @@ public class BookService {
             throw new ValidationException("At least one author ID is required");
         }
 
-        Publisher publisher = publisherRepository.findById(dto.getPublisherId())
-                .orElseThrow(() -> new PublisherNotFoundException(dto.getPublisherId()));
-
-        Set<Author> authors = dto.getAuthorIds().stream()
-                .map(id -> authorRepository.findById(id)
-                        .orElseThrow(() -> new AuthorNotFoundException(id)))
-                .collect(Collectors.toSet());
+        BookReferences references = BookReferences.resolve(List.of(dto), authorRepository, publisherRepository);
+        Publisher publisher = references.publisher(dto.getPublisherId());
+        Set<Author> authors = references.authors(dto.getAuthorIds());
 
         Book book = BookMapper.fromDto(dto, authors, publisher);
         Book savedBook = bookRepository.save(book);
@@ -84,16 +205,20 @@ public class BookService {
         cacheManager.clearBookCache(savedBook.getId());
         authors.forEach(author -> cacheManager.clearAuthorCache(author.getId()));
 
-        return BookMapper.toDto(savedBook);
+        BookDto savedDto = BookMapper.toDto(savedBook);
+        eventPublisher.publishEvent(CatalogChangeEvent.created(EntityType.BOOK, savedDto.getId(), savedDto));
+        return savedDto;
     }
 
     @Transactional
     public void delete(Long id) {
+        rejectUnknown(id);
         Book book = bookRepository.findById(id)
                 .orElseThrow(() -> new BookNotFoundException(id));
         String publisherName = book.getPublisher() != null ? book.getPublisher().getName() : null;
+        BookDto previous = BookMapper.toDto(book);
 
-        bookRepository.deleteById(id);
+        bookRepository.delete(book);
 
         Set<Long> authorIds = book.getAuthors().stream()
                 .map(Author::getId)
@@ -104,28 +229,50 @@ public class BookService {
         }
         cacheManager.clearBookCache(id);
         authorIds.forEach(cacheManager::clearAuthorCache);
+        eventPublisher.publishEvent(CatalogChangeEvent.deleted(EntityType.BOOK, id, previous));
+    }
+
+    /**
+     * Удаление пачки книг: прежнее состояние читается одной проекцией, затем один DELETE ... WHERE id IN (...).
+     * Если хотя бы одной книги нет, не удаляется ни одна.
+     */
+    @Transactional
+    public void deleteBulk(Collection<Long> ids) {
+        Set<Long> requested = BulkIds.distinct(ids);
+        Set<Long> unknown = existenceIndex.missing(EntityType.BOOK, requested);
+        if (!unknown.isEmpty()) {
+            throw new BookNotFoundException(unknown);
+        }
+        List<BookDto> previous = BookMapper.toDtos(bookRepository.findRowsByIdIn(requested));
+        Set<Long> missing = BulkIds.missing(requested, previous.stream().map(BookDto::getId).toList());
+        if (!missing.isEmpty()) {
+            throw new BookNotFoundException(missing);
+        }
+
+        bookRepository.deleteAllByIdIn(requested);
+
+        cacheManager.clearMatching(value -> value instanceof BookDto book && requested.contains(book.getId()));
+        previous.forEach(dto -> eventPublisher.publishEvent(
+                CatalogChangeEvent.deleted(EntityType.BOOK, dto.getId(), dto)));
+        LOG.info("Удалено {} книг", requested.size());
     }
 
     @Transactional
     public BookDto update(Long id, BookDto dto) {
+        rejectUnknown(id);
         Book book = bookRepository.findById(id)
                 .orElseThrow(() -> new BookNotFoundException(id));
-
-        Publisher publisher = null;
-        if (dto.getPublisherId() != null) {
-            publisher = publisherRepository.findById(dto.getPublisherId())
-                    .orElseThrow(() -> new PublisherNotFoundException(dto.getPublisherId()));
+        if (dto.getVersion() != null && !dto.getVersion().equals(book.getVersion())) {
+            throw new VersionConflictException("Book", id, dto.getVersion());
         }
 
+        BookReferences references = BookReferences.resolve(List.of(dto), authorRepository, publisherRepository);
+        Publisher publisher = references.publisher(dto.getPublisherId());
+
         String oldPublisherName = book.getPublisher() != null ? book.getPublisher().getName() : null;
+        BookDto previous = BookMapper.toDto(book);
 
-        Set<Author> authors = null;
-        if (dto.getAuthorIds() != null) {
-            authors = dto.getAuthorIds().stream()
-                    .map(authorId -> authorRepository.findById(authorId)
-                            .orElseThrow(() -> new AuthorNotFoundException(authorId)))
-                    .collect(Collectors.toSet());
-        }
+        Set<Author> authors = references.authors(dto.getAuthorIds());
 
         BookMapper.updateFromDto(book, dto, authors, publisher);
 
@@ -148,13 +295,150 @@ public class BookService {
             authors.forEach(author -> cacheManager.clearAuthorCache(author.getId()));
         }
 
-        return BookMapper.toDto(savedBook);
+        BookDto savedDto = BookMapper.toDto(savedBook);
+        eventPublisher.publishEvent(CatalogChangeEvent.updated(EntityType.BOOK, id, savedDto, previous));
+        return savedDto;
+    }
+
+    /**
+     * Частичное обновление названия, жанра и цены одним условным UPDATE, без загрузки сущности.
+     * Поля со значением null не меняются; издатель и авторы меняются только через {@link #update}.
+     *
+     * @return новая версия книги
+     */
+    @Transactional
+    public long patch(Long id, BookDto changes) {
+        if (changes.getVersion() == null) {
+            throw new ValidationException("Version is required for a partial update");
+        }
+        if (changes.getPublisherId() != null || changes.getAuthorIds() != null) {
+            throw new ValidationException("Publisher and authors can only be changed by a full update");
+        }
+        if (changes.getName() == null && changes.getGenre() == null && changes.getPrice() == null) {
+            throw new ValidationException("Nothing to update");
+        }
+        if (changes.getName() != null && changes.getName().trim().isEmpty()) {
+            throw new ValidationException("Name cannot be blank");
+        }
+        if (changes.getPrice() != null && changes.getPrice() <= 0) {
+            throw new ValidationException("Price must be positive");
+        }
+        rejectUnknown(id);
+
+        // Прежние жанр и цена нужны статистике каталога. Прочитанная строка должна быть той версии,
+        // которую заменит UPDATE: версия только растёт, поэтому при совпадении между чтением и UPDATE
+        // строку никто не менял. Другая версия — конфликт ещё до UPDATE
+        BookDto previous = null;
+        if (changes.getGenre() != null || changes.getPrice() != null) {
+            previous = bookRepository.findPricesByIdIn(List.of(id)).stream()
+                    .map(BookService::toPriceDto)
+                    .findFirst()
+                    .orElseThrow(() -> new BookNotFoundException(id));
+            if (!Objects.equals(previous.getVersion(), changes.getVersion())) {
+                throw new VersionConflictException("Book", id, changes.getVersion());
+            }
+        }
+
+        int updated = bookRepository.patch(id, changes.getVersion(),
+                changes.getName(), changes.getGenre(), changes.getPrice());
+        if (updated == 0) {
+            if (!bookRepository.existsById(id)) {
+                throw new BookNotFoundException(id);
+            }
+            throw new VersionConflictException("Book", id, changes.getVersion());
+        }
+
+        // Сбрасываются записи, где есть эта книга, и кэшированные диапазоны, в которые попала новая цена
+        Double price = changes.getPrice();
+        cacheManager.clearMatching(
+                key -> price != null && priceRangeCovers(key, price),
+                value -> value instanceof BookDto book && id.equals(book.getId()));
+
+        BookDto patched = new BookDto();
+        patched.setId(id);
+        patched.setVersion(changes.getVersion() + 1);
+        patched.setName(changes.getName());
+        patched.setGenre(changes.getGenre());
+        patched.setPrice(price);
+        eventPublisher.publishEvent(CatalogChangeEvent.patched(EntityType.BOOK, id, patched, previous));
+        return patched.getVersion();
+    }
+
+    // Ключи вида books_price_<min>_<max> из findByPriceRange
+    private static boolean priceRangeCovers(String key, double price) {
+        return priceRangeCoversAny(key, new double[]{price});
+    }
+
+    // prices отсортированы: в диапазон попадает хотя бы одна, если первая не меньшая min цена не больше max
+    private static boolean priceRangeCoversAny(String key, double[] prices) {
+        if (!key.startsWith(PRICE_RANGE_PREFIX)) {
+            return false;
+        }
+        String[] bounds = key.substring(PRICE_RANGE_PREFIX.length()).split("_");
+        try {
+            if (bounds.length != 2) {
+                return false;
+            }
+            double min = Double.parseDouble(bounds[0]);
+            double max = Double.parseDouble(bounds[1]);
+            int from = Arrays.binarySearch(prices, min);
+            if (from < 0) {
+                from = -from - 1;
+            }
+            return from < prices.length && prices[from] <= max;
+        } catch (NumberFormatException e) {
+            return false;
+        }
     }
 
+    /**
+     * Одна пачка массовой переоценки в своей транзакции: выбирает следующие limit книг после afterId
+     * и меняет им цену одним UPDATE. Фильтр уже проверен в {@link BookRepricingService}.
+     */
     @Transactional
+    public RepriceChunk repriceChunk(BookRepriceDto request, double factor, long afterId, int limit) {
+        PageRequest page = PageRequest.of(0, limit);
+        List<Long> ids;
+        if (request.getIds() != null) {
+            ids = bookRepository.findRepricingIdsByIdIn(request.getIds(), afterId, page);
+        } else if (request.getPublisherId() != null) {
+            ids = bookRepository.findRepricingIdsByPublisher(request.getPublisherId(), request.getGenre(), afterId, page);
+        } else {
+            ids = bookRepository.findRepricingIdsByGenre(request.getGenre(), afterId, page);
+        }
+        if (ids.isEmpty()) {
+            return new RepriceChunk(0, afterId, 0);
+        }
+
+        Map<Long, BookDto> previous = bookRepository.findPricesByIdIn(ids).stream()
+                .collect(Collectors.toMap(BookPriceRow::getBookId, BookService::toPriceDto));
+        int updated = bookRepository.repriceByIdIn(ids, factor);
+        // Пропущенные UPDATE'ом книги сохранили версию
+        List<BookPriceRow> rows = bookRepository.findPricesByIdIn(ids).stream()
+                .filter(row -> !Objects.equals(row.getVersion(), previous.get(row.getBookId()).getVersion()))
+                .toList();
+
+        Set<Long> changed = rows.stream().map(BookPriceRow::getBookId).collect(Collectors.toSet());
+        double[] prices = rows.stream().mapToDouble(BookPriceRow::getPrice).sorted().toArray();
+        cacheManager.clearMatching(
+                key -> priceRangeCoversAny(key, prices),
+                value -> value instanceof BookDto book && changed.contains(book.getId()));
+        rows.forEach(row -> {
+            BookDto patched = new BookDto();
+            patched.setId(row.getBookId());
+            patched.setVersion(row.getVersion());
+            patched.setPrice(row.getPrice());
+            eventPublisher.publishEvent(CatalogChangeEvent.patched(EntityType.BOOK, row.getBookId(), patched,
+                    previous.get(row.getBookId())));
+        });
+        return new RepriceChunk(ids.size(), ids.get(ids.size() - 1), updated);
+    }
+
+    @Transactional(readOnly = true)
     public List<BookDto> findByPublisherId(Long publisherId) {
-        publisherRepository.findById(publisherId)
-                .orElseThrow(() -> new PublisherNotFoundException(publisherId));
+        if (!existenceIndex.exists(EntityType.PUBLISHER, publisherId)) {
+            throw new PublisherNotFoundException(publisherId);
+        }
 
         String cacheKey = "publishers_" + publisherId;
         @SuppressWarnings("unchecked")
@@ -171,7 +455,7 @@ public class BookService {
         return books;
     }
 
-    @Transactional
+    @Transactional(readOnly = true)
     public List<BookDto> findByPublisherName(String publisherName) {
         publisherRepository.findByName(publisherName)
                 .orElseThrow(() -> new PublisherNotFoundException(publisherName));
@@ -181,7 +465,70 @@ public class BookService {
                 .toList();
     }
 
-    @Transactional
+    @Transactional(readOnly = true)
+    public List<BookDto> findByAuthorId(Long authorId) {
+        if (!existenceIndex.exists(EntityType.AUTHOR, authorId)) {
+            throw new AuthorNotFoundException(authorId);
+        }
+        if (!relationIndex.isReady()) {
+            return bookRepository.findByAuthorId(authorId).stream()
+                    .sorted(Comparator.comparing(Book::getId))
+                    .map(BookMapper::toDto)
+                    .toList();
+        }
+        return hydrate(relationIndex.booksByAuthor(authorId));
+    }
+
+    // Пересечение условий: книги со всеми authorIds, издателем и жанром, по возрастанию id после afterId
+    @Transactional(readOnly = true)
+    public List<BookDto> findByFilter(Set<Long> authorIds, Long publisherId, String genre, long afterId, int limit) {
+        validateTopLimit(limit);
+        Set<Long> authors = authorIds != null ? authorIds : Set.of();
+        if (authors.isEmpty() && publisherId == null && genre == null) {
+            throw new ValidationException("At least one of authorId, publisherId or genre is required");
+        }
+        if (relationIndex.isReady()) {
+            return hydrate(relationIndex.filter(authors, publisherId, genre, afterId, limit));
+        }
+        List<Book> candidates = !authors.isEmpty()
+                ? bookRepository.findByAuthorId(authors.iterator().next())
+                : publisherId != null
+                        ? bookRepository.findByPublisherId(publisherId)
+                        : bookRepository.findByGenre(genre);
+        return candidates.stream()
+                .filter(book -> book.getId() > afterId)
+                .filter(book -> publisherId == null
+                        || book.getPublisher() != null && publisherId.equals(book.getPublisher().getId()))
+                .filter(book -> genre == null || genre.equals(book.getGenre()))
+                .filter(book -> book.getAuthors().stream().map(Author::getId).collect(Collectors.toSet())
+                        .containsAll(authors))
+                .sorted(Comparator.comparing(Book::getId))
+                .limit(limit)
+                .map(BookMapper::toDto)
+                .toList();
+    }
+
+    // Фасетный поиск: страница совпадений и счётчики по каждому измерению без GROUP BY
+    @Transactional(readOnly = true)
+    public BookSearchResultDto search(Set<Long> authorIds, Long publisherId, String genre, Integer priceBand,
+                                      long afterId, int limit) {
+        validateTopLimit(limit);
+        if (priceBand != null && (priceBand < 0 || priceBand >= relationIndex.priceBands())) {
+            throw new ValidationException("Price band must be between 0 and " + (relationIndex.priceBands() - 1));
+        }
+        // Без индекса фасеты пришлось бы считать по всем связям каталога на каждый запрос
+        if (!relationIndex.isReady()) {
+            throw new IndexNotReadyException("relations");
+        }
+        SearchHits hits = relationIndex.search(authorIds, publisherId, genre, priceBand, afterId, limit);
+        BookSearchResultDto result = new BookSearchResultDto();
+        result.setBooks(hydrate(hits.getIds()));
+        result.setTotal(hits.getTotal());
+        result.setFacets(hits.getFacets());
+        return result;
+    }
+
+    @Transactional(readOnly = true)
     public List<BookDto> findByPriceRange(Double minPrice, Double maxPrice) {
         if (minPrice == null || maxPrice == null) {
             throw new ValidationException("Min and max price cannot be null");
@@ -193,48 +540,95 @@ public class BookService {
             throw new ValidationException("Min price cannot be greater than max price");
         }
 
-        String cacheKey = "books_price_" + minPrice + "_" + maxPrice;
+        String cacheKey = PRICE_RANGE_PREFIX + minPrice + "_" + maxPrice;
         @SuppressWarnings("unchecked")
         List<BookDto> cachedBooks = cacheManager.getFromCache(cacheKey, List.class);
         if (cachedBooks != null) {
             return cachedBooks;
         }
 
-        List<BookDto> books = bookRepository.findByPriceBetween(minPrice, maxPrice).stream()
-                .map(BookMapper::toDto)
-                .toList();
+        List<BookDto> books = priceIndex.isReady()
+                ? hydrate(priceIndex.range(minPrice, maxPrice))
+                : bookRepository.findByPriceBetween(minPrice, maxPrice).stream()
+                        .map(BookMapper::toDto)
+                        .toList();
 
         cacheManager.saveToCache(cacheKey, books);
         return books;
     }
 
+    @Transactional(readOnly = true)
+    public CatalogStatsDto findStatistics() {
+        if (!catalogStatsIndex.isReady()) {
+            return catalogStatsIndex.snapshotOf(bookRepository.findGenrePriceCounts());
+        }
+        return catalogStatsIndex.snapshot();
+    }
+
+    @Transactional(readOnly = true)
+    public List<BookDto> findCheapest(int limit) {
+        validateTopLimit(limit);
+        if (!priceIndex.isReady()) {
+            return bookRepository.findByPriceNotNullOrderByPriceAscIdAsc(PageRequest.of(0, limit)).stream()
+                    .map(BookMapper::toDto)
+                    .toList();
+        }
+        return hydrate(priceIndex.cheapest(limit));
+    }
+
+    @Transactional(readOnly = true)
+    public List<BookDto> findMostExpensive(int limit) {
+        validateTopLimit(limit);
+        if (!priceIndex.isReady()) {
+            return bookRepository.findByPriceNotNullOrderByPriceDescIdDesc(PageRequest.of(0, limit)).stream()
+                    .map(BookMapper::toDto)
+                    .toList();
+        }
+        return hydrate(priceIndex.mostExpensive(limit));
+    }
+
+    private static void validateTopLimit(int limit) {
+        if (limit < 1 || limit > MAX_TOP_LIMIT) {
+            throw new ValidationException("Limit must be between 1 and " + MAX_TOP_LIMIT);
+        }
+    }
+
+    // DTO в порядке ids: сначала из кэша книг, недостающие — одним запросом
+    private List<BookDto> hydrate(long[] ids) {
+        return MultiGet.load(Arrays.stream(ids).boxed().toList(), "book_", BookDto.class,
+                cacheManager, this::loadBooks);
+    }
+
+    // Вызывается и из потока BatchLoader вне транзакции: издатель и авторы приходят тем же запросом.
+    // Выборки индексов (диапазон цен, книги автора) бывают любого размера, поэтому запрос идёт пачками
+    private Map<Long, BookDto> loadBooks(Set<Long> ids) {
+        return BulkIds.loadInChunks(ids, bookRepository::findWithReferencesByIdIn).stream()
+                .collect(Collectors.toMap(Book::getId, BookMapper::toDto));
+    }
+
     @Transactional
     public List<BookDto> addBooksBulk(List<BookDto> books) {
         if (books == null || books.isEmpty()) {
             throw new ValidationException("Book list cannot be empty");
         }
 
+        books.forEach(dto -> {
+            if (dto.getPublisherId() == null) {
+                throw new ValidationException("Publisher ID cannot be null for book: " + dto.getName());
+            }
+            if (dto.getAuthorIds() == null || dto.getAuthorIds().isEmpty()) {
+                throw new ValidationException("At least one author ID is required for book: " + dto.getName());
+            }
+            if (dto.getPrice() == null || dto.getPrice() <= 0) {
+                throw new ValidationException("Price must be positive for book: " + dto.getName());
+            }
+        });
+
+        BookReferences references = BookReferences.resolve(books, authorRepository, publisherRepository);
         List<Book> entities = books.stream()
-                .map(dto -> {
-                    if (dto.getPublisherId() == null) {
-                        throw new ValidationException("Publisher ID cannot be null for book: " + dto.getName());
-                    }
-                    if (dto.getAuthorIds() == null || dto.getAuthorIds().isEmpty()) {
-                        throw new ValidationException("At least one author ID is required for book: " + dto.getName());
-                    }
-                    if (dto.getPrice() == null || dto.getPrice() <= 0) {
-                        throw new ValidationException("Price must be positive for book: " + dto.getName());
-                    }
-
-                    Publisher publisher = publisherRepository.findById(dto.getPublisherId())
-                            .orElseThrow(() -> new PublisherNotFoundException(dto.getPublisherId()));
-                    Set<Author> authors = dto.getAuthorIds().stream()
-                            .map(id -> authorRepository.findById(id)
-                                    .orElseThrow(() -> new AuthorNotFoundException(id)))
-                            .collect(Collectors.toSet());
-
-                    return BookMapper.fromDto(dto, authors, publisher);
-                })
+                .map(dto -> BookMapper.fromDto(dto,
+                        references.authors(dto.getAuthorIds()),
+                        references.publisher(dto.getPublisherId())))
                 .toList();
 
         List<Book> savedBooks = bookRepository.saveAll(entities);
@@ -245,6 +639,39 @@ public class BookService {
         });
 
         LOG.info("Добавлено {} книг", savedBooks.size());
-        return savedBooks.stream().map(BookMapper::toDto).toList();
+        List<BookDto> savedDtos = savedBooks.stream().map(BookMapper::toDto).toList();
+        savedDtos.forEach(saved -> eventPublisher.publishEvent(
+                CatalogChangeEvent.created(EntityType.BOOK, saved.getId(), saved)));
+        return savedDtos;
+    }
+
+    // Id, которого точно нет, отвергается до загрузки строки
+    private void rejectUnknown(Long id) {
+        if (existenceIndex.isMissing(EntityType.BOOK, id)) {
+            throw new BookNotFoundException(id);
+        }
+    }
+
+    private static BookDto toPriceDto(BookPriceRow row) {
+        BookDto dto = new BookDto();
+        dto.setId(row.getBookId());
+        dto.setGenre(row.getGenre());
+        dto.setPrice(row.getPrice());
+        dto.setVersion(row.getVersion());
+        return dto;
+    }
+
+    // Итог пачки переоценки: сколько книг выбрано, на каком ID продолжать и сколько строк изменил UPDATE
+    @Getter
+    @RequiredArgsConstructor
+    public static class RepriceChunk {
+        private final int selected;
+        private final long lastId;
+        private final int updated;
+
+        // Выбранные книги, которые UPDATE не тронул, потому что их цена стала бы нулевой
+        public int getSkipped() {
+            return selected - updated;
+        }
     }
-}
\ No newline at end of file
+}
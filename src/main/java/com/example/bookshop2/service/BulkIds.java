@@ -0,0 +1,50 @@
+package com.example.bookshop2.service;
+
+import com.example.bookshop2.exception.ValidationException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+// Список ID для массовых операций: один IN (...) на запрос, поэтому размер ограничен
+final class BulkIds {
+    static final int MAX_SIZE = 1000;
+
+    private BulkIds() {
+    }
+
+    static Set<Long> distinct(Collection<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            throw new ValidationException("ID list cannot be empty");
+        }
+        if (ids.stream().anyMatch(Objects::isNull)) {
+            throw new ValidationException("ID list cannot contain null");
+        }
+        Set<Long> distinct = new LinkedHashSet<>(ids);
+        if (distinct.size() > MAX_SIZE) {
+            throw new ValidationException("At most " + MAX_SIZE + " IDs can be processed at once");
+        }
+        return distinct;
+    }
+
+    static Set<Long> missing(Set<Long> requested, Collection<Long> found) {
+        Set<Long> missing = new TreeSet<>(requested);
+        missing.removeAll(found);
+        return missing;
+    }
+
+    // Списки ID из индексов в памяти не ограничены: грузятся пачками по MAX_SIZE, чтобы IN (...)
+    // не упёрся в предел числа параметров СУБД (32767 у PostgreSQL)
+    static <T> List<T> loadInChunks(Collection<Long> ids, Function<List<Long>, ? extends Collection<T>> loader) {
+        List<Long> all = new ArrayList<>(ids);
+        List<T> loaded = new ArrayList<>(all.size());
+        for (int from = 0; from < all.size(); from += MAX_SIZE) {
+            loaded.addAll(loader.apply(all.subList(from, Math.min(all.size(), from + MAX_SIZE))));
+        }
+        return loaded;
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.bookshop2.service;
+
+import com.example.bookshop2.exception.ValidationException;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+// Имена для пакетного upsert: без пробелов по краям, без повторов, в порядке первого появления
+final class BulkNames {
+    private static final int MAX_LENGTH = 255;
+
+    private BulkNames() {
+    }
+
+    static Set<String> distinct(Collection<String> names) {
+        if (names == null || names.isEmpty()) {
+            throw new ValidationException("Name list cannot be empty");
+        }
+        Set<String> distinct = new LinkedHashSet<>();
+        for (String name : names) {
+            if (name == null || name.isBlank()) {
+                throw new ValidationException("Name list cannot contain blank names");
+            }
+            String trimmed = name.trim();
+            if (trimmed.length() > MAX_LENGTH) {
+                throw new ValidationException("Name cannot be longer than " + MAX_LENGTH + " characters");
+            }
+            distinct.add(trimmed);
+        }
+        if (distinct.size() > BulkIds.MAX_SIZE) {
+            throw new ValidationException("At most " + BulkIds.MAX_SIZE + " names can be processed at once");
+        }
+        return distinct;
+    }
+}
@@ -1,9 +1,12 @@
 package com.example.bookshop2.service;
 
+import java.util.Collection;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -39,6 +42,19 @@ public class CacheManager {
         return null;
     }
 
+    // Пакетное чтение для гидрации списков: одна строка лога вместо строки на ключ
+    public <T> Map<String, T> getAllFromCache(Collection<String> keys, Class<T> type) {
+        Map<String, T> found = new HashMap<>();
+        for (String key : keys) {
+            CacheEntry entry = cache.get(key);
+            if (entry != null && !entry.isExpired()) {
+                found.put(key, type.cast(entry.getValue()));
+            }
+        }
+        LOGGER.info("✅ Из кэша взято {} из {} ключей", found.size(), keys.size()); // NOSONAR
+        return found;
+    }
+
     public void clearPublisherCache(String publisherName) {
         String key = "publishers_" + publisherName;
         cache.remove(key);
@@ -62,6 +78,26 @@ public class CacheManager {
         LOGGER.info("🗑 Очищен кэш для префикса: {}", prefix); // NOSONAR
     }
 
+    // Удаляет записи, чей ключ подходит под keyCondition или значение (для списков — хотя бы один элемент)
+    // подходит под valueCondition: после точечного изменения сбрасываются только затронутые ключи
+    public void clearMatching(Predicate<String> keyCondition, Predicate<Object> valueCondition) {
+        int before = cache.size();
+        cache.entrySet().removeIf(entry -> keyCondition.test(entry.getKey())
+                || matches(entry.getValue().getValue(), valueCondition));
+        LOGGER.info("🗑 Точечно очищено записей кэша: {}", before - cache.size()); // NOSONAR
+    }
+
+    public void clearMatching(Predicate<Object> valueCondition) {
+        clearMatching(key -> false, valueCondition);
+    }
+
+    private static boolean matches(Object value, Predicate<Object> condition) {
+        if (value instanceof Collection<?> values) {
+            return values.stream().anyMatch(condition);
+        }
+        return condition.test(value);
+    }
+
     private void removeOldestEntry() {
         Optional<Map.Entry<String, CacheEntry>> oldestEntry = cache.entrySet()
                 .stream()
@@ -0,0 +1,52 @@
+package com.example.bookshop2.service;
+
+import com.example.bookshop2.dto.CacheRegionStatsDto;
+import jakarta.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Service;
+
+/**
+ * Попадания во второй уровень кэша Hibernate по регионам и в кэш запросов.
+ * Счётчики копятся с запуска приложения (или с последнего {@link #reset()}).
+ */
+@Service
+public class CacheStatisticsService {
+    static final String QUERY_CACHE = "query-cache";
+    private final Statistics statistics;
+
+    public CacheStatisticsService(EntityManagerFactory entityManagerFactory) {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    public List<CacheRegionStatsDto> getSecondLevelCacheStats() {
+        List<CacheRegionStatsDto> result = new ArrayList<>();
+        Arrays.stream(statistics.getSecondLevelCacheRegionNames()).sorted().forEach(name -> {
+            CacheRegionStatistics region = statistics.getCacheRegionStatistics(name);
+            if (region != null) {
+                result.add(toDto(name, region.getHitCount(), region.getMissCount(), region.getPutCount()));
+            }
+        });
+        result.add(toDto(QUERY_CACHE, statistics.getQueryCacheHitCount(),
+                statistics.getQueryCacheMissCount(), statistics.getQueryCachePutCount()));
+        return result;
+    }
+
+    public void reset() {
+        statistics.clear();
+    }
+
+    private static CacheRegionStatsDto toDto(String region, long hits, long misses, long puts) {
+        CacheRegionStatsDto dto = new CacheRegionStatsDto();
+        dto.setRegion(region);
+        dto.setHits(hits);
+        dto.setMisses(misses);
+        dto.setPuts(puts);
+        dto.setHitRate(hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+        return dto;
+    }
+}
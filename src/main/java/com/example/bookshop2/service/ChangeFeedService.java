@@ -0,0 +1,112 @@
+package com.example.bookshop2.service;
+
+import com.example.bookshop2.datasource.ReadYourWrites;
+import com.example.bookshop2.dto.AuthorDto;
+import com.example.bookshop2.dto.BookDto;
+import com.example.bookshop2.dto.CatalogChangesDto;
+import com.example.bookshop2.dto.PublisherDto;
+import com.example.bookshop2.event.CatalogChangeEvent.ChangeType;
+import com.example.bookshop2.event.CatalogChangeEvent.EntityType;
+import com.example.bookshop2.event.ChangeLog;
+import com.example.bookshop2.event.ChangeLogEntry;
+import com.example.bookshop2.event.ChangeLogPage;
+import com.example.bookshop2.exception.ValidationException;
+import com.example.bookshop2.mapper.AuthorMapper;
+import com.example.bookshop2.mapper.BookMapper;
+import com.example.bookshop2.mapper.PublisherMapper;
+import com.example.bookshop2.repository.AuthorRepository;
+import com.example.bookshop2.repository.BookRepository;
+import com.example.bookshop2.repository.PublisherRepository;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Дельта-синхронизация каталога по {@link ChangeLog}: страница журнала сворачивается до последнего
+ * изменения каждой записи, и клиент получает текущее состояние изменённых записей и id удалённых.
+ * Объём ответа зависит от числа изменений, а не от размера каталога.
+ */
+@Service
+public class ChangeFeedService {
+    private static final int MAX_LIMIT = BulkIds.MAX_SIZE;
+    private final ChangeLog changeLog;
+    private final BookRepository bookRepository;
+    private final AuthorRepository authorRepository;
+    private final PublisherRepository publisherRepository;
+
+    public ChangeFeedService(ChangeLog changeLog,
+                             BookRepository bookRepository,
+                             AuthorRepository authorRepository,
+                             PublisherRepository publisherRepository) {
+        this.changeLog = changeLog;
+        this.bookRepository = bookRepository;
+        this.authorRepository = authorRepository;
+        this.publisherRepository = publisherRepository;
+    }
+
+    @Transactional(readOnly = true)
+    public CatalogChangesDto changesSince(long since, int limit) {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new ValidationException("Limit must be between 1 and " + MAX_LIMIT);
+        }
+        ChangeLogPage page = changeLog.read(since, limit);
+        CatalogChangesDto changes = new CatalogChangesDto();
+        if (page.isExpired()) {
+            changes.setResync(true);
+            changes.setNext(page.getHead());
+            return changes;
+        }
+        List<ChangeLogEntry> entries = page.getEntries();
+        long next = entries.isEmpty() ? since : entries.get(entries.size() - 1).getSeq();
+        changes.setNext(next);
+        changes.setHasMore(next < page.getHead());
+
+        // Последнее изменение каждой записи: удаление после правки — это удаление, создание после удаления — запись
+        Map<EntityType, Map<Long, ChangeType>> latest = new EnumMap<>(EntityType.class);
+        for (ChangeLogEntry entry : entries) {
+            latest.computeIfAbsent(entry.getEntityType(), type -> new TreeMap<>())
+                    .put(entry.getId(), entry.getChangeType());
+        }
+        // Журнал опережает реплики: записи читаются с primary, иначе клиент получил бы состояние до изменения
+        // и сдвинул бы свой номер дальше него
+        return ReadYourWrites.onPrimary(() -> {
+            changes.setBooks(load(latest, EntityType.BOOK, changes::setDeletedBooks,
+                    ids -> bookRepository.findWithReferencesByIdIn(ids).stream().map(BookMapper::toDto).toList(),
+                    BookDto::getId));
+            changes.setAuthors(load(latest, EntityType.AUTHOR, changes::setDeletedAuthors,
+                    ids -> authorRepository.findAllById(ids).stream().map(AuthorMapper::toDto).toList(),
+                    AuthorDto::getId));
+            changes.setPublishers(load(latest, EntityType.PUBLISHER, changes::setDeletedPublishers,
+                    ids -> publisherRepository.findAllById(ids).stream().map(PublisherMapper::toDto).toList(),
+                    PublisherDto::getId));
+            return changes;
+        });
+    }
+
+    // Текущее состояние изменённых записей по возрастанию id. Запись, которой уже нет в БД,
+    // попадает в удалённые, даже если её удаление в журнале ещё впереди
+    private static <D> List<D> load(Map<EntityType, Map<Long, ChangeType>> latest, EntityType type,
+                                    Consumer<List<Long>> deletedSink,
+                                    Function<Set<Long>, List<D>> loader, Function<D, Long> idOf) {
+        Map<Long, ChangeType> changed = latest.getOrDefault(type, Map.of());
+        Set<Long> deleted = new TreeSet<>();
+        Set<Long> present = new TreeSet<>();
+        changed.forEach((id, changeType) -> (changeType == ChangeType.DELETED ? deleted : present).add(id));
+
+        List<D> records = new ArrayList<>(present.isEmpty() ? List.of() : loader.apply(present));
+        records.sort(Comparator.comparing(idOf));
+        records.forEach(record -> present.remove(idOf.apply(record)));
+        deleted.addAll(present);
+        deletedSink.accept(List.copyOf(deleted));
+        return records;
+    }
+}
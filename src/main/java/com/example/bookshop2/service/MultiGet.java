@@ -0,0 +1,50 @@
+package com.example.bookshop2.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+// Набор сущностей по ID: попадания из кэша, промахи одним вызовом loader, результат в порядке ids.
+// Промахи в кэш не кладутся: пачка вытеснила бы из маленького кэша все одиночные записи
+final class MultiGet {
+
+    private MultiGet() {
+    }
+
+    static <V> List<V> load(Collection<Long> ids, String keyPrefix, Class<V> type,
+                            CacheManager cacheManager, Function<Set<Long>, Map<Long, V>> loader) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        List<String> keys = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            keys.add(keyPrefix + id);
+        }
+        Map<String, V> cached = cacheManager.getAllFromCache(keys, type);
+        Set<Long> missing = new LinkedHashSet<>();
+        int i = 0;
+        for (Long id : ids) {
+            if (!cached.containsKey(keys.get(i++))) {
+                missing.add(id);
+            }
+        }
+        Map<Long, V> loaded = missing.isEmpty() ? Map.of() : loader.apply(missing);
+
+        List<V> result = new ArrayList<>(ids.size());
+        i = 0;
+        for (Long id : ids) {
+            V value = cached.get(keys.get(i++));
+            if (value == null) {
+                value = loaded.get(id);
+            }
+            if (value != null) {
+                result.add(value);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.bookshop2.service;
+
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Общий планировщик для {@link BatchLoader} сервисов. Каждая загрузка идёт в read-only транзакции:
+ * пакет — в своей, а загрузка в вызывающем потоке присоединяется к его транзакции, если она есть.
+ * Нулевое окно отключает склейку: каждый промах грузится сразу в вызывающем потоке.
+ */
+@Component
+public class MultiGetBatcher {
+    // Пакеты живут одно окно, поэтому при остановке их хватает подождать недолго
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 5000;
+
+    private final List<BatchLoader<?>> loaders = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService scheduler;
+    private final TransactionTemplate readOnly;
+    private final long windowNanos;
+    private final int maxBatchSize;
+
+    public MultiGetBatcher(@Value("${bookshop.multi-get.window:2ms}") Duration window,
+                           @Value("${bookshop.multi-get.max-batch-size:100}") int maxBatchSize,
+                           @Value("${bookshop.multi-get.threads:4}") int threads,
+                           PlatformTransactionManager transactionManager) {
+        if (window.isNegative() || maxBatchSize < 1 || threads < 1) {
+            throw new IllegalArgumentException("Multi-get window must not be negative, batch size and threads positive");
+        }
+        this.windowNanos = window.toNanos();
+        this.maxBatchSize = maxBatchSize;
+        this.readOnly = new TransactionTemplate(transactionManager);
+        this.readOnly.setReadOnly(true);
+        this.scheduler = window.isZero() ? null : Executors.newScheduledThreadPool(threads, daemonThreads());
+    }
+
+    public <V> BatchLoader<V> loader(String name, Function<Set<Long>, Map<Long, V>> loader) {
+        BatchLoader<V> batchLoader = new BatchLoader<>(name, ids -> readOnly.execute(status -> loader.apply(ids)),
+                scheduler, windowNanos, maxBatchSize);
+        loaders.add(batchLoader);
+        return batchLoader;
+    }
+
+    /**
+     * Отложенные пакеты ещё отправляются, новые промахи грузятся в вызывающем потоке. Если пакеты
+     * не успели за отведённое время, потоки прерываются, а ожидающие неотправленных пакетов получают ошибку.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdown();
+        try {
+            if (scheduler.awaitTermination(SHUTDOWN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        scheduler.shutdownNow();
+        IllegalStateException stopped = new IllegalStateException("Multi-get batcher has been shut down");
+        loaders.forEach(loader -> loader.failPending(stopped));
+    }
+
+    private static ThreadFactory daemonThreads() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "multi-get-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
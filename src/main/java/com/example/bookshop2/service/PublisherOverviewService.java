@@ -0,0 +1,189 @@
+package com.example.bookshop2.service;
+
+import com.example.bookshop2.datasource.ReadYourWrites;
+import com.example.bookshop2.dto.AuthorDto;
+import com.example.bookshop2.dto.BookDto;
+import com.example.bookshop2.dto.PublisherDto;
+import com.example.bookshop2.dto.PublisherOverviewDto;
+import com.example.bookshop2.event.CatalogChangeEvent.EntityType;
+import com.example.bookshop2.exception.OverviewTimeoutException;
+import com.example.bookshop2.exception.PublisherNotFoundException;
+import com.example.bookshop2.index.ExistenceIndex;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Страница издателя одним запросом: издатель и его книги загружаются параллельно, авторы — как только
+ * известны книги. Каждая ветка идёт через кэши сервисов в своей read-only транзакции на ограниченном
+ * пуле; ветка книг или авторов, не уложившаяся в timeout или не принятая переполненным пулом, попадает
+ * в unavailable, а не роняет ответ.
+ */
+@Service
+public class PublisherOverviewService {
+    private static final Logger LOG = LoggerFactory.getLogger(PublisherOverviewService.class);
+    static final String PUBLISHER = "publisher";
+    static final String BOOKS = "books";
+    static final String AUTHORS = "authors";
+
+    private final PublisherService publisherService;
+    private final BookService bookService;
+    private final AuthorService authorService;
+    private final ExistenceIndex existenceIndex;
+    private final Duration timeout;
+    private final ThreadPoolExecutor executor;
+
+    public PublisherOverviewService(PublisherService publisherService,
+                                    BookService bookService,
+                                    AuthorService authorService,
+                                    ExistenceIndex existenceIndex,
+                                    @Value("${bookshop.overview.timeout:2s}") Duration timeout,
+                                    @Value("${bookshop.overview.threads:8}") int threads,
+                                    @Value("${bookshop.overview.queue-capacity:100}") int queueCapacity) {
+        if (timeout.isNegative() || timeout.isZero() || threads < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Overview timeout, threads and queue capacity must be positive");
+        }
+        this.publisherService = publisherService;
+        this.bookService = bookService;
+        this.authorService = authorService;
+        this.existenceIndex = existenceIndex;
+        this.timeout = timeout;
+        // При заполненной очереди ветка отклоняется: в потоке запроса её нельзя было бы прервать по timeout
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), daemonThreads(), new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public PublisherOverviewDto overview(Long id) {
+        if (!existenceIndex.exists(EntityType.PUBLISHER, id)) {
+            throw new PublisherNotFoundException(id);
+        }
+        boolean pinned = ReadYourWrites.isPinned();
+        CompletableFuture<PublisherDto> publisher = branch(pinned, abandoned -> publisherService.findById(id));
+        CompletableFuture<List<BookDto>> books = branch(pinned, abandoned -> bookService.findByPublisherId(id));
+        CompletableFuture<List<AuthorDto>> authors = books.thenCompose(list ->
+                branch(pinned, abandoned -> authorsOf(list, abandoned)));
+
+        List<String> unavailable = new ArrayList<>();
+        PublisherOverviewDto overview = new PublisherOverviewDto();
+        overview.setPublisher(await(publisher, PUBLISHER, unavailable));
+        if (!unavailable.isEmpty()) {
+            throw new OverviewTimeoutException(PUBLISHER, timeout);
+        }
+        List<BookDto> loadedBooks = await(books, BOOKS, unavailable);
+        List<AuthorDto> loadedAuthors = await(authors, AUTHORS, unavailable);
+        overview.setBooks(loadedBooks != null ? loadedBooks : List.of());
+        overview.setAuthors(loadedAuthors != null ? loadedAuthors : List.of());
+        overview.setUnavailable(unavailable);
+        return overview;
+    }
+
+    // Ветки не живут дольше timeout, поэтому уже начатым страницам хватает его, чтобы досчитаться
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+        }
+    }
+
+    // Пачки авторов грузятся, пока ветка не просрочена: после timeout результат уже никому не нужен
+    private List<AuthorDto> authorsOf(List<BookDto> books, BooleanSupplier abandoned) {
+        Set<Long> authorIds = new LinkedHashSet<>();
+        books.forEach(book -> authorIds.addAll(book.getAuthorIds()));
+        List<Long> ids = new ArrayList<>(authorIds);
+        List<AuthorDto> authors = new ArrayList<>(ids.size());
+        for (int from = 0; from < ids.size() && !abandoned.getAsBoolean(); from += BulkIds.MAX_SIZE) {
+            authors.addAll(authorService.findAllByIds(ids.subList(from, Math.min(ids.size(), from + BulkIds.MAX_SIZE))));
+        }
+        return authors;
+    }
+
+    // Ветка получает признак просрочки, чтобы не продолжать многошаговую загрузку после timeout.
+    // Просроченная задача, ещё ждущая в очереди, убирается из неё и место в очереди освобождается
+    private <T> CompletableFuture<T> branch(boolean pinned, Function<BooleanSupplier, T> action) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        BooleanSupplier abandoned = future::isDone;
+        Supplier<T> load = () -> action.apply(abandoned);
+        Future<?> task;
+        try {
+            task = executor.submit(() -> {
+                if (future.isDone()) {
+                    return;
+                }
+                try {
+                    future.complete(pinned ? ReadYourWrites.onPrimary(load) : load.get());
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+        future.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        future.whenComplete((value, error) -> {
+            if (error instanceof TimeoutException && task instanceof Runnable queued) {
+                executor.remove(queued);
+            }
+        });
+        return future;
+    }
+
+    private <T> T await(CompletableFuture<T> future, String section, List<String> unavailable) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof TimeoutException) {
+                LOG.warn("Раздел {} не загружен за {} мс", section, timeout.toMillis());
+                unavailable.add(section);
+                return null;
+            }
+            if (e.getCause() instanceof RejectedExecutionException) {
+                LOG.warn("Раздел {} не загружен: пул страниц издателей переполнен", section);
+                unavailable.add(section);
+                return null;
+            }
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static ThreadFactory daemonThreads() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "publisher-overview-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -1,34 +1,68 @@
 package com.example.bookshop2.service;
 
+import com.example.bookshop2.dto.BookDto;
 import com.example.bookshop2.dto.PublisherDto;
+import com.example.bookshop2.dto.SuggestionDto;
+import com.example.bookshop2.event.CatalogChangeEvent;
+import com.example.bookshop2.event.CatalogChangeEvent.EntityType;
 import com.example.bookshop2.exception.PublisherNotFoundException;
 import com.example.bookshop2.exception.ValidationException;
+import com.example.bookshop2.exception.VersionConflictException;
+import com.example.bookshop2.index.ExistenceIndex;
+import com.example.bookshop2.index.NameIndex;
+import com.example.bookshop2.index.PrefixTrie;
+import com.example.bookshop2.index.SuggestIndex;
+import com.example.bookshop2.index.WeightedName;
 import com.example.bookshop2.mapper.PublisherMapper;
 import com.example.bookshop2.model.Publisher;
 import com.example.bookshop2.repository.PublisherRepository;
-import jakarta.transaction.Transactional;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 @Service
 public class PublisherService {
     private final PublisherRepository publisherRepository;
     private final CacheManager cacheManager;
+    private final NameIndex nameIndex;
+    private final SuggestIndex suggestIndex;
+    private final ExistenceIndex existenceIndex;
+    private final ApplicationEventPublisher eventPublisher;
+    private final BatchLoader<PublisherDto> publisherLoader;
     private static final String PUBLISHER_PREFIX = "publisher_";
+    private static final String SEARCH_PREFIX = "publisher_search_";
 
-    public PublisherService(PublisherRepository publisherRepository, CacheManager cacheManager) {
+    public PublisherService(PublisherRepository publisherRepository,
+                            CacheManager cacheManager,
+                            NameIndex nameIndex,
+                            SuggestIndex suggestIndex,
+                            ExistenceIndex existenceIndex,
+                            ApplicationEventPublisher eventPublisher,
+                            MultiGetBatcher multiGetBatcher) {
         this.publisherRepository = publisherRepository;
         this.cacheManager = cacheManager;
+        this.nameIndex = nameIndex;
+        this.suggestIndex = suggestIndex;
+        this.existenceIndex = existenceIndex;
+        this.eventPublisher = eventPublisher;
+        this.publisherLoader = multiGetBatcher.loader("publishers", this::loadPublishers);
     }
 
-    @Transactional
+    @Transactional(readOnly = true)
     public List<PublisherDto> findAll() {
         return publisherRepository.findAll().stream()
                 .map(PublisherMapper::toDto)
                 .toList();
     }
 
-    @Transactional
+    // Без транзакции: промах ждёт общий пакет, не занимая соединение пула (см. BatchLoader)
     public PublisherDto findById(Long id) {
         String cacheKey = PUBLISHER_PREFIX + id;
         PublisherDto cachedPublisher = cacheManager.getFromCache(cacheKey, PublisherDto.class);
@@ -36,14 +70,29 @@ public class PublisherService {
             return cachedPublisher;
         }
 
-        Publisher publisher = publisherRepository.findById(id)
-                .orElseThrow(() -> new PublisherNotFoundException(id));
-        PublisherDto publisherDto = PublisherMapper.toDto(publisher);
+        rejectUnknown(id);
+        PublisherDto publisherDto = publisherLoader.load(id);
+        if (publisherDto == null) {
+            throw new PublisherNotFoundException(id);
+        }
         cacheManager.saveToCache(cacheKey, publisherDto);
         return publisherDto;
     }
 
-    @Transactional
+    @Transactional(readOnly = true)
+    public List<PublisherDto> findAllByIds(Collection<Long> ids) {
+        Set<Long> requested = BulkIds.distinct(ids);
+        requested.removeAll(existenceIndex.missing(EntityType.PUBLISHER, requested));
+        return MultiGet.load(requested, PUBLISHER_PREFIX, PublisherDto.class,
+                cacheManager, this::loadPublishers);
+    }
+
+    private Map<Long, PublisherDto> loadPublishers(Set<Long> ids) {
+        return publisherRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Publisher::getId, PublisherMapper::toDto));
+    }
+
+    @Transactional(readOnly = true)
     public PublisherDto findByName(String name) {
         if (name == null || name.trim().isEmpty()) {
             throw new ValidationException("Publisher name cannot be null or empty");
@@ -61,12 +110,17 @@ public class PublisherService {
         return publisherDto;
     }
 
-    @Transactional
+    @Transactional(readOnly = true)
     public List<PublisherDto> searchByName(String name) {
         if (name == null || name.trim().isEmpty()) {
             throw new ValidationException("Search name cannot be null or empty");
         }
-        String cacheKey = "publisher_search_" + name.toLowerCase();
+        if (nameIndex.isReady()) {
+            return nameIndex.search(EntityType.PUBLISHER, name).stream()
+                    .map(match -> PublisherMapper.toDto(match.getId(), match.getName()))
+                    .toList();
+        }
+        String cacheKey = SEARCH_PREFIX + name.toLowerCase();
         @SuppressWarnings("unchecked")
         List<PublisherDto> cachedPublishers = cacheManager.getFromCache(cacheKey, List.class);
         if (cachedPublishers != null) {
@@ -80,29 +134,121 @@ public class PublisherService {
         return publishers;
     }
 
+    @Transactional(readOnly = true)
+    public List<SuggestionDto> suggest(String prefix, int limit) {
+        if (prefix == null || prefix.trim().isEmpty()) {
+            throw new ValidationException("Prefix cannot be null or empty");
+        }
+        if (limit < 1 || limit > PrefixTrie.TOP_K) {
+            throw new ValidationException("Limit must be between 1 and " + PrefixTrie.TOP_K);
+        }
+        if (suggestIndex.isReady()) {
+            return suggestIndex.suggest(EntityType.PUBLISHER, prefix, limit).stream()
+                    .map(match -> new SuggestionDto(match.getId(), match.getName()))
+                    .toList();
+        }
+        return publisherRepository.findTop10ByNameStartingWithIgnoreCaseOrderByNameAscIdAsc(prefix).stream()
+                .limit(limit)
+                .map(publisher -> new SuggestionDto(publisher.getId(), publisher.getName()))
+                .toList();
+    }
+
     @Transactional
     public PublisherDto create(PublisherDto dto) {
         Publisher publisher = PublisherMapper.fromDto(dto);
         Publisher savedPublisher = publisherRepository.save(publisher);
         cacheManager.clearPublisherCache(savedPublisher.getName());
         cacheManager.clearByPrefix(PUBLISHER_PREFIX + savedPublisher.getId());
-        return PublisherMapper.toDto(savedPublisher);
+        PublisherDto savedDto = PublisherMapper.toDto(savedPublisher);
+        eventPublisher.publishEvent(CatalogChangeEvent.created(EntityType.PUBLISHER, savedDto.getId(), savedDto));
+        return savedDto;
+    }
+
+    // Как AuthorService.upsertByNames: под блокировкой upsert издателей один SELECT ... IN по имени,
+    // наименьший id на имя и пачка INSERT для новых
+    @Transactional
+    public Map<String, Long> upsertByNames(Collection<String> names) {
+        Set<String> requested = BulkNames.distinct(names);
+        publisherRepository.lockNameUpserts();
+        Map<String, Long> ids = new HashMap<>();
+        publisherRepository.findByNameIn(requested)
+                .forEach(publisher -> ids.merge(publisher.getName(), publisher.getId(), Math::min));
+
+        List<Publisher> missing = requested.stream()
+                .filter(name -> !ids.containsKey(name))
+                .map(name -> {
+                    Publisher publisher = new Publisher();
+                    publisher.setName(name);
+                    return publisher;
+                })
+                .toList();
+        List<Publisher> saved = missing.isEmpty() ? missing : publisherRepository.saveAllAndFlush(missing);
+        for (Publisher publisher : saved) {
+            ids.put(publisher.getName(), publisher.getId());
+            cacheManager.clearPublisherCache(publisher.getName());
+            cacheManager.clearByPrefix(PUBLISHER_PREFIX + publisher.getId());
+            PublisherDto created = PublisherMapper.toDto(publisher);
+            eventPublisher.publishEvent(CatalogChangeEvent.created(EntityType.PUBLISHER, created.getId(), created));
+        }
+
+        Map<String, Long> result = new LinkedHashMap<>();
+        requested.forEach(name -> result.put(name, ids.get(name)));
+        return result;
     }
 
     @Transactional
     public void delete(Long id) {
+        rejectUnknown(id);
         Publisher publisher = publisherRepository.findById(id)
                 .orElseThrow(() -> new PublisherNotFoundException(id));
         String publisherName = publisher.getName();
-        publisherRepository.deleteById(id);
+        publisherRepository.delete(publisher);
         cacheManager.clearPublisherCache(publisherName);
         cacheManager.clearByPrefix(PUBLISHER_PREFIX + id);
+        eventPublisher.publishEvent(CatalogChangeEvent.deleted(EntityType.PUBLISHER, id));
+    }
+
+    /**
+     * Удаление пачки издателей одним DELETE. Издателей с книгами не удаляет:
+     * если у кого-то из них есть книги или кого-то нет, не удаляется ни один.
+     */
+    @Transactional
+    public void deleteBulk(Collection<Long> ids) {
+        Set<Long> requested = BulkIds.distinct(ids);
+        Set<Long> unknown = existenceIndex.missing(EntityType.PUBLISHER, requested);
+        if (!unknown.isEmpty()) {
+            throw new PublisherNotFoundException(unknown);
+        }
+        List<WeightedName> found = publisherRepository.findNamesWithBookCountByIdIn(requested);
+        Set<Long> missing = BulkIds.missing(requested, found.stream().map(WeightedName::getId).toList());
+        if (!missing.isEmpty()) {
+            throw new PublisherNotFoundException(missing);
+        }
+        List<Long> withBooks = found.stream()
+                .filter(publisher -> publisher.getWeight() > 0)
+                .map(WeightedName::getId)
+                .sorted()
+                .toList();
+        if (!withBooks.isEmpty()) {
+            throw new ValidationException("Publishers with IDs " + withBooks + " still have books");
+        }
+
+        publisherRepository.deleteAllByIdIn(requested);
+
+        found.forEach(publisher -> cacheManager.clearPublisherCache(publisher.getName()));
+        cacheManager.clearMatching(value -> value instanceof PublisherDto publisher
+                && requested.contains(publisher.getId()));
+        requested.forEach(id -> eventPublisher.publishEvent(CatalogChangeEvent.deleted(EntityType.PUBLISHER, id)));
     }
 
     @Transactional
     public PublisherDto update(Long id, PublisherDto dto) {
+        rejectUnknown(id);
         Publisher publisher = publisherRepository.findById(id)
                 .orElseThrow(() -> new PublisherNotFoundException(id));
+        if (dto.getVersion() != null && !dto.getVersion().equals(publisher.getVersion())) {
+            throw new VersionConflictException("Publisher", id, dto.getVersion());
+        }
         String oldPublisherName = publisher.getName();
 
         PublisherMapper.updateFromDto(publisher, dto);
@@ -110,6 +256,48 @@ public class PublisherService {
         cacheManager.clearPublisherCache(oldPublisherName);
         cacheManager.clearPublisherCache(dto.getName());
         cacheManager.clearByPrefix(PUBLISHER_PREFIX + id);
-        return PublisherMapper.toDto(savedPublisher);
+        PublisherDto savedDto = PublisherMapper.toDto(savedPublisher);
+        eventPublisher.publishEvent(CatalogChangeEvent.updated(EntityType.PUBLISHER, id, savedDto));
+        return savedDto;
+    }
+
+    /**
+     * Переименование одним условным UPDATE, без загрузки сущности.
+     *
+     * @return новая версия
+     */
+    @Transactional
+    public long patch(Long id, PublisherDto changes) {
+        if (changes.getVersion() == null) {
+            throw new ValidationException("Version is required for a partial update");
+        }
+        if (changes.getName() == null || changes.getName().trim().isEmpty()) {
+            throw new ValidationException("Name cannot be null or empty");
+        }
+        rejectUnknown(id);
+        if (publisherRepository.patchName(id, changes.getVersion(), changes.getName()) == 0) {
+            if (!publisherRepository.existsById(id)) {
+                throw new PublisherNotFoundException(id);
+            }
+            throw new VersionConflictException("Publisher", id, changes.getVersion());
+        }
+
+        // Сбрасываются записи с этим издателем (в том числе DTO его книг) и поиски, под которые подходит новое имя
+        String folded = changes.getName().toLowerCase();
+        cacheManager.clearMatching(
+                key -> key.startsWith(SEARCH_PREFIX) && folded.contains(key.substring(SEARCH_PREFIX.length())),
+                value -> value instanceof PublisherDto publisher && id.equals(publisher.getId())
+                        || value instanceof BookDto book && id.equals(book.getPublisherId()));
+
+        PublisherDto patched = PublisherMapper.toDto(id, changes.getName());
+        patched.setVersion(changes.getVersion() + 1);
+        eventPublisher.publishEvent(CatalogChangeEvent.patched(EntityType.PUBLISHER, id, patched));
+        return patched.getVersion();
+    }
+
+    private void rejectUnknown(Long id) {
+        if (existenceIndex.isMissing(EntityType.PUBLISHER, id)) {
+            throw new PublisherNotFoundException(id);
+        }
     }
-}
\ No newline at end of file
+}
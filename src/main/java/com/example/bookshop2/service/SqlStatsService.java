@@ -0,0 +1,100 @@
+package com.example.bookshop2.service;
+
+import com.example.bookshop2.dto.EndpointSqlStatsDto;
+import com.example.bookshop2.monitoring.RequestSqlStats;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Сводка SQL-нагрузки по эндпоинтам и журнал запросов, превысивших бюджет по числу операторов или времени в БД.
+ */
+@Service
+public class SqlStatsService {
+    private static final Logger LOG = LoggerFactory.getLogger(SqlStatsService.class);
+    private static final int LOGGED_STATEMENTS = 10;
+    private final Map<String, EndpointStats> endpoints = new ConcurrentHashMap<>();
+    private final int statementBudget;
+    private final long dbTimeBudgetNanos;
+
+    public SqlStatsService(@Value("${bookshop.sql.statement-budget:20}") int statementBudget,
+                           @Value("${bookshop.sql.db-time-budget:200ms}") Duration dbTimeBudget) {
+        this.statementBudget = statementBudget;
+        this.dbTimeBudgetNanos = dbTimeBudget.toNanos();
+    }
+
+    public void record(RequestSqlStats stats) {
+        boolean overBudget = stats.getStatementCount() > statementBudget || stats.getDbNanos() > dbTimeBudgetNanos;
+        endpoints.computeIfAbsent(stats.getEndpoint(), key -> new EndpointStats()).add(stats, overBudget);
+        if (overBudget) {
+            logOverBudget(stats);
+        }
+    }
+
+    public List<EndpointSqlStatsDto> getAllStats() {
+        return endpoints.entrySet().stream()
+                .map(entry -> entry.getValue().toDto(entry.getKey()))
+                .sorted(Comparator.comparingLong(EndpointSqlStatsDto::getDbTimeMillis).reversed())
+                .toList();
+    }
+
+    public void reset() {
+        endpoints.clear();
+    }
+
+    private void logOverBudget(RequestSqlStats stats) {
+        StringBuilder statements = new StringBuilder();
+        for (RequestSqlStats.Statement statement : stats.slowest(LOGGED_STATEMENTS)) {
+            statements.append(System.lineSeparator())
+                    .append(String.format("  %d x, %d мс: %s", statement.getCount(),
+                            TimeUnit.NANOSECONDS.toMillis(statement.getNanos()), statement.getSql()));
+        }
+        LOG.warn("Превышен бюджет SQL: {} — {} операторов (бюджет {}), {} строк, {} мс в БД (бюджет {} мс){}",
+                stats.getEndpoint(), stats.getStatementCount(), statementBudget, stats.getRows(),
+                TimeUnit.NANOSECONDS.toMillis(stats.getDbNanos()), TimeUnit.NANOSECONDS.toMillis(dbTimeBudgetNanos),
+                statements);
+    }
+
+    private static final class EndpointStats {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder statements = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder dbNanos = new LongAdder();
+        private final LongAdder overBudget = new LongAdder();
+        private final LongAccumulator maxStatements = new LongAccumulator(Math::max, 0);
+
+        private void add(RequestSqlStats stats, boolean exceeded) {
+            requests.increment();
+            statements.add(stats.getStatementCount());
+            rows.add(stats.getRows());
+            dbNanos.add(stats.getDbNanos());
+            maxStatements.accumulate(stats.getStatementCount());
+            if (exceeded) {
+                overBudget.increment();
+            }
+        }
+
+        private EndpointSqlStatsDto toDto(String endpoint) {
+            EndpointSqlStatsDto dto = new EndpointSqlStatsDto();
+            long requestCount = requests.sum();
+            dto.setEndpoint(endpoint);
+            dto.setRequests(requestCount);
+            dto.setStatements(statements.sum());
+            dto.setRows(rows.sum());
+            dto.setDbTimeMillis(TimeUnit.NANOSECONDS.toMillis(dbNanos.sum()));
+            dto.setAvgStatements(requestCount == 0 ? 0.0 : (double) dto.getStatements() / requestCount);
+            dto.setMaxStatements(maxStatements.get());
+            dto.setOverBudget(overBudget.sum());
+            return dto;
+        }
+    }
+}
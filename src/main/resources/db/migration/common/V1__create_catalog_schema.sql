@@ -0,0 +1,34 @@
+-- Схема каталога в том виде, в котором её создавал ddl-auto=update
+CREATE SEQUENCE authors_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE publishers_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE books_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE authors (
+    id   BIGINT NOT NULL,
+    name VARCHAR(255),
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE publishers (
+    id   BIGINT NOT NULL,
+    name VARCHAR(255),
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE books (
+    id           BIGINT NOT NULL,
+    name         VARCHAR(255),
+    genre        VARCHAR(255),
+    price        FLOAT(53),
+    publisher_id BIGINT,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_books_publisher FOREIGN KEY (publisher_id) REFERENCES publishers (id)
+);
+
+CREATE TABLE book_author (
+    book_id   BIGINT NOT NULL,
+    author_id BIGINT NOT NULL,
+    PRIMARY KEY (book_id, author_id),
+    CONSTRAINT fk_book_author_book FOREIGN KEY (book_id) REFERENCES books (id),
+    CONSTRAINT fk_book_author_author FOREIGN KEY (author_id) REFERENCES authors (id)
+);
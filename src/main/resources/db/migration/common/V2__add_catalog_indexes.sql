@@ -0,0 +1,6 @@
+-- Индексы под запросы репозиториев; book_author(book_id, ...) уже покрыт первичным ключом
+CREATE INDEX idx_books_publisher_id ON books (publisher_id);
+CREATE INDEX idx_books_price ON books (price, id);
+CREATE INDEX idx_publishers_name ON publishers (name);
+CREATE INDEX idx_authors_name ON authors (name);
+CREATE INDEX idx_book_author_author_id ON book_author (author_id);
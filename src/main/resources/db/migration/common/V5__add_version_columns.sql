@@ -0,0 +1,4 @@
+-- Счётчики версий для оптимистической блокировки (@Version); существующие строки начинают с 0
+ALTER TABLE authors ADD COLUMN version BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE publishers ADD COLUMN version BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE books ADD COLUMN version BIGINT DEFAULT 0 NOT NULL;
@@ -0,0 +1,2 @@
+-- Массовая переоценка по жанру идёт пачками по возрастанию id внутри жанра
+CREATE INDEX idx_books_genre ON books (genre, id);
@@ -0,0 +1,8 @@
+-- Имена авторов и издателей не уникальны: пакетный upsert сводит имя к записи с наименьшим id.
+-- Одновременные upsert одного типа сериализуются блокировкой его строки здесь (SELECT ... FOR UPDATE),
+-- чтобы два запроса не вставили одно и то же новое имя дважды. Данные каталога не меняются
+CREATE TABLE name_upsert_locks (
+    entity_type VARCHAR(32) PRIMARY KEY
+);
+INSERT INTO name_upsert_locks (entity_type) VALUES ('AUTHOR');
+INSERT INTO name_upsert_locks (entity_type) VALUES ('PUBLISHER');
@@ -0,0 +1,16 @@
+-- Журнал изменений каталога для GET /changes, общий для всех экземпляров приложения. Строки пишутся
+-- в транзакции самого изменения, номера выдаёт счётчик catalog_change_head: транзакция сдвигает его
+-- перед коммитом и держит блокировку строки до конца, поэтому номера фиксируются по возрастанию
+-- (у последовательности меньший номер мог бы стать видимым позже большего)
+CREATE TABLE catalog_change_head (
+    id INT PRIMARY KEY,
+    seq BIGINT NOT NULL
+);
+INSERT INTO catalog_change_head (id, seq) VALUES (1, 0);
+
+CREATE TABLE catalog_changes (
+    seq BIGINT PRIMARY KEY,
+    entity_type VARCHAR(16) NOT NULL,
+    change_type VARCHAR(16) NOT NULL,
+    entity_id BIGINT NOT NULL
+);
@@ -0,0 +1,5 @@
+-- Spring Data строит IgnoreCase-запросы через UPPER(...), поэтому индексы по UPPER, а не по LOWER.
+-- text_pattern_ops нужен, чтобы LIKE 'префикс%' использовал индекс при любой локали базы.
+CREATE INDEX idx_authors_name_upper ON authors (UPPER(name) text_pattern_ops);
+CREATE INDEX idx_publishers_name_upper ON publishers (UPPER(name) text_pattern_ops);
+CREATE INDEX idx_books_name_upper ON books (UPPER(name) text_pattern_ops);
@@ -0,0 +1,8 @@
+-- Базы, созданные через ddl-auto до перехода на последовательности, содержат id больше их текущего значения
+CREATE SEQUENCE IF NOT EXISTS authors_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS publishers_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS books_seq START WITH 1 INCREMENT BY 50;
+
+SELECT setval('authors_seq', GREATEST((SELECT COALESCE(MAX(id), 0) FROM authors), 1));
+SELECT setval('publishers_seq', GREATEST((SELECT COALESCE(MAX(id), 0) FROM publishers), 1));
+SELECT setval('books_seq', GREATEST((SELECT COALESCE(MAX(id), 0) FROM books), 1));
@@ -0,0 +1,78 @@
+package com.example.bookshop2.aspect;
+
+import com.example.bookshop2.dto.AuthorDto;
+import com.example.bookshop2.dto.BookDto;
+import com.example.bookshop2.dto.CatalogStatsDto;
+import com.example.bookshop2.exception.ValidationException;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SparseFieldsAdviceTest {
+
+    private final SparseFieldsAdvice advice = new SparseFieldsAdvice();
+
+    @Test
+    void beforeBodyWrite_whenFieldsRequested_shouldKeepOnlyThemInRequestedOrder() throws Exception {
+        Object body = write(List.of(book()), "name, id");
+
+        assertThat(body).isEqualTo(List.of(Map.of("name", "Test Book", "id", 1L)));
+        assertThat(((List<?>) body).get(0)).isInstanceOfSatisfying(Map.class,
+                map -> assertThat(map.keySet()).containsExactly("name", "id"));
+    }
+
+    @Test
+    void beforeBodyWrite_whenFieldsMissing_shouldReturnBodyAsIs() throws Exception {
+        BookDto book = book();
+
+        assertThat(write(book, null)).isSameAs(book);
+    }
+
+    @Test
+    void beforeBodyWrite_whenFieldUnknownForType_shouldThrowValidationException() {
+        AuthorDto author = new AuthorDto();
+        author.setId(1L);
+
+        assertThrows(ValidationException.class, () -> write(author, "id,price"));
+    }
+
+    @Test
+    void beforeBodyWrite_whenBodyIsNotCatalogDto_shouldIgnoreFields() throws Exception {
+        CatalogStatsDto stats = new CatalogStatsDto();
+
+        assertThat(write(stats, "id")).isSameAs(stats);
+    }
+
+    private Object write(Object body, String fields) throws NoSuchMethodException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/books");
+        if (fields != null) {
+            request.setParameter("fields", fields);
+        }
+        MethodParameter returnType = new MethodParameter(SparseFieldsAdviceTest.class.getDeclaredMethod("book"), -1);
+        return advice.beforeBodyWrite(body, returnType, MediaType.APPLICATION_JSON,
+                MappingJackson2HttpMessageConverter.class,
+                new ServletServerHttpRequest(request),
+                new ServletServerHttpResponse(new MockHttpServletResponse()));
+    }
+
+    private static BookDto book() {
+        BookDto book = new BookDto();
+        book.setId(1L);
+        book.setName("Test Book");
+        book.setPrice(25.0);
+        book.setAuthorNames(Set.of("Test Author"));
+        return book;
+    }
+}
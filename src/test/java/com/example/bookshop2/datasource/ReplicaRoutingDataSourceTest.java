@@ -0,0 +1,192 @@
+package com.example.bookshop2.datasource;
+
+import com.example.bookshop2.datasource.ReplicaRoutingDataSource.Balancing;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// Две (или три) встроенные базы H2 в роли primary и реплик; каждая знает своё имя и «отставание»
+class ReplicaRoutingDataSourceTest {
+    private static final Duration MAX_LAG = Duration.ofSeconds(2);
+
+    private final DataSource primary = node("primary", 0);
+    private final DataSource replica1 = node("replica1", 0);
+    private final DataSource replica2 = node("replica2", 0);
+    private final List<Connection> open = new ArrayList<>();
+
+    private ReplicaRoutingDataSource router;
+    private ReplicaLagMonitor monitor;
+    private TransactionTemplate readWrite;
+    private TransactionTemplate readOnly;
+    private JdbcTemplate jdbc;
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        ReadYourWrites.unpin();
+        for (Connection connection : open) {
+            connection.close();
+        }
+        for (DataSource dataSource : List.of(primary, replica1, replica2)) {
+            new JdbcTemplate(dataSource).execute("SHUTDOWN");
+        }
+    }
+
+    private void route(Balancing balancing, DataSource... replicaSources) {
+        List<Replica> replicas = new ArrayList<>();
+        for (int i = 0; i < replicaSources.length; i++) {
+            replicas.add(new Replica("replica-" + i, replicaSources[i], MAX_LAG));
+        }
+        router = new ReplicaRoutingDataSource(primary, replicas, balancing);
+        monitor = new ReplicaLagMonitor(router.getReplicas(), "SELECT lag FROM node");
+        monitor.check();
+
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primary);
+        dataSource.setReadOnlyDataSource(router);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        readWrite = new TransactionTemplate(transactionManager);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        jdbc = new JdbcTemplate(dataSource);
+    }
+
+    private String nodeName(TransactionTemplate transaction) {
+        return transaction.execute(status -> jdbc.queryForObject("SELECT name FROM node", String.class));
+    }
+
+    @Test
+    void readOnlyTransaction_shouldGoToReplica() {
+        route(Balancing.ROUND_ROBIN, replica1);
+
+        assertThat(nodeName(readOnly)).isEqualTo("replica1");
+        assertThat(nodeName(readWrite)).isEqualTo("primary");
+    }
+
+    @Test
+    void writes_shouldGoToPrimary() {
+        route(Balancing.ROUND_ROBIN, replica1);
+
+        readWrite.executeWithoutResult(status -> jdbc.update("UPDATE node SET name = 'primary*'"));
+
+        assertThat(nodeName(readWrite)).isEqualTo("primary*");
+        assertThat(nodeName(readOnly)).isEqualTo("replica1");
+    }
+
+    @Test
+    void pinnedThread_shouldReadFromPrimary() {
+        route(Balancing.ROUND_ROBIN, replica1);
+
+        assertThat(ReadYourWrites.onPrimary(() -> nodeName(readOnly))).isEqualTo("primary");
+        assertThat(ReadYourWrites.isPinned()).isFalse();
+        assertThat(nodeName(readOnly)).isEqualTo("replica1");
+    }
+
+    @Test
+    void lagGuard_shouldSkipLaggingReplicaUntilItCatchesUp() {
+        route(Balancing.ROUND_ROBIN, replica1, replica2);
+        setLag(replica1, 10.0);
+        monitor.check();
+
+        assertThat(nodeName(readOnly)).isEqualTo("replica2");
+        assertThat(nodeName(readOnly)).isEqualTo("replica2");
+
+        setLag(replica2, 3.0);
+        monitor.check();
+        assertThat(nodeName(readOnly)).isEqualTo("primary");
+
+        setLag(replica1, 0.5);
+        monitor.check();
+        assertThat(nodeName(readOnly)).isEqualTo("replica1");
+        assertThat(router.getReplicas().get(0).getLagMillis()).isEqualTo(500);
+    }
+
+    @Test
+    void replicaWithoutMeasuredLag_shouldNotBeUsed() {
+        router = new ReplicaRoutingDataSource(primary, List.of(new Replica("fresh", replica1, MAX_LAG)),
+                Balancing.ROUND_ROBIN);
+
+        assertThat(nameVia(router)).isEqualTo("primary");
+    }
+
+    @Test
+    void roundRobin_shouldAlternateReplicas() {
+        route(Balancing.ROUND_ROBIN, replica1, replica2);
+
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            names.add(nodeName(readOnly));
+        }
+
+        assertThat(names).containsExactly("replica1", "replica2", "replica1", "replica2");
+    }
+
+    @Test
+    void leastLoaded_shouldPickReplicaWithFewestOpenConnections() throws SQLException {
+        route(Balancing.LEAST_LOADED, replica1, replica2);
+        Connection held = router.getConnection();
+        open.add(router.getConnection());
+        open.add(held);
+        Replica first = router.getReplicas().get(0);
+        Replica second = router.getReplicas().get(1);
+        assertThat(first.getActiveConnections()).isEqualTo(1);
+        assertThat(second.getActiveConnections()).isEqualTo(1);
+
+        held.close();
+        held.close();
+        Replica freed = first.getActiveConnections() == 0 ? first : second;
+        assertThat(freed.getActiveConnections()).isZero();
+
+        String expected = freed == first ? "replica1" : "replica2";
+        for (int i = 0; i < 3; i++) {
+            assertThat(nodeName(readOnly)).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void failingReplica_shouldFallBackToPrimaryAndLeaveRotation() throws SQLException {
+        DataSource broken = mock(DataSource.class);
+        when(broken.getConnection()).thenThrow(new SQLException("connection refused"));
+        router = new ReplicaRoutingDataSource(primary, List.of(new Replica("broken", broken, MAX_LAG)),
+                Balancing.ROUND_ROBIN);
+        router.getReplicas().get(0).updateLag(0);
+
+        assertThat(nameVia(router)).isEqualTo("primary");
+        assertThat(router.getReplicas().get(0).isAvailable()).isFalse();
+        assertThat(router.getReplicas().get(0).getActiveConnections()).isZero();
+
+        new ReplicaLagMonitor(router.getReplicas(), "SELECT lag FROM node").check();
+        assertThat(router.getReplicas().get(0).isAvailable()).isFalse();
+    }
+
+    private static String nameVia(DataSource dataSource) {
+        return new JdbcTemplate(dataSource).queryForObject("SELECT name FROM node", String.class);
+    }
+
+    private static void setLag(DataSource dataSource, double seconds) {
+        new JdbcTemplate(dataSource).update("UPDATE node SET lag = ?", seconds);
+    }
+
+    private static DataSource node(String name, double lag) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name + "_" + System.nanoTime() + ";DB_CLOSE_DELAY=-1");
+        dataSource.setUser("sa");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("CREATE TABLE node (name VARCHAR(32), lag DOUBLE PRECISION)");
+        jdbc.update("INSERT INTO node VALUES (?, ?)", name, lag);
+        return dataSource;
+    }
+}
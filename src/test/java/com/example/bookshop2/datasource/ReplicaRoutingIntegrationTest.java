@@ -0,0 +1,97 @@
+package com.example.bookshop2.datasource;
+
+import com.example.bookshop2.dto.AuthorDto;
+import com.example.bookshop2.model.Author;
+import com.example.bookshop2.service.AuthorService;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import org.awaitility.Awaitility;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Полный контекст: primary — тестовая база H2, реплика — вторая база H2 с той же схемой, но своими данными
+@ActiveProfiles("test")
+@SpringBootTest(properties = {
+        "bookshop.datasource.replicas[0].url=" + ReplicaRoutingIntegrationTest.REPLICA_URL,
+        "bookshop.datasource.lag-query=SELECT 0",
+        "bookshop.datasource.lag-check-interval=100ms"
+})
+class ReplicaRoutingIntegrationTest {
+    static final String REPLICA_URL = "jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE";
+    private static final JdbcTemplate REPLICA = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+
+    @Autowired
+    private AuthorService authorService;
+    @Autowired
+    private ReplicaRoutingDataSource replicaDataSource;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @BeforeAll
+    static void createReplicaSchema() {
+        Flyway.configure()
+                .dataSource(REPLICA_URL, "sa", "")
+                .locations("classpath:db/migration/common")
+                .load()
+                .migrate();
+        REPLICA.update("INSERT INTO authors (id, name) VALUES (-1, 'Replica Only')");
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReadYourWrites.unpin();
+    }
+
+    @Test
+    void readOnlyServiceMethods_shouldReadFromReplicaAndWritesGoToPrimary() {
+        Awaitility.await().atMost(5, TimeUnit.SECONDS)
+                .until(() -> replicaDataSource.getReplicas().get(0).isAvailable());
+
+        AuthorDto author = new AuthorDto();
+        author.setName("Primary Only");
+        AuthorDto created = authorService.create(author);
+        try {
+            assertThat(authorService.findAll()).extracting(AuthorDto::getName)
+                    .contains("Replica Only")
+                    .doesNotContain("Primary Only");
+            assertThat(ReadYourWrites.onPrimary(authorService::findAll)).extracting(AuthorDto::getName)
+                    .contains("Primary Only")
+                    .doesNotContain("Replica Only");
+        } finally {
+            authorService.delete(created.getId());
+        }
+    }
+
+    @Test
+    void readOnlyTransactions_shouldNotPutReplicaRowsIntoSecondLevelCache() {
+        Awaitility.await().atMost(5, TimeUnit.SECONDS)
+                .until(() -> replicaDataSource.getReplicas().get(0).isAvailable());
+
+        AuthorDto author = new AuthorDto();
+        author.setName("Primary Cached");
+        AuthorDto created = authorService.create(author);
+        try {
+            Cache cache = entityManagerFactory.getCache();
+            cache.evict(Author.class);
+
+            authorService.findAll();
+            assertThat(cache.contains(Author.class, -1L)).isFalse();
+
+            ReadYourWrites.onPrimary(authorService::findAll);
+            assertThat(cache.contains(Author.class, created.getId())).isTrue();
+        } finally {
+            authorService.delete(created.getId());
+        }
+    }
+}
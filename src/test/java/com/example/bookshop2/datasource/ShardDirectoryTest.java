@@ -0,0 +1,33 @@
+package com.example.bookshop2.datasource;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ShardDirectoryTest {
+
+    @Test
+    void put_shouldMoveBookBetweenShards() {
+        ShardDirectory directory = new ShardDirectory(3);
+        directory.addAll(0, List.of(1L, 2L));
+
+        directory.put(2L, 2);
+
+        assertThat(directory.shardOf(1L)).isZero();
+        assertThat(directory.shardOf(2L)).isEqualTo(2);
+        directory.remove(2L);
+        assertThat(directory.shardOf(2L)).isEqualTo(ShardDirectory.UNKNOWN);
+    }
+
+    @Test
+    void shardOf_whenBookLoadedInSeveralShards_shouldBeUnknown() {
+        ShardDirectory directory = new ShardDirectory(2);
+        // Книга перенесена во время загрузки: обе карты видели её
+        directory.addAll(0, List.of(7L));
+        directory.addAll(1, List.of(7L));
+
+        assertThat(directory.shardOf(7L)).isEqualTo(ShardDirectory.UNKNOWN);
+    }
+}
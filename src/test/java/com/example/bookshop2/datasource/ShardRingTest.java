@@ -0,0 +1,47 @@
+package com.example.bookshop2.datasource;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ShardRingTest {
+
+    @Test
+    void shardOf_shouldSpreadPublishersOverAllShards() {
+        ShardRing ring = new ShardRing(4, 160);
+        int[] publishers = new int[4];
+
+        LongStream.rangeClosed(1, 10_000).forEach(id -> publishers[ring.shardOf(id)]++);
+
+        // Идеально по 2500; при 160 точках на шард отклонение укладывается в 20%
+        assertThat(IntStream.of(publishers)).allSatisfy(count -> assertThat(count).isBetween(2000, 3000));
+    }
+
+    @Test
+    void shardOf_whenShardAdded_shouldMoveOnlyPublishersOfNewShard() {
+        ShardRing before = new ShardRing(3, 160);
+        ShardRing after = new ShardRing(4, 160);
+
+        long moved = LongStream.rangeClosed(1, 10_000)
+                .filter(id -> before.shardOf(id) != after.shardOf(id))
+                .peek(id -> assertThat(after.shardOf(id)).isEqualTo(3))
+                .count();
+
+        assertThat(moved).isBetween(2000L, 3000L);
+    }
+
+    @Test
+    void shardOf_withoutPublisher_shouldReturnHomeShard() {
+        assertThat(new ShardRing(3, 16).shardOf(null)).isEqualTo(Shards.HOME);
+        assertThat(new ShardRing(1, 16).shardOf(42L)).isEqualTo(Shards.HOME);
+    }
+
+    @Test
+    void constructor_whenNoShards_shouldThrowIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> new ShardRing(0, 16));
+    }
+}
@@ -0,0 +1,224 @@
+package com.example.bookshop2.datasource;
+
+import com.example.bookshop2.dto.AuthorDto;
+import com.example.bookshop2.dto.BookDto;
+import com.example.bookshop2.dto.PublisherDto;
+import com.example.bookshop2.model.Book;
+import com.example.bookshop2.model.Publisher;
+import com.example.bookshop2.repository.BookRepository;
+import com.example.bookshop2.repository.PublisherRepository;
+import com.example.bookshop2.service.AuthorService;
+import com.example.bookshop2.service.BookService;
+import com.example.bookshop2.service.PublisherService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// Полный контекст с тремя базами H2: основная (шард 0) и два шарда книг
+@ActiveProfiles("test")
+@SpringBootTest(properties = {
+        "spring.datasource.url=" + ShardingIntegrationTest.HOME_URL,
+        "bookshop.datasource.shards[0].url=jdbc:h2:mem:shard-1;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "bookshop.datasource.shards[1].url=jdbc:h2:mem:shard-2;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "bookshop.datasource.virtual-nodes=32"
+})
+class ShardingIntegrationTest {
+    static final String HOME_URL = "jdbc:h2:mem:shard-home;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE";
+    private static final List<JdbcTemplate> DATABASES = List.of(
+            database(HOME_URL),
+            database("jdbc:h2:mem:shard-1;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE"),
+            database("jdbc:h2:mem:shard-2;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE"));
+
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private AuthorService authorService;
+    @Autowired
+    private PublisherService publisherService;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private PublisherRepository publisherRepository;
+    @Autowired
+    private ShardRing ring;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private AuthorDto author;
+    // Издатели на трёх разных шардах: publishers.get(k) лежит в шарде k
+    private final List<PublisherDto> publishers = new ArrayList<>(List.of(new PublisherDto(), new PublisherDto(), new PublisherDto()));
+
+    @BeforeEach
+    void setUp() {
+        author = authorService.create(author("Sharded Author " + System.nanoTime()));
+        int found = 0;
+        for (int i = 0; found < 3 && i < 100; i++) {
+            PublisherDto publisher = publisherService.create(publisher("Sharded Publisher " + System.nanoTime()));
+            int shard = ring.shardOf(publisher.getId());
+            if (publishers.get(shard).getId() == null) {
+                publishers.set(shard, publisher);
+                found++;
+            }
+        }
+        assertThat(found).isEqualTo(3);
+    }
+
+    @Test
+    void create_shouldStoreBookInPublisherShardAndMirrorReferences() {
+        BookDto book = bookService.create(book("On Shard 2", 2, 10.0));
+
+        assertThat(bookCount(2, book.getId())).isEqualTo(1);
+        assertThat(bookCount(0, book.getId()) + bookCount(1, book.getId())).isZero();
+        for (JdbcTemplate database : DATABASES) {
+            assertThat(database.queryForObject("SELECT name FROM authors WHERE id = ?", String.class, author.getId()))
+                    .isEqualTo(author.getName());
+        }
+        assertThat(bookService.findById(book.getId()).getAuthorNames()).containsExactly(author.getName());
+        assertThat(bookService.findByPublisherId(publishers.get(2).getId()))
+                .extracting(BookDto::getId).containsExactly(book.getId());
+    }
+
+    @Test
+    void reads_shouldMergeBooksFromAllShards() {
+        List<Long> ids = new ArrayList<>();
+        for (int shard = 0; shard < 3; shard++) {
+            ids.add(bookService.create(book("Merged " + shard, shard, 0.001 + shard * 0.001)).getId());
+        }
+
+        assertThat(bookService.findAll()).extracting(BookDto::getId).containsAll(ids);
+        assertThat(bookService.findByPriceRange(0.0005, 0.0035)).extracting(BookDto::getId)
+                .containsExactlyInAnyOrderElementsOf(ids);
+        assertThat(bookService.findCheapest(3)).extracting(BookDto::getId).containsExactlyElementsOf(ids);
+        // Вне транзакции каждый шард читается в своей
+        assertThat(bookRepository.findAllById(ids)).hasSize(3);
+        assertThat(bookRepository.count()).isGreaterThanOrEqualTo(3);
+    }
+
+    @Test
+    void update_withPublisherOnOtherShard_shouldMoveBook() {
+        BookDto book = bookService.create(book("Moving", 1, 20.0));
+
+        BookDto changed = book("Moved", 2, 21.0);
+        changed.setVersion(book.getVersion());
+        BookDto moved = bookService.update(book.getId(), changed);
+
+        assertThat(bookCount(1, book.getId())).isZero();
+        assertThat(bookCount(2, book.getId())).isEqualTo(1);
+        assertThat(moved.getVersion()).isGreaterThan(book.getVersion());
+        BookDto reloaded = bookService.findById(book.getId());
+        assertThat(reloaded.getName()).isEqualTo("Moved");
+        assertThat(reloaded.getPublisherId()).isEqualTo(publishers.get(2).getId());
+        assertThat(reloaded.getAuthorIds()).containsExactly(author.getId());
+    }
+
+    @Test
+    void saveAll_whenEveryBookMovesShard_shouldMoveThemAll() {
+        Long first = bookService.create(book("Moving 1", 1, 30.0)).getId();
+        Long second = bookService.create(book("Moving 2", 1, 31.0)).getId();
+
+        // На месте не остаётся ни одной книги: в шарды уходит пустой список
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            Publisher target = publisherRepository.findById(publishers.get(2).getId()).orElseThrow();
+            List<Book> books = bookRepository.findAllById(List.of(first, second));
+            books.forEach(book -> book.setPublisher(target));
+            assertThat(bookRepository.saveAll(books)).extracting(Book::getId).containsExactlyInAnyOrder(first, second);
+        });
+
+        assertThat(bookCount(1, first) + bookCount(1, second)).isZero();
+        assertThat(bookCount(2, first) + bookCount(2, second)).isEqualTo(2);
+        assertThat(bookRepository.saveAll(List.of())).isEmpty();
+    }
+
+    @Test
+    void streamAll_shouldMergeShardCursorsInIdOrder() {
+        List<Long> ids = new ArrayList<>();
+        for (int shard : new int[]{2, 0, 1, 2}) {
+            ids.add(bookService.create(book("Streamed " + shard, shard, 40.0)).getId());
+        }
+
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        List<Long> streamed = readOnly.execute(status -> {
+            try (Stream<Book> books = bookRepository.streamAll()) {
+                // Ленивые авторы текущей книги ещё читаются из сессии её шарда
+                return books.peek(book -> assertThat(book.getAuthors()).isNotEmpty()).map(Book::getId).toList();
+            }
+        });
+
+        assertThat(streamed).isSorted().containsAll(ids);
+        assertThrows(InvalidDataAccessApiUsageException.class, () -> bookRepository.streamAll());
+    }
+
+    @Test
+    void deleteBulk_shouldDeleteBooksOnEveryShard() {
+        Long first = bookService.create(book("Bulk 1", 1, 5.0)).getId();
+        Long second = bookService.create(book("Bulk 2", 2, 5.0)).getId();
+
+        bookService.deleteBulk(Set.of(first, second));
+
+        assertThat(bookCount(1, first) + bookCount(2, second)).isZero();
+        assertThat(bookRepository.findAllById(List.of(first, second))).isEmpty();
+    }
+
+    @Test
+    void publisherChanges_shouldBeMirroredToShards() {
+        PublisherDto publisher = publishers.get(1);
+        publisher.setName("Renamed " + System.nanoTime());
+        publisherService.update(publisher.getId(), publisher);
+
+        assertThat(DATABASES.get(2).queryForObject("SELECT name FROM publishers WHERE id = ?",
+                String.class, publisher.getId())).isEqualTo(publisher.getName());
+
+        // Книги издателя лежат не в основной базе, но удаление всё равно запрещено
+        bookService.create(book("Keeps Publisher", 1, 7.0));
+        assertThrows(DataIntegrityViolationException.class, () -> publisherService.delete(publisher.getId()));
+        assertThat(DATABASES.get(0).queryForObject("SELECT COUNT(*) FROM publishers WHERE id = ?",
+                Long.class, publisher.getId())).isEqualTo(1);
+    }
+
+    private long bookCount(int shard, Long id) {
+        return DATABASES.get(shard).queryForObject("SELECT COUNT(*) FROM books WHERE id = ?", Long.class, id);
+    }
+
+    private BookDto book(String name, int shard, double price) {
+        BookDto book = new BookDto();
+        book.setName(name);
+        book.setGenre("Sharding");
+        book.setPrice(price);
+        book.setPublisherId(publishers.get(shard).getId());
+        book.setAuthorIds(Set.of(author.getId()));
+        return book;
+    }
+
+    private static AuthorDto author(String name) {
+        AuthorDto author = new AuthorDto();
+        author.setName(name);
+        return author;
+    }
+
+    private static PublisherDto publisher(String name) {
+        PublisherDto publisher = new PublisherDto();
+        publisher.setName(name);
+        return publisher;
+    }
+
+    private static JdbcTemplate database(String url) {
+        return new JdbcTemplate(new DriverManagerDataSource(url, "sa", ""));
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.bookshop2.event;
+
+import com.example.bookshop2.event.CatalogChangeEvent.ChangeType;
+import com.example.bookshop2.event.CatalogChangeEvent.EntityType;
+import com.example.bookshop2.repository.CatalogChangeRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// Журнал в базе: записи появляются только с коммитом изменения и видны любому экземпляру
+@ActiveProfiles("test")
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ChangeLogTest {
+
+    @Autowired
+    private CatalogChangeRepository changeRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private TransactionTemplate transaction;
+    private ChangeLog changeLog;
+
+    @BeforeEach
+    void setUp() {
+        transaction = new TransactionTemplate(transactionManager);
+        changeLog = new ChangeLog(changeRepository, transactionManager, 100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM catalog_changes");
+    }
+
+    @Test
+    void read_shouldReturnEntriesAfterSinceInOrder() {
+        long start = changeLog.head();
+        transaction.executeWithoutResult(status -> {
+            changeLog.onCatalogChange(CatalogChangeEvent.created(EntityType.AUTHOR, 5L, null));
+            changeLog.onCatalogChange(CatalogChangeEvent.deleted(EntityType.BOOK, 7L));
+        });
+
+        ChangeLogPage page = changeLog.read(start, 10);
+
+        assertThat(page.isExpired()).isFalse();
+        assertThat(page.getHead()).isEqualTo(start + 2);
+        assertThat(page.getEntries()).extracting(ChangeLogEntry::getSeq).containsExactly(start + 1, start + 2);
+        assertThat(page.getEntries().get(1).getEntityType()).isEqualTo(EntityType.BOOK);
+        assertThat(page.getEntries().get(1).getChangeType()).isEqualTo(ChangeType.DELETED);
+        assertThat(changeLog.read(start + 2, 10).getEntries()).isEmpty();
+    }
+
+    @Test
+    void onCatalogChange_whenTransactionRollsBack_shouldNotLogAnything() {
+        long start = changeLog.head();
+
+        assertThrows(IllegalStateException.class, () -> transaction.executeWithoutResult(status -> {
+            changeLog.onCatalogChange(CatalogChangeEvent.created(EntityType.AUTHOR, 5L, null));
+            throw new IllegalStateException("write failed");
+        }));
+
+        assertThat(changeLog.head()).isEqualTo(start);
+        assertThat(changeLog.read(start, 10).getEntries()).isEmpty();
+    }
+
+    @Test
+    void read_shouldSeeChangesWrittenThroughAnotherInstance() {
+        ChangeLog otherInstance = new ChangeLog(changeRepository, transactionManager, 100);
+        long start = changeLog.head();
+        transaction.executeWithoutResult(status ->
+                otherInstance.onCatalogChange(CatalogChangeEvent.updated(EntityType.PUBLISHER, 3L, null)));
+        changeLog.onCatalogChange(CatalogChangeEvent.updated(EntityType.BOOK, 4L, null));
+
+        assertThat(changeLog.read(start, 10).getEntries()).extracting(ChangeLogEntry::getId)
+                .containsExactly(3L, 4L);
+    }
+
+    @Test
+    void onCatalogChange_whenAnotherTransactionIsCommitting_shouldWaitForItsNumbers() throws Exception {
+        long start = changeLog.head();
+        CountDownLatch numbered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> first = CompletableFuture.runAsync(() -> transaction.executeWithoutResult(status -> {
+            changeLog.onCatalogChange(CatalogChangeEvent.created(EntityType.BOOK, 1L, null));
+            // Строка счётчика заблокирована, как во время коммита этой транзакции
+            changeRepository.advanceHead(0);
+            numbered.countDown();
+            await(release);
+        }));
+        assertThat(numbered.await(10, TimeUnit.SECONDS)).isTrue();
+
+        CompletableFuture<Void> second = CompletableFuture.runAsync(() -> transaction.executeWithoutResult(status ->
+                changeLog.onCatalogChange(CatalogChangeEvent.created(EntityType.BOOK, 2L, null))));
+        Thread.sleep(200);
+
+        assertThat(second).isNotDone();
+        release.countDown();
+        first.get(10, TimeUnit.SECONDS);
+        second.get(10, TimeUnit.SECONDS);
+        assertThat(changeLog.read(start, 10).getEntries()).extracting(ChangeLogEntry::getId)
+                .containsExactly(1L, 2L);
+    }
+
+    @Test
+    void read_whenSinceOutsideWindow_shouldBeExpired() {
+        changeLog = new ChangeLog(changeRepository, transactionManager, 8);
+        long start = changeLog.head();
+        appendBooks(1, 20);
+
+        changeLog.prune();
+
+        // Остались 13-20
+        assertThat(changeLog.read(start + 11, 10).isExpired()).isTrue();
+        assertThat(changeLog.read(start + 12, 10).getEntries()).extracting(ChangeLogEntry::getId)
+                .containsExactlyElementsOf(LongStream.rangeClosed(13, 20).boxed().toList());
+        assertThat(changeLog.read(start + 21, 10).isExpired()).isTrue();
+    }
+
+    @Test
+    void read_whenLogIsEmpty_shouldAcceptOnlyHead() {
+        long head = changeLog.head();
+
+        assertThat(changeLog.read(head, 10).isExpired()).isFalse();
+        assertThat(changeLog.read(head + 1, 10).isExpired()).isTrue();
+    }
+
+    private void appendBooks(long from, long to) {
+        transaction.executeWithoutResult(status -> {
+            for (long id = from; id <= to; id++) {
+                changeLog.onCatalogChange(CatalogChangeEvent.updated(EntityType.BOOK, id, null));
+            }
+        });
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
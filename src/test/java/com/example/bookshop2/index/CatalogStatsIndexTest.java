@@ -0,0 +1,117 @@
+package com.example.bookshop2.index;
+
+import com.example.bookshop2.dto.BookDto;
+import com.example.bookshop2.dto.CatalogStatsDto;
+import com.example.bookshop2.dto.GenreStatsDto;
+import com.example.bookshop2.dto.PriceBucketDto;
+import com.example.bookshop2.event.CatalogChangeEvent;
+import com.example.bookshop2.event.CatalogChangeEvent.EntityType;
+import com.example.bookshop2.repository.BookRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CatalogStatsIndexTest {
+
+    @Mock
+    private BookRepository bookRepository;
+
+    private CatalogStatsIndex catalogStatsIndex;
+
+    @BeforeEach
+    void setUp() {
+        catalogStatsIndex = new CatalogStatsIndex(bookRepository, new double[]{10, 20});
+        when(bookRepository.findGenrePriceCounts()).thenReturn(List.of(
+                new GenrePriceCount("Drama", 5.0, 2),
+                new GenrePriceCount("Drama", 15.0, 1),
+                new GenrePriceCount("Poetry", 20.0, 1),
+                new GenrePriceCount(null, null, 1)));
+        catalogStatsIndex.load();
+    }
+
+    @Test
+    void load_shouldAggregateGroupedRows() {
+        CatalogStatsDto stats = catalogStatsIndex.snapshot();
+
+        assertThat(stats.getBooks()).isEqualTo(5);
+        assertThat(stats.getPricedBooks()).isEqualTo(4);
+        assertThat(stats.getMinPrice()).isEqualTo(5.0);
+        assertThat(stats.getAvgPrice()).isEqualTo(11.25);
+        assertThat(stats.getMaxPrice()).isEqualTo(20.0);
+        assertThat(stats.getGenres()).extracting(GenreStatsDto::getGenre).containsExactly("Drama", "Poetry", null);
+        GenreStatsDto drama = stats.getGenres().get(0);
+        assertThat(drama.getBooks()).isEqualTo(3);
+        assertThat(drama.getAvgPrice()).isEqualTo(8.33);
+        // Граница интервала относится к следующему: 20.0 попадает в открытый сверху
+        assertThat(stats.getPriceHistogram()).extracting(PriceBucketDto::getBooks).containsExactly(2L, 1L, 1L);
+        assertThat(stats.getPriceHistogram().get(2).getTo()).isNull();
+    }
+
+    @Test
+    void events_shouldMoveCountersUsingPreviousState() {
+        catalogStatsIndex.onCatalogChange(CatalogChangeEvent.created(EntityType.BOOK, 10L, book("Poetry", 30.0)));
+        catalogStatsIndex.onCatalogChange(CatalogChangeEvent.updated(EntityType.BOOK, 2L,
+                book("Poetry", 15.0), book("Drama", 15.0)));
+        catalogStatsIndex.onCatalogChange(CatalogChangeEvent.patched(EntityType.BOOK, 3L,
+                book(null, 12.0), book("Drama", 5.0)));
+        catalogStatsIndex.onCatalogChange(CatalogChangeEvent.deleted(EntityType.BOOK, 4L, book(null, null)));
+
+        CatalogStatsDto stats = catalogStatsIndex.snapshot();
+        assertThat(stats.getBooks()).isEqualTo(5);
+        assertThat(stats.getMaxPrice()).isEqualTo(30.0);
+        assertThat(stats.getGenres()).extracting(GenreStatsDto::getGenre).containsExactly("Drama", "Poetry");
+        GenreStatsDto drama = stats.getGenres().get(0);
+        assertThat(drama.getBooks()).isEqualTo(2);
+        assertThat(drama.getMinPrice()).isEqualTo(5.0);
+        assertThat(drama.getMaxPrice()).isEqualTo(12.0);
+        assertThat(stats.getGenres().get(1).getMinPrice()).isEqualTo(15.0);
+        assertThat(stats.getPriceHistogram()).extracting(PriceBucketDto::getBooks).containsExactly(1L, 2L, 2L);
+    }
+
+    @Test
+    void patchedWithoutPreviousState_shouldReloadFromDatabaseInBackground() {
+        catalogStatsIndex.onCatalogChange(CatalogChangeEvent.patched(EntityType.BOOK, 3L, book(null, 12.0)));
+        BookDto renamed = new BookDto();
+        renamed.setName("Renamed");
+        catalogStatsIndex.onCatalogChange(CatalogChangeEvent.patched(EntityType.BOOK, 3L, renamed));
+
+        // GROUP BY не выполняется в потоке события
+        verify(bookRepository, times(1)).findGenrePriceCounts();
+        catalogStatsIndex.rebuildIfStale();
+        catalogStatsIndex.rebuildIfStale();
+        verify(bookRepository, times(2)).findGenrePriceCounts();
+    }
+
+    @Test
+    void eventsDuringLoad_shouldBeAppliedToNewTotals() {
+        when(bookRepository.findGenrePriceCounts()).thenAnswer(invocation -> {
+            catalogStatsIndex.onCatalogChange(CatalogChangeEvent.created(EntityType.BOOK, 10L, book("Poetry", 30.0)));
+            catalogStatsIndex.onCatalogChange(CatalogChangeEvent.deleted(EntityType.BOOK, 4L, book(null, null)));
+            return List.of(new GenrePriceCount("Drama", 5.0, 2), new GenrePriceCount(null, null, 1));
+        });
+
+        catalogStatsIndex.load();
+
+        CatalogStatsDto stats = catalogStatsIndex.snapshot();
+        assertThat(stats.getBooks()).isEqualTo(3);
+        assertThat(stats.getGenres()).extracting(GenreStatsDto::getGenre).containsExactly("Drama", "Poetry");
+        assertThat(stats.getMaxPrice()).isEqualTo(30.0);
+    }
+
+    private static BookDto book(String genre, Double price) {
+        BookDto dto = new BookDto();
+        dto.setGenre(genre);
+        dto.setPrice(price);
+        return dto;
+    }
+}
@@ -0,0 +1,194 @@
+package com.example.bookshop2.index;
+
+import com.example.bookshop2.event.CatalogChangeEvent;
+import com.example.bookshop2.event.CatalogChangeEvent.ChangeType;
+import com.example.bookshop2.event.CatalogChangeEvent.EntityType;
+import com.example.bookshop2.event.ChangeLog;
+import com.example.bookshop2.event.ChangeLogEntry;
+import com.example.bookshop2.event.ChangeLogPage;
+import com.example.bookshop2.repository.AuthorRepository;
+import com.example.bookshop2.repository.BookRepository;
+import com.example.bookshop2.repository.PublisherRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ExistenceIndexTest {
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @Mock
+    private AuthorRepository authorRepository;
+
+    @Mock
+    private PublisherRepository publisherRepository;
+
+    @Mock
+    private ChangeLog changeLog;
+
+    private ExistenceIndex existenceIndex;
+
+    @BeforeEach
+    void setUp() {
+        existenceIndex = new ExistenceIndex(bookRepository, authorRepository, publisherRepository, changeLog);
+    }
+
+    @Test
+    void exists_whenIdIndexed_shouldAnswerWithoutDatabase() {
+        load();
+
+        assertThat(existenceIndex.exists(EntityType.BOOK, 2L)).isTrue();
+        assertThat(existenceIndex.isMissing(EntityType.BOOK, 2L)).isFalse();
+        assertThat(existenceIndex.missing(EntityType.AUTHOR, List.of(10L, 12L))).isEmpty();
+        verify(bookRepository, never()).existsById(2L);
+        verify(changeLog, times(1)).read(anyLong(), anyInt());
+    }
+
+    @Test
+    void isMissing_whenLogHasNothingNew_shouldRejectWithoutTouchingTables() {
+        load();
+
+        assertThat(existenceIndex.isMissing(EntityType.BOOK, 3L)).isTrue();
+        assertThat(existenceIndex.missing(EntityType.AUTHOR, List.of(10L, 11L, 12L))).containsExactly(11L);
+        verify(bookRepository, never()).existsById(3L);
+    }
+
+    @Test
+    void isMissing_whenOtherInstanceCreatedId_shouldFindItInSharedLog() {
+        load();
+        // Книгу 251 создал другой экземпляр: события здесь не было, запись есть только в журнале
+        when(changeLog.read(5L, 1000)).thenReturn(page(entry(6, EntityType.BOOK, ChangeType.CREATED, 251L)));
+
+        assertThat(existenceIndex.isMissing(EntityType.BOOK, 251L)).isFalse();
+        assertThat(existenceIndex.exists(EntityType.BOOK, 251L)).isTrue();
+    }
+
+    @Test
+    void poll_shouldApplyDeletesOfOtherInstances() {
+        load();
+        when(changeLog.read(5L, 1000)).thenReturn(page(
+                entry(6, EntityType.PUBLISHER, ChangeType.DELETED, 20L),
+                entry(7, EntityType.AUTHOR, ChangeType.UPDATED, 10L)));
+
+        existenceIndex.poll();
+        when(changeLog.read(7L, 1000)).thenReturn(page());
+
+        assertThat(existenceIndex.isMissing(EntityType.PUBLISHER, 20L)).isTrue();
+        assertThat(existenceIndex.exists(EntityType.AUTHOR, 10L)).isTrue();
+    }
+
+    @Test
+    void isMissing_whenMissesArriveDuringLogRead_shouldShareOneNextRead() throws Exception {
+        load();
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(changeLog.read(5L, 1000)).thenAnswer(invocation -> {
+            reading.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return page();
+        });
+        CompletableFuture<Boolean> first = CompletableFuture.supplyAsync(() -> existenceIndex.isMissing(EntityType.BOOK, 90L));
+        assertThat(reading.await(10, TimeUnit.SECONDS)).isTrue();
+
+        List<CompletableFuture<Boolean>> waiting = new ArrayList<>();
+        for (long id = 91; id < 96; id++) {
+            long probe = id;
+            waiting.add(CompletableFuture.supplyAsync(() -> existenceIndex.isMissing(EntityType.BOOK, probe),
+                    runnable -> new Thread(runnable).start()));
+        }
+        Thread.sleep(200);
+        release.countDown();
+
+        assertThat(first.get(10, TimeUnit.SECONDS)).isTrue();
+        for (CompletableFuture<Boolean> probe : waiting) {
+            assertThat(probe.get(10, TimeUnit.SECONDS)).isTrue();
+        }
+        // Чтение при загрузке, чтение первого промаха и одно общее для всех, кто пришёл во время него
+        verify(changeLog, times(3)).read(anyLong(), anyInt());
+    }
+
+    @Test
+    void onCatalogChange_shouldApplyOwnChangesImmediately() {
+        load();
+
+        existenceIndex.onCatalogChange(CatalogChangeEvent.created(EntityType.PUBLISHER, 30L, null));
+        existenceIndex.onCatalogChange(CatalogChangeEvent.deleted(EntityType.BOOK, 1L));
+
+        assertThat(existenceIndex.exists(EntityType.PUBLISHER, 30L)).isTrue();
+        assertThat(existenceIndex.isMissing(EntityType.BOOK, 1L)).isTrue();
+    }
+
+    @Test
+    void load_shouldReplayChangesCommittedWhileReadingIds() {
+        when(changeLog.head()).thenReturn(5L);
+        // Книга 2 удалена после того, как её id уже прочитан; журнал выдаёт номер 6
+        when(bookRepository.findAllIds()).thenReturn(List.of(1L, 2L, 4L));
+        when(authorRepository.findAllIds()).thenReturn(List.of());
+        when(publisherRepository.findAllIds()).thenReturn(List.of());
+        when(changeLog.read(5L, 1000)).thenReturn(page(entry(6, EntityType.BOOK, ChangeType.DELETED, 2L)));
+
+        existenceIndex.load();
+        when(changeLog.read(6L, 1000)).thenReturn(page());
+
+        assertThat(existenceIndex.isMissing(EntityType.BOOK, 2L)).isTrue();
+        assertThat(existenceIndex.exists(EntityType.BOOK, 4L)).isTrue();
+    }
+
+    @Test
+    void sync_whenLogWasPrunedPastPosition_shouldReload() {
+        load();
+        when(changeLog.read(5L, 1000)).thenReturn(new ChangeLogPage(true, 900L, List.of()));
+        when(changeLog.head()).thenReturn(900L);
+        when(bookRepository.findAllIds()).thenReturn(List.of(1L, 2L, 4L, 7L));
+        when(changeLog.read(900L, 1000)).thenReturn(page());
+
+        existenceIndex.poll();
+
+        assertThat(existenceIndex.exists(EntityType.BOOK, 7L)).isTrue();
+        verify(bookRepository, times(2)).findAllIds();
+    }
+
+    @Test
+    void exists_whenNotLoaded_shouldAskRepository() {
+        when(publisherRepository.existsById(1L)).thenReturn(false);
+
+        assertThat(existenceIndex.isMissing(EntityType.PUBLISHER, 1L)).isFalse();
+        assertThat(existenceIndex.missing(EntityType.PUBLISHER, List.of(1L))).isEmpty();
+        assertThat(existenceIndex.exists(EntityType.PUBLISHER, 1L)).isFalse();
+    }
+
+    private void load() {
+        when(changeLog.head()).thenReturn(5L);
+        when(bookRepository.findAllIds()).thenReturn(List.of(1L, 2L, 4L));
+        when(authorRepository.findAllIds()).thenReturn(List.of(10L, 12L));
+        when(publisherRepository.findAllIds()).thenReturn(List.of(20L));
+        when(changeLog.read(5L, 1000)).thenReturn(page());
+        existenceIndex.load();
+    }
+
+    private static ChangeLogPage page(ChangeLogEntry... entries) {
+        return new ChangeLogPage(false, 0L, List.of(entries));
+    }
+
+    private static ChangeLogEntry entry(long seq, EntityType type, ChangeType change, long id) {
+        return new ChangeLogEntry(seq, type, change, id);
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.bookshop2.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class IdBitmapTest {
+
+    @Test
+    void addAndRemove_shouldKeepIdsSortedAcrossContainers() {
+        IdBitmap bitmap = new IdBitmap();
+        bitmap.add(70_000L);
+        bitmap.add(3L);
+        bitmap.add(1L << 40);
+        bitmap.add(3L);
+        bitmap.remove(5L);
+
+        assertThat(bitmap.toArray()).containsExactly(3L, 70_000L, 1L << 40);
+        assertThat(bitmap.contains(70_000L)).isTrue();
+        assertThat(bitmap.contains(4L)).isFalse();
+
+        bitmap.remove(3L);
+        bitmap.remove(70_000L);
+        bitmap.remove(1L << 40);
+        assertThat(bitmap.isEmpty()).isTrue();
+        assertThrows(IllegalArgumentException.class, () -> bitmap.add(-1L));
+    }
+
+    @Test
+    void denseContainer_shouldSwitchToBitmapAndBack() {
+        IdBitmap bitmap = new IdBitmap();
+        for (long id = 0; id <= IdBitmap.ARRAY_LIMIT; id++) {
+            bitmap.add(id * 2);
+        }
+        assertThat(bitmap.cardinality()).isEqualTo(IdBitmap.ARRAY_LIMIT + 1);
+        assertThat(bitmap.contains(IdBitmap.ARRAY_LIMIT * 2L)).isTrue();
+        assertThat(bitmap.contains(1L)).isFalse();
+
+        bitmap.remove(0L);
+        bitmap.remove(2L);
+        assertThat(bitmap.cardinality()).isEqualTo(IdBitmap.ARRAY_LIMIT - 1);
+        assertThat(bitmap.toArray(0L, 2)).containsExactly(4L, 6L);
+    }
+
+    @Test
+    void and_shouldAgreeWithSetIntersectionForMixedContainers() {
+        Random random = new Random(7);
+        IdBitmap dense = new IdBitmap();
+        IdBitmap sparse = new IdBitmap();
+        TreeSet<Long> expectedDense = new TreeSet<>();
+        TreeSet<Long> expectedSparse = new TreeSet<>();
+        for (int i = 0; i < 20_000; i++) {
+            long id = random.nextInt(200_000);
+            dense.add(id);
+            expectedDense.add(id);
+        }
+        for (int i = 0; i < 500; i++) {
+            long id = random.nextInt(200_000);
+            sparse.add(id);
+            expectedSparse.add(id);
+        }
+        expectedSparse.retainAll(expectedDense);
+        long[] expected = expectedSparse.stream().mapToLong(Long::longValue).toArray();
+
+        assertThat(IdBitmap.and(dense, sparse).toArray()).containsExactly(expected);
+        assertThat(IdBitmap.and(sparse, dense).toArray()).containsExactly(expected);
+        assertThat(IdBitmap.and(dense, dense).cardinality()).isEqualTo(expectedDense.size());
+        assertThat(IdBitmap.andCardinality(dense, sparse)).isEqualTo(expected.length);
+        assertThat(IdBitmap.andCardinality(sparse, dense)).isEqualTo(expected.length);
+    }
+
+    @Test
+    void smallSet_shouldMoveToContainersPastLimitAndIntersectWithThem() {
+        IdBitmap small = new IdBitmap();
+        IdBitmap large = new IdBitmap();
+        for (long id = 0; id < IdBitmap.SMALL_LIMIT; id++) {
+            small.add(id * 100_000);
+            large.add(id * 200_000);
+        }
+        large.add(1L);
+        small.remove(100_000L);
+
+        assertThat(small.cardinality()).isEqualTo(IdBitmap.SMALL_LIMIT - 1);
+        assertThat(small.toArray(0L, 2)).containsExactly(200_000L, 300_000L);
+        assertThat(large.cardinality()).isEqualTo(IdBitmap.SMALL_LIMIT + 1);
+        assertThat(large.toArray(-1L, 3)).containsExactly(0L, 1L, 200_000L);
+        assertThat(IdBitmap.and(large, small).toArray()).hasSize(IdBitmap.SMALL_LIMIT / 2)
+                .startsWith(0L, 200_000L, 400_000L);
+        assertThat(IdBitmap.andCardinality(small, large)).isEqualTo(IdBitmap.SMALL_LIMIT / 2);
+    }
+
+    @Test
+    void toArray_shouldPageAfterCursor() {
+        IdBitmap bitmap = new IdBitmap();
+        for (long id = 1; id <= 10; id++) {
+            bitmap.add(id * 30_000);
+        }
+
+        assertThat(bitmap.toArray(60_000L, 3)).containsExactly(90_000L, 120_000L, 150_000L);
+        assertThat(bitmap.toArray(289_999L, 3)).containsExactly(300_000L);
+        assertThat(bitmap.toArray(300_000L, 3)).isEmpty();
+    }
+}
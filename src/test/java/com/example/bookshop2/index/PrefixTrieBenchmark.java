@@ -0,0 +1,58 @@
+package com.example.bookshop2.index;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Запуск: mvn test -Pbenchmark
+class PrefixTrieBenchmark {
+    private static final Logger LOG = LoggerFactory.getLogger(PrefixTrieBenchmark.class);
+    private static final int NAMES = 1_000_000;
+    private static final String[] WORDS = {
+        "War", "Peace", "Crime", "Punishment", "Master", "Margarita", "Idiot", "Dead", "Souls",
+        "Fathers", "Sons", "Anna", "Karenina", "Quiet", "Don", "Doctor", "Zhivago", "Garden", "Cherry", "Night"
+    };
+    private static final String[] PREFIXES = {"a", "war", "doctor zh", "master margarita 12", "xyz"};
+
+    @Test
+    void suggest_1M() {
+        Random random = new Random(1);
+        List<WeightedName> names = new ArrayList<>(NAMES);
+        for (int i = 0; i < NAMES; i++) {
+            names.add(new WeightedName(i + 1L, WORDS[random.nextInt(WORDS.length)] + " "
+                    + WORDS[random.nextInt(WORDS.length)] + " " + random.nextInt(1_000), random.nextInt(100)));
+        }
+
+        PrefixTrie trie = new PrefixTrie();
+        long start = System.nanoTime();
+        trie.reload(() -> names);
+        LOG.info("Построение дерева: {} имён за {} мс", NAMES, (System.nanoTime() - start) / 1_000_000);
+
+        int iterations = 100_000;
+        for (String prefix : PREFIXES) {
+            for (int i = 0; i < iterations; i++) {
+                trie.suggest(prefix, PrefixTrie.TOP_K);
+            }
+            long queryStart = System.nanoTime();
+            int found = 0;
+            for (int i = 0; i < iterations; i++) {
+                found = trie.suggest(prefix, PrefixTrie.TOP_K).size();
+            }
+            LOG.info("'{}': подсказок {}, {} нс на запрос", prefix, found,
+                    (System.nanoTime() - queryStart) / iterations);
+            assertThat(found).isLessThanOrEqualTo(PrefixTrie.TOP_K);
+        }
+
+        long updateStart = System.nanoTime();
+        for (int i = 0; i < 10_000; i++) {
+            trie.addWeight(1 + random.nextInt(NAMES), 1);
+        }
+        LOG.info("Инкремент веса: {} нс на операцию", (System.nanoTime() - updateStart) / 10_000);
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.bookshop2.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PrefixTrieTest {
+
+    private PrefixTrie trie;
+
+    @BeforeEach
+    void setUp() {
+        trie = new PrefixTrie();
+        trie.reload(() -> List.of(
+                new WeightedName(1L, "Stephen King", 3),
+                new WeightedName(2L, "Stephenie Meyer", 7),
+                new WeightedName(3L, "Stanislaw Lem", 7),
+                new WeightedName(4L, "Leo Tolstoy", 1),
+                new WeightedName(5L, null, 100)));
+    }
+
+    @Test
+    void suggest_shouldOrderByWeightThenId() {
+        assertThat(trie.suggest("st", 10)).extracting(IndexedName::getId).containsExactly(2L, 3L, 1L);
+        assertThat(trie.suggest("STEPHEN", 10)).extracting(IndexedName::getName)
+                .containsExactly("Stephenie Meyer", "Stephen King");
+    }
+
+    @Test
+    void suggest_shouldRespectLimitAndUnknownPrefix() {
+        assertThat(trie.suggest("s", 1)).extracting(IndexedName::getId).containsExactly(2L);
+        assertThat(trie.suggest("x", 10)).isEmpty();
+        assertThat(trie.suggest("Stephen King and more", 10)).isEmpty();
+    }
+
+    @Test
+    void addWeight_shouldReorderSuggestions() {
+        trie.addWeight(1L, 5);
+        assertThat(trie.suggest("st", 10)).extracting(IndexedName::getId).containsExactly(1L, 2L, 3L);
+
+        trie.addWeight(1L, -8);
+        assertThat(trie.suggest("st", 10)).extracting(IndexedName::getId).containsExactly(2L, 3L, 1L);
+        assertThat(trie.weight(1L)).isZero();
+    }
+
+    @Test
+    void addWeights_forRemovedId_shouldNotKeepWeight() {
+        trie.remove(2L);
+
+        trie.addWeights(Map.of(2L, 4L, 1L, 1L));
+
+        assertThat(trie.weight(2L)).isZero();
+        assertThat(trie.weight(1L)).isEqualTo(4);
+    }
+
+    @Test
+    void rename_shouldKeepWeight() {
+        trie.rename(4L, "Lev Tolstoy");
+
+        assertThat(trie.suggest("leo", 10)).isEmpty();
+        assertThat(trie.suggest("lev", 10)).containsExactly(new IndexedName(4L, "Lev Tolstoy"));
+        assertThat(trie.weight(4L)).isEqualTo(1);
+    }
+
+    @Test
+    void remove_shouldDropName() {
+        trie.remove(2L);
+
+        assertThat(trie.suggest("ste", 10)).extracting(IndexedName::getId).containsExactly(1L);
+        assertThat(trie.size()).isEqualTo(3);
+    }
+
+    @Test
+    void rename_shouldReuseNodesOfOldName() {
+        trie.rename(1L, "Richard Bachman");
+        int allocated = trie.allocatedNodes();
+
+        for (int i = 0; i < 1000; i++) {
+            trie.rename(1L, "Pseudonym " + i);
+        }
+        trie.remove(1L);
+        trie.put(6L, "Richard Bachman", 0);
+
+        assertThat(trie.allocatedNodes()).isEqualTo(allocated);
+        assertThat(trie.suggest("p", 10)).isEmpty();
+        assertThat(trie.suggest("stephen", 10)).extracting(IndexedName::getId).containsExactly(2L);
+        assertThat(trie.suggest("ri", 10)).extracting(IndexedName::getId).containsExactly(6L);
+    }
+
+    @Test
+    void suggest_shouldAgreeWithBruteForceAfterRandomUpdates() {
+        Random random = new Random(7);
+        String alphabet = "abAB c";
+        Map<Long, String> names = new HashMap<>();
+        Map<Long, Long> weights = new HashMap<>();
+        List<WeightedName> initial = new ArrayList<>();
+        for (long id = 1; id <= 300; id++) {
+            String name = randomString(random, alphabet, 1 + random.nextInt(6));
+            long weight = random.nextInt(5);
+            names.put(id, name);
+            weights.put(id, weight);
+            initial.add(new WeightedName(id, name, weight));
+        }
+        trie.reload(() -> initial);
+
+        for (int step = 0; step < 2_000; step++) {
+            long id = 1 + random.nextInt(400);
+            switch (random.nextInt(4)) {
+                case 0 -> {
+                    String name = randomString(random, alphabet, 1 + random.nextInt(6));
+                    trie.put(id, name, 0);
+                    names.put(id, name);
+                    weights.put(id, 0L);
+                }
+                case 1 -> {
+                    trie.remove(id);
+                    names.remove(id);
+                    weights.remove(id);
+                }
+                default -> {
+                    long delta = random.nextInt(7) - 3;
+                    trie.addWeight(id, delta);
+                    weights.merge(id, delta, Long::sum);
+                }
+            }
+            String prefix = randomString(random, alphabet, 1 + random.nextInt(3));
+            String folded = TrigramIndex.fold(prefix);
+            List<Long> expected = names.entrySet().stream()
+                    .filter(entry -> TrigramIndex.fold(entry.getValue()).startsWith(folded))
+                    .map(Map.Entry::getKey)
+                    .sorted(Comparator.<Long>comparingLong(key -> -weights.get(key)).thenComparing(key -> key))
+                    .limit(PrefixTrie.TOP_K)
+                    .toList();
+            assertThat(trie.suggest(prefix, PrefixTrie.TOP_K)).extracting(IndexedName::getId)
+                    .as("step %d, prefix '%s'", step, prefix)
+                    .isEqualTo(expected);
+        }
+    }
+
+    private static String randomString(Random random, String alphabet, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.bookshop2.index;
+
+import com.example.bookshop2.dto.BookFacetsDto;
+import com.example.bookshop2.repository.BookRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Запуск: mvn test -Pbenchmark
+class RelationIndexBenchmark {
+    private static final Logger LOG = LoggerFactory.getLogger(RelationIndexBenchmark.class);
+    private static final int BOOKS = 1_000_000;
+    private static final int AUTHORS = 50_000;
+    private static final int PUBLISHERS = 500;
+    private static final String[] GENRES = {
+        "Drama", "Poetry", "Fantasy", "Detective", "Romance", "History", "Science", "Horror", "Travel", "Children"
+    };
+    private static final double[] BOUNDS = {10, 20, 50, 100, 200, 500};
+    private static final int GENRE_FACET = 0;
+    private static final int PUBLISHER_FACET = 1;
+    private static final int AUTHOR_FACET = 2;
+    private static final int PRICE_FACET = 3;
+
+    private long[] publishers;
+    private String[] genres;
+    private double[] prices;
+    private long[][] authors;
+
+    @Test
+    void search_1M() {
+        List<BookRelation> relations = generate();
+        BookRepository repository = Mockito.mock(BookRepository.class);
+        Mockito.when(repository.findAllRelations()).thenReturn(relations);
+        RelationIndex index = new RelationIndex(repository, BOUNDS);
+        index.load();
+
+        List<Query> queries = List.of(
+                new Query(null, null, null, null),
+                new Query(null, null, "Poetry", null),
+                new Query(null, 7L, null, 3),
+                new Query(Set.of(42L), null, null, null),
+                new Query(null, 7L, "Drama", 2));
+        for (Query query : queries) {
+            // Прогрев
+            index.search(query.authorIds, query.publisherId, query.genre, query.priceBand, 0L, 20);
+            scanFacets(query);
+
+            int iterations = 10;
+            long indexStart = System.nanoTime();
+            SearchHits hits = null;
+            for (int i = 0; i < iterations; i++) {
+                hits = index.search(query.authorIds, query.publisherId, query.genre, query.priceBand, 0L, 20);
+            }
+            long indexUs = (System.nanoTime() - indexStart) / 1_000 / iterations;
+
+            // Перебор делает проход на каждый фасет — как отдельный GROUP BY на измерение
+            long scanStart = System.nanoTime();
+            BookFacetsDto expected = null;
+            for (int i = 0; i < iterations; i++) {
+                expected = scanFacets(query);
+            }
+            long scanUs = (System.nanoTime() - scanStart) / 1_000 / iterations;
+
+            LOG.info("{}: найдено {}, индекс {} мкс, перебор по фасетам {} мкс", query, hits.getTotal(), indexUs, scanUs);
+            assertThat(hits.getFacets()).isEqualTo(expected);
+        }
+    }
+
+    private List<BookRelation> generate() {
+        Random random = new Random(5);
+        publishers = new long[BOOKS + 1];
+        genres = new String[BOOKS + 1];
+        prices = new double[BOOKS + 1];
+        authors = new long[BOOKS + 1][];
+        List<BookRelation> relations = new ArrayList<>(BOOKS * 3 / 2);
+        for (int id = 1; id <= BOOKS; id++) {
+            publishers[id] = 1 + random.nextInt(PUBLISHERS);
+            genres[id] = GENRES[random.nextInt(GENRES.length)];
+            prices[id] = 1 + random.nextInt(60_000) / 100.0;
+            authors[id] = random.nextInt(3) == 0
+                    ? new long[] {1 + random.nextInt(AUTHORS), 1 + random.nextInt(AUTHORS)}
+                    : new long[] {1 + random.nextInt(AUTHORS)};
+            for (long authorId : authors[id]) {
+                relations.add(new BookRelation(id, publishers[id], genres[id], prices[id], authorId));
+            }
+        }
+        return relations;
+    }
+
+    private BookFacetsDto scanFacets(Query query) {
+        PriceBands bands = new PriceBands(BOUNDS);
+        Map<String, Long> genreCounts = new HashMap<>();
+        Map<Long, Long> publisherCounts = new HashMap<>();
+        Map<Long, Long> authorCounts = new HashMap<>();
+        long[] bandCounts = new long[bands.count()];
+        for (int id = 1; id <= BOOKS; id++) {
+            if (matches(query, id, GENRE_FACET, bands)) {
+                genreCounts.merge(genres[id], 1L, Long::sum);
+            }
+        }
+        for (int id = 1; id <= BOOKS; id++) {
+            if (matches(query, id, PUBLISHER_FACET, bands)) {
+                publisherCounts.merge(publishers[id], 1L, Long::sum);
+            }
+        }
+        for (int id = 1; id <= BOOKS; id++) {
+            if (matches(query, id, AUTHOR_FACET, bands)) {
+                for (long authorId : authors[id]) {
+                    authorCounts.merge(authorId, 1L, Long::sum);
+                }
+            }
+        }
+        for (int id = 1; id <= BOOKS; id++) {
+            if (matches(query, id, PRICE_FACET, bands)) {
+                bandCounts[bands.of(prices[id])]++;
+            }
+        }
+        BookFacetsDto facets = new BookFacetsDto();
+        facets.setGenres(top(genreCounts));
+        facets.setPublishers(top(publisherCounts));
+        facets.setAuthors(top(authorCounts));
+        facets.setPriceBands(bands.toDtos(bandCounts));
+        return facets;
+    }
+
+    // Условия запроса, кроме условия на считаемое измерение skip
+    private boolean matches(Query query, int id, int skip, PriceBands bands) {
+        return (skip == GENRE_FACET || query.genre == null || query.genre.equals(genres[id]))
+                && (skip == PUBLISHER_FACET || query.publisherId == null || publishers[id] == query.publisherId)
+                && (skip == PRICE_FACET || query.priceBand == null || bands.of(prices[id]) == query.priceBand)
+                && (skip == AUTHOR_FACET || query.authorIds == null || hasAll(authors[id], query.authorIds));
+    }
+
+    private static <K extends Comparable<K>> Map<K, Long> top(Map<K, Long> counts) {
+        Map<K, Long> top = new LinkedHashMap<>();
+        counts.entrySet().stream()
+                .sorted(Map.Entry.<K, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(20)
+                .forEach(entry -> top.put(entry.getKey(), entry.getValue()));
+        return top;
+    }
+
+    private static boolean hasAll(long[] bookAuthors, Set<Long> required) {
+        return required.stream().allMatch(authorId -> {
+            for (long bookAuthor : bookAuthors) {
+                if (bookAuthor == authorId) {
+                    return true;
+                }
+            }
+            return false;
+        });
+    }
+
+    private record Query(Set<Long> authorIds, Long publisherId, String genre, Integer priceBand) {
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.bookshop2.index;
+
+import com.example.bookshop2.dto.BookDto;
+import com.example.bookshop2.dto.BookFacetsDto;
+import com.example.bookshop2.dto.PriceBucketDto;
+import com.example.bookshop2.event.CatalogChangeEvent;
+import com.example.bookshop2.event.CatalogChangeEvent.EntityType;
+import com.example.bookshop2.repository.BookRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RelationIndexTest {
+
+    private static final List<BookRelation> RELATIONS = List.of(
+            new BookRelation(1L, 10L, "Drama", 5.0, 100L),
+            new BookRelation(1L, 10L, "Drama", 5.0, 101L),
+            new BookRelation(2L, 10L, "Poetry", 15.0, 100L),
+            new BookRelation(3L, 11L, "Drama", 25.0, 100L),
+            new BookRelation(4L, null, null, null, null));
+
+    @Mock
+    private BookRepository bookRepository;
+
+    private RelationIndex relationIndex;
+
+    @BeforeEach
+    void setUp() {
+        relationIndex = new RelationIndex(bookRepository, new double[]{10, 20});
+    }
+
+    @Test
+    void filter_shouldIntersectAllCriteria() {
+        load();
+
+        assertThat(relationIndex.booksByAuthor(100L)).containsExactly(1L, 2L, 3L);
+        assertThat(relationIndex.filter(Set.of(100L), 10L, null, 0L, 10)).containsExactly(1L, 2L);
+        assertThat(relationIndex.filter(Set.of(100L, 101L), null, "Drama", 0L, 10)).containsExactly(1L);
+        assertThat(relationIndex.filter(Set.of(100L), null, "Drama", 1L, 10)).containsExactly(3L);
+        assertThat(relationIndex.filter(Set.of(), 12L, null, 0L, 10)).isEmpty();
+    }
+
+    @Test
+    void search_shouldCountEachFacetAgainstOtherCriteria() {
+        load();
+
+        SearchHits hits = relationIndex.search(Set.of(100L), null, "Drama", null, 0L, 1);
+
+        assertThat(hits.getIds()).containsExactly(1L);
+        assertThat(hits.getTotal()).isEqualTo(2);
+        BookFacetsDto facets = hits.getFacets();
+        // Жанр считается без условия на жанр: видно, сколько книг автора в каждом
+        assertThat(facets.getGenres()).containsExactly(Map.entry("Drama", 2L), Map.entry("Poetry", 1L));
+        assertThat(facets.getPublishers()).containsExactly(Map.entry(10L, 1L), Map.entry(11L, 1L));
+        assertThat(facets.getAuthors()).containsExactly(Map.entry(100L, 2L), Map.entry(101L, 1L));
+        assertThat(facets.getPriceBands()).extracting(PriceBucketDto::getBooks).containsExactly(1L, 0L, 1L);
+    }
+
+    @Test
+    void search_withoutCriteria_shouldCoverWholeCatalog() {
+        load();
+
+        SearchHits hits = relationIndex.search(null, null, null, 1, 0L, 10);
+        assertThat(hits.getIds()).containsExactly(2L);
+        assertThat(hits.getFacets().getGenres()).containsExactly(Map.entry("Poetry", 1L));
+
+        SearchHits all = relationIndex.search(null, null, null, null, 0L, 10);
+        assertThat(all.getIds()).containsExactly(1L, 2L, 3L, 4L);
+        assertThat(all.getFacets().getPriceBands()).extracting(PriceBucketDto::getBooks).containsExactly(1L, 1L, 1L);
+    }
+
+    @Test
+    void events_shouldMoveBooksBetweenBitmaps() {
+        load();
+
+        relationIndex.onCatalogChange(CatalogChangeEvent.created(EntityType.BOOK, 5L,
+                book(11L, "Poetry", 30.0, 101L)));
+        relationIndex.onCatalogChange(CatalogChangeEvent.updated(EntityType.BOOK, 2L,
+                book(11L, "Poetry", 15.0, 101L), book(10L, "Poetry", 15.0, 100L)));
+        relationIndex.onCatalogChange(CatalogChangeEvent.patched(EntityType.BOOK, 3L,
+                book(null, "Poetry", null), book(null, "Drama", 25.0)));
+        relationIndex.onCatalogChange(CatalogChangeEvent.patched(EntityType.BOOK, 2L,
+                book(null, null, 8.0), book(null, "Poetry", 15.0)));
+        relationIndex.onCatalogChange(CatalogChangeEvent.deleted(EntityType.BOOK, 1L,
+                book(10L, "Drama", 5.0, 100L, 101L)));
+
+        assertThat(relationIndex.booksByAuthor(100L)).containsExactly(3L);
+        assertThat(relationIndex.booksByAuthor(101L)).containsExactly(2L, 5L);
+        assertThat(relationIndex.filter(Set.of(), 11L, "Poetry", 0L, 10)).containsExactly(2L, 3L, 5L);
+        assertThat(relationIndex.filter(Set.of(), 10L, null, 0L, 10)).isEmpty();
+        assertThat(relationIndex.search(null, null, null, 0, 0L, 10).getIds()).containsExactly(2L);
+        assertThat(relationIndex.search(null, null, null, null, 0L, 10).getTotal()).isEqualTo(4);
+    }
+
+    @Test
+    void authorDeleted_shouldDropItsBitmap() {
+        load();
+
+        relationIndex.onCatalogChange(CatalogChangeEvent.deleted(EntityType.AUTHOR, 101L));
+
+        assertThat(relationIndex.booksByAuthor(101L)).isEmpty();
+        assertThat(relationIndex.booksByAuthor(100L)).containsExactly(1L, 2L, 3L);
+    }
+
+    @Test
+    void eventWithoutPreviousState_shouldReloadInBackground() {
+        load();
+
+        relationIndex.onCatalogChange(CatalogChangeEvent.updated(EntityType.BOOK, 2L,
+                book(11L, "Poetry", 15.0, 101L)));
+
+        // Поток события запрос не выполняет
+        verify(bookRepository, times(1)).findAllRelations();
+        relationIndex.rebuildIfStale();
+        relationIndex.rebuildIfStale();
+        verify(bookRepository, times(2)).findAllRelations();
+    }
+
+    @Test
+    void eventsDuringLoad_shouldBeAppliedAfterSwap() {
+        load();
+        // Книга создана и книга удалена, пока читался новый срез
+        when(bookRepository.findAllRelations()).thenAnswer(invocation -> {
+            relationIndex.onCatalogChange(CatalogChangeEvent.created(EntityType.BOOK, 5L, book(11L, "Drama", 8.0, 100L)));
+            relationIndex.onCatalogChange(CatalogChangeEvent.deleted(EntityType.BOOK, 3L, book(11L, "Drama", 25.0, 100L)));
+            return RELATIONS;
+        });
+
+        relationIndex.load();
+
+        assertThat(relationIndex.booksByAuthor(100L)).containsExactly(1L, 2L, 5L);
+        assertThat(relationIndex.filter(Set.of(), 11L, null, 0L, 10)).containsExactly(5L);
+    }
+
+    private void load() {
+        when(bookRepository.findAllRelations()).thenReturn(RELATIONS);
+        relationIndex.load();
+    }
+
+    private static BookDto book(Long publisherId, String genre, Double price, Long... authorIds) {
+        BookDto dto = new BookDto();
+        dto.setPublisherId(publisherId);
+        dto.setGenre(genre);
+        dto.setPrice(price);
+        dto.setAuthorIds(authorIds.length > 0 ? Set.of(authorIds) : null);
+        return dto;
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.bookshop2.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SortedPricesTest {
+
+    private SortedPrices prices;
+
+    @BeforeEach
+    void setUp() {
+        prices = new SortedPrices();
+        prices.reload(() -> List.of(
+                new IndexedPrice(1L, 30.0),
+                new IndexedPrice(2L, 10.0),
+                new IndexedPrice(3L, 20.0),
+                new IndexedPrice(4L, 20.0),
+                new IndexedPrice(5L, null)));
+    }
+
+    @Test
+    void range_shouldIncludeBothBoundsOrderedByPriceThenId() {
+        assertThat(prices.range(10.0, 20.0)).containsExactly(2L, 3L, 4L);
+        assertThat(prices.range(20.0, 20.0)).containsExactly(3L, 4L);
+        assertThat(prices.range(31.0, 40.0)).isEmpty();
+        assertThat(prices.size()).isEqualTo(4);
+    }
+
+    @Test
+    void cheapestAndMostExpensive_shouldRespectLimit() {
+        assertThat(prices.cheapest(2)).containsExactly(2L, 3L);
+        assertThat(prices.mostExpensive(3)).containsExactly(1L, 4L, 3L);
+        assertThat(prices.mostExpensive(10)).containsExactly(1L, 4L, 3L, 2L);
+    }
+
+    @Test
+    void put_shouldMoveRepricedBookAndRemoveDeletedOne() {
+        prices.put(1L, 5.0);
+        prices.put(6L, 15.0);
+        prices.remove(3L);
+
+        assertThat(prices.cheapest(10)).containsExactly(1L, 2L, 6L, 4L);
+        assertThat(prices.mostExpensive(10)).containsExactly(4L, 6L, 2L, 1L);
+        assertThat(prices.range(5.0, 15.0)).containsExactly(1L, 2L, 6L);
+    }
+
+    @Test
+    void shouldAgreeWithBruteForceAcrossCompactions() {
+        Random random = new Random(3);
+        Map<Long, Double> expected = new HashMap<>();
+        prices.reload(List::of);
+        for (int step = 0; step < 5 * SortedPrices.DELTA_LIMIT; step++) {
+            long id = 1 + random.nextInt(1_500);
+            if (random.nextInt(4) == 0) {
+                prices.remove(id);
+                expected.remove(id);
+            } else {
+                double price = random.nextInt(200) / 2.0;
+                prices.put(id, price);
+                expected.put(id, price);
+            }
+            if (step % 97 == 0) {
+                double min = random.nextInt(100);
+                double max = min + random.nextInt(20);
+                List<Long> sorted = sorted(expected);
+                assertThat(prices.range(min, max)).as("step %d", step).containsExactly(sorted.stream()
+                        .filter(key -> expected.get(key) >= min && expected.get(key) <= max)
+                        .mapToLong(Long::longValue).toArray());
+                assertThat(prices.cheapest(7)).containsExactly(sorted.stream().limit(7)
+                        .mapToLong(Long::longValue).toArray());
+                long[] mostExpensive = sorted.stream().mapToLong(Long::longValue).toArray();
+                reverse(mostExpensive);
+                assertThat(prices.mostExpensive(7))
+                        .containsExactly(Arrays.copyOf(mostExpensive, Math.min(7, mostExpensive.length)));
+                assertThat(prices.size()).isEqualTo(expected.size());
+            }
+        }
+    }
+
+    @Test
+    void readers_shouldAlwaysSeeSortedConsistentSnapshot() throws InterruptedException {
+        prices.reload(List::of);
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<String> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            while (running.get()) {
+                long[] all = prices.range(0, Double.MAX_VALUE);
+                // Каждая книга переоценивается на своё место, поэтому id всегда идут по возрастанию
+                for (int i = 1; i < all.length; i++) {
+                    if (all[i - 1] >= all[i]) {
+                        failure.set(Arrays.toString(all));
+                    }
+                }
+            }
+        });
+        reader.start();
+        for (int round = 0; round < 5; round++) {
+            for (long id = 1; id <= 1_000; id++) {
+                prices.put(id, (double) id);
+            }
+        }
+        running.set(false);
+        reader.join();
+
+        assertThat(failure.get()).isNull();
+        assertThat(prices.size()).isEqualTo(1_000);
+    }
+
+    private static List<Long> sorted(Map<Long, Double> expected) {
+        List<Long> keys = new ArrayList<>(expected.keySet());
+        keys.sort(Comparator.<Long, Double>comparing(expected::get).thenComparing(key -> key));
+        return keys;
+    }
+
+    private static void reverse(long[] values) {
+        for (int i = 0, j = values.length - 1; i < j; i++, j--) {
+            long tmp = values[i];
+            values[i] = values[j];
+            values[j] = tmp;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.bookshop2.index;
+
+import com.example.bookshop2.dto.AuthorDto;
+import com.example.bookshop2.dto.BookDto;
+import com.example.bookshop2.event.CatalogChangeEvent;
+import com.example.bookshop2.event.CatalogChangeEvent.EntityType;
+import com.example.bookshop2.repository.AuthorRepository;
+import com.example.bookshop2.repository.BookRepository;
+import com.example.bookshop2.repository.PublisherRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class SuggestIndexTest {
+
+    @Mock
+    private AuthorRepository authorRepository;
+
+    @Mock
+    private PublisherRepository publisherRepository;
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @InjectMocks
+    private SuggestIndex suggestIndex;
+
+    @BeforeEach
+    void setUp() {
+        when(authorRepository.findAllNamesWithBookCount()).thenReturn(List.of(
+                new WeightedName(1L, "Arkady Strugatsky", 1),
+                new WeightedName(2L, "Boris Strugatsky", 0)));
+        when(publisherRepository.findAllNamesWithBookCount()).thenReturn(List.of(
+                new WeightedName(10L, "AST", 1)));
+        when(bookRepository.findAllNames()).thenReturn(List.of(new IndexedName(100L, "Roadside Picnic")));
+        suggestIndex.load();
+    }
+
+    @Test
+    void load_shouldIndexAllEntityTypes() {
+        assertThat(suggestIndex.isReady()).isTrue();
+        assertThat(suggestIndex.suggest(EntityType.AUTHOR, "ar", 10)).extracting(IndexedName::getId).containsExactly(1L);
+        assertThat(suggestIndex.suggest(EntityType.PUBLISHER, "as", 10)).extracting(IndexedName::getId).containsExactly(10L);
+        assertThat(suggestIndex.suggest(EntityType.BOOK, "road", 10)).extracting(IndexedName::getId).containsExactly(100L);
+    }
+
+    @Test
+    void bookEvents_shouldMoveAuthorWeights() {
+        BookDto created = book(101L, "Hard to Be a God", Set.of(2L));
+        suggestIndex.onCatalogChange(CatalogChangeEvent.created(EntityType.BOOK, 101L, created));
+        BookDto moved = book(100L, "Roadside Picnic", Set.of(2L));
+        suggestIndex.onCatalogChange(CatalogChangeEvent.updated(EntityType.BOOK, 100L, moved,
+                book(100L, "Roadside Picnic", Set.of(1L))));
+
+        // Теперь у Бориса две книги, у Аркадия ни одной
+        assertThat(suggestIndex.suggest(EntityType.AUTHOR, "", 10)).extracting(IndexedName::getId)
+                .containsExactly(2L, 1L);
+        assertThat(suggestIndex.suggest(EntityType.BOOK, "hard", 10)).extracting(IndexedName::getId)
+                .containsExactly(101L);
+
+        suggestIndex.onCatalogChange(CatalogChangeEvent.deleted(EntityType.BOOK, 101L, created));
+        suggestIndex.onCatalogChange(CatalogChangeEvent.deleted(EntityType.BOOK, 100L, moved));
+
+        assertThat(suggestIndex.suggest(EntityType.AUTHOR, "", 10)).extracting(IndexedName::getId)
+                .containsExactly(1L, 2L);
+        assertThat(suggestIndex.suggest(EntityType.BOOK, "", 10)).isEmpty();
+    }
+
+    @Test
+    void authorRename_shouldKeepWeight() {
+        AuthorDto renamed = new AuthorDto();
+        renamed.setId(2L);
+        renamed.setName("Boris N. Strugatsky");
+        suggestIndex.recordView(EntityType.AUTHOR, 2L);
+        suggestIndex.recordView(EntityType.AUTHOR, 2L);
+        suggestIndex.flushViews();
+
+        suggestIndex.onCatalogChange(CatalogChangeEvent.updated(EntityType.AUTHOR, 2L, renamed));
+
+        assertThat(suggestIndex.suggest(EntityType.AUTHOR, "", 10)).containsExactly(
+                new IndexedName(2L, "Boris N. Strugatsky"),
+                new IndexedName(1L, "Arkady Strugatsky"));
+    }
+
+    @Test
+    void recordView_shouldReachSuggestionsOnlyAfterFlush() {
+        suggestIndex.onCatalogChange(CatalogChangeEvent.created(EntityType.BOOK, 101L,
+                book(101L, "Roadside Picnic II", Set.of(1L))));
+        suggestIndex.recordView(EntityType.BOOK, 101L);
+
+        assertThat(suggestIndex.suggest(EntityType.BOOK, "road", 10)).extracting(IndexedName::getId)
+                .containsExactly(100L, 101L);
+
+        suggestIndex.flushViews();
+
+        assertThat(suggestIndex.suggest(EntityType.BOOK, "road", 10)).extracting(IndexedName::getId)
+                .containsExactly(101L, 100L);
+    }
+
+    @Test
+    void bookPatch_shouldRenameWithoutTouchingAuthorWeights() {
+        BookDto priceOnly = new BookDto();
+        priceOnly.setId(100L);
+        priceOnly.setPrice(9.0);
+        suggestIndex.onCatalogChange(CatalogChangeEvent.patched(EntityType.BOOK, 100L, priceOnly));
+        BookDto renamed = new BookDto();
+        renamed.setId(100L);
+        renamed.setName("Picnic");
+        suggestIndex.onCatalogChange(CatalogChangeEvent.patched(EntityType.BOOK, 100L, renamed));
+
+        assertThat(suggestIndex.suggest(EntityType.BOOK, "pic", 10)).extracting(IndexedName::getId)
+                .containsExactly(100L);
+        assertThat(suggestIndex.suggest(EntityType.BOOK, "road", 10)).isEmpty();
+        assertThat(suggestIndex.suggest(EntityType.AUTHOR, "", 10)).extracting(IndexedName::getId)
+                .containsExactly(1L, 2L);
+    }
+
+    private static BookDto book(Long id, String name, Set<Long> authorIds) {
+        BookDto dto = new BookDto();
+        dto.setId(id);
+        dto.setName(name);
+        dto.setPublisherId(10L);
+        dto.setAuthorIds(authorIds);
+        return dto;
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.bookshop2.index;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Запуск: mvn test -Pbenchmark
+class TrigramIndexBenchmark {
+    private static final Logger LOG = LoggerFactory.getLogger(TrigramIndexBenchmark.class);
+    private static final int NAMES = 1_000_000;
+    private static final String[] WORDS = {
+        "War", "Peace", "Crime", "Punishment", "Master", "Margarita", "Idiot", "Dead", "Souls",
+        "Fathers", "Sons", "Anna", "Karenina", "Quiet", "Don", "Doctor", "Zhivago", "Garden", "Cherry", "Night"
+    };
+    private static final String[] QUERIES = {"karen", "ght", "zhivago 12", "peace", "punishment master", "xyz"};
+
+    @Test
+    void search_1M() {
+        Random random = new Random(1);
+        List<IndexedName> names = new ArrayList<>(NAMES);
+        for (int i = 0; i < NAMES; i++) {
+            names.add(new IndexedName(i + 1L, WORDS[random.nextInt(WORDS.length)] + " "
+                    + WORDS[random.nextInt(WORDS.length)] + " " + random.nextInt(1_000)));
+        }
+
+        TrigramIndex index = new TrigramIndex();
+        long start = System.nanoTime();
+        index.reload(() -> names);
+        LOG.info("Построение индекса: {} имён за {} мс", NAMES, (System.nanoTime() - start) / 1_000_000);
+
+        for (String query : QUERIES) {
+            // Прогрев
+            index.search(query);
+            scan(names, query);
+
+            int iterations = 20;
+            long indexStart = System.nanoTime();
+            int found = 0;
+            for (int i = 0; i < iterations; i++) {
+                found = index.search(query).size();
+            }
+            long indexUs = (System.nanoTime() - indexStart) / 1_000 / iterations;
+
+            long scanStart = System.nanoTime();
+            int expected = 0;
+            for (int i = 0; i < iterations; i++) {
+                expected = scan(names, query);
+            }
+            long scanUs = (System.nanoTime() - scanStart) / 1_000 / iterations;
+
+            LOG.info("'{}': найдено {}, индекс {} мкс, полный перебор {} мкс", query, found, indexUs, scanUs);
+            assertThat(found).isEqualTo(expected);
+        }
+    }
+
+    private static int scan(List<IndexedName> names, String query) {
+        String needle = TrigramIndex.fold(query);
+        int count = 0;
+        for (IndexedName name : names) {
+            if (TrigramIndex.fold(name.getName()).contains(needle)) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
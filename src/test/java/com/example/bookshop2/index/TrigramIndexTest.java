@@ -0,0 +1,106 @@
+package com.example.bookshop2.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TrigramIndexTest {
+
+    private TrigramIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new TrigramIndex();
+        index.reload(() -> List.of(
+                new IndexedName(3L, "Stephen King"),
+                new IndexedName(1L, "Kingsley Amis"),
+                new IndexedName(2L, "Leo Tolstoy"),
+                new IndexedName(4L, null)));
+    }
+
+    @Test
+    void search_shouldMatchSubstringIgnoringCaseOrderedById() {
+        assertThat(index.search("KING")).containsExactly(
+                new IndexedName(1L, "Kingsley Amis"),
+                new IndexedName(3L, "Stephen King"));
+    }
+
+    @Test
+    void search_shouldVerifyCandidatesAgainstWholeQuery() {
+        // Все триграммы "ingo" есть у "Kingsley"/"King", но подстроки нет
+        assertThat(index.search("ingo")).isEmpty();
+    }
+
+    @Test
+    void search_withShortQuery_shouldScanNames() {
+        assertThat(index.search("o")).extracting(IndexedName::getId).containsExactly(2L);
+        assertThat(index.search("n ")).extracting(IndexedName::getId).containsExactly(3L);
+    }
+
+    @Test
+    void search_shouldTreatLikeWildcardsLiterally() {
+        index.put(5L, "100% Pure_Love");
+
+        assertThat(index.search("0% p")).extracting(IndexedName::getId).containsExactly(5L);
+        assertThat(index.search("e_l")).extracting(IndexedName::getId).containsExactly(5L);
+        assertThat(index.search("%")).extracting(IndexedName::getId).containsExactly(5L);
+    }
+
+    @Test
+    void put_shouldReplacePreviousName() {
+        index.put(2L, "Lev Tolstoy");
+
+        assertThat(index.search("leo")).isEmpty();
+        assertThat(index.search("lev")).extracting(IndexedName::getId).containsExactly(2L);
+        assertThat(index.size()).isEqualTo(3);
+    }
+
+    @Test
+    void remove_shouldDropNameFromResults() {
+        index.remove(3L);
+        index.remove(42L);
+
+        assertThat(index.search("king")).extracting(IndexedName::getId).containsExactly(1L);
+        assertThat(index.size()).isEqualTo(2);
+    }
+
+    @Test
+    void search_shouldAgreeWithBruteForceOnRandomData() {
+        Random random = new Random(42);
+        String alphabet = "abcAB cdЁё";
+        List<IndexedName> names = new ArrayList<>();
+        for (long id = 1; id <= 2_000; id++) {
+            names.add(new IndexedName(id, randomString(random, alphabet, 1 + random.nextInt(12))));
+        }
+        index.reload(() -> names.subList(0, 1_000));
+        names.subList(1_000, 2_000).forEach(name -> index.put(name.getId(), name.getName()));
+        for (long id = 1; id <= 2_000; id += 7) {
+            index.remove(id);
+        }
+
+        for (int i = 0; i < 300; i++) {
+            String query = randomString(random, alphabet, 1 + random.nextInt(4));
+            String folded = TrigramIndex.fold(query);
+            List<IndexedName> expected = names.stream()
+                    .filter(name -> (name.getId() - 1) % 7 != 0)
+                    .filter(name -> TrigramIndex.fold(name.getName()).contains(folded))
+                    .sorted(Comparator.comparingLong(IndexedName::getId))
+                    .toList();
+            assertThat(index.search(query)).as("query '%s'", query).isEqualTo(expected);
+        }
+    }
+
+    private static String randomString(Random random, String alphabet, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+}
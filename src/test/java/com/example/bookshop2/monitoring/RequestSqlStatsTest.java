@@ -0,0 +1,121 @@
+package com.example.bookshop2.monitoring;
+
+import com.example.bookshop2.model.Author;
+import com.example.bookshop2.model.Book;
+import com.example.bookshop2.model.Publisher;
+import com.example.bookshop2.repository.AuthorRepository;
+import com.example.bookshop2.repository.BookRepository;
+import com.example.bookshop2.repository.PublisherRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Хуки Hibernate из application.properties пишут в статистику, привязанную к потоку
+@ActiveProfiles("test")
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class RequestSqlStatsTest {
+
+    @Autowired
+    private AuthorRepository authorRepository;
+    @Autowired
+    private PublisherRepository publisherRepository;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transaction;
+
+    @BeforeEach
+    void setUp() {
+        transaction = new TransactionTemplate(transactionManager);
+        transaction.executeWithoutResult(status -> {
+            Publisher publisher = publisherRepository.save(publisherNamed("Stats Press"));
+            for (int i = 0; i < 3; i++) {
+                Author author = new Author();
+                author.setName("Stats Author " + i);
+                Book book = new Book();
+                book.setName("Stats Book " + i);
+                book.setPrice(10.0 + i);
+                book.setPublisher(publisher);
+                book.setAuthors(Set.of(authorRepository.save(author)));
+                bookRepository.save(book);
+            }
+        });
+        entityManagerFactory.getCache().evictAll();
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestSqlStats.end();
+        transaction.executeWithoutResult(status -> {
+            bookRepository.deleteAll();
+            authorRepository.deleteAll();
+            publisherRepository.deleteAll();
+        });
+    }
+
+    @Test
+    void hibernateHooks_shouldAttributeStatementsRowsAndTimeToCurrentRequest() {
+        RequestSqlStats stats = RequestSqlStats.begin("GET /books");
+
+        transaction.executeWithoutResult(status -> {
+            List<Book> books = bookRepository.findAll();
+            books.forEach(book -> book.getPublisher().getName());
+        });
+
+        assertThat(RequestSqlStats.end()).isSameAs(stats);
+        // Список книг одним запросом и один общий издатель по ID
+        assertThat(stats.getStatementCount()).isEqualTo(2);
+        assertThat(stats.getRows()).isEqualTo(4);
+        assertThat(stats.getDbNanos()).isPositive();
+        assertThat(stats.slowest(10)).extracting(RequestSqlStats.Statement::getCount).containsOnly(1);
+        assertThat(stats.slowest(10)).allSatisfy(statement -> assertThat(statement.getNanos()).isPositive());
+    }
+
+    @Test
+    void repeatedStatements_shouldBeGroupedBySql() {
+        List<Long> ids = bookRepository.findAll().stream().map(Book::getId).toList();
+        RequestSqlStats stats = RequestSqlStats.begin("GET /books/{id}");
+
+        for (Long id : ids) {
+            transaction.executeWithoutResult(status -> bookRepository.findById(id));
+        }
+        RequestSqlStats.end();
+
+        assertThat(stats.getStatementCount()).isEqualTo(3);
+        assertThat(stats.slowest(10)).singleElement().satisfies(statement -> {
+            assertThat(statement.getCount()).isEqualTo(3);
+            assertThat(statement.getSql()).containsIgnoringCase("from books");
+        });
+    }
+
+    @Test
+    void withoutRequest_shouldRecordNothing() {
+        transaction.executeWithoutResult(status -> bookRepository.findAll());
+
+        assertThat(RequestSqlStats.end()).isNull();
+    }
+
+    private static Publisher publisherNamed(String name) {
+        Publisher publisher = new Publisher();
+        publisher.setName(name);
+        return publisher;
+    }
+}
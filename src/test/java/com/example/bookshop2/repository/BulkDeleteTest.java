@@ -0,0 +1,118 @@
+package com.example.bookshop2.repository;
+
+import com.example.bookshop2.model.Author;
+import com.example.bookshop2.model.Book;
+import com.example.bookshop2.model.Publisher;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Массовое удаление: число операторов не зависит от числа строк, связи book_author не остаются висеть
+@ActiveProfiles("test")
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "com.example.bookshop2.repository.RepositoryIndexUsageTest$SqlCapture")
+class BulkDeleteTest {
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private AuthorRepository authorRepository;
+
+    @Autowired
+    private PublisherRepository publisherRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Publisher publisher;
+    private Author first;
+    private Author second;
+    private Book shared;
+    private Book single;
+
+    @BeforeEach
+    void setUp() {
+        publisher = new Publisher();
+        publisher.setName("Bulk Press");
+        entityManager.persist(publisher);
+        first = new Author();
+        first.setName("First Author");
+        second = new Author();
+        second.setName("Second Author");
+        entityManager.persist(first);
+        entityManager.persist(second);
+        shared = book("Shared Book", Set.of(first, second));
+        single = book("Single Book", Set.of(first));
+        entityManager.flush();
+        entityManager.clear();
+        RepositoryIndexUsageTest.SqlCapture.STATEMENTS.clear();
+    }
+
+    @Test
+    void bookDelete_shouldRemoveBooksAndTheirLinksWithTwoStatements() {
+        int deleted = bookRepository.deleteAllByIdIn(List.of(shared.getId(), single.getId()));
+
+        assertThat(deleted).isEqualTo(2);
+        assertThat(RepositoryIndexUsageTest.SqlCapture.STATEMENTS).hasSize(2)
+                .allSatisfy(sql -> assertThat(sql).startsWith("delete"));
+        assertThat(bookRepository.count()).isZero();
+        assertThat(links()).isZero();
+        assertThat(authorRepository.count()).isEqualTo(2);
+    }
+
+    @Test
+    void authorDelete_shouldUnlinkBooksAndKeepThem() {
+        List<Long> ids = List.of(first.getId());
+        assertThat(authorRepository.deleteAllByIdIn(ids)).isEqualTo(1);
+
+        assertThat(RepositoryIndexUsageTest.SqlCapture.STATEMENTS).hasSize(2);
+        assertThat(bookRepository.count()).isEqualTo(2);
+        assertThat(bookRepository.findById(shared.getId()).orElseThrow().getAuthors())
+                .extracting(Author::getName).containsExactly("Second Author");
+        assertThat(bookRepository.findById(single.getId()).orElseThrow().getAuthors()).isEmpty();
+    }
+
+    @Test
+    void rowsProjection_shouldReturnOneRowPerLinkAndKeepBooksWithoutAuthors() {
+        publisher = entityManager.find(Publisher.class, publisher.getId());
+        Book orphan = book("Orphan Book", Set.of());
+        entityManager.flush();
+
+        List<BookAuthorRow> rows = bookRepository.findRowsByIdIn(List.of(shared.getId(), orphan.getId()));
+
+        assertThat(rows).hasSize(3);
+        assertThat(rows).filteredOn(row -> row.getBookId() == orphan.getId())
+                .singleElement()
+                .satisfies(row -> assertThat(row.getAuthorId()).isNull());
+        assertThat(publisherRepository.findNamesWithBookCountByIdIn(List.of(publisher.getId())))
+                .singleElement()
+                .satisfies(name -> assertThat(name.getWeight()).isEqualTo(3));
+    }
+
+    private Book book(String name, Set<Author> authors) {
+        Book book = new Book();
+        book.setName(name);
+        book.setPrice(10.0);
+        book.setPublisher(publisher);
+        book.setAuthors(new HashSet<>(authors));
+        return entityManager.persist(book);
+    }
+
+    private int links() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM book_author", Integer.class);
+    }
+}
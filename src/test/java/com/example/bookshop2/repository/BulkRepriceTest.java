@@ -0,0 +1,105 @@
+package com.example.bookshop2.repository;
+
+import com.example.bookshop2.model.Book;
+import com.example.bookshop2.model.Publisher;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Переоценка: пачки идут по возрастанию id внутри фильтра, цена округляется до копеек прямо в UPDATE
+@ActiveProfiles("test")
+@DataJpaTest
+class BulkRepriceTest {
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private Publisher acme;
+    private Book cheap;
+    private Book dear;
+    private Book otherGenre;
+    private Book noPrice;
+
+    @BeforeEach
+    void setUp() {
+        acme = new Publisher();
+        acme.setName("Acme");
+        entityManager.persist(acme);
+        Publisher other = new Publisher();
+        other.setName("Other");
+        entityManager.persist(other);
+        cheap = book("Cheap", "Drama", 9.99, acme);
+        dear = book("Dear", "Drama", 20.0, acme);
+        otherGenre = book("Poems", "Poetry", 15.0, acme);
+        noPrice = book("Draft", "Drama", null, acme);
+        book("Foreign", "Drama", 30.0, other);
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void repricingIds_shouldFilterAndPageByIdSkippingBooksWithoutPrice() {
+        List<Long> first = bookRepository.findRepricingIdsByPublisher(acme.getId(), "Drama", 0L, PageRequest.of(0, 1));
+        List<Long> second = bookRepository.findRepricingIdsByPublisher(acme.getId(), "Drama", first.get(0),
+                PageRequest.of(0, 1));
+        List<Long> rest = bookRepository.findRepricingIdsByPublisher(acme.getId(), "Drama", second.get(0),
+                PageRequest.of(0, 1));
+
+        assertThat(first).containsExactly(cheap.getId());
+        assertThat(second).containsExactly(dear.getId());
+        assertThat(rest).isEmpty();
+        assertThat(bookRepository.findRepricingIdsByPublisher(acme.getId(), null, 0L, PageRequest.of(0, 10)))
+                .containsExactly(cheap.getId(), dear.getId(), otherGenre.getId());
+        assertThat(bookRepository.findRepricingIdsByGenre("Drama", 0L, PageRequest.of(0, 10))).hasSize(3);
+        assertThat(bookRepository.findRepricingIdsByIdIn(List.of(noPrice.getId(), dear.getId()), 0L,
+                PageRequest.of(0, 10))).containsExactly(dear.getId());
+    }
+
+    @Test
+    void repriceByIdIn_shouldRoundToCentsAndBumpVersion() {
+        int updated = bookRepository.repriceByIdIn(List.of(cheap.getId(), dear.getId(), noPrice.getId()), 1.05);
+
+        assertThat(updated).isEqualTo(2);
+        assertThat(bookRepository.findPricesByIdIn(List.of(cheap.getId(), dear.getId(), noPrice.getId())))
+                .containsExactlyInAnyOrder(
+                        new BookPriceRow(cheap.getId(), "Drama", 10.49, 1L),
+                        new BookPriceRow(dear.getId(), "Drama", 21.0, 1L),
+                        new BookPriceRow(noPrice.getId(), "Drama", null, 0L));
+        assertThat(bookRepository.findById(otherGenre.getId()).orElseThrow().getPrice()).isEqualTo(15.0);
+    }
+
+    @Test
+    void repriceByIdIn_whenPriceWouldRoundToZero_shouldLeaveBookUnchanged() {
+        Book coin = book("Coin", "Drama", 1.0, entityManager.find(Publisher.class, acme.getId()));
+        entityManager.flush();
+        entityManager.clear();
+
+        int updated = bookRepository.repriceByIdIn(List.of(coin.getId(), dear.getId()), 0.004);
+
+        assertThat(updated).isEqualTo(1);
+        assertThat(bookRepository.findPricesByIdIn(List.of(coin.getId(), dear.getId())))
+                .containsExactlyInAnyOrder(
+                        new BookPriceRow(coin.getId(), "Drama", 1.0, 0L),
+                        new BookPriceRow(dear.getId(), "Drama", 0.08, 1L));
+    }
+
+    private Book book(String name, String genre, Double price, Publisher publisher) {
+        Book book = new Book();
+        book.setName(name);
+        book.setGenre(genre);
+        book.setPrice(price);
+        book.setPublisher(publisher);
+        return entityManager.persist(book);
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.bookshop2.repository;
+
+import com.example.bookshop2.model.Book;
+import com.example.bookshop2.model.Publisher;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// PATCH-запросы: один UPDATE с проверкой версии, null-параметры оставляют столбцы как есть
+@ActiveProfiles("test")
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "com.example.bookshop2.repository.RepositoryIndexUsageTest$SqlCapture")
+class ConditionalUpdateTest {
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private PublisherRepository publisherRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private Book book;
+
+    @BeforeEach
+    void setUp() {
+        Publisher publisher = new Publisher();
+        publisher.setName("Patch Press");
+        book = new Book();
+        book.setName("Patch Book");
+        book.setGenre("Drama");
+        book.setPrice(10.0);
+        book.setPublisher(entityManager.persist(publisher));
+        entityManager.persistAndFlush(book);
+        entityManager.clear();
+        RepositoryIndexUsageTest.SqlCapture.STATEMENTS.clear();
+    }
+
+    @Test
+    void patch_shouldUpdateOnlyGivenColumnsInOneStatement() {
+        int updated = bookRepository.patch(book.getId(), 0L, null, null, 12.5);
+
+        assertThat(updated).isEqualTo(1);
+        assertThat(RepositoryIndexUsageTest.SqlCapture.STATEMENTS).singleElement()
+                .asString().startsWith("update");
+        Book patched = bookRepository.findById(book.getId()).orElseThrow();
+        assertThat(patched.getPrice()).isEqualTo(12.5);
+        assertThat(patched.getName()).isEqualTo("Patch Book");
+        assertThat(patched.getGenre()).isEqualTo("Drama");
+        assertThat(patched.getVersion()).isEqualTo(1L);
+    }
+
+    @Test
+    void patch_withStaleVersion_shouldChangeNothing() {
+        assertThat(bookRepository.patch(book.getId(), 0L, "First", null, null)).isEqualTo(1);
+        assertThat(bookRepository.patch(book.getId(), 0L, "Second", null, null)).isZero();
+
+        Book patched = bookRepository.findById(book.getId()).orElseThrow();
+        assertThat(patched.getName()).isEqualTo("First");
+        assertThat(patched.getVersion()).isEqualTo(1L);
+    }
+
+    @Test
+    void patchName_shouldBumpVersionSoEntityUpdateDetectsConflict() {
+        Long id = book.getPublisher().getId();
+        assertThat(publisherRepository.patchName(id, 0L, "Renamed Press")).isEqualTo(1);
+        assertThat(publisherRepository.patchName(id, 0L, "Stale Press")).isZero();
+
+        assertThat(publisherRepository.findById(id).orElseThrow().getVersion()).isEqualTo(1L);
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.bookshop2.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Пакетные upsert одного типа ждут друг друга на строке name_upsert_locks, а upsert разных типов — нет
+@ActiveProfiles("test")
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class NameUpsertLockTest {
+
+    @Autowired
+    private AuthorRepository authorRepository;
+
+    @Autowired
+    private PublisherRepository publisherRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void lockNameUpserts_shouldBlockSecondTransactionOfSameTypeUntilCommit() throws Exception {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> holder = CompletableFuture.runAsync(() -> transaction.executeWithoutResult(status -> {
+            authorRepository.lockNameUpserts();
+            locked.countDown();
+            await(release);
+        }));
+        assertThat(locked.await(10, TimeUnit.SECONDS)).isTrue();
+
+        CompletableFuture<String> waiter = CompletableFuture.supplyAsync(
+                () -> transaction.execute(status -> authorRepository.lockNameUpserts()));
+        String otherType = transaction.execute(status -> publisherRepository.lockNameUpserts());
+
+        assertThat(otherType).isEqualTo("PUBLISHER");
+        Thread.sleep(200);
+        assertThat(waiter).isNotDone();
+        release.countDown();
+        assertThat(waiter.get(10, TimeUnit.SECONDS)).isEqualTo("AUTHOR");
+        holder.get(10, TimeUnit.SECONDS);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.bookshop2.repository;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Проверяет планы H2 для SQL каждого метода репозиториев на схеме из миграций Flyway
+@ActiveProfiles("test")
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "com.example.bookshop2.repository.RepositoryIndexUsageTest$SqlCapture")
+class RepositoryIndexUsageTest {
+    private static final Pattern TABLE_SCAN = Pattern.compile("\\w+\\.tableScan", Pattern.CASE_INSENSITIVE);
+
+    // Выгрузки для индексов в памяти и экспорт читают таблицу целиком; соединения в них всё равно должны идти по индексам
+    private static final Set<String> FULL_READS = Set.of(
+            "AuthorRepository.findAllNames",
+            "AuthorRepository.findAllIds",
+            "AuthorRepository.findAllNamesWithBookCount",
+            "PublisherRepository.findAllNames",
+            "PublisherRepository.findAllIds",
+            "PublisherRepository.findAllNamesWithBookCount",
+            "BookRepository.findAllNames",
+            "BookRepository.findAllIds",
+            "BookRepository.findAllPrices",
+            "BookRepository.findGenrePriceCounts",
+            "BookRepository.findAllSummaries",
+            "BookRepository.findAllRelations",
+            "BookRepository.findAllSummariesWithPublisher",
+            "BookRepository.streamAll");
+
+    // LIKE '%x%' не использует B-tree ни в одной СУБД (эти поиски обслуживает NameIndex), а UPPER(name) LIKE 'x%'
+    // покрыт функциональными индексами только в PostgreSQL: в H2 нет индексов по выражению
+    private static final Set<String> NOT_CHECKABLE_ON_H2 = Set.of(
+            "AuthorRepository.findByNameContainingIgnoreCase",
+            "PublisherRepository.findByNameContainingIgnoreCase",
+            "BookRepository.findByNameContainingIgnoreCase",
+            "AuthorRepository.findTop10ByNameStartingWithIgnoreCaseOrderByNameAscIdAsc",
+            "PublisherRepository.findTop10ByNameStartingWithIgnoreCaseOrderByNameAscIdAsc",
+            "BookRepository.findTop10ByNameStartingWithIgnoreCaseOrderByNameAscIdAsc");
+
+    @Autowired
+    private AuthorRepository authorRepository;
+
+    @Autowired
+    private PublisherRepository publisherRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private CatalogChangeRepository catalogChangeRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void everyRepositoryQuery_shouldUseIndexes() {
+        Map<String, Runnable> calls = new LinkedHashMap<>();
+        calls.put("AuthorRepository.findByName", () -> authorRepository.findByName("a"));
+        calls.put("AuthorRepository.findByNameContainingIgnoreCase",
+                () -> authorRepository.findByNameContainingIgnoreCase("a"));
+        calls.put("AuthorRepository.findByNameIn", () -> authorRepository.findByNameIn(List.of("a", "b")));
+        calls.put("AuthorRepository.lockNameUpserts", () -> authorRepository.lockNameUpserts());
+        calls.put("AuthorRepository.findAllIds", () -> authorRepository.findAllIds());
+        calls.put("AuthorRepository.findAllNames", () -> authorRepository.findAllNames());
+        calls.put("AuthorRepository.findAllNamesWithBookCount", () -> authorRepository.findAllNamesWithBookCount());
+        calls.put("AuthorRepository.findTop10ByNameStartingWithIgnoreCaseOrderByNameAscIdAsc",
+                () -> authorRepository.findTop10ByNameStartingWithIgnoreCaseOrderByNameAscIdAsc("a"));
+        calls.put("PublisherRepository.findByName", () -> publisherRepository.findByName("a"));
+        calls.put("PublisherRepository.findByNameContainingIgnoreCase",
+                () -> publisherRepository.findByNameContainingIgnoreCase("a"));
+        calls.put("PublisherRepository.findByNameIn", () -> publisherRepository.findByNameIn(List.of("a", "b")));
+        calls.put("PublisherRepository.lockNameUpserts", () -> publisherRepository.lockNameUpserts());
+        calls.put("PublisherRepository.findAllIds", () -> publisherRepository.findAllIds());
+        calls.put("PublisherRepository.findAllNames", () -> publisherRepository.findAllNames());
+        calls.put("PublisherRepository.findAllNamesWithBookCount",
+                () -> publisherRepository.findAllNamesWithBookCount());
+        calls.put("PublisherRepository.findTop10ByNameStartingWithIgnoreCaseOrderByNameAscIdAsc",
+                () -> publisherRepository.findTop10ByNameStartingWithIgnoreCaseOrderByNameAscIdAsc("a"));
+        calls.put("BookRepository.findByPublisherId", () -> bookRepository.findByPublisherId(1L));
+        calls.put("BookRepository.findByAuthorId", () -> bookRepository.findByAuthorId(1L));
+        calls.put("BookRepository.findByGenre", () -> bookRepository.findByGenre("a"));
+        calls.put("BookRepository.findAllRelations", () -> bookRepository.findAllRelations());
+        calls.put("BookRepository.findByPublisherNameNative", () -> bookRepository.findByPublisherNameNative("a"));
+        calls.put("BookRepository.findByPriceBetween", () -> bookRepository.findByPriceBetween(1.0, 2.0));
+        calls.put("BookRepository.findByPriceNotNullOrderByPriceAscIdAsc",
+                () -> bookRepository.findByPriceNotNullOrderByPriceAscIdAsc(PageRequest.of(0, 10)));
+        calls.put("BookRepository.findByPriceNotNullOrderByPriceDescIdDesc",
+                () -> bookRepository.findByPriceNotNullOrderByPriceDescIdDesc(PageRequest.of(0, 10)));
+        calls.put("BookRepository.findByNameContainingIgnoreCase",
+                () -> bookRepository.findByNameContainingIgnoreCase("a"));
+        calls.put("BookRepository.findTop10ByNameStartingWithIgnoreCaseOrderByNameAscIdAsc",
+                () -> bookRepository.findTop10ByNameStartingWithIgnoreCaseOrderByNameAscIdAsc("a"));
+        calls.put("BookRepository.findAllIds", () -> bookRepository.findAllIds());
+        calls.put("BookRepository.findAllNames", () -> bookRepository.findAllNames());
+        calls.put("BookRepository.findAllPrices", () -> bookRepository.findAllPrices());
+        calls.put("BookRepository.findGenrePriceCounts", () -> bookRepository.findGenrePriceCounts());
+        calls.put("AuthorRepository.patchName", () -> authorRepository.patchName(1L, 0L, "a"));
+        calls.put("PublisherRepository.patchName", () -> publisherRepository.patchName(1L, 0L, "a"));
+        calls.put("BookRepository.patch", () -> bookRepository.patch(1L, 0L, "a", null, 1.0));
+        calls.put("BookRepository.findRowsByIdIn", () -> bookRepository.findRowsByIdIn(List.of(1L, 2L)));
+        calls.put("BookRepository.findAllSummaries", () -> bookRepository.findAllSummaries());
+        calls.put("BookRepository.findAllSummariesWithPublisher",
+                () -> bookRepository.findAllSummariesWithPublisher());
+        calls.put("BookRepository.findWithReferencesByIdIn",
+                () -> bookRepository.findWithReferencesByIdIn(List.of(1L, 2L)));
+        calls.put("BookRepository.deleteAllByIdIn", () -> bookRepository.deleteAllByIdIn(List.of(1L, 2L)));
+        calls.put("AuthorRepository.findNamesByIdIn", () -> authorRepository.findNamesByIdIn(List.of(1L, 2L)));
+        calls.put("AuthorRepository.deleteAllByIdIn", () -> authorRepository.deleteAllByIdIn(List.of(1L, 2L)));
+        calls.put("PublisherRepository.findNamesWithBookCountByIdIn",
+                () -> publisherRepository.findNamesWithBookCountByIdIn(List.of(1L, 2L)));
+        calls.put("PublisherRepository.deleteAllByIdIn", () -> publisherRepository.deleteAllByIdIn(List.of(1L, 2L)));
+        calls.put("BookRepository.findRepricingIdsByPublisher",
+                () -> bookRepository.findRepricingIdsByPublisher(1L, "a", 0L, PageRequest.of(0, 10)));
+        calls.put("BookRepository.findRepricingIdsByGenre",
+                () -> bookRepository.findRepricingIdsByGenre("a", 0L, PageRequest.of(0, 10)));
+        calls.put("BookRepository.findRepricingIdsByIdIn",
+                () -> bookRepository.findRepricingIdsByIdIn(List.of(1L, 2L), 0L, PageRequest.of(0, 10)));
+        calls.put("BookRepository.repriceByIdIn", () -> bookRepository.repriceByIdIn(List.of(1L, 2L), 1.05));
+        calls.put("BookRepository.findPricesByIdIn", () -> bookRepository.findPricesByIdIn(List.of(1L, 2L)));
+        calls.put("BookRepository.streamAll", () -> {
+            try (var books = bookRepository.streamAll()) {
+                books.count();
+            }
+        });
+        calls.put("CatalogChangeRepository.advanceHead", () -> catalogChangeRepository.advanceHead(1));
+        calls.put("CatalogChangeRepository.findHead", () -> catalogChangeRepository.findHead());
+        calls.put("CatalogChangeRepository.findFirstByOrderBySeqAsc",
+                () -> catalogChangeRepository.findFirstByOrderBySeqAsc());
+        calls.put("CatalogChangeRepository.findEntriesAfter",
+                () -> catalogChangeRepository.findEntriesAfter(1L, PageRequest.of(0, 10)));
+        calls.put("CatalogChangeRepository.deleteUpTo", () -> catalogChangeRepository.deleteUpTo(1L));
+
+        assertThat(calls.keySet()).as("новый метод репозитория нужно добавить в эту проверку")
+                .containsAll(declaredQueries(AuthorRepository.class, PublisherRepository.class, BookRepository.class,
+                        CatalogChangeRepository.class));
+
+        List<String> problems = new ArrayList<>();
+        calls.forEach((name, call) -> {
+            if (NOT_CHECKABLE_ON_H2.contains(name)) {
+                return;
+            }
+            SqlCapture.STATEMENTS.clear();
+            call.run();
+            assertThat(SqlCapture.STATEMENTS).as(name).isNotEmpty();
+            int allowedScans = FULL_READS.contains(name) ? 1 : 0;
+            for (String sql : SqlCapture.STATEMENTS) {
+                String plan = explain(sql);
+                if (countScans(plan) > allowedScans) {
+                    problems.add(name + ":\n" + plan);
+                }
+            }
+        });
+        assertThat(problems).isEmpty();
+    }
+
+    private String explain(String sql) {
+        // Параметры подставляются строкой: H2 приводит её к нужному типу, а план от значений не зависит
+        int parameters = sql.length() - sql.replace("?", "").length();
+        Object[] values = new Object[parameters];
+        Arrays.fill(values, "1");
+        return jdbcTemplate.queryForObject("EXPLAIN " + sql, String.class, values);
+    }
+
+    private static int countScans(String plan) {
+        Matcher matcher = TABLE_SCAN.matcher(plan);
+        int count = 0;
+        while (matcher.find()) {
+            count++;
+        }
+        return count;
+    }
+
+    private static List<String> declaredQueries(Class<?>... repositories) {
+        List<String> names = new ArrayList<>();
+        for (Class<?> repository : repositories) {
+            for (Method method : repository.getDeclaredMethods()) {
+                if (!method.isSynthetic() && !method.isDefault()) {
+                    names.add(repository.getSimpleName() + "." + method.getName());
+                }
+            }
+        }
+        return names;
+    }
+
+    public static class SqlCapture implements StatementInspector {
+        static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql);
+            return sql;
+        }
+    }
+}
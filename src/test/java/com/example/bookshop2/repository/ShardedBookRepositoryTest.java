@@ -0,0 +1,100 @@
+package com.example.bookshop2.repository;
+
+import com.example.bookshop2.datasource.ShardDirectory;
+import com.example.bookshop2.datasource.ShardRing;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ShardedBookRepositoryTest {
+
+    // Новый метод BookRepository без маршрута упал бы только при вызове с включёнными шардами
+    @Test
+    void everyBookRepositoryMethod_shouldHaveShardRoute() {
+        ShardedBookRepository repository =
+                new ShardedBookRepository(null, new ShardRing(2, 4), new ShardDirectory(2), null, null);
+        Set<String> routed = ShardedBookRepository.routedMethods(repository);
+
+        assertThat(Arrays.stream(BookRepository.class.getDeclaredMethods())
+                .filter(method -> !Modifier.isStatic(method.getModifiers()))
+                .map(method -> ShardedBookRepository.key(method.getName(), method.getParameterCount())))
+                .allMatch(routed::contains, "routed by ShardedBookRepository");
+    }
+
+    @Test
+    void inheritedRepositoryMethods_usedByServices_shouldHaveShardRoute() throws NoSuchMethodException {
+        ShardedBookRepository repository =
+                new ShardedBookRepository(null, new ShardRing(2, 4), new ShardDirectory(2), null, null);
+        Set<String> routed = ShardedBookRepository.routedMethods(repository);
+
+        for (Method method : new Method[]{
+                BookRepository.class.getMethod("findById", Object.class),
+                BookRepository.class.getMethod("findAllById", Iterable.class),
+                BookRepository.class.getMethod("save", Object.class),
+                BookRepository.class.getMethod("saveAll", Iterable.class),
+                BookRepository.class.getMethod("deleteById", Object.class),
+                BookRepository.class.getMethod("count")}) {
+            assertThat(routed).contains(ShardedBookRepository.key(method.getName(), method.getParameterCount()));
+        }
+    }
+
+    // Выгрузка каталога: из каждого шарда прочитано не больше одной ещё не отданной строки
+    @Test
+    void mergeSorted_shouldHoldAtMostOneUnconsumedRowPerShard() {
+        List<AtomicInteger> read = List.of(new AtomicInteger(), new AtomicInteger(), new AtomicInteger());
+        List<AtomicInteger> consumed = List.of(new AtomicInteger(), new AtomicInteger(), new AtomicInteger());
+        AtomicInteger closed = new AtomicInteger();
+        List<List<Long>> shardIds = List.of(List.of(1L, 4L, 7L, 8L), List.of(2L, 5L), List.of(3L, 6L, 9L, 10L, 11L));
+        List<Stream<Long>> shards = List.of(
+                counting(shardIds.get(0), read.get(0), closed),
+                counting(shardIds.get(1), read.get(1), closed),
+                counting(shardIds.get(2), read.get(2), closed));
+
+        try (Stream<Long> merged = ShardedBookRepository.mergeSorted(shards, Comparator.naturalOrder())) {
+            List<Long> ids = merged.peek(id -> {
+                for (int shard = 0; shard < 3; shard++) {
+                    if (shardIds.get(shard).contains(id)) {
+                        consumed.get(shard).incrementAndGet();
+                    }
+                }
+                for (int shard = 0; shard < 3; shard++) {
+                    assertThat(read.get(shard).get() - consumed.get(shard).get()).isBetween(0, 1);
+                }
+            }).toList();
+
+            assertThat(ids).containsExactly(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L, 11L);
+        }
+        assertThat(closed).hasValue(3);
+    }
+
+    private static Stream<Long> counting(List<Long> ids, AtomicInteger read, AtomicInteger closed) {
+        Iterator<Long> rows = ids.iterator();
+        Iterator<Long> counted = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return rows.hasNext();
+            }
+
+            @Override
+            public Long next() {
+                read.incrementAndGet();
+                return rows.next();
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(counted, Spliterator.ORDERED), false)
+                .onClose(closed::incrementAndGet);
+    }
+}
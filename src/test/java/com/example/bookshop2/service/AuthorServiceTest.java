@@ -1,23 +1,45 @@
 package com.example.bookshop2.service;
 
 import com.example.bookshop2.dto.AuthorDto;
+import com.example.bookshop2.dto.BookDto;
+import com.example.bookshop2.dto.SuggestionDto;
+import com.example.bookshop2.event.CatalogChangeEvent;
+import com.example.bookshop2.event.CatalogChangeEvent.ChangeType;
+import com.example.bookshop2.event.CatalogChangeEvent.EntityType;
 import com.example.bookshop2.exception.AuthorNotFoundException;
 import com.example.bookshop2.exception.ValidationException;
+import com.example.bookshop2.exception.VersionConflictException;
+import com.example.bookshop2.index.ExistenceIndex;
+import com.example.bookshop2.index.IndexedName;
+import com.example.bookshop2.index.NameIndex;
+import com.example.bookshop2.index.SuggestIndex;
 import com.example.bookshop2.model.Author;
 import com.example.bookshop2.repository.AuthorRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
+import org.mockito.InOrder;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.LongStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -29,6 +51,22 @@ class AuthorServiceTest {
     @Mock
     private CacheManager cacheManager;
 
+    @Mock
+    private NameIndex nameIndex;
+
+    @Mock
+    private SuggestIndex suggestIndex;
+
+    @Mock
+    private ExistenceIndex existenceIndex;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Spy
+    private MultiGetBatcher multiGetBatcher = new MultiGetBatcher(Duration.ZERO, 100, 1,
+            mock(PlatformTransactionManager.class));
+
     @InjectMocks
     private AuthorService authorService;
 
@@ -95,22 +133,52 @@ class AuthorServiceTest {
     @Test
     void findById_whenNotCached_shouldReturnFromDB() {
         when(cacheManager.getFromCache("author_1", AuthorDto.class)).thenReturn(null);
-        when(authorRepository.findById(1L)).thenReturn(Optional.of(author));
+        when(authorRepository.findAllById(Set.of(1L))).thenReturn(List.of(author));
 
         AuthorDto result = authorService.findById(1L);
 
         assertThat(result.getName()).isEqualTo("John Doe");
-        verify(authorRepository).findById(1L);
+        verify(authorRepository, never()).findById(any());
         verify(cacheManager).saveToCache("author_1", result);
     }
 
     @Test
     void findById_whenNotFound_shouldThrowAuthorNotFoundException() {
         when(cacheManager.getFromCache("author_99", AuthorDto.class)).thenReturn(null);
-        when(authorRepository.findById(99L)).thenReturn(Optional.empty());
+        when(authorRepository.findAllById(Set.of(99L))).thenReturn(List.of());
 
         assertThrows(AuthorNotFoundException.class, () -> authorService.findById(99L));
-        verify(authorRepository).findById(99L);
+        verify(cacheManager, never()).saveToCache(any(), any());
+    }
+
+    @Test
+    void findAllByIds_whenAllCached_shouldNotQueryRepository() {
+        when(cacheManager.getAllFromCache(List.of("author_1"), AuthorDto.class))
+                .thenReturn(Map.of("author_1", authorDto));
+
+        List<AuthorDto> result = authorService.findAllByIds(List.of(1L, 1L));
+
+        assertThat(result).extracting(AuthorDto::getName).containsExactly("John Doe");
+        verifyNoInteractions(authorRepository);
+    }
+
+    @Test
+    void findAllByIds_shouldNotLoadIdsKnownToBeMissing() {
+        when(existenceIndex.missing(EntityType.AUTHOR, Set.of(1L, 99L))).thenReturn(Set.of(99L));
+        when(cacheManager.getAllFromCache(List.of("author_1"), AuthorDto.class)).thenReturn(Map.of());
+        when(authorRepository.findAllById(Set.of(1L))).thenReturn(List.of(author));
+
+        List<AuthorDto> result = authorService.findAllByIds(List.of(1L, 99L));
+
+        assertThat(result).extracting(AuthorDto::getId).containsExactly(1L);
+    }
+
+    @Test
+    void findAllByIds_whenTooManyIds_shouldThrowValidationException() {
+        List<Long> ids = LongStream.rangeClosed(1, 1001).boxed().toList();
+
+        assertThrows(ValidationException.class, () -> authorService.findAllByIds(ids));
+        verifyNoInteractions(authorRepository);
     }
 
     @Test
@@ -155,9 +223,61 @@ class AuthorServiceTest {
         verify(cacheManager).clearAuthorCache(1L);
     }
 
+    @Test
+    void upsertByNames_shouldResolveExistingAndInsertMissingInOneBatch() {
+        when(authorRepository.findByNameIn(Set.of("John Doe", "Jane Roe"))).thenReturn(List.of(author));
+        when(authorRepository.saveAllAndFlush(anyList())).thenAnswer(invocation -> {
+            List<Author> batch = invocation.getArgument(0);
+            batch.get(0).setId(2L);
+            return batch;
+        });
+
+        Map<String, Long> result = authorService.upsertByNames(List.of(" John Doe ", "Jane Roe", "John Doe"));
+
+        // Порядок ключей — порядок первого появления имени в запросе
+        assertThat(result).containsExactly(Map.entry("John Doe", 1L), Map.entry("Jane Roe", 2L));
+        ArgumentCaptor<List<Author>> batch = ArgumentCaptor.forClass(List.class);
+        verify(authorRepository).saveAllAndFlush(batch.capture());
+        assertThat(batch.getValue()).extracting(Author::getName).containsExactly("Jane Roe");
+        verify(cacheManager).clearAuthorCache(2L);
+        ArgumentCaptor<CatalogChangeEvent> event = ArgumentCaptor.forClass(CatalogChangeEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertThat(event.getValue().getChangeType()).isEqualTo(ChangeType.CREATED);
+        assertThat(event.getValue().getId()).isEqualTo(2L);
+    }
+
+    @Test
+    void upsertByNames_whenAllNamesExist_shouldNotInsert() {
+        when(authorRepository.findByNameIn(Set.of("John Doe"))).thenReturn(List.of(author));
+
+        assertThat(authorService.upsertByNames(List.of("John Doe"))).containsExactly(Map.entry("John Doe", 1L));
+        verify(authorRepository, never()).saveAllAndFlush(anyList());
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void upsertByNames_whenNameIsShared_shouldTakeLowestIdUnderLock() {
+        Author namesake = new Author();
+        namesake.setId(7L);
+        namesake.setName("John Doe");
+        when(authorRepository.findByNameIn(Set.of("John Doe"))).thenReturn(List.of(namesake, author));
+
+        assertThat(authorService.upsertByNames(List.of("John Doe"))).containsExactly(Map.entry("John Doe", 1L));
+        InOrder order = inOrder(authorRepository);
+        order.verify(authorRepository).lockNameUpserts();
+        order.verify(authorRepository).findByNameIn(Set.of("John Doe"));
+        verify(authorRepository, never()).saveAllAndFlush(anyList());
+    }
+
+    @Test
+    void upsertByNames_whenNameBlank_shouldThrowValidationException() {
+        assertThrows(ValidationException.class, () -> authorService.upsertByNames(List.of("John Doe", " ")));
+        verifyNoInteractions(authorRepository);
+    }
+
     @Test
     void delete_whenExists_shouldDelete() {
-        when(authorRepository.existsById(1L)).thenReturn(true);
+        when(existenceIndex.exists(EntityType.AUTHOR, 1L)).thenReturn(true);
 
         authorService.delete(1L);
 
@@ -167,7 +287,7 @@ class AuthorServiceTest {
 
     @Test
     void delete_whenNotExists_shouldThrowAuthorNotFoundException() {
-        when(authorRepository.existsById(99L)).thenReturn(false);
+        when(existenceIndex.exists(EntityType.AUTHOR, 99L)).thenReturn(false);
 
         assertThrows(AuthorNotFoundException.class, () -> authorService.delete(99L));
         verify(authorRepository, never()).deleteById(any());
@@ -192,4 +312,150 @@ class AuthorServiceTest {
         assertThrows(AuthorNotFoundException.class, () -> authorService.update(99L, authorDto));
         verify(authorRepository, never()).save(any());
     }
-}
\ No newline at end of file
+
+    @Test
+    void searchByName_whenIndexReady_shouldAnswerFromIndex() {
+        when(nameIndex.isReady()).thenReturn(true);
+        when(nameIndex.search(EntityType.AUTHOR, "john")).thenReturn(List.of(new IndexedName(1L, "John Doe")));
+
+        List<AuthorDto> result = authorService.searchByName("john");
+
+        assertThat(result).containsExactly(authorDto);
+        verify(authorRepository, never()).findByNameContainingIgnoreCase(any());
+        verify(cacheManager, never()).getFromCache(any(), any());
+    }
+
+    @Test
+    void writes_shouldPublishCatalogChangeEvents() {
+        when(authorRepository.save(any(Author.class))).thenReturn(author);
+        when(authorRepository.findById(1L)).thenReturn(Optional.of(author));
+        when(existenceIndex.exists(EntityType.AUTHOR, 1L)).thenReturn(true);
+
+        authorService.create(authorDto);
+        authorService.update(1L, authorDto);
+        authorService.delete(1L);
+
+        ArgumentCaptor<CatalogChangeEvent> events = ArgumentCaptor.forClass(CatalogChangeEvent.class);
+        verify(eventPublisher, times(3)).publishEvent(events.capture());
+        assertThat(events.getAllValues()).extracting(CatalogChangeEvent::getChangeType)
+                .containsExactly(ChangeType.CREATED, ChangeType.UPDATED, ChangeType.DELETED);
+        assertThat(events.getAllValues()).allMatch(event -> event.getEntityType() == EntityType.AUTHOR
+                && event.getId() == 1L);
+        assertThat(events.getAllValues().get(0).getPayload(AuthorDto.class).getName()).isEqualTo("John Doe");
+    }
+
+    @Test
+    void suggest_whenIndexReady_shouldAnswerFromIndex() {
+        when(suggestIndex.isReady()).thenReturn(true);
+        when(suggestIndex.suggest(EntityType.AUTHOR, "jo", 5)).thenReturn(List.of(new IndexedName(1L, "John Doe")));
+
+        List<SuggestionDto> result = authorService.suggest("jo", 5);
+
+        assertThat(result).containsExactly(new SuggestionDto(1L, "John Doe"));
+        verifyNoInteractions(authorRepository);
+    }
+
+    @Test
+    void suggest_whenIndexNotReady_shouldFallBackToDatabase() {
+        when(authorRepository.findTop10ByNameStartingWithIgnoreCaseOrderByNameAscIdAsc("jo")).thenReturn(List.of(author));
+
+        List<SuggestionDto> result = authorService.suggest("jo", 5);
+
+        assertThat(result).containsExactly(new SuggestionDto(1L, "John Doe"));
+        verify(suggestIndex, never()).suggest(any(), any(), anyInt());
+    }
+
+    @Test
+    void suggest_whenInvalidArguments_shouldThrowValidationException() {
+        assertThrows(ValidationException.class, () -> authorService.suggest(" ", 5));
+        assertThrows(ValidationException.class, () -> authorService.suggest("jo", 0));
+        assertThrows(ValidationException.class, () -> authorService.suggest("jo", 11));
+        verifyNoInteractions(suggestIndex, authorRepository);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void patch_shouldRenameWithoutLoadingAndEvictEntriesMentioningAuthor() {
+        AuthorDto changes = new AuthorDto();
+        changes.setVersion(0L);
+        changes.setName("Jane Doe");
+        when(authorRepository.patchName(1L, 0L, "Jane Doe")).thenReturn(1);
+
+        assertThat(authorService.patch(1L, changes)).isEqualTo(1L);
+        verify(authorRepository, never()).findById(any());
+
+        ArgumentCaptor<Predicate<String>> keys = ArgumentCaptor.forClass(Predicate.class);
+        ArgumentCaptor<Predicate<Object>> values = ArgumentCaptor.forClass(Predicate.class);
+        verify(cacheManager).clearMatching(keys.capture(), values.capture());
+        assertThat(keys.getValue().test("author_search_jane")).isTrue();
+        assertThat(keys.getValue().test("author_search_john")).isFalse();
+        BookDto book = new BookDto();
+        book.setAuthorIds(Set.of(1L, 2L));
+        assertThat(values.getValue().test(book)).isTrue();
+        assertThat(values.getValue().test(authorDto)).isTrue();
+
+        ArgumentCaptor<CatalogChangeEvent> event = ArgumentCaptor.forClass(CatalogChangeEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertThat(event.getValue().getChangeType()).isEqualTo(ChangeType.PATCHED);
+        assertThat(event.getValue().getPayload(AuthorDto.class).getName()).isEqualTo("Jane Doe");
+    }
+
+    @Test
+    void patch_whenVersionStale_shouldThrowVersionConflictException() {
+        AuthorDto changes = new AuthorDto();
+        changes.setVersion(0L);
+        changes.setName("Jane Doe");
+        when(authorRepository.patchName(1L, 0L, "Jane Doe")).thenReturn(0);
+        when(authorRepository.existsById(1L)).thenReturn(true);
+
+        assertThrows(VersionConflictException.class, () -> authorService.patch(1L, changes));
+        verifyNoInteractions(cacheManager, eventPublisher);
+    }
+
+    @Test
+    void patch_whenNotFound_shouldThrowAuthorNotFoundException() {
+        AuthorDto changes = new AuthorDto();
+        changes.setVersion(0L);
+        changes.setName("Jane Doe");
+        when(authorRepository.patchName(99L, 0L, "Jane Doe")).thenReturn(0);
+
+        assertThrows(AuthorNotFoundException.class, () -> authorService.patch(99L, changes));
+    }
+
+    @Test
+    void patch_whenVersionMissing_shouldThrowValidationException() {
+        assertThrows(ValidationException.class, () -> authorService.patch(1L, authorDto));
+        verifyNoInteractions(authorRepository);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void deleteBulk_shouldDeleteAuthorsAndEvictTheirBooks() {
+        when(authorRepository.findNamesByIdIn(Set.of(1L, 2L)))
+                .thenReturn(List.of(new IndexedName(1L, "John Doe"), new IndexedName(2L, "Jane Roe")));
+
+        authorService.deleteBulk(List.of(1L, 2L));
+
+        verify(authorRepository).deleteAllByIdIn(Set.of(1L, 2L));
+        ArgumentCaptor<Predicate<Object>> values = ArgumentCaptor.forClass(Predicate.class);
+        verify(cacheManager).clearMatching(values.capture());
+        BookDto book = new BookDto();
+        book.setAuthorIds(Set.of(2L, 3L));
+        assertThat(values.getValue().test(book)).isTrue();
+        assertThat(values.getValue().test(authorDto)).isTrue();
+        book.setAuthorIds(Set.of(3L));
+        assertThat(values.getValue().test(book)).isFalse();
+        verify(eventPublisher, times(2)).publishEvent(any(CatalogChangeEvent.class));
+    }
+
+    @Test
+    void deleteBulk_whenSomeAuthorsMissing_shouldDeleteNothing() {
+        when(authorRepository.findNamesByIdIn(Set.of(1L, 9L))).thenReturn(List.of(new IndexedName(1L, "John Doe")));
+
+        AuthorNotFoundException ex = assertThrows(AuthorNotFoundException.class,
+                () -> authorService.deleteBulk(List.of(1L, 9L)));
+        assertThat(ex.getMessage()).contains("[9]");
+        verify(authorRepository, never()).deleteAllByIdIn(any());
+        verifyNoInteractions(cacheManager, eventPublisher);
+    }
+}
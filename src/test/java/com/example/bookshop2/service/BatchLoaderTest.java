@@ -0,0 +1,160 @@
+package com.example.bookshop2.service;
+
+import com.example.bookshop2.datasource.ReadYourWrites;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+
+class BatchLoaderTest {
+
+    private final List<Set<Long>> batches = new CopyOnWriteArrayList<>();
+    private final List<String> threads = new CopyOnWriteArrayList<>();
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+
+    private final Function<Set<Long>, Map<Long, String>> loader = ids -> {
+        batches.add(Set.copyOf(ids));
+        threads.add(Thread.currentThread().getName());
+        Map<Long, String> found = new HashMap<>();
+        ids.stream().filter(id -> id > 0).forEach(id -> found.put(id, "value-" + id));
+        return found;
+    };
+
+    @Test
+    void load_whenCalledConcurrentlyWithinWindow_shouldQueryOnce() throws Exception {
+        BatchLoader<String> batchLoader = new MultiGetBatcher(Duration.ofMillis(200), 100, 1, transactionManager)
+                .loader("test", loader);
+
+        List<CompletableFuture<String>> results = loadConcurrently(batchLoader, 1L, 2L, 3L, 2L, -1L);
+
+        assertThat(results).extracting(CompletableFuture::join)
+                .containsExactly("value-1", "value-2", "value-3", "value-2", null);
+        assertThat(batches).containsExactly(Set.of(1L, 2L, 3L, -1L));
+    }
+
+    @Test
+    void load_whenBatchIsFull_shouldNotWaitForWindow() throws Exception {
+        BatchLoader<String> batchLoader = new MultiGetBatcher(Duration.ofMinutes(1), 3, 1, transactionManager)
+                .loader("test", loader);
+
+        List<CompletableFuture<String>> results = loadConcurrently(batchLoader, 1L, 2L, 3L);
+
+        CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+        assertThat(batches).containsExactly(Set.of(1L, 2L, 3L));
+    }
+
+    @Test
+    void load_whenLoaderFails_shouldRethrowToEveryCaller() {
+        BatchLoader<String> batchLoader = new MultiGetBatcher(Duration.ofMillis(1), 100, 1, transactionManager)
+                .loader("test", ids -> {
+                    throw new IllegalStateException("database is down");
+                });
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> batchLoader.load(1L));
+        assertThat(e).hasMessage("database is down");
+    }
+
+    @Test
+    void load_whenLoaderThrowsError_shouldNotLeaveCallersWaiting() throws Exception {
+        BatchLoader<String> batchLoader = new MultiGetBatcher(Duration.ofMillis(50), 100, 1, transactionManager)
+                .loader("test", ids -> {
+                    throw new StackOverflowError("loader blew up");
+                });
+
+        List<CompletableFuture<String>> results = loadConcurrently(batchLoader, 1L, 2L);
+
+        for (CompletableFuture<String> result : results) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+            assertThat(e.getCause()).isInstanceOf(StackOverflowError.class);
+        }
+    }
+
+    @Test
+    void shutdown_shouldSendWaitingBatchAndLoadLaterMissesInline() throws Exception {
+        MultiGetBatcher batcher = new MultiGetBatcher(Duration.ofMillis(200), 100, 1, transactionManager);
+        BatchLoader<String> batchLoader = batcher.loader("test", loader);
+        List<CompletableFuture<String>> waiting = loadConcurrently(batchLoader, 1L, 2L);
+        Thread.sleep(50);
+
+        batcher.shutdown();
+
+        assertThat(waiting).extracting(CompletableFuture::join).containsExactly("value-1", "value-2");
+        assertThat(batchLoader.load(3L)).isEqualTo("value-3");
+        assertThat(threads.get(threads.size() - 1)).isEqualTo(Thread.currentThread().getName());
+    }
+
+    @Test
+    void load_whenThreadIsPinnedToPrimary_shouldLoadOnCallingThread() {
+        BatchLoader<String> batchLoader = new MultiGetBatcher(Duration.ofMinutes(1), 100, 1, transactionManager)
+                .loader("test", loader);
+
+        String value = ReadYourWrites.onPrimary(() -> batchLoader.load(1L));
+
+        assertThat(value).isEqualTo("value-1");
+        assertThat(threads).containsExactly(Thread.currentThread().getName());
+    }
+
+    @Test
+    void load_whenTransactionIsActive_shouldLoadOnCallingThread() {
+        BatchLoader<String> batchLoader = new MultiGetBatcher(Duration.ofMinutes(1), 100, 1, transactionManager)
+                .loader("test", loader);
+
+        // Даже read-only транзакция уже держит соединение пула: ждать пакет, которому нужно второе, нельзя
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        String value;
+        try {
+            value = batchLoader.load(1L);
+        } finally {
+            TransactionSynchronizationManager.clear();
+        }
+
+        assertThat(value).isEqualTo("value-1");
+        assertThat(threads).containsExactly(Thread.currentThread().getName());
+    }
+
+    @Test
+    void load_whenWindowIsZero_shouldLoadEveryIdSeparately() {
+        BatchLoader<String> batchLoader = new MultiGetBatcher(Duration.ZERO, 100, 1, transactionManager)
+                .loader("test", loader);
+
+        assertThat(batchLoader.load(1L)).isEqualTo("value-1");
+        assertThat(batchLoader.load(2L)).isEqualTo("value-2");
+        assertThat(batches).containsExactly(Set.of(1L), Set.of(2L));
+    }
+
+    // Все вызывающие стартуют одновременно, чтобы попасть в одно окно
+    private static List<CompletableFuture<String>> loadConcurrently(BatchLoader<String> batchLoader, Long... ids)
+            throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (Long id : ids) {
+            results.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return batchLoader.load(id);
+            }, runnable -> new Thread(runnable).start()));
+        }
+        start.countDown();
+        return results;
+    }
+}
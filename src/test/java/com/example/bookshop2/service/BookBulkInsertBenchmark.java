@@ -0,0 +1,118 @@
+package com.example.bookshop2.service;
+
+import com.example.bookshop2.dto.BookDto;
+import com.example.bookshop2.event.ChangeLog;
+import com.example.bookshop2.index.CatalogStatsIndex;
+import com.example.bookshop2.index.ExistenceIndex;
+import com.example.bookshop2.index.NameIndex;
+import com.example.bookshop2.index.PriceIndex;
+import com.example.bookshop2.index.RelationIndex;
+import com.example.bookshop2.index.SuggestIndex;
+import com.example.bookshop2.model.Author;
+import com.example.bookshop2.model.Publisher;
+import com.example.bookshop2.repository.AuthorRepository;
+import com.example.bookshop2.repository.BookRepository;
+import com.example.bookshop2.repository.PublisherRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Запуск: mvn test -Pbenchmark
+@ActiveProfiles("test")
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "logging.level.com.example.bookshop2.service.CacheManager=WARN"
+})
+@Import({BookService.class, CacheManager.class, NameIndex.class, SuggestIndex.class, PriceIndex.class,
+        CatalogStatsIndex.class, RelationIndex.class, ExistenceIndex.class, ChangeLog.class,
+        MultiGetBatcher.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BookBulkInsertBenchmark {
+    private static final Logger LOG = LoggerFactory.getLogger(BookBulkInsertBenchmark.class);
+    private static final int BOOKS = 10_000;
+    private static final int AUTHORS = 100;
+    private static final int PUBLISHERS = 10;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private AuthorRepository authorRepository;
+
+    @Autowired
+    private PublisherRepository publisherRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private List<Long> authorIds;
+    private List<Long> publisherIds;
+
+    @BeforeEach
+    void setUp() {
+        bookRepository.deleteAllInBatch();
+        authorIds = new ArrayList<>();
+        publisherIds = new ArrayList<>();
+        for (int i = 0; i < AUTHORS; i++) {
+            Author author = new Author();
+            author.setName("Author " + i);
+            authorIds.add(authorRepository.save(author).getId());
+        }
+        for (int i = 0; i < PUBLISHERS; i++) {
+            Publisher publisher = new Publisher();
+            publisher.setName("Publisher " + i);
+            publisherIds.add(publisherRepository.save(publisher).getId());
+        }
+    }
+
+    private List<BookDto> books(int count) {
+        List<BookDto> books = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            BookDto dto = new BookDto();
+            dto.setName("Book " + i);
+            dto.setGenre("Genre " + (i % 20));
+            dto.setPrice(1.0 + i % 100);
+            dto.setPublisherId(publisherIds.get(i % PUBLISHERS));
+            dto.setAuthorIds(Set.of(authorIds.get(i % AUTHORS), authorIds.get((i + 1) % AUTHORS)));
+            books.add(dto);
+        }
+        return books;
+    }
+
+    @Test
+    void addBooksBulk_10k() {
+        bookService.addBooksBulk(books(1_000));
+        bookRepository.deleteAllInBatch();
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        List<BookDto> batch = books(BOOKS);
+
+        long start = System.nanoTime();
+        bookService.addBooksBulk(batch);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        LOG.info("addBooksBulk: {} книг за {} мс, подготовлено JDBC-выражений: {}, сущностей вставлено: {}",
+                BOOKS, elapsedMs, statistics.getPrepareStatementCount(), statistics.getEntityInsertCount());
+        assertThat(bookRepository.count()).isEqualTo(BOOKS);
+    }
+}
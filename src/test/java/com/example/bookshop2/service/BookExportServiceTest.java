@@ -0,0 +1,101 @@
+package com.example.bookshop2.service;
+
+import com.example.bookshop2.model.Author;
+import com.example.bookshop2.model.Book;
+import com.example.bookshop2.model.Publisher;
+import com.example.bookshop2.repository.BookRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BookExportServiceTest {
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @Mock
+    private EntityManager entityManager;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private BookExportService bookExportService;
+
+    @BeforeEach
+    void setUp() {
+        bookExportService = new BookExportService(bookRepository, entityManager, objectMapper);
+    }
+
+    private Book book(long id) {
+        Publisher publisher = new Publisher();
+        publisher.setId(1L);
+        publisher.setName("Acme Publishing");
+
+        Author author = new Author();
+        author.setId(1L);
+        author.setName("John Doe");
+
+        Book book = new Book();
+        book.setId(id);
+        book.setName("Book " + id);
+        book.setPrice(10.0);
+        book.setPublisher(publisher);
+        book.setAuthors(Set.of(author));
+        return book;
+    }
+
+    @Test
+    void exportAll_shouldWriteOneJsonObjectPerLine() throws IOException {
+        when(bookRepository.streamAll()).thenReturn(Stream.of(book(1L), book(2L)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long count = bookExportService.exportAll(out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(count).isEqualTo(2);
+        assertThat(lines).hasSize(2);
+        JsonNode first = objectMapper.readTree(lines[0]);
+        assertThat(first.get("id").asLong()).isEqualTo(1L);
+        assertThat(first.get("publisherName").asText()).isEqualTo("Acme Publishing");
+        assertThat(first.get("authorNames").get(0).asText()).isEqualTo("John Doe");
+        assertThat(objectMapper.readTree(lines[1]).get("name").asText()).isEqualTo("Book 2");
+    }
+
+    @Test
+    void exportAll_shouldClearPersistenceContextPeriodically() throws IOException {
+        int total = BookExportService.CLEAR_INTERVAL * 2 + 1;
+        when(bookRepository.streamAll()).thenReturn(LongStream.rangeClosed(1, total).mapToObj(this::book));
+
+        long count = bookExportService.exportAll(new ByteArrayOutputStream());
+
+        assertThat(count).isEqualTo(total);
+        verify(entityManager, times(2)).clear();
+    }
+
+    @Test
+    void exportAll_whenCatalogEmpty_shouldWriteNothing() throws IOException {
+        when(bookRepository.streamAll()).thenReturn(Stream.empty());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long count = bookExportService.exportAll(out);
+
+        assertThat(count).isZero();
+        assertThat(out.size()).isZero();
+        verify(entityManager, never()).clear();
+    }
+}
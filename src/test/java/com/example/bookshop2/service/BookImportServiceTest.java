@@ -0,0 +1,286 @@
+package com.example.bookshop2.service;
+
+import com.example.bookshop2.dto.BookDto;
+import com.example.bookshop2.dto.BookImportStatusDto;
+import com.example.bookshop2.exception.ImportJobNotFoundException;
+import com.example.bookshop2.exception.ImportRejectedException;
+import com.example.bookshop2.exception.ValidationException;
+import com.example.bookshop2.service.BookImportService.ImportFormat;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BookImportServiceTest {
+
+    @Mock
+    private BookService bookService;
+
+    private final Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+    private BookImportService bookImportService;
+
+    @BeforeEach
+    void setUp() {
+        bookImportService = new BookImportService(bookService, new ObjectMapper(), validator, 2, 1, 1, Duration.ZERO,
+                Duration.ofSeconds(10));
+    }
+
+    @AfterEach
+    void tearDown() {
+        bookImportService.shutdown();
+    }
+
+    private String start(String body, ImportFormat format) throws IOException {
+        return bookImportService.startImportAsync(
+                new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), format);
+    }
+
+    private BookImportStatusDto awaitFinished(String id) {
+        Awaitility.await().atMost(10, TimeUnit.SECONDS)
+                .until(() -> !bookImportService.getStatus(id).getStatus().equals("IN_PROGRESS"));
+        return bookImportService.getStatus(id);
+    }
+
+    private static Set<Path> importFiles() throws IOException {
+        try (Stream<Path> files = Files.list(Path.of(System.getProperty("java.io.tmpdir")))) {
+            return files.filter(file -> file.getFileName().toString().startsWith("book-import-"))
+                    .collect(Collectors.toSet());
+        }
+    }
+
+    private String report(String id) {
+        return new String(bookImportService.getErrorReport(id), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void jsonImport_shouldCommitInChunks() throws IOException {
+        String json = "[" + String.join(",",
+                "{\"name\":\"A\",\"price\":1.0,\"publisherId\":1,\"authorIds\":[1]}",
+                "{\"name\":\"B\",\"price\":2.0,\"publisherId\":1,\"authorIds\":[1]}",
+                "{\"name\":\"C\",\"price\":3.0,\"publisherId\":1,\"authorIds\":[1,2]}") + "]";
+
+        BookImportStatusDto status = awaitFinished(start(json, ImportFormat.JSON));
+
+        assertThat(status.getStatus()).isEqualTo("READY");
+        assertThat(status.getRowsDone()).isEqualTo(3);
+        assertThat(status.getRowsFailed()).isZero();
+        verify(bookService).addBooksBulk(argThat(books -> books.size() == 2));
+        verify(bookService).addBooksBulk(argThat(books -> books.size() == 1
+                && books.get(0).getAuthorIds().equals(Set.of(1L, 2L))));
+    }
+
+    @Test
+    void jsonImport_shouldReportInvalidRowsAndKeepGoing() throws IOException {
+        String json = "[{\"name\":\"\",\"price\":1.0},"
+                + "{\"name\":\"B\",\"unknown\":true},"
+                + "42,"
+                + "{\"name\":\"D\",\"price\":4.0,\"publisherId\":1,\"authorIds\":[1]}]";
+
+        String id = start(json, ImportFormat.JSON);
+        BookImportStatusDto status = awaitFinished(id);
+
+        assertThat(status.getStatus()).isEqualTo("READY");
+        assertThat(status.getRowsDone()).isEqualTo(1);
+        assertThat(status.getRowsFailed()).isEqualTo(3);
+        assertThat(report(id)).contains("1,\"name:").contains("2,\"Unrecognized field").contains("3,\"Expected");
+    }
+
+    @Test
+    void jsonImport_whenNotAnArray_shouldFail() throws IOException {
+        String id = start("{\"name\":\"A\"}", ImportFormat.JSON);
+
+        BookImportStatusDto status = awaitFinished(id);
+
+        assertThat(status.getStatus()).isEqualTo("FAILED");
+        assertThat(report(id)).contains("Expected a JSON array");
+        verify(bookService, never()).addBooksBulk(anyList());
+    }
+
+    @Test
+    void csvImport_shouldParseQuotedFieldsAndAuthorList() throws IOException {
+        String csv = "name,genre,price,publisherId,authorIds\n"
+                + "\"War, and \"\"Peace\"\"\",Novel,12.5,3,1;2\n"
+                + "\n"
+                + "Dune,Sci-Fi,not-a-number,3,1\n";
+
+        String id = start(csv, ImportFormat.CSV);
+        BookImportStatusDto status = awaitFinished(id);
+
+        assertThat(status.getRowsDone()).isEqualTo(1);
+        assertThat(status.getRowsFailed()).isEqualTo(1);
+        verify(bookService).addBooksBulk(argThat(books -> {
+            BookDto book = books.get(0);
+            return books.size() == 1
+                    && book.getName().equals("War, and \"Peace\"")
+                    && book.getPrice() == 12.5
+                    && book.getPublisherId() == 3L
+                    && book.getAuthorIds().equals(Set.of(1L, 2L));
+        }));
+        assertThat(report(id)).startsWith("row,error\n2,");
+    }
+
+    @Test
+    void whenChunkFails_shouldRetryRowByRowAndReportFailures() throws IOException {
+        when(bookService.addBooksBulk(anyList()))
+                .thenThrow(new ValidationException("Unknown references"))
+                .thenReturn(List.of(new BookDto()))
+                .thenThrow(new ValidationException("Unknown references: author IDs [9]"));
+        String json = "[{\"name\":\"A\",\"price\":1.0,\"publisherId\":1,\"authorIds\":[1]},"
+                + "{\"name\":\"B\",\"price\":2.0,\"publisherId\":1,\"authorIds\":[9]}]";
+
+        String id = start(json, ImportFormat.JSON);
+        BookImportStatusDto status = awaitFinished(id);
+
+        assertThat(status.getRowsDone()).isEqualTo(1);
+        assertThat(status.getRowsFailed()).isEqualTo(1);
+        assertThat(report(id)).contains("2,\"Unknown references: author IDs [9]\"");
+        // Построчный повтор идёт через те же проверки, что и пачка
+        verify(bookService, times(2)).addBooksBulk(argThat(books -> books.size() == 1));
+        verify(bookService, never()).create(any(BookDto.class));
+    }
+
+    @Test
+    void startImportAsync_whenAllSlotsBusy_shouldReject() throws IOException {
+        CountDownLatch release = new CountDownLatch(1);
+        when(bookService.addBooksBulk(anyList())).thenAnswer(invocation -> {
+            release.await();
+            return List.of();
+        });
+        String id = start("[{\"name\":\"A\",\"price\":1.0,\"publisherId\":1,\"authorIds\":[1]}]",
+                ImportFormat.JSON);
+        try {
+            assertThrows(ImportRejectedException.class, () -> start("[]", ImportFormat.JSON));
+        } finally {
+            release.countDown();
+        }
+
+        awaitFinished(id);
+        // Слот освобождается, когда завершились и чтение, и запись
+        Awaitility.await().atMost(10, TimeUnit.SECONDS).ignoreExceptions()
+                .until(() -> start("[]", ImportFormat.JSON) != null);
+    }
+
+    @Test
+    void startImportAsync_whenReaderRejected_shouldNotRegisterJobOrLeakFiles() throws IOException {
+        // Один поток без очереди: писатель принят, читатель отклонён
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new SynchronousQueue<>());
+        bookImportService = new BookImportService(bookService, new ObjectMapper(), validator, 2, 1, 1, Duration.ZERO,
+                Duration.ofSeconds(10), pool);
+        Set<Path> before = importFiles();
+
+        assertThrows(RejectedExecutionException.class, () -> start("[]", ImportFormat.JSON));
+
+        assertThat(importFiles()).isEqualTo(before);
+        // Писатель дождался остановки читателя и освободил слот: следующий импорт упирается в пул, а не в слоты
+        Awaitility.await().atMost(10, TimeUnit.SECONDS).until(() -> pool.getActiveCount() == 0);
+        Awaitility.await().atMost(10, TimeUnit.SECONDS).ignoreExceptionsMatching(e -> e instanceof ImportRejectedException)
+                .until(() -> assertThrows(RejectedExecutionException.class, () -> start("[]", ImportFormat.JSON)) != null);
+        verifyNoInteractions(bookService);
+    }
+
+    @Test
+    void startImportAsync_afterShutdown_shouldReleaseSlotAndDeleteFiles() throws IOException {
+        Set<Path> before = importFiles();
+        bookImportService.shutdown();
+
+        assertThrows(RejectedExecutionException.class, () -> start("[]", ImportFormat.JSON));
+        assertThrows(RejectedExecutionException.class, () -> start("[]", ImportFormat.JSON));
+
+        assertThat(importFiles()).isEqualTo(before);
+    }
+
+    @Test
+    void shutdown_shouldLetRunningImportFinishItsChunk() throws IOException {
+        CountDownLatch started = new CountDownLatch(1);
+        when(bookService.addBooksBulk(anyList())).thenAnswer(invocation -> {
+            started.countDown();
+            Thread.sleep(200);
+            return List.of();
+        });
+        String id = start("[{\"name\":\"A\",\"price\":1.0,\"publisherId\":1,\"authorIds\":[1]}]",
+                ImportFormat.JSON);
+        Awaitility.await().atMost(10, TimeUnit.SECONDS).until(() -> started.getCount() == 0);
+
+        bookImportService.shutdown();
+
+        assertThat(bookImportService.getStatus(id).getStatus()).isEqualTo("READY");
+        assertThat(bookImportService.getStatus(id).getRowsDone()).isEqualTo(1);
+        assertThrows(RuntimeException.class, () -> start("[]", ImportFormat.JSON));
+    }
+
+    @Test
+    void shutdown_whenImportOutlivesTimeout_shouldInterruptIt() throws IOException {
+        bookImportService = new BookImportService(bookService, new ObjectMapper(), validator, 2, 1, 1, Duration.ZERO,
+                Duration.ofMillis(100));
+        CountDownLatch started = new CountDownLatch(1);
+        when(bookService.addBooksBulk(anyList())).thenAnswer(invocation -> {
+            started.countDown();
+            new CountDownLatch(1).await();
+            return List.of();
+        });
+        String id = start("[{\"name\":\"A\",\"price\":1.0,\"publisherId\":1,\"authorIds\":[1]}]",
+                ImportFormat.JSON);
+        Awaitility.await().atMost(10, TimeUnit.SECONDS).until(() -> started.getCount() == 0);
+
+        bookImportService.shutdown();
+
+        assertThat(awaitFinished(id).getStatus()).isEqualTo("FAILED");
+    }
+
+    @Test
+    void evictFinished_shouldForgetJobAndDeleteReport() throws IOException {
+        String id = start("[]", ImportFormat.JSON);
+        awaitFinished(id);
+
+        bookImportService.evictFinished();
+
+        assertThat(bookImportService.getStatus(id).getStatus()).isEqualTo("NOT_FOUND");
+        assertThrows(ImportJobNotFoundException.class, () -> bookImportService.getErrorReport(id));
+    }
+
+    @Test
+    void getStatus_whenUnknownId_shouldReturnNotFound() {
+        assertThat(bookImportService.getStatus("missing").getStatus()).isEqualTo("NOT_FOUND");
+    }
+
+    @Test
+    void getErrorReport_whenUnknownId_shouldThrow() {
+        assertThrows(ImportJobNotFoundException.class, () -> bookImportService.getErrorReport("missing"));
+    }
+
+    @Test
+    void parseCsvLine_shouldHandleEmptyAndQuotedValues() {
+        assertThat(BookImportService.parseCsvLine("a,,\"b,c\",\"\"")).isEqualTo(List.of("a", "", "b,c", ""));
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.bookshop2.service;
+
+import com.example.bookshop2.dto.BookRepriceDto;
+import com.example.bookshop2.dto.BookRepriceResultDto;
+import com.example.bookshop2.exception.PublisherNotFoundException;
+import com.example.bookshop2.exception.ValidationException;
+import com.example.bookshop2.repository.PublisherRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BookRepricingServiceTest {
+
+    @Mock
+    private BookService bookService;
+
+    @Mock
+    private PublisherRepository publisherRepository;
+
+    private BookRepricingService bookRepricingService;
+
+    @BeforeEach
+    void setUp() {
+        bookRepricingService = new BookRepricingService(bookService, publisherRepository, 2);
+    }
+
+    @Test
+    void reprice_shouldContinueAfterLastIdUntilChunkIsNotFull() {
+        BookRepriceDto request = request(5.0);
+        request.setPublisherId(1L);
+        when(publisherRepository.existsById(1L)).thenReturn(true);
+        when(bookService.repriceChunk(eq(request), eq(1.05), anyLong(), eq(2)))
+                .thenReturn(new BookService.RepriceChunk(2, 7L, 2))
+                .thenReturn(new BookService.RepriceChunk(1, 9L, 1));
+
+        BookRepriceResultDto result = bookRepricingService.reprice(request);
+
+        assertThat(result.getUpdated()).isEqualTo(3);
+        assertThat(result.getChunks()).isEqualTo(2);
+        verify(bookService).repriceChunk(request, 1.05, Long.MIN_VALUE, 2);
+        verify(bookService).repriceChunk(request, 1.05, 7L, 2);
+        verifyNoMoreInteractions(bookService);
+    }
+
+    @Test
+    void reprice_shouldReportBooksWhosePriceWouldRoundToZero() {
+        BookRepriceDto request = request(-99.6);
+        request.setIds(List.of(1L, 2L));
+        when(bookService.repriceChunk(eq(request), anyDouble(), anyLong(), eq(2)))
+                .thenReturn(new BookService.RepriceChunk(2, 2L, 1))
+                .thenReturn(new BookService.RepriceChunk(0, 2L, 0));
+
+        BookRepriceResultDto result = bookRepricingService.reprice(request);
+
+        assertThat(result.getUpdated()).isEqualTo(1);
+        assertThat(result.getSkipped()).isEqualTo(1);
+    }
+
+    @Test
+    void reprice_whenLastChunkIsFull_shouldStopOnEmptyChunk() {
+        BookRepriceDto request = request(-10.0);
+        request.setGenre("Drama");
+        when(bookService.repriceChunk(eq(request), eq(0.9), anyLong(), eq(2)))
+                .thenReturn(new BookService.RepriceChunk(2, 4L, 2))
+                .thenReturn(new BookService.RepriceChunk(0, 4L, 0));
+
+        BookRepriceResultDto result = bookRepricingService.reprice(request);
+
+        assertThat(result.getUpdated()).isEqualTo(2);
+        assertThat(result.getChunks()).isEqualTo(1);
+        verifyNoInteractions(publisherRepository);
+    }
+
+    @Test
+    void reprice_withIdList_shouldDropDuplicates() {
+        BookRepriceDto request = request(5.0);
+        request.setIds(List.of(3L, 1L, 3L));
+        when(bookService.repriceChunk(any(), anyDouble(), anyLong(), anyInt()))
+                .thenReturn(new BookService.RepriceChunk(2, 3L, 2))
+                .thenReturn(new BookService.RepriceChunk(0, 3L, 0));
+
+        bookRepricingService.reprice(request);
+
+        assertThat(request.getIds()).containsExactly(3L, 1L);
+    }
+
+    @Test
+    void reprice_withoutFilter_shouldThrowValidationException() {
+        ValidationException exception = assertThrows(ValidationException.class,
+                () -> bookRepricingService.reprice(request(5.0)));
+        assertThat(exception.getMessage()).contains("required");
+        verifyNoInteractions(bookService);
+    }
+
+    @Test
+    void reprice_withIdsAndFilter_shouldThrowValidationException() {
+        BookRepriceDto request = request(5.0);
+        request.setIds(List.of(1L));
+        request.setGenre("Drama");
+
+        assertThrows(ValidationException.class, () -> bookRepricingService.reprice(request));
+        verifyNoInteractions(bookService);
+    }
+
+    @Test
+    void reprice_withInvalidPercent_shouldThrowValidationException() {
+        BookRepriceDto request = request(-100.0);
+        request.setGenre("Drama");
+
+        assertThrows(ValidationException.class, () -> bookRepricingService.reprice(request));
+        request.setPercent(0.0);
+        assertThrows(ValidationException.class, () -> bookRepricingService.reprice(request));
+        request.setPercent(null);
+        assertThrows(ValidationException.class, () -> bookRepricingService.reprice(request));
+        verifyNoInteractions(bookService);
+    }
+
+    @Test
+    void reprice_whenPublisherMissing_shouldThrowPublisherNotFoundException() {
+        BookRepriceDto request = request(5.0);
+        request.setPublisherId(99L);
+        when(publisherRepository.existsById(99L)).thenReturn(false);
+
+        assertThrows(PublisherNotFoundException.class, () -> bookRepricingService.reprice(request));
+        verifyNoInteractions(bookService);
+    }
+
+    private static BookRepriceDto request(Double percent) {
+        BookRepriceDto request = new BookRepriceDto();
+        request.setPercent(percent);
+        return request;
+    }
+}
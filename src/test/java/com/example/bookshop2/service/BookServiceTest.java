@@ -1,27 +1,59 @@
 package com.example.bookshop2.service;
 
 import com.example.bookshop2.dto.BookDto;
+import com.example.bookshop2.dto.BookFacetsDto;
+import com.example.bookshop2.dto.BookRepriceDto;
+import com.example.bookshop2.dto.BookSearchResultDto;
+import com.example.bookshop2.dto.CatalogStatsDto;
+import com.example.bookshop2.dto.SuggestionDto;
+import com.example.bookshop2.event.CatalogChangeEvent;
+import com.example.bookshop2.event.CatalogChangeEvent.ChangeType;
+import com.example.bookshop2.event.CatalogChangeEvent.EntityType;
 import com.example.bookshop2.exception.AuthorNotFoundException;
 import com.example.bookshop2.exception.BookNotFoundException;
+import com.example.bookshop2.exception.IndexNotReadyException;
 import com.example.bookshop2.exception.PublisherNotFoundException;
 import com.example.bookshop2.exception.ValidationException;
+import com.example.bookshop2.exception.VersionConflictException;
+import com.example.bookshop2.index.CatalogStatsIndex;
+import com.example.bookshop2.index.GenrePriceCount;
+import com.example.bookshop2.index.ExistenceIndex;
+import com.example.bookshop2.index.IndexedName;
+import com.example.bookshop2.index.NameIndex;
+import com.example.bookshop2.index.PriceIndex;
+import com.example.bookshop2.index.RelationIndex;
+import com.example.bookshop2.index.SearchHits;
+import com.example.bookshop2.index.SuggestIndex;
 import com.example.bookshop2.model.Author;
 import com.example.bookshop2.model.Book;
 import com.example.bookshop2.model.Publisher;
 import com.example.bookshop2.repository.AuthorRepository;
+import com.example.bookshop2.repository.BookAuthorRow;
+import com.example.bookshop2.repository.BookPriceRow;
 import com.example.bookshop2.repository.BookRepository;
+import com.example.bookshop2.repository.BookSummaryRow;
 import com.example.bookshop2.repository.PublisherRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import java.time.Duration;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -43,6 +75,31 @@ class BookServiceTest {
     @Mock
     private CacheManager cacheManager;
 
+    @Mock
+    private NameIndex nameIndex;
+
+    @Mock
+    private SuggestIndex suggestIndex;
+
+    @Mock
+    private ExistenceIndex existenceIndex;
+
+    @Mock
+    private PriceIndex priceIndex;
+
+    @Mock
+    private CatalogStatsIndex catalogStatsIndex;
+
+    @Mock
+    private RelationIndex relationIndex;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Spy
+    private MultiGetBatcher multiGetBatcher = new MultiGetBatcher(Duration.ZERO, 100, 1,
+            mock(PlatformTransactionManager.class));
+
     @InjectMocks
     private BookService bookService;
 
@@ -118,6 +175,43 @@ class BookServiceTest {
         verify(bookRepository).findAll();
     }
 
+    @Test
+    void findAll_whenOnlyScalarFieldsRequested_shouldSkipJoins() {
+        when(bookRepository.findAllSummaries())
+                .thenReturn(List.of(new BookSummaryRow(1L, "Test Book", "Fiction", 25.0, 0L, 1L)));
+
+        List<BookDto> result = bookService.findAll(Set.of("id", "name"));
+
+        assertThat(result).singleElement().satisfies(dto -> {
+            assertThat(dto.getName()).isEqualTo("Test Book");
+            assertThat(dto.getPublisherId()).isEqualTo(1L);
+            assertThat(dto.getAuthorNames()).isNull();
+        });
+        verify(bookRepository, never()).findAll();
+        verify(bookRepository, never()).findAllSummariesWithPublisher();
+    }
+
+    @Test
+    void findAll_whenPublisherNameRequested_shouldJoinOnlyPublisher() {
+        when(bookRepository.findAllSummariesWithPublisher())
+                .thenReturn(List.of(new BookSummaryRow(1L, "Test Book", null, null, 0L, 1L, "Test Publisher")));
+
+        List<BookDto> result = bookService.findAll(Set.of("name", "publisherName"));
+
+        assertThat(result).extracting(BookDto::getPublisherName).containsExactly("Test Publisher");
+        verify(bookRepository, never()).findAll();
+    }
+
+    @Test
+    void findAll_whenAuthorFieldRequested_shouldLoadEntities() {
+        when(bookRepository.findAll()).thenReturn(List.of(book));
+
+        List<BookDto> result = bookService.findAll(Set.of("id", "authorNames"));
+
+        assertThat(result).singleElement().satisfies(dto -> assertThat(dto.getAuthorNames()).isNotEmpty());
+        verify(bookRepository, never()).findAllSummaries();
+    }
+
     @Test
     void findById_whenCached_shouldReturnFromCache() {
         when(cacheManager.getFromCache("book_1", BookDto.class)).thenReturn(bookDto);
@@ -132,28 +226,62 @@ class BookServiceTest {
     @Test
     void findById_whenNotCached_shouldReturnFromDB() {
         when(cacheManager.getFromCache("book_1", BookDto.class)).thenReturn(null);
-        when(bookRepository.findById(1L)).thenReturn(Optional.of(book));
+        when(bookRepository.findWithReferencesByIdIn(List.of(1L))).thenReturn(List.of(book));
 
         BookDto result = bookService.findById(1L);
 
         assertThat(result.getName()).isEqualTo("Test Book");
-        verify(bookRepository).findById(1L);
+        verify(bookRepository, never()).findById(any());
         verify(cacheManager).saveToCache("book_1", result);
     }
 
     @Test
     void findById_whenNotFound_shouldThrowBookNotFoundException() {
         when(cacheManager.getFromCache("book_99", BookDto.class)).thenReturn(null);
-        when(bookRepository.findById(99L)).thenReturn(Optional.empty());
+        when(bookRepository.findWithReferencesByIdIn(List.of(99L))).thenReturn(List.of());
+
+        assertThrows(BookNotFoundException.class, () -> bookService.findById(99L));
+        verify(cacheManager, never()).saveToCache(any(), any());
+    }
+
+    @Test
+    void findById_whenIndexKnowsBookIsMissing_shouldNotQueryRepository() {
+        when(cacheManager.getFromCache("book_99", BookDto.class)).thenReturn(null);
+        when(existenceIndex.isMissing(EntityType.BOOK, 99L)).thenReturn(true);
 
         assertThrows(BookNotFoundException.class, () -> bookService.findById(99L));
-        verify(bookRepository).findById(99L);
+        verifyNoInteractions(bookRepository);
+    }
+
+    @Test
+    void findAllByIds_shouldTakeHitsFromCacheAndLoadMissesWithOneQuery() {
+        Book other = new Book();
+        other.setId(2L);
+        other.setName("Other Book");
+        other.setPublisher(publisher);
+        other.setAuthors(Set.of(author));
+        when(cacheManager.getAllFromCache(List.of("book_2", "book_1", "book_3"), BookDto.class))
+                .thenReturn(Map.of("book_1", bookDto));
+        when(bookRepository.findWithReferencesByIdIn(List.of(2L, 3L))).thenReturn(List.of(other));
+
+        List<BookDto> result = bookService.findAllByIds(List.of(2L, 1L, 3L, 2L));
+
+        assertThat(result).extracting(BookDto::getName).containsExactly("Other Book", "Test Book");
+        verify(bookRepository, never()).findById(any());
+        verify(cacheManager, never()).saveToCache(any(), any());
+    }
+
+    @Test
+    void findAllByIds_whenEmpty_shouldThrowValidationException() {
+        List<Long> ids = List.of();
+        assertThrows(ValidationException.class, () -> bookService.findAllByIds(ids));
+        verifyNoInteractions(bookRepository);
     }
 
     @Test
     void create_whenValid_shouldCreateBook() {
-        when(publisherRepository.findById(1L)).thenReturn(Optional.of(publisher));
-        when(authorRepository.findById(1L)).thenReturn(Optional.of(author));
+        when(publisherRepository.findAllById(Set.of(1L))).thenReturn(List.of(publisher));
+        when(authorRepository.findAllById(Set.of(1L))).thenReturn(List.of(author));
         when(bookRepository.save(any(Book.class))).thenReturn(book);
 
         BookDto result = bookService.create(bookDto);
@@ -182,19 +310,22 @@ class BookServiceTest {
     }
 
     @Test
-    void create_whenPublisherNotFound_shouldThrowPublisherNotFoundException() {
-        when(publisherRepository.findById(1L)).thenReturn(Optional.empty());
+    void create_whenPublisherNotFound_shouldThrowValidationException() {
+        when(publisherRepository.findAllById(Set.of(1L))).thenReturn(List.of());
+        when(authorRepository.findAllById(Set.of(1L))).thenReturn(List.of(author));
 
-        assertThrows(PublisherNotFoundException.class, () -> bookService.create(bookDto));
+        ValidationException ex = assertThrows(ValidationException.class, () -> bookService.create(bookDto));
+        assertThat(ex.getMessage()).contains("publisher IDs [1]");
         verify(bookRepository, never()).save(any());
     }
 
     @Test
-    void create_whenAuthorNotFound_shouldThrowAuthorNotFoundException() {
-        when(publisherRepository.findById(1L)).thenReturn(Optional.of(publisher));
-        when(authorRepository.findById(1L)).thenReturn(Optional.empty());
+    void create_whenAuthorNotFound_shouldThrowValidationException() {
+        when(publisherRepository.findAllById(Set.of(1L))).thenReturn(List.of(publisher));
+        when(authorRepository.findAllById(Set.of(1L))).thenReturn(List.of());
 
-        assertThrows(AuthorNotFoundException.class, () -> bookService.create(bookDto));
+        ValidationException ex = assertThrows(ValidationException.class, () -> bookService.create(bookDto));
+        assertThat(ex.getMessage()).contains("author IDs [1]");
         verify(bookRepository, never()).save(any());
     }
 
@@ -204,7 +335,7 @@ class BookServiceTest {
 
         bookService.delete(1L);
 
-        verify(bookRepository).deleteById(1L);
+        verify(bookRepository).delete(book);
         verify(cacheManager).clearPublisherCache("Acme Publishing");
         verify(cacheManager).clearBookCache(1L);
         verify(cacheManager).clearAuthorCache(1L);
@@ -215,14 +346,14 @@ class BookServiceTest {
         when(bookRepository.findById(99L)).thenReturn(Optional.empty());
 
         assertThrows(BookNotFoundException.class, () -> bookService.delete(99L));
-        verify(bookRepository, never()).deleteById(any());
+        verify(bookRepository, never()).delete(any(Book.class));
     }
 
     @Test
     void update_whenValid_shouldUpdateBook() {
         when(bookRepository.findById(1L)).thenReturn(Optional.of(book));
-        when(publisherRepository.findById(1L)).thenReturn(Optional.of(publisher));
-        when(authorRepository.findById(1L)).thenReturn(Optional.of(author));
+        when(publisherRepository.findAllById(Set.of(1L))).thenReturn(List.of(publisher));
+        when(authorRepository.findAllById(Set.of(1L))).thenReturn(List.of(author));
         when(bookRepository.save(book)).thenReturn(book);
 
         BookDto result = bookService.update(1L, bookDto);
@@ -243,11 +374,12 @@ class BookServiceTest {
     }
 
     @Test
-    void update_whenPublisherNotFound_shouldThrowPublisherNotFoundException() {
+    void update_whenPublisherNotFound_shouldThrowValidationException() {
         when(bookRepository.findById(1L)).thenReturn(Optional.of(book));
-        when(publisherRepository.findById(1L)).thenReturn(Optional.empty());
+        when(publisherRepository.findAllById(Set.of(1L))).thenReturn(List.of());
+        when(authorRepository.findAllById(Set.of(1L))).thenReturn(List.of(author));
 
-        assertThrows(PublisherNotFoundException.class, () -> bookService.update(1L, bookDto));
+        assertThrows(ValidationException.class, () -> bookService.update(1L, bookDto));
         verify(bookRepository, never()).save(any());
     }
 
@@ -255,7 +387,7 @@ class BookServiceTest {
     void update_withNullPublisherId_shouldUpdateWithoutPublisherChange() {
         bookDto.setPublisherId(null);
         when(bookRepository.findById(1L)).thenReturn(Optional.of(book));
-        when(authorRepository.findById(1L)).thenReturn(Optional.of(author));
+        when(authorRepository.findAllById(Set.of(1L))).thenReturn(List.of(author));
         when(bookRepository.save(book)).thenReturn(book);
 
         BookDto result = bookService.update(1L, bookDto);
@@ -270,7 +402,7 @@ class BookServiceTest {
     @Test
     void findByPublisherId_whenCached_shouldReturnFromCache() {
         List<BookDto> cachedBooks = List.of(bookDto);
-        when(publisherRepository.findById(1L)).thenReturn(Optional.of(publisher)); // Mock publisher check
+        when(existenceIndex.exists(EntityType.PUBLISHER, 1L)).thenReturn(true);
         when(cacheManager.getFromCache("publishers_1", List.class)).thenReturn(cachedBooks);
 
         List<BookDto> result = bookService.findByPublisherId(1L);
@@ -278,12 +410,12 @@ class BookServiceTest {
         assertThat(result).hasSize(1);
         assertThat(result.get(0).getName()).isEqualTo("Test Book");
         verify(bookRepository, never()).findByPublisherId(any());
-        verify(publisherRepository).findById(1L);
+        verify(publisherRepository, never()).findById(any());
     }
 
     @Test
     void findByPublisherId_whenNotCached_shouldReturnFromDB() {
-        when(publisherRepository.findById(1L)).thenReturn(Optional.of(publisher));
+        when(existenceIndex.exists(EntityType.PUBLISHER, 1L)).thenReturn(true);
         when(cacheManager.getFromCache("publishers_1", List.class)).thenReturn(null);
         when(bookRepository.findByPublisherId(1L)).thenReturn(List.of(book));
 
@@ -297,7 +429,7 @@ class BookServiceTest {
 
     @Test
     void findByPublisherId_whenPublisherNotFound_shouldThrowPublisherNotFoundException() {
-        when(publisherRepository.findById(99L)).thenReturn(Optional.empty());
+        when(existenceIndex.exists(EntityType.PUBLISHER, 99L)).thenReturn(false);
 
         assertThrows(PublisherNotFoundException.class, () -> bookService.findByPublisherId(99L));
         verify(bookRepository, never()).findByPublisherId(any());
@@ -390,8 +522,8 @@ class BookServiceTest {
 
     @Test
     void addBooksBulk_whenValid_shouldAddBooks() {
-        when(publisherRepository.findById(1L)).thenReturn(Optional.of(publisher));
-        when(authorRepository.findById(1L)).thenReturn(Optional.of(author));
+        when(publisherRepository.findAllById(Set.of(1L))).thenReturn(List.of(publisher));
+        when(authorRepository.findAllById(Set.of(1L))).thenReturn(List.of(author));
         when(bookRepository.saveAll(anyList())).thenReturn(List.of(book));
 
         List<BookDto> result = bookService.addBooksBulk(List.of(bookDto));
@@ -419,4 +551,570 @@ class BookServiceTest {
         assertThrows(ValidationException.class, () -> bookService.addBooksBulk(List.of(invalidDto)));
         verify(bookRepository, never()).saveAll(any());
     }
-}
\ No newline at end of file
+
+    @Test
+    void addBooksBulk_shouldResolveReferencesWithOneQueryPerType() {
+        Author secondAuthor = new Author();
+        secondAuthor.setId(2L);
+        secondAuthor.setName("Jane Roe");
+        BookDto second = new BookDto();
+        second.setName("Second Book");
+        second.setPrice(15.0);
+        second.setPublisherId(1L);
+        second.setAuthorIds(Set.of(1L, 2L));
+        when(publisherRepository.findAllById(Set.of(1L))).thenReturn(List.of(publisher));
+        when(authorRepository.findAllById(Set.of(1L, 2L))).thenReturn(List.of(author, secondAuthor));
+        when(bookRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        bookService.addBooksBulk(List.of(bookDto, second));
+
+        verify(publisherRepository).findAllById(any());
+        verify(authorRepository).findAllById(any());
+        verify(publisherRepository, never()).findById(any());
+        verify(authorRepository, never()).findById(any());
+    }
+
+    @Test
+    void addBooksBulk_whenReferencesMissing_shouldReportAllInOneValidationException() {
+        BookDto second = new BookDto();
+        second.setName("Second Book");
+        second.setPrice(15.0);
+        second.setPublisherId(7L);
+        second.setAuthorIds(Set.of(8L, 9L));
+        when(publisherRepository.findAllById(Set.of(1L, 7L))).thenReturn(List.of(publisher));
+        when(authorRepository.findAllById(Set.of(1L, 8L, 9L))).thenReturn(List.of(author));
+
+        ValidationException ex = assertThrows(ValidationException.class,
+                () -> bookService.addBooksBulk(List.of(bookDto, second)));
+
+        assertThat(ex.getMessage()).contains("publisher IDs [7]").contains("author IDs [8, 9]");
+        verify(bookRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void searchByName_whenIndexReady_shouldHydrateMatchesFromRepository() {
+        when(nameIndex.isReady()).thenReturn(true);
+        when(nameIndex.search(EntityType.BOOK, "test")).thenReturn(List.of(new IndexedName(1L, "Test Book")));
+        when(bookRepository.findAllById(List.of(1L))).thenReturn(List.of(book));
+
+        List<BookDto> result = bookService.searchByName("test");
+
+        assertThat(result).extracting(BookDto::getName).containsExactly("Test Book");
+        verify(bookRepository, never()).findByNameContainingIgnoreCase(any());
+    }
+
+    @Test
+    void searchByName_whenManyMatches_shouldLoadInChunks() {
+        when(nameIndex.isReady()).thenReturn(true);
+        when(nameIndex.search(EntityType.BOOK, "the")).thenReturn(LongStream.rangeClosed(1, 2500)
+                .mapToObj(id -> new IndexedName(id, "The Book " + id))
+                .toList());
+        when(bookRepository.findAllById(any())).thenReturn(List.of());
+
+        bookService.searchByName("the");
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Iterable<Long>> chunks = ArgumentCaptor.forClass(Iterable.class);
+        verify(bookRepository, times(3)).findAllById(chunks.capture());
+        assertThat(chunks.getAllValues()).allSatisfy(chunk -> assertThat(chunk).hasSizeLessThanOrEqualTo(1000));
+    }
+
+    @Test
+    void searchByName_whenIndexNotReady_shouldFallBackToDatabase() {
+        when(bookRepository.findByNameContainingIgnoreCase("test")).thenReturn(List.of(book));
+
+        List<BookDto> result = bookService.searchByName("test");
+
+        assertThat(result).hasSize(1);
+        verify(nameIndex, never()).search(any(), any());
+    }
+
+    @Test
+    void searchByName_whenEmptyName_shouldThrowValidationException() {
+        assertThrows(ValidationException.class, () -> bookService.searchByName(" "));
+        verifyNoInteractions(bookRepository);
+    }
+
+    @Test
+    void addBooksBulk_shouldPublishCreatedEventPerBook() {
+        when(publisherRepository.findAllById(Set.of(1L))).thenReturn(List.of(publisher));
+        when(authorRepository.findAllById(Set.of(1L))).thenReturn(List.of(author));
+        when(bookRepository.saveAll(anyList())).thenReturn(List.of(book));
+
+        bookService.addBooksBulk(List.of(bookDto));
+
+        ArgumentCaptor<CatalogChangeEvent> event = ArgumentCaptor.forClass(CatalogChangeEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertThat(event.getValue().getChangeType()).isEqualTo(ChangeType.CREATED);
+        assertThat(event.getValue().getPayload(BookDto.class).getName()).isEqualTo("Test Book");
+    }
+
+    @Test
+    void suggest_whenIndexReady_shouldNotTouchDatabase() {
+        when(suggestIndex.isReady()).thenReturn(true);
+        when(suggestIndex.suggest(EntityType.BOOK, "te", 10)).thenReturn(List.of(new IndexedName(1L, "Test Book")));
+
+        List<SuggestionDto> result = bookService.suggest("te", 10);
+
+        assertThat(result).containsExactly(new SuggestionDto(1L, "Test Book"));
+        verifyNoInteractions(bookRepository);
+    }
+
+    @Test
+    void suggest_whenIndexNotReady_shouldFallBackToDatabase() {
+        when(bookRepository.findTop10ByNameStartingWithIgnoreCaseOrderByNameAscIdAsc("te")).thenReturn(List.of(book));
+
+        List<SuggestionDto> result = bookService.suggest("te", 10);
+
+        assertThat(result).containsExactly(new SuggestionDto(1L, "Test Book"));
+    }
+
+    @Test
+    void findById_shouldRecordViewForSuggestionWeight() {
+        when(cacheManager.getFromCache("book_1", BookDto.class)).thenReturn(bookDto);
+
+        bookService.findById(1L);
+
+        verify(suggestIndex).recordView(EntityType.BOOK, 1L);
+    }
+
+    @Test
+    void delete_shouldPublishPreviousState() {
+        when(bookRepository.findById(1L)).thenReturn(Optional.of(book));
+
+        bookService.delete(1L);
+
+        ArgumentCaptor<CatalogChangeEvent> event = ArgumentCaptor.forClass(CatalogChangeEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertThat(event.getValue().getChangeType()).isEqualTo(ChangeType.DELETED);
+        assertThat(event.getValue().getPrevious(BookDto.class).getAuthorIds()).containsExactly(1L);
+    }
+
+    @Test
+    void findByPriceRange_whenIndexReady_shouldHydrateInIndexOrder() {
+        Book cheaper = new Book();
+        cheaper.setId(2L);
+        cheaper.setName("Cheaper Book");
+        cheaper.setPrice(15.0);
+        cheaper.setPublisher(publisher);
+        cheaper.setAuthors(Set.of(author));
+        when(priceIndex.isReady()).thenReturn(true);
+        when(priceIndex.range(10.0, 50.0)).thenReturn(new long[] {2L, 1L});
+        when(cacheManager.getAllFromCache(List.of("book_2", "book_1"), BookDto.class))
+                .thenReturn(Map.of("book_1", bookDto));
+        when(bookRepository.findWithReferencesByIdIn(List.of(2L))).thenReturn(List.of(cheaper));
+
+        List<BookDto> result = bookService.findByPriceRange(10.0, 50.0);
+
+        assertThat(result).extracting(BookDto::getName).containsExactly("Cheaper Book", "Test Book");
+        verify(bookRepository, never()).findByPriceBetween(anyDouble(), anyDouble());
+    }
+
+    @Test
+    void findByPriceRange_whenRangeIsWide_shouldHydrateInChunks() {
+        when(priceIndex.isReady()).thenReturn(true);
+        when(priceIndex.range(0.0, 1000.0)).thenReturn(LongStream.rangeClosed(1, 40_000).toArray());
+        when(cacheManager.getAllFromCache(anyList(), eq(BookDto.class))).thenReturn(Map.of());
+        when(bookRepository.findWithReferencesByIdIn(anyCollection())).thenReturn(List.of());
+
+        bookService.findByPriceRange(0.0, 1000.0);
+
+        // Одним IN (...) 40 000 параметров превысили бы предел PostgreSQL
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<Long>> chunks = ArgumentCaptor.forClass(Collection.class);
+        verify(bookRepository, times(40)).findWithReferencesByIdIn(chunks.capture());
+        assertThat(chunks.getAllValues()).allSatisfy(chunk -> assertThat(chunk).hasSize(1000));
+    }
+
+    @Test
+    void findMostExpensive_whenIndexReady_shouldNotQueryFullyCachedBooks() {
+        when(priceIndex.isReady()).thenReturn(true);
+        when(priceIndex.mostExpensive(1)).thenReturn(new long[] {1L});
+        when(cacheManager.getAllFromCache(List.of("book_1"), BookDto.class)).thenReturn(Map.of("book_1", bookDto));
+
+        List<BookDto> result = bookService.findMostExpensive(1);
+
+        assertThat(result).containsExactly(bookDto);
+        verifyNoInteractions(bookRepository);
+    }
+
+    @Test
+    void findCheapest_whenIndexNotReady_shouldFallBackToDatabase() {
+        when(bookRepository.findByPriceNotNullOrderByPriceAscIdAsc(PageRequest.of(0, 5))).thenReturn(List.of(book));
+
+        List<BookDto> result = bookService.findCheapest(5);
+
+        assertThat(result).extracting(BookDto::getName).containsExactly("Test Book");
+        verify(priceIndex, never()).cheapest(anyInt());
+    }
+
+    @Test
+    void findCheapest_whenLimitOutOfRange_shouldThrowValidationException() {
+        assertThrows(ValidationException.class, () -> bookService.findCheapest(0));
+        assertThrows(ValidationException.class, () -> bookService.findMostExpensive(101));
+        verifyNoInteractions(bookRepository, priceIndex);
+    }
+
+    @Test
+    void findByAuthorId_whenIndexReady_shouldHydrateBooksFromBitmap() {
+        when(existenceIndex.exists(EntityType.AUTHOR, 1L)).thenReturn(true);
+        when(relationIndex.isReady()).thenReturn(true);
+        when(relationIndex.booksByAuthor(1L)).thenReturn(new long[] {1L});
+        when(cacheManager.getAllFromCache(List.of("book_1"), BookDto.class)).thenReturn(Map.of("book_1", bookDto));
+
+        List<BookDto> result = bookService.findByAuthorId(1L);
+
+        assertThat(result).containsExactly(bookDto);
+        verifyNoInteractions(bookRepository);
+    }
+
+    @Test
+    void findByAuthorId_whenAuthorHasManyBooks_shouldHydrateInChunks() {
+        when(existenceIndex.exists(EntityType.AUTHOR, 1L)).thenReturn(true);
+        when(relationIndex.isReady()).thenReturn(true);
+        when(relationIndex.booksByAuthor(1L)).thenReturn(LongStream.rangeClosed(1, 2001).toArray());
+        when(cacheManager.getAllFromCache(anyList(), eq(BookDto.class))).thenReturn(Map.of());
+        when(bookRepository.findWithReferencesByIdIn(anyCollection())).thenReturn(List.of());
+
+        bookService.findByAuthorId(1L);
+
+        verify(bookRepository, times(2)).findWithReferencesByIdIn(argThat(ids -> ids.size() == 1000));
+        verify(bookRepository).findWithReferencesByIdIn(argThat(ids -> ids.size() == 1));
+    }
+
+    @Test
+    void findByAuthorId_whenIndexNotReady_shouldQueryJoin() {
+        when(existenceIndex.exists(EntityType.AUTHOR, 1L)).thenReturn(true);
+        when(bookRepository.findByAuthorId(1L)).thenReturn(List.of(book));
+
+        List<BookDto> result = bookService.findByAuthorId(1L);
+
+        assertThat(result).extracting(BookDto::getName).containsExactly("Test Book");
+    }
+
+    @Test
+    void findByAuthorId_whenAuthorNotFound_shouldThrowAuthorNotFoundException() {
+        when(existenceIndex.exists(EntityType.AUTHOR, 99L)).thenReturn(false);
+
+        assertThrows(AuthorNotFoundException.class, () -> bookService.findByAuthorId(99L));
+        verifyNoInteractions(relationIndex);
+    }
+
+    @Test
+    void findByFilter_whenIndexReady_shouldIntersectInIndex() {
+        when(relationIndex.isReady()).thenReturn(true);
+        when(relationIndex.filter(Set.of(1L), 1L, null, 0L, 20)).thenReturn(new long[] {1L});
+        when(cacheManager.getAllFromCache(List.of("book_1"), BookDto.class)).thenReturn(Map.of("book_1", bookDto));
+
+        List<BookDto> result = bookService.findByFilter(Set.of(1L), 1L, null, 0L, 20);
+
+        assertThat(result).containsExactly(bookDto);
+        verifyNoInteractions(bookRepository);
+    }
+
+    @Test
+    void findByFilter_whenIndexNotReady_shouldFilterAuthorBooksInMemory() {
+        Publisher other = new Publisher();
+        other.setId(2L);
+        Book otherPublisherBook = new Book();
+        otherPublisherBook.setId(2L);
+        otherPublisherBook.setName("Other Book");
+        otherPublisherBook.setPublisher(other);
+        otherPublisherBook.setAuthors(Set.of(author));
+        Book nextPage = new Book();
+        nextPage.setId(3L);
+        nextPage.setName("Next Book");
+        nextPage.setPublisher(publisher);
+        nextPage.setAuthors(Set.of(author));
+        when(bookRepository.findByAuthorId(1L)).thenReturn(List.of(nextPage, otherPublisherBook, book));
+
+        List<BookDto> result = bookService.findByFilter(Set.of(1L), 1L, null, 0L, 1);
+
+        assertThat(result).extracting(BookDto::getName).containsExactly("Test Book");
+        assertThat(bookService.findByFilter(Set.of(1L), 1L, null, 1L, 1))
+                .extracting(BookDto::getName).containsExactly("Next Book");
+    }
+
+    @Test
+    void findByFilter_whenNoCriteria_shouldThrowValidationException() {
+        assertThrows(ValidationException.class, () -> bookService.findByFilter(Set.of(), null, null, 0L, 20));
+        assertThrows(ValidationException.class, () -> bookService.findByFilter(Set.of(1L), null, null, 0L, 0));
+        verifyNoInteractions(bookRepository, relationIndex);
+    }
+
+    @Test
+    void search_whenIndexReady_shouldHydratePageAndPassFacets() {
+        BookFacetsDto facets = new BookFacetsDto();
+        facets.setGenres(Map.of("Fiction", 3L));
+        when(relationIndex.priceBands()).thenReturn(7);
+        when(relationIndex.isReady()).thenReturn(true);
+        when(relationIndex.search(null, null, "Fiction", 2, 0L, 1)).thenReturn(new SearchHits(new long[] {1L}, 3, facets));
+        when(cacheManager.getAllFromCache(List.of("book_1"), BookDto.class)).thenReturn(Map.of("book_1", bookDto));
+
+        BookSearchResultDto result = bookService.search(null, null, "Fiction", 2, 0L, 1);
+
+        assertThat(result.getBooks()).containsExactly(bookDto);
+        assertThat(result.getTotal()).isEqualTo(3);
+        assertThat(result.getFacets()).isSameAs(facets);
+        verifyNoInteractions(bookRepository);
+    }
+
+    @Test
+    void search_whenIndexNotReady_shouldThrowWithoutScanningCatalog() {
+        when(relationIndex.isReady()).thenReturn(false);
+
+        assertThrows(IndexNotReadyException.class, () -> bookService.search(Set.of(1L), null, null, null, 0L, 20));
+        verify(relationIndex, never()).search(any(), any(), any(), any(), anyLong(), anyInt());
+        verifyNoInteractions(bookRepository);
+    }
+
+    @Test
+    void search_whenPriceBandOutOfRange_shouldThrowValidationException() {
+        when(relationIndex.priceBands()).thenReturn(7);
+
+        assertThrows(ValidationException.class, () -> bookService.search(null, null, null, 7, 0L, 20));
+        assertThrows(ValidationException.class, () -> bookService.search(null, null, null, -1, 0L, 20));
+        verify(relationIndex, never()).isReady();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void patch_shouldIssueConditionalUpdateAndEvictOnlyAffectedEntries() {
+        BookDto changes = new BookDto();
+        changes.setVersion(3L);
+        changes.setPrice(45.0);
+        when(bookRepository.findPricesByIdIn(List.of(1L))).thenReturn(List.of(new BookPriceRow(1L, "Drama", 29.99, 3L)));
+        when(bookRepository.patch(1L, 3L, null, null, 45.0)).thenReturn(1);
+
+        long version = bookService.patch(1L, changes);
+
+        assertThat(version).isEqualTo(4L);
+        verify(bookRepository, never()).findById(any());
+        verify(bookRepository, never()).save(any());
+
+        ArgumentCaptor<Predicate<String>> keys = ArgumentCaptor.forClass(Predicate.class);
+        ArgumentCaptor<Predicate<Object>> values = ArgumentCaptor.forClass(Predicate.class);
+        verify(cacheManager).clearMatching(keys.capture(), values.capture());
+        assertThat(keys.getValue().test("books_price_40.0_50.0")).isTrue();
+        assertThat(keys.getValue().test("books_price_10.0_20.0")).isFalse();
+        assertThat(keys.getValue().test("book_2")).isFalse();
+        BookDto other = new BookDto();
+        other.setId(2L);
+        assertThat(values.getValue().test(bookDto)).isTrue();
+        assertThat(values.getValue().test(other)).isFalse();
+
+        ArgumentCaptor<CatalogChangeEvent> event = ArgumentCaptor.forClass(CatalogChangeEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertThat(event.getValue().getChangeType()).isEqualTo(ChangeType.PATCHED);
+        BookDto payload = event.getValue().getPayload(BookDto.class);
+        assertThat(payload.getPrice()).isEqualTo(45.0);
+        assertThat(payload.getName()).isNull();
+        assertThat(payload.getVersion()).isEqualTo(4L);
+        assertThat(event.getValue().getPrevious(BookDto.class).getPrice()).isEqualTo(29.99);
+    }
+
+    @Test
+    void patch_whenVersionStale_shouldThrowVersionConflictException() {
+        BookDto changes = new BookDto();
+        changes.setVersion(1L);
+        changes.setName("Renamed");
+        when(bookRepository.patch(1L, 1L, "Renamed", null, null)).thenReturn(0);
+        when(bookRepository.existsById(1L)).thenReturn(true);
+
+        assertThrows(VersionConflictException.class, () -> bookService.patch(1L, changes));
+        verifyNoInteractions(cacheManager, eventPublisher);
+        // Переименование не трогает ни жанр, ни цену: прежнее состояние не читается
+        verify(bookRepository, never()).findPricesByIdIn(any());
+    }
+
+    @Test
+    void patch_whenNotFound_shouldThrowBookNotFoundException() {
+        BookDto changes = new BookDto();
+        changes.setVersion(1L);
+        changes.setGenre("Drama");
+        when(bookRepository.findPricesByIdIn(List.of(99L))).thenReturn(List.of());
+
+        assertThrows(BookNotFoundException.class, () -> bookService.patch(99L, changes));
+        verify(bookRepository, never()).patch(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void patch_whenPreviousStateHasOtherVersion_shouldThrowBeforeUpdate() {
+        BookDto changes = new BookDto();
+        changes.setVersion(3L);
+        changes.setPrice(45.0);
+        // Строку успели изменить: прочитанная цена не та, что заменил бы UPDATE с версией 3
+        when(bookRepository.findPricesByIdIn(List.of(1L))).thenReturn(List.of(new BookPriceRow(1L, "Drama", 35.0, 4L)));
+
+        assertThrows(VersionConflictException.class, () -> bookService.patch(1L, changes));
+        verify(bookRepository, never()).patch(any(), any(), any(), any(), any());
+        verifyNoInteractions(cacheManager, eventPublisher);
+    }
+
+    @Test
+    void patch_whenInvalid_shouldThrowValidationException() {
+        BookDto withoutVersion = new BookDto();
+        withoutVersion.setName("Renamed");
+        BookDto empty = new BookDto();
+        empty.setVersion(1L);
+        BookDto withPublisher = new BookDto();
+        withPublisher.setVersion(1L);
+        withPublisher.setPublisherId(2L);
+        BookDto negativePrice = new BookDto();
+        negativePrice.setVersion(1L);
+        negativePrice.setPrice(-1.0);
+
+        for (BookDto changes : List.of(withoutVersion, empty, withPublisher, negativePrice)) {
+            assertThrows(ValidationException.class, () -> bookService.patch(1L, changes));
+        }
+        verifyNoInteractions(bookRepository);
+    }
+
+    @Test
+    void update_whenVersionStale_shouldThrowVersionConflictException() {
+        book.setVersion(2L);
+        bookDto.setVersion(1L);
+        when(bookRepository.findById(1L)).thenReturn(Optional.of(book));
+
+        assertThrows(VersionConflictException.class, () -> bookService.update(1L, bookDto));
+        verify(bookRepository, never()).save(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void deleteBulk_shouldDeleteWithOneStatementAndPublishPreviousState() {
+        when(bookRepository.findRowsByIdIn(Set.of(1L, 2L))).thenReturn(List.of(
+                new BookAuthorRow(1L, "Test Book", "Fiction", 29.99, 0L, 1L, "Acme Publishing", 1L, "John Doe"),
+                new BookAuthorRow(2L, "Other Book", null, 10.0, 0L, null, null, null, null)));
+
+        bookService.deleteBulk(List.of(1L, 2L, 1L));
+
+        verify(bookRepository).deleteAllByIdIn(Set.of(1L, 2L));
+        verify(bookRepository, never()).delete(any(Book.class));
+        ArgumentCaptor<Predicate<Object>> values = ArgumentCaptor.forClass(Predicate.class);
+        verify(cacheManager).clearMatching(values.capture());
+        assertThat(values.getValue().test(bookDto)).isTrue();
+        BookDto unrelated = new BookDto();
+        unrelated.setId(3L);
+        assertThat(values.getValue().test(unrelated)).isFalse();
+
+        ArgumentCaptor<CatalogChangeEvent> events = ArgumentCaptor.forClass(CatalogChangeEvent.class);
+        verify(eventPublisher, times(2)).publishEvent(events.capture());
+        assertThat(events.getAllValues()).extracting(CatalogChangeEvent::getChangeType)
+                .containsOnly(ChangeType.DELETED);
+        assertThat(events.getAllValues().get(0).getPrevious(BookDto.class).getAuthorIds()).containsExactly(1L);
+        assertThat(events.getAllValues().get(1).getPrevious(BookDto.class).getAuthorIds()).isEmpty();
+    }
+
+    @Test
+    void deleteBulk_whenSomeBooksMissing_shouldDeleteNothing() {
+        when(bookRepository.findRowsByIdIn(Set.of(1L, 7L, 5L))).thenReturn(List.of(
+                new BookAuthorRow(1L, "Test Book", null, 29.99, 0L, null, null, null, null)));
+
+        BookNotFoundException ex = assertThrows(BookNotFoundException.class,
+                () -> bookService.deleteBulk(List.of(1L, 7L, 5L)));
+        assertThat(ex.getMessage()).contains("[5, 7]");
+        verify(bookRepository, never()).deleteAllByIdIn(any());
+        verifyNoInteractions(cacheManager, eventPublisher);
+    }
+
+    @Test
+    void deleteBulk_whenIdsEmpty_shouldThrowValidationException() {
+        assertThrows(ValidationException.class, () -> bookService.deleteBulk(List.of()));
+        verifyNoInteractions(bookRepository);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void repriceChunk_shouldUpdateSelectedBooksAndPublishNewPrices() {
+        BookRepriceDto request = new BookRepriceDto();
+        request.setPublisherId(1L);
+        request.setGenre("Drama");
+        when(bookRepository.findRepricingIdsByPublisher(1L, "Drama", 0L, PageRequest.of(0, 10)))
+                .thenReturn(List.of(1L, 4L));
+        when(bookRepository.repriceByIdIn(List.of(1L, 4L), 1.1)).thenReturn(2);
+        when(bookRepository.findPricesByIdIn(List.of(1L, 4L)))
+                .thenReturn(List.of(new BookPriceRow(1L, "Drama", 30.0, 2L), new BookPriceRow(4L, "Drama", 10.0, 0L)))
+                .thenReturn(List.of(new BookPriceRow(1L, "Drama", 33.0, 3L), new BookPriceRow(4L, "Drama", 11.0, 1L)));
+
+        BookService.RepriceChunk chunk = bookService.repriceChunk(request, 1.1, 0L, 10);
+
+        assertThat(chunk.getSelected()).isEqualTo(2);
+        assertThat(chunk.getLastId()).isEqualTo(4L);
+        assertThat(chunk.getUpdated()).isEqualTo(2);
+
+        ArgumentCaptor<Predicate<String>> keys = ArgumentCaptor.forClass(Predicate.class);
+        ArgumentCaptor<Predicate<Object>> values = ArgumentCaptor.forClass(Predicate.class);
+        verify(cacheManager).clearMatching(keys.capture(), values.capture());
+        assertThat(keys.getValue().test("books_price_30.0_40.0")).isTrue();
+        assertThat(keys.getValue().test("books_price_5.0_10.0")).isFalse();
+        assertThat(keys.getValue().test("books_price_11.0_11.0")).isTrue();
+        assertThat(values.getValue().test(bookDto)).isTrue();
+
+        ArgumentCaptor<CatalogChangeEvent> events = ArgumentCaptor.forClass(CatalogChangeEvent.class);
+        verify(eventPublisher, times(2)).publishEvent(events.capture());
+        BookDto first = events.getAllValues().get(0).getPayload(BookDto.class);
+        assertThat(events.getAllValues().get(0).getChangeType()).isEqualTo(ChangeType.PATCHED);
+        assertThat(first.getPrice()).isEqualTo(33.0);
+        assertThat(first.getVersion()).isEqualTo(3L);
+        assertThat(first.getName()).isNull();
+        assertThat(first.getGenre()).isNull();
+        BookDto before = events.getAllValues().get(0).getPrevious(BookDto.class);
+        assertThat(before.getPrice()).isEqualTo(30.0);
+        assertThat(before.getGenre()).isEqualTo("Drama");
+    }
+
+    @Test
+    void repriceChunk_whenPriceWouldRoundToZero_shouldPublishOnlyRepricedBooks() {
+        BookRepriceDto request = new BookRepriceDto();
+        request.setIds(List.of(1L, 4L));
+        when(bookRepository.findRepricingIdsByIdIn(List.of(1L, 4L), 0L, PageRequest.of(0, 10)))
+                .thenReturn(List.of(1L, 4L));
+        when(bookRepository.repriceByIdIn(List.of(1L, 4L), 0.004)).thenReturn(1);
+        when(bookRepository.findPricesByIdIn(List.of(1L, 4L)))
+                .thenReturn(List.of(new BookPriceRow(1L, "Drama", 1.0, 2L), new BookPriceRow(4L, "Drama", 20.0, 0L)))
+                .thenReturn(List.of(new BookPriceRow(1L, "Drama", 1.0, 2L), new BookPriceRow(4L, "Drama", 0.08, 1L)));
+
+        BookService.RepriceChunk chunk = bookService.repriceChunk(request, 0.004, 0L, 10);
+
+        assertThat(chunk.getUpdated()).isEqualTo(1);
+        assertThat(chunk.getSkipped()).isEqualTo(1);
+        ArgumentCaptor<CatalogChangeEvent> events = ArgumentCaptor.forClass(CatalogChangeEvent.class);
+        verify(eventPublisher).publishEvent(events.capture());
+        assertThat(events.getValue().getPayload(BookDto.class).getId()).isEqualTo(4L);
+        assertThat(events.getValue().getPayload(BookDto.class).getPrice()).isEqualTo(0.08);
+    }
+
+    @Test
+    void repriceChunk_whenNothingLeft_shouldNotUpdate() {
+        BookRepriceDto request = new BookRepriceDto();
+        request.setGenre("Drama");
+        when(bookRepository.findRepricingIdsByGenre("Drama", 4L, PageRequest.of(0, 10))).thenReturn(List.of());
+
+        BookService.RepriceChunk chunk = bookService.repriceChunk(request, 1.1, 4L, 10);
+
+        assertThat(chunk.getSelected()).isZero();
+        verify(bookRepository, never()).repriceByIdIn(any(), anyDouble());
+        verifyNoInteractions(cacheManager, eventPublisher);
+    }
+
+    @Test
+    void findStatistics_whenIndexReady_shouldNotQueryDatabase() {
+        CatalogStatsDto stats = new CatalogStatsDto();
+        when(catalogStatsIndex.isReady()).thenReturn(true);
+        when(catalogStatsIndex.snapshot()).thenReturn(stats);
+
+        assertThat(bookService.findStatistics()).isSameAs(stats);
+        verifyNoInteractions(bookRepository);
+    }
+
+    @Test
+    void findStatistics_whenIndexNotReady_shouldAggregateGroupedRows() {
+        List<GenrePriceCount> rows = List.of(new GenrePriceCount("Drama", 10.0, 3));
+        CatalogStatsDto stats = new CatalogStatsDto();
+        when(bookRepository.findGenrePriceCounts()).thenReturn(rows);
+        when(catalogStatsIndex.snapshotOf(rows)).thenReturn(stats);
+
+        assertThat(bookService.findStatistics()).isSameAs(stats);
+    }
+}
@@ -7,6 +7,9 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.lang.reflect.Field;
 import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -112,6 +115,18 @@ class CacheManagerTest {
         assertNotNull(cacheManager.getFromCache("other_key", String.class), "Кэш для других ключей должен остаться");
     }
 
+    @Test
+    void testClearMatchingByKeyOrValue() throws IllegalAccessException {
+        getCache().put("range_1", new TestCacheEntry("data1", Instant.now()));
+        getCache().put("list_key", new TestCacheEntry(List.of("a", "target"), Instant.now()));
+        getCache().put("single_key", new TestCacheEntry("target", Instant.now()));
+        getCache().put("other_key", new TestCacheEntry(List.of("a", "b"), Instant.now()));
+
+        cacheManager.clearMatching(key -> key.startsWith("range_"), "target"::equals);
+
+        assertEquals(Set.of("other_key"), getCache().keySet(), "Должны остаться только незатронутые записи");
+    }
+
     @Test
     void testRemoveOldestEntryThroughCacheSave() throws IllegalAccessException {
         Instant baseTime = Instant.now().minusSeconds(10);
@@ -169,4 +184,14 @@ class CacheManagerTest {
 
         assertTrue(getCache().containsKey("key1"), "Ключ должен остаться, несмотря на исключение");
     }
-}
\ No newline at end of file
+
+    @Test
+    void testGetAllFromCacheSkipsMissingAndExpired() throws IllegalAccessException {
+        cacheManager.saveToCache("book_1", "first");
+        getCache().put("book_2", new TestCacheEntry("stale", Instant.now().minusSeconds(20)));
+
+        Map<String, String> found = cacheManager.getAllFromCache(List.of("book_1", "book_2", "book_3"), String.class);
+
+        assertEquals(Map.of("book_1", "first"), found);
+    }
+}
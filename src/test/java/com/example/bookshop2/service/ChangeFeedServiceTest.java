@@ -0,0 +1,101 @@
+package com.example.bookshop2.service;
+
+import com.example.bookshop2.dto.AuthorDto;
+import com.example.bookshop2.dto.CatalogChangesDto;
+import com.example.bookshop2.event.CatalogChangeEvent.ChangeType;
+import com.example.bookshop2.event.CatalogChangeEvent.EntityType;
+import com.example.bookshop2.event.ChangeLog;
+import com.example.bookshop2.event.ChangeLogEntry;
+import com.example.bookshop2.event.ChangeLogPage;
+import com.example.bookshop2.exception.ValidationException;
+import com.example.bookshop2.model.Author;
+import com.example.bookshop2.repository.AuthorRepository;
+import com.example.bookshop2.repository.BookRepository;
+import com.example.bookshop2.repository.PublisherRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ChangeFeedServiceTest {
+
+    @Mock
+    private ChangeLog changeLog;
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @Mock
+    private AuthorRepository authorRepository;
+
+    @Mock
+    private PublisherRepository publisherRepository;
+
+    @InjectMocks
+    private ChangeFeedService changeFeedService;
+
+    @Test
+    void changesSince_shouldReturnLatestStateOfEachChangedRecord() {
+        when(changeLog.read(100L, 10)).thenReturn(new ChangeLogPage(false, 106L, List.of(
+                new ChangeLogEntry(101L, EntityType.AUTHOR, ChangeType.CREATED, 1L),
+                new ChangeLogEntry(102L, EntityType.AUTHOR, ChangeType.PATCHED, 1L),
+                new ChangeLogEntry(103L, EntityType.AUTHOR, ChangeType.UPDATED, 2L),
+                new ChangeLogEntry(104L, EntityType.AUTHOR, ChangeType.DELETED, 3L),
+                new ChangeLogEntry(105L, EntityType.BOOK, ChangeType.UPDATED, 9L))));
+        Author author = new Author();
+        author.setId(1L);
+        author.setName("John Doe");
+        // Автор 2 удалён после чтения журнала
+        when(authorRepository.findAllById(Set.of(1L, 2L))).thenReturn(List.of(author));
+        when(bookRepository.findWithReferencesByIdIn(Set.of(9L))).thenReturn(List.of());
+
+        CatalogChangesDto changes = changeFeedService.changesSince(100L, 10);
+
+        assertThat(changes.isResync()).isFalse();
+        assertThat(changes.getNext()).isEqualTo(105L);
+        assertThat(changes.isHasMore()).isTrue();
+        assertThat(changes.getAuthors()).extracting(AuthorDto::getName).containsExactly("John Doe");
+        assertThat(changes.getDeletedAuthors()).containsExactly(2L, 3L);
+        assertThat(changes.getBooks()).isEmpty();
+        assertThat(changes.getDeletedBooks()).containsExactly(9L);
+        assertThat(changes.getPublishers()).isEmpty();
+        verifyNoInteractions(publisherRepository);
+    }
+
+    @Test
+    void changesSince_whenOutsideWindow_shouldAskForResync() {
+        when(changeLog.read(5L, 500)).thenReturn(new ChangeLogPage(true, 200L, List.of()));
+
+        CatalogChangesDto changes = changeFeedService.changesSince(5L, 500);
+
+        assertThat(changes.isResync()).isTrue();
+        assertThat(changes.getNext()).isEqualTo(200L);
+        assertThat(changes.getBooks()).isEmpty();
+        verifyNoInteractions(bookRepository, authorRepository, publisherRepository);
+    }
+
+    @Test
+    void changesSince_whenNothingChanged_shouldKeepClientNumber() {
+        when(changeLog.read(200L, 500)).thenReturn(new ChangeLogPage(false, 200L, List.of()));
+
+        CatalogChangesDto changes = changeFeedService.changesSince(200L, 500);
+
+        assertThat(changes.getNext()).isEqualTo(200L);
+        assertThat(changes.isHasMore()).isFalse();
+    }
+
+    @Test
+    void changesSince_whenLimitTooLarge_shouldThrowValidationException() {
+        assertThrows(ValidationException.class, () -> changeFeedService.changesSince(0L, 1001));
+        verifyNoInteractions(changeLog);
+    }
+}
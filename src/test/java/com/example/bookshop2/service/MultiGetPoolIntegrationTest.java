@@ -0,0 +1,113 @@
+package com.example.bookshop2.service;
+
+import com.example.bookshop2.dto.AuthorDto;
+import com.example.bookshop2.dto.BookDto;
+import com.example.bookshop2.dto.EndpointSqlStatsDto;
+import com.example.bookshop2.dto.PublisherDto;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Полный контекст с пулом на два соединения: одновременных промахов GET /books/{id} больше, чем соединений,
+// и все они ждут один пакет. Если бы ожидающие держали соединения, пакету не хватило бы своего
+@ActiveProfiles("test")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.hikari.maximum-pool-size=2",
+        "spring.datasource.hikari.connection-timeout=1000",
+        "bookshop.multi-get.window=300ms"
+})
+class MultiGetPoolIntegrationTest {
+    private static final int CONCURRENT_MISSES = 8;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private AuthorService authorService;
+    @Autowired
+    private PublisherService publisherService;
+    @Autowired
+    private SqlStatsService sqlStatsService;
+
+    private final List<Long> bookIds = new ArrayList<>();
+    private PublisherDto publisher;
+    private AuthorDto author;
+
+    @BeforeEach
+    void setUp() {
+        PublisherDto newPublisher = new PublisherDto();
+        newPublisher.setName("Pool Press");
+        publisher = publisherService.create(newPublisher);
+        AuthorDto newAuthor = new AuthorDto();
+        newAuthor.setName("Pool Author");
+        author = authorService.create(newAuthor);
+        for (int i = 0; i < CONCURRENT_MISSES; i++) {
+            BookDto book = new BookDto();
+            book.setName("Pool Book " + i);
+            book.setGenre("Test");
+            book.setPrice(10.0 + i);
+            book.setPublisherId(publisher.getId());
+            book.setAuthorIds(Set.of(author.getId()));
+            bookIds.add(bookService.create(book).getId());
+        }
+        sqlStatsService.reset();
+    }
+
+    @AfterEach
+    void tearDown() {
+        bookIds.forEach(bookService::delete);
+        authorService.delete(author.getId());
+        publisherService.delete(publisher.getId());
+    }
+
+    @Test
+    void getBook_whenConcurrentMissesExceedPoolSize_shouldServeAllFromOneBatch() throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<CompletableFuture<ResponseEntity<String>>> responses = new ArrayList<>();
+        for (Long id : bookIds) {
+            responses.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return restTemplate.getForEntity("/books/" + id, String.class);
+            }, runnable -> new Thread(runnable).start()));
+        }
+        start.countDown();
+
+        for (int i = 0; i < CONCURRENT_MISSES; i++) {
+            ResponseEntity<String> response = responses.get(i).get(30, TimeUnit.SECONDS);
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+            assertThat(response.getBody()).contains("Pool Book");
+        }
+        // SQL общего пакета засчитан запросам, которые его ждали; статистика пишется после отправки ответа
+        Awaitility.await().atMost(10, TimeUnit.SECONDS)
+                .until(() -> bookEndpointStats().map(EndpointSqlStatsDto::getRequests).orElse(0L) == CONCURRENT_MISSES);
+        assertThat(bookEndpointStats().orElseThrow().getStatements()).isGreaterThanOrEqualTo(CONCURRENT_MISSES);
+    }
+
+    private Optional<EndpointSqlStatsDto> bookEndpointStats() {
+        return sqlStatsService.getAllStats().stream()
+                .filter(endpoint -> endpoint.getEndpoint().equals("GET /books/{id}"))
+                .findFirst();
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.bookshop2.service;
+
+import com.example.bookshop2.datasource.ReadYourWrites;
+import com.example.bookshop2.dto.AuthorDto;
+import com.example.bookshop2.dto.BookDto;
+import com.example.bookshop2.dto.PublisherDto;
+import com.example.bookshop2.dto.PublisherOverviewDto;
+import com.example.bookshop2.event.CatalogChangeEvent.EntityType;
+import com.example.bookshop2.exception.OverviewTimeoutException;
+import com.example.bookshop2.exception.PublisherNotFoundException;
+import com.example.bookshop2.index.ExistenceIndex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PublisherOverviewServiceTest {
+
+    @Mock
+    private PublisherService publisherService;
+
+    @Mock
+    private BookService bookService;
+
+    @Mock
+    private AuthorService authorService;
+
+    @Mock
+    private ExistenceIndex existenceIndex;
+
+    private PublisherOverviewService overviewService;
+
+    // Отпускает зависшие ветки, чтобы потоки пула не ждали до конца прогона
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() {
+        overviewService = new PublisherOverviewService(publisherService, bookService, authorService,
+                existenceIndex, Duration.ofMillis(200), 4, 10);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        ReadYourWrites.unpin();
+        overviewService.shutdown();
+    }
+
+    @Test
+    void overview_shouldCombinePublisherBooksAndDistinctAuthors() {
+        when(existenceIndex.exists(EntityType.PUBLISHER, 1L)).thenReturn(true);
+        when(publisherService.findById(1L)).thenReturn(publisher());
+        when(bookService.findByPublisherId(1L)).thenReturn(List.of(book(10L, 1L, 2L), book(11L, 2L, 3L)));
+        when(authorService.findAllByIds(List.of(1L, 2L, 3L)))
+                .thenReturn(List.of(author(1L), author(2L), author(3L)));
+
+        PublisherOverviewDto overview = overviewService.overview(1L);
+
+        assertThat(overview.getPublisher().getName()).isEqualTo("Penguin");
+        assertThat(overview.getBooks()).extracting(BookDto::getId).containsExactly(10L, 11L);
+        assertThat(overview.getAuthors()).extracting(AuthorDto::getId).containsExactly(1L, 2L, 3L);
+        assertThat(overview.getUnavailable()).isEmpty();
+    }
+
+    @Test
+    void overview_whenBooksTooSlow_shouldReturnPublisherAndListMissingSections() {
+        when(existenceIndex.exists(EntityType.PUBLISHER, 1L)).thenReturn(true);
+        when(publisherService.findById(1L)).thenReturn(publisher());
+        when(bookService.findByPublisherId(1L)).thenAnswer(invocation -> {
+            release.await();
+            return List.of();
+        });
+
+        PublisherOverviewDto overview = overviewService.overview(1L);
+
+        assertThat(overview.getPublisher()).isNotNull();
+        assertThat(overview.getBooks()).isEmpty();
+        assertThat(overview.getUnavailable()).containsExactly("books", "authors");
+        verifyNoInteractions(authorService);
+    }
+
+    @Test
+    void overview_whenPublisherTooSlow_shouldThrowOverviewTimeoutException() {
+        when(existenceIndex.exists(EntityType.PUBLISHER, 1L)).thenReturn(true);
+        when(publisherService.findById(1L)).thenAnswer(invocation -> {
+            release.await();
+            return publisher();
+        });
+        when(bookService.findByPublisherId(1L)).thenReturn(List.of());
+
+        assertThrows(OverviewTimeoutException.class, () -> overviewService.overview(1L));
+    }
+
+    @Test
+    void overview_whenPublisherUnknown_shouldThrowPublisherNotFoundException() {
+        when(existenceIndex.exists(EntityType.PUBLISHER, 99L)).thenReturn(false);
+
+        assertThrows(PublisherNotFoundException.class, () -> overviewService.overview(99L));
+        verifyNoInteractions(publisherService, bookService, authorService);
+    }
+
+    @Test
+    void overview_whenRequestPinnedToPrimary_shouldPinBranches() {
+        AtomicBoolean pinned = new AtomicBoolean();
+        when(existenceIndex.exists(EntityType.PUBLISHER, 1L)).thenReturn(true);
+        when(publisherService.findById(1L)).thenAnswer(invocation -> {
+            pinned.set(ReadYourWrites.isPinned());
+            return publisher();
+        });
+        when(bookService.findByPublisherId(1L)).thenReturn(List.of());
+
+        ReadYourWrites.pin();
+        overviewService.overview(1L);
+
+        assertThat(pinned).isTrue();
+    }
+
+    @Test
+    void overview_whenPoolSaturated_shouldRejectSectionInsteadOfRunningItOnRequestThread() throws Exception {
+        overviewService.shutdown();
+        overviewService = new PublisherOverviewService(publisherService, bookService, authorService,
+                existenceIndex, Duration.ofSeconds(10), 1, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        when(existenceIndex.exists(EntityType.PUBLISHER, 1L)).thenReturn(true);
+        when(publisherService.findById(1L)).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return publisher();
+        });
+        when(bookService.findByPublisherId(1L)).thenReturn(List.of());
+        // Первая страница занимает единственный поток веткой издателя и очередь веткой книг
+        CompletableFuture<PublisherOverviewDto> first = CompletableFuture.supplyAsync(() -> overviewService.overview(1L));
+        assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThrows(OverviewTimeoutException.class, () -> overviewService.overview(1L));
+
+        release.countDown();
+        assertThat(first.get(10, TimeUnit.SECONDS).getUnavailable()).isEmpty();
+        verify(publisherService, times(1)).findById(1L);
+    }
+
+    @Test
+    void overview_whenSectionTimesOutInQueue_shouldFreeItsQueueSlot() {
+        overviewService.shutdown();
+        overviewService = new PublisherOverviewService(publisherService, bookService, authorService,
+                existenceIndex, Duration.ofMillis(200), 1, 1);
+        when(existenceIndex.exists(EntityType.PUBLISHER, 1L)).thenReturn(true);
+        when(publisherService.findById(1L)).thenAnswer(invocation -> {
+            release.await();
+            return publisher();
+        });
+        assertThrows(OverviewTimeoutException.class, () -> overviewService.overview(1L));
+
+        // Книги первой страницы сняты с очереди: ветка издателя второй ждёт в ней timeout, а не отклоняется сразу
+        long start = System.nanoTime();
+        assertThrows(OverviewTimeoutException.class, () -> overviewService.overview(1L));
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThanOrEqualTo(Duration.ofMillis(200));
+        release.countDown();
+        overviewService.shutdown();
+        verifyNoInteractions(bookService);
+    }
+
+    @Test
+    void overview_whenAuthorsTimeOut_shouldStopLoadingFurtherChunks() {
+        List<Long> authorIds = LongStream.rangeClosed(1, BulkIds.MAX_SIZE + 1).boxed().toList();
+        when(existenceIndex.exists(EntityType.PUBLISHER, 1L)).thenReturn(true);
+        when(publisherService.findById(1L)).thenReturn(publisher());
+        when(bookService.findByPublisherId(1L)).thenReturn(List.of(book(10L, authorIds.toArray(Long[]::new))));
+        when(authorService.findAllByIds(anyList())).thenAnswer(invocation -> {
+            release.await();
+            return List.of();
+        });
+
+        PublisherOverviewDto overview = overviewService.overview(1L);
+
+        assertThat(overview.getUnavailable()).containsExactly("authors");
+        release.countDown();
+        overviewService.shutdown();
+        verify(authorService, times(1)).findAllByIds(anyList());
+    }
+
+    private static PublisherDto publisher() {
+        PublisherDto publisher = new PublisherDto();
+        publisher.setId(1L);
+        publisher.setName("Penguin");
+        return publisher;
+    }
+
+    private static BookDto book(Long id, Long... authorIds) {
+        BookDto book = new BookDto();
+        book.setId(id);
+        book.setAuthorIds(new LinkedHashSet<>(List.of(authorIds)));
+        return book;
+    }
+
+    private static AuthorDto author(Long id) {
+        AuthorDto author = new AuthorDto();
+        author.setId(id);
+        return author;
+    }
+}
@@ -1,21 +1,41 @@
 package com.example.bookshop2.service;
 
+import com.example.bookshop2.dto.BookDto;
 import com.example.bookshop2.dto.PublisherDto;
+import com.example.bookshop2.dto.SuggestionDto;
+import com.example.bookshop2.event.CatalogChangeEvent;
+import com.example.bookshop2.event.CatalogChangeEvent.ChangeType;
+import com.example.bookshop2.event.CatalogChangeEvent.EntityType;
 import com.example.bookshop2.exception.PublisherNotFoundException;
 import com.example.bookshop2.exception.ValidationException;
+import com.example.bookshop2.exception.VersionConflictException;
+import com.example.bookshop2.index.ExistenceIndex;
+import com.example.bookshop2.index.IndexedName;
+import com.example.bookshop2.index.NameIndex;
+import com.example.bookshop2.index.SuggestIndex;
+import com.example.bookshop2.index.WeightedName;
 import com.example.bookshop2.mapper.PublisherMapper;
 import com.example.bookshop2.model.Publisher;
 import com.example.bookshop2.repository.PublisherRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.MockedStatic;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -30,6 +50,22 @@ class PublisherServiceTest {
     @Mock
     private CacheManager cacheManager;
 
+    @Mock
+    private NameIndex nameIndex;
+
+    @Mock
+    private SuggestIndex suggestIndex;
+
+    @Mock
+    private ExistenceIndex existenceIndex;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Spy
+    private MultiGetBatcher multiGetBatcher = new MultiGetBatcher(Duration.ZERO, 100, 1,
+            mock(PlatformTransactionManager.class));
+
     @InjectMocks
     private PublisherService publisherService;
 
@@ -86,7 +122,7 @@ class PublisherServiceTest {
             // Arrange
             String cacheKey = "publisher_1";
             when(cacheManager.getFromCache(cacheKey, PublisherDto.class)).thenReturn(null);
-            when(publisherRepository.findById(1L)).thenReturn(Optional.of(publisher));
+            when(publisherRepository.findAllById(Set.of(1L))).thenReturn(List.of(publisher));
             mockedStatic.when(() -> PublisherMapper.toDto(publisher)).thenReturn(publisherDto);
 
             // Act
@@ -95,7 +131,7 @@ class PublisherServiceTest {
             // Assert
             assertThat(result).isEqualTo(publisherDto);
             verify(cacheManager).getFromCache(cacheKey, PublisherDto.class);
-            verify(publisherRepository).findById(1L);
+            verify(publisherRepository).findAllById(Set.of(1L));
             mockedStatic.verify(() -> PublisherMapper.toDto(publisher));
             verify(cacheManager).saveToCache(cacheKey, publisherDto);
         }
@@ -106,17 +142,35 @@ class PublisherServiceTest {
         // Arrange
         String cacheKey = "publisher_1";
         when(cacheManager.getFromCache(cacheKey, PublisherDto.class)).thenReturn(null);
-        when(publisherRepository.findById(1L)).thenReturn(Optional.empty());
+        when(publisherRepository.findAllById(Set.of(1L))).thenReturn(List.of());
 
         // Act & Assert
         PublisherNotFoundException exception = assertThrows(PublisherNotFoundException.class,
                 () -> publisherService.findById(1L));
         assertThat(exception.getMessage()).contains("1");
         verify(cacheManager).getFromCache(cacheKey, PublisherDto.class);
-        verify(publisherRepository).findById(1L);
+        verify(publisherRepository).findAllById(Set.of(1L));
         verifyNoMoreInteractions(cacheManager);
     }
 
+    @Test
+    void findAllByIds_shouldTakeHitsFromCacheAndLoadMissesWithOneQuery() {
+        // Arrange
+        Publisher other = new Publisher();
+        other.setId(2L);
+        other.setName("Other Publisher");
+        when(cacheManager.getAllFromCache(List.of("publisher_2", "publisher_1"), PublisherDto.class))
+                .thenReturn(Map.of("publisher_1", publisherDto));
+        when(publisherRepository.findAllById(Set.of(2L))).thenReturn(List.of(other));
+
+        // Act
+        List<PublisherDto> result = publisherService.findAllByIds(List.of(2L, 1L));
+
+        // Assert
+        assertThat(result).extracting(PublisherDto::getId).containsExactly(2L, 1L);
+        verify(cacheManager, never()).saveToCache(any(), any());
+    }
+
     @Test
     void findByName_whenCached_shouldReturnCachedPublisher() {
         // Arrange
@@ -251,6 +305,45 @@ class PublisherServiceTest {
         }
     }
 
+    @Test
+    void upsertByNames_shouldResolveExistingAndInsertMissingInOneBatch() {
+        when(publisherRepository.findByNameIn(Set.of("Acme Publishing", "Nova"))).thenReturn(List.of(publisher));
+        when(publisherRepository.saveAllAndFlush(anyList())).thenAnswer(invocation -> {
+            List<Publisher> batch = invocation.getArgument(0);
+            batch.get(0).setId(2L);
+            return batch;
+        });
+
+        Map<String, Long> result = publisherService.upsertByNames(List.of("Nova", "Acme Publishing", " Nova"));
+
+        assertThat(result).containsExactly(Map.entry("Nova", 2L), Map.entry("Acme Publishing", 1L));
+        verify(publisherRepository, times(1)).saveAllAndFlush(anyList());
+        verify(cacheManager).clearPublisherCache("Nova");
+        verify(cacheManager).clearByPrefix("publisher_2");
+        verify(eventPublisher, times(1)).publishEvent(any(CatalogChangeEvent.class));
+    }
+
+    @Test
+    void upsertByNames_whenNameIsShared_shouldTakeLowestIdUnderLock() {
+        Publisher namesake = new Publisher();
+        namesake.setId(5L);
+        namesake.setName("Acme Publishing");
+        when(publisherRepository.findByNameIn(Set.of("Acme Publishing"))).thenReturn(List.of(namesake, publisher));
+
+        assertThat(publisherService.upsertByNames(List.of("Acme Publishing")))
+                .containsExactly(Map.entry("Acme Publishing", 1L));
+        InOrder order = inOrder(publisherRepository);
+        order.verify(publisherRepository).lockNameUpserts();
+        order.verify(publisherRepository).findByNameIn(Set.of("Acme Publishing"));
+        verify(publisherRepository, never()).saveAllAndFlush(anyList());
+    }
+
+    @Test
+    void upsertByNames_whenListEmpty_shouldThrowValidationException() {
+        assertThrows(ValidationException.class, () -> publisherService.upsertByNames(List.of()));
+        verifyNoInteractions(publisherRepository);
+    }
+
     @Test
     void delete_whenPublisherExists_shouldDeleteAndClearCache() {
         // Arrange
@@ -261,7 +354,7 @@ class PublisherServiceTest {
 
         // Assert
         verify(publisherRepository).findById(1L);
-        verify(publisherRepository).deleteById(1L);
+        verify(publisherRepository).delete(publisher);
         verify(cacheManager).clearPublisherCache("Acme Publishing");
         verify(cacheManager).clearByPrefix("publisher_1");
     }
@@ -318,4 +411,152 @@ class PublisherServiceTest {
         verify(publisherRepository).findById(1L);
         verifyNoMoreInteractions(publisherRepository, cacheManager);
     }
-}
\ No newline at end of file
+
+    @Test
+    void searchByName_whenIndexReady_shouldAnswerFromIndex() {
+        // Arrange
+        when(nameIndex.isReady()).thenReturn(true);
+        when(nameIndex.search(EntityType.PUBLISHER, "acme"))
+                .thenReturn(List.of(new IndexedName(1L, "Acme Publishing")));
+
+        // Act
+        List<PublisherDto> result = publisherService.searchByName("acme");
+
+        // Assert
+        assertThat(result).containsExactly(publisherDto);
+        verifyNoInteractions(cacheManager, publisherRepository);
+    }
+
+    @Test
+    void delete_shouldPublishDeletedEvent() {
+        // Arrange
+        when(publisherRepository.findById(1L)).thenReturn(Optional.of(publisher));
+
+        // Act
+        publisherService.delete(1L);
+
+        // Assert
+        ArgumentCaptor<CatalogChangeEvent> event = ArgumentCaptor.forClass(CatalogChangeEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertThat(event.getValue().getEntityType()).isEqualTo(EntityType.PUBLISHER);
+        assertThat(event.getValue().getChangeType()).isEqualTo(ChangeType.DELETED);
+        assertThat(event.getValue().getId()).isEqualTo(1L);
+    }
+
+    @Test
+    void suggest_whenIndexReady_shouldAnswerFromIndex() {
+        // Arrange
+        when(suggestIndex.isReady()).thenReturn(true);
+        when(suggestIndex.suggest(EntityType.PUBLISHER, "ac", 10))
+                .thenReturn(List.of(new IndexedName(1L, "Acme Publishing")));
+
+        // Act
+        List<SuggestionDto> result = publisherService.suggest("ac", 10);
+
+        // Assert
+        assertThat(result).containsExactly(new SuggestionDto(1L, "Acme Publishing"));
+        verifyNoInteractions(cacheManager, publisherRepository);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void patch_shouldRenameWithoutLoadingAndEvictEntriesMentioningPublisher() {
+        PublisherDto changes = new PublisherDto();
+        changes.setVersion(5L);
+        changes.setName("Acme Books");
+        when(publisherRepository.patchName(1L, 5L, "Acme Books")).thenReturn(1);
+
+        assertThat(publisherService.patch(1L, changes)).isEqualTo(6L);
+        verify(publisherRepository, never()).findById(any());
+
+        ArgumentCaptor<Predicate<String>> keys = ArgumentCaptor.forClass(Predicate.class);
+        ArgumentCaptor<Predicate<Object>> values = ArgumentCaptor.forClass(Predicate.class);
+        verify(cacheManager).clearMatching(keys.capture(), values.capture());
+        assertThat(keys.getValue().test("publisher_search_books")).isTrue();
+        assertThat(keys.getValue().test("publisher_search_press")).isFalse();
+        BookDto book = new BookDto();
+        book.setPublisherId(1L);
+        assertThat(values.getValue().test(book)).isTrue();
+        book.setPublisherId(2L);
+        assertThat(values.getValue().test(book)).isFalse();
+
+        ArgumentCaptor<CatalogChangeEvent> event = ArgumentCaptor.forClass(CatalogChangeEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertThat(event.getValue().getChangeType()).isEqualTo(ChangeType.PATCHED);
+        assertThat(event.getValue().getPayload(PublisherDto.class).getVersion()).isEqualTo(6L);
+    }
+
+    @Test
+    void patch_whenVersionStale_shouldThrowVersionConflictException() {
+        PublisherDto changes = new PublisherDto();
+        changes.setVersion(5L);
+        changes.setName("Acme Books");
+        when(publisherRepository.patchName(1L, 5L, "Acme Books")).thenReturn(0);
+        when(publisherRepository.existsById(1L)).thenReturn(true);
+
+        assertThrows(VersionConflictException.class, () -> publisherService.patch(1L, changes));
+        verifyNoInteractions(cacheManager, eventPublisher);
+    }
+
+    @Test
+    void update_whenVersionStale_shouldThrowVersionConflictException() {
+        publisher.setVersion(2L);
+        publisherDto.setVersion(1L);
+        when(publisherRepository.findById(1L)).thenReturn(Optional.of(publisher));
+
+        assertThrows(VersionConflictException.class, () -> publisherService.update(1L, publisherDto));
+        verify(publisherRepository, never()).save(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void deleteBulk_whenPublishersHaveNoBooks_shouldDeleteAndClearCache() {
+        when(publisherRepository.findNamesWithBookCountByIdIn(Set.of(1L, 2L)))
+                .thenReturn(List.of(new WeightedName(1L, "Acme Publishing", 0), new WeightedName(2L, "Beta", 0)));
+
+        publisherService.deleteBulk(List.of(1L, 2L));
+
+        verify(publisherRepository).deleteAllByIdIn(Set.of(1L, 2L));
+        verify(cacheManager).clearPublisherCache("Acme Publishing");
+        verify(cacheManager).clearPublisherCache("Beta");
+        ArgumentCaptor<Predicate<Object>> values = ArgumentCaptor.forClass(Predicate.class);
+        verify(cacheManager).clearMatching(values.capture());
+        assertThat(values.getValue().test(publisherDto)).isTrue();
+        ArgumentCaptor<CatalogChangeEvent> events = ArgumentCaptor.forClass(CatalogChangeEvent.class);
+        verify(eventPublisher, times(2)).publishEvent(events.capture());
+        assertThat(events.getAllValues()).extracting(CatalogChangeEvent::getId).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void deleteBulk_whenPublisherHasBooks_shouldThrowValidationException() {
+        when(publisherRepository.findNamesWithBookCountByIdIn(Set.of(1L, 2L)))
+                .thenReturn(List.of(new WeightedName(1L, "Acme Publishing", 3), new WeightedName(2L, "Beta", 0)));
+
+        ValidationException exception = assertThrows(ValidationException.class,
+                () -> publisherService.deleteBulk(List.of(1L, 2L)));
+        assertThat(exception.getMessage()).contains("[1]");
+        verify(publisherRepository, never()).deleteAllByIdIn(any());
+        verifyNoInteractions(cacheManager, eventPublisher);
+    }
+
+    @Test
+    void deleteBulk_whenSomePublishersMissing_shouldThrowPublisherNotFoundException() {
+        when(publisherRepository.findNamesWithBookCountByIdIn(Set.of(1L, 2L)))
+                .thenReturn(List.of(new WeightedName(1L, "Acme Publishing", 0)));
+
+        PublisherNotFoundException exception = assertThrows(PublisherNotFoundException.class,
+                () -> publisherService.deleteBulk(List.of(1L, 2L)));
+        assertThat(exception.getMessage()).contains("[2]");
+        verify(publisherRepository, never()).deleteAllByIdIn(any());
+    }
+
+    @Test
+    void deleteBulk_whenIndexKnowsIdsAreMissing_shouldRejectWithoutQuery() {
+        when(existenceIndex.missing(EntityType.PUBLISHER, Set.of(1L, 2L))).thenReturn(Set.of(2L));
+
+        PublisherNotFoundException exception = assertThrows(PublisherNotFoundException.class,
+                () -> publisherService.deleteBulk(List.of(1L, 2L)));
+        assertThat(exception.getMessage()).contains("[2]");
+        verifyNoInteractions(publisherRepository);
+    }
+}
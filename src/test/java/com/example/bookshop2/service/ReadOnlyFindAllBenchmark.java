@@ -0,0 +1,159 @@
+package com.example.bookshop2.service;
+
+import com.example.bookshop2.dto.BookDto;
+import com.example.bookshop2.event.ChangeLog;
+import com.example.bookshop2.index.CatalogStatsIndex;
+import com.example.bookshop2.index.ExistenceIndex;
+import com.example.bookshop2.index.NameIndex;
+import com.example.bookshop2.index.PriceIndex;
+import com.example.bookshop2.index.RelationIndex;
+import com.example.bookshop2.index.SuggestIndex;
+import com.example.bookshop2.model.Author;
+import com.example.bookshop2.model.Publisher;
+import com.example.bookshop2.repository.AuthorRepository;
+import com.example.bookshop2.repository.BookRepository;
+import com.example.bookshop2.repository.PublisherRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Запуск: mvn test -Pbenchmark
+// findAll в read-only транзакции против того же вызова внутри обычной (read-write) транзакции
+@ActiveProfiles("test")
+@DataJpaTest(properties = "logging.level.com.example.bookshop2.service.CacheManager=WARN")
+@Import({AuthorService.class, BookService.class, PublisherService.class, CacheManager.class,
+        NameIndex.class, SuggestIndex.class, PriceIndex.class,
+        CatalogStatsIndex.class, RelationIndex.class, ExistenceIndex.class, ChangeLog.class,
+        MultiGetBatcher.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ReadOnlyFindAllBenchmark {
+    private static final Logger LOG = LoggerFactory.getLogger(ReadOnlyFindAllBenchmark.class);
+    private static final int BOOKS = 20_000;
+    private static final int AUTHORS = 2_000;
+    private static final int PUBLISHERS = 200;
+    private static final int WARMUP = 5;
+    private static final int RUNS = 10;
+
+    @Autowired
+    private AuthorService authorService;
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private PublisherService publisherService;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private AuthorRepository authorRepository;
+    @Autowired
+    private PublisherRepository publisherRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        List<Long> authorIds = new ArrayList<>();
+        List<Long> publisherIds = new ArrayList<>();
+        for (int i = 0; i < AUTHORS; i++) {
+            Author author = new Author();
+            author.setName("Author " + i);
+            authorIds.add(authorRepository.save(author).getId());
+        }
+        for (int i = 0; i < PUBLISHERS; i++) {
+            Publisher publisher = new Publisher();
+            publisher.setName("Publisher " + i);
+            publisherIds.add(publisherRepository.save(publisher).getId());
+        }
+        List<BookDto> books = new ArrayList<>(BOOKS);
+        for (int i = 0; i < BOOKS; i++) {
+            BookDto dto = new BookDto();
+            dto.setName("Book " + i);
+            dto.setGenre("Genre " + (i % 20));
+            dto.setPrice(1.0 + i % 100);
+            dto.setPublisherId(publisherIds.get(i % PUBLISHERS));
+            dto.setAuthorIds(Set.of(authorIds.get(i % AUTHORS), authorIds.get((i + 1) % AUTHORS)));
+            books.add(dto);
+        }
+        bookService.addBooksBulk(books);
+    }
+
+    @Test
+    void findAll_readOnlyVersusReadWrite() {
+        compare("BookService.findAll", bookService::findAll, bookRepository.count());
+        compare("AuthorService.findAll", authorService::findAll, authorRepository.count());
+        compare("PublisherService.findAll", publisherService::findAll, publisherRepository.count());
+    }
+
+    private void compare(String name, Supplier<List<?>> findAll, long expectedSize) {
+        // Внешняя обычная транзакция: вложенный read-only метод присоединяется к ней и теряет read-only режим
+        TransactionTemplate readWrite = new TransactionTemplate(transactionManager);
+        Supplier<List<?>> writableCall = () -> readWrite.execute(status -> findAll.get());
+        for (int i = 0; i < WARMUP; i++) {
+            assertThat((long) writableCall.get().size()).isEqualTo(expectedSize);
+            assertThat((long) findAll.get().size()).isEqualTo(expectedSize);
+        }
+        // Режимы чередуются, чтобы прогрев JIT и сборки мусора не доставались одному из них
+        Measurement writable = new Measurement();
+        Measurement readOnly = new Measurement();
+        for (int i = 0; i < RUNS; i++) {
+            writable.add(writableCall);
+            readOnly.add(findAll);
+        }
+
+        LOG.info("{}: read-write {} мс / {} КБ, read-only {} мс / {} КБ на вызов; "
+                        + "экономия {} мс ({}%) и {} КБ ({}%)",
+                name,
+                writable.millis(), writable.kilobytes(),
+                readOnly.millis(), readOnly.kilobytes(),
+                writable.millis() - readOnly.millis(), percent(writable.millis(), readOnly.millis()),
+                writable.kilobytes() - readOnly.kilobytes(), percent(writable.kilobytes(), readOnly.kilobytes()));
+        assertThat(readOnly.kilobytes()).isLessThan(writable.kilobytes());
+    }
+
+    private static long percent(long before, long after) {
+        return before == 0 ? 0 : (before - after) * 100 / before;
+    }
+
+    // Среднее время и объём памяти, выделенной текущим потоком, на один вызов
+    private static final class Measurement {
+        private static final com.sun.management.ThreadMXBean THREADS =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        private long nanos;
+        private long bytes;
+        private int calls;
+
+        private void add(Supplier<List<?>> call) {
+            long threadId = Thread.currentThread().getId();
+            long allocated = THREADS.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            call.get();
+            nanos += System.nanoTime() - start;
+            bytes += THREADS.getThreadAllocatedBytes(threadId) - allocated;
+            calls++;
+        }
+
+        private long millis() {
+            return nanos / calls / 1_000_000;
+        }
+
+        private long kilobytes() {
+            return bytes / calls / 1024;
+        }
+    }
+}
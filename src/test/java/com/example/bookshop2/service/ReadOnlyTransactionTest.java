@@ -0,0 +1,149 @@
+package com.example.bookshop2.service;
+
+import com.example.bookshop2.event.ChangeLog;
+import com.example.bookshop2.index.CatalogStatsIndex;
+import com.example.bookshop2.index.ExistenceIndex;
+import com.example.bookshop2.index.NameIndex;
+import com.example.bookshop2.index.PriceIndex;
+import com.example.bookshop2.index.RelationIndex;
+import com.example.bookshop2.index.SuggestIndex;
+import com.example.bookshop2.model.Author;
+import com.example.bookshop2.model.Book;
+import com.example.bookshop2.model.Publisher;
+import com.example.bookshop2.repository.AuthorRepository;
+import com.example.bookshop2.repository.BookRepository;
+import com.example.bookshop2.repository.PublisherRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Методы чтения сервисов работают в read-only транзакциях: сущности без снимков состояния, без flush при коммите
+@ActiveProfiles("test")
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import({AuthorService.class, BookService.class, PublisherService.class, CacheManager.class,
+        NameIndex.class, SuggestIndex.class, PriceIndex.class,
+        CatalogStatsIndex.class, RelationIndex.class, ExistenceIndex.class, ChangeLog.class,
+        MultiGetBatcher.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ReadOnlyTransactionTest {
+    private static final Set<String> QUERY_PREFIXES = Set.of("find", "search", "suggest");
+    // Промах ждёт общий пакет multi-get вне транзакции, а сам пакет читает в своей read-only (MultiGetBatcher)
+    private static final Set<String> WITHOUT_TRANSACTION = Set.of("findById");
+
+    @Autowired
+    private AuthorService authorService;
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private PublisherService publisherService;
+    @Autowired
+    private AuthorRepository authorRepository;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private PublisherRepository publisherRepository;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            Publisher publisher = new Publisher();
+            publisher.setName("Read Only Press");
+            Author author = new Author();
+            author.setName("Read Only Author");
+            Book book = new Book();
+            book.setName("Read Only Book");
+            book.setPrice(10.0);
+            book.setPublisher(publisherRepository.save(publisher));
+            book.setAuthors(Set.of(authorRepository.save(author)));
+            bookRepository.save(book);
+        });
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            bookRepository.deleteAll();
+            authorRepository.deleteAll();
+            publisherRepository.deleteAll();
+        });
+    }
+
+    @Test
+    void queryMethods_shouldUseReadOnlyTransactionsAndWritesShouldNot() {
+        for (Class<?> service : List.of(AuthorService.class, BookService.class, PublisherService.class)) {
+            for (Method method : service.getDeclaredMethods()) {
+                if (!Modifier.isPublic(method.getModifiers())) {
+                    continue;
+                }
+                Transactional transactional = method.getAnnotation(Transactional.class);
+                if (WITHOUT_TRANSACTION.contains(method.getName())) {
+                    assertThat(transactional).as("%s.%s", service.getSimpleName(), method.getName()).isNull();
+                    continue;
+                }
+                assertThat(transactional).as("%s.%s", service.getSimpleName(), method.getName()).isNotNull();
+                assertThat(transactional.readOnly()).as("%s.%s", service.getSimpleName(), method.getName())
+                        .isEqualTo(QUERY_PREFIXES.stream().anyMatch(method.getName()::startsWith));
+            }
+        }
+    }
+
+    @Test
+    void readOnlyTransaction_shouldLoadReadOnlyEntitiesWithManualFlush() {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        readOnly.executeWithoutResult(status -> {
+            Session session = entityManager.unwrap(Session.class);
+            Book book = bookRepository.findAll().get(0);
+            assertThat(session.getHibernateFlushMode()).isEqualTo(FlushMode.MANUAL);
+            assertThat(session.isReadOnly(book)).isTrue();
+            book.setName("Changed");
+        });
+
+        assertThat(bookRepository.findAll()).extracting(Book::getName).containsExactly("Read Only Book");
+        assertThat(statistics.getEntityUpdateCount()).isZero();
+    }
+
+    @Test
+    void findAll_shouldNotFlush() {
+        authorService.findAll();
+        publisherService.findAll();
+        bookService.findAll();
+        assertThat(statistics.getFlushCount()).isZero();
+
+        // Для сравнения: тот же вызов внутри обычной транзакции сбрасывается при коммите
+        new TransactionTemplate(transactionManager).execute(status -> bookService.findAll());
+        assertThat(statistics.getFlushCount()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.bookshop2.service;
+
+import com.example.bookshop2.dto.CacheRegionStatsDto;
+import com.example.bookshop2.model.Author;
+import com.example.bookshop2.model.Book;
+import com.example.bookshop2.model.Publisher;
+import com.example.bookshop2.repository.AuthorRepository;
+import com.example.bookshop2.repository.BookRepository;
+import com.example.bookshop2.repository.PublisherRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Каждый шаг — отдельная транзакция, то есть новая сессия: повторное чтение может прийти только из второго уровня
+@ActiveProfiles("test")
+@DataJpaTest
+@Import(CacheStatisticsService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class SecondLevelCacheTest {
+
+    @Autowired
+    private AuthorRepository authorRepository;
+    @Autowired
+    private PublisherRepository publisherRepository;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private CacheStatisticsService cacheStatisticsService;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transaction;
+    private Statistics statistics;
+    private Long authorId;
+    private Long publisherId;
+    private Long bookId;
+
+    @BeforeEach
+    void setUp() {
+        transaction = new TransactionTemplate(transactionManager);
+        transaction.executeWithoutResult(status -> {
+            Publisher publisher = new Publisher();
+            publisher.setName("Cached Press");
+            Author author = new Author();
+            author.setName("Cached Author");
+            Book book = new Book();
+            book.setName("Cached Book");
+            book.setPrice(10.0);
+            book.setPublisher(publisherRepository.save(publisher));
+            book.setAuthors(Set.of(authorRepository.save(author)));
+            bookId = bookRepository.save(book).getId();
+            authorId = author.getId();
+            publisherId = publisher.getId();
+        });
+        entityManagerFactory.getCache().evictAll();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        cacheStatisticsService.reset();
+    }
+
+    @AfterEach
+    void tearDown() {
+        transaction.executeWithoutResult(status -> {
+            bookRepository.deleteAll();
+            authorRepository.deleteAll();
+            publisherRepository.deleteAll();
+        });
+    }
+
+    @Test
+    void findById_shouldReadReferenceEntitiesFromSecondLevelCache() {
+        transaction.executeWithoutResult(status -> {
+            authorRepository.findById(authorId).orElseThrow();
+            publisherRepository.findById(publisherId).orElseThrow();
+        });
+        long statements = statistics.getPrepareStatementCount();
+
+        transaction.executeWithoutResult(status -> {
+            assertThat(authorRepository.findById(authorId).orElseThrow().getName()).isEqualTo("Cached Author");
+            assertThat(publisherRepository.findById(publisherId).orElseThrow().getName()).isEqualTo("Cached Press");
+        });
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(statements);
+        assertThat(statistics.getSecondLevelCacheHitCount()).isEqualTo(2);
+    }
+
+    @Test
+    void bookAuthors_shouldBeAssembledFromCollectionAndEntityCache() {
+        transaction.executeWithoutResult(status ->
+                bookRepository.findById(bookId).orElseThrow().getAuthors().size());
+        long statements = statistics.getPrepareStatementCount();
+
+        transaction.executeWithoutResult(status -> assertThat(bookRepository.findById(bookId).orElseThrow()
+                .getAuthors()).extracting(Author::getName).containsExactly("Cached Author"));
+
+        // Сама книга не кэшируется, а её авторы — да
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(statements + 1);
+    }
+
+    @Test
+    void findByName_shouldUseQueryCacheUntilTableChanges() {
+        transaction.executeWithoutResult(status -> authorRepository.findByName("Cached Author"));
+        transaction.executeWithoutResult(status -> authorRepository.findByName("Cached Author"));
+        assertThat(statistics.getQueryCacheHitCount()).isEqualTo(1);
+
+        transaction.executeWithoutResult(status ->
+                authorRepository.findById(authorId).orElseThrow().setName("Renamed Author"));
+
+        Optional<Author> stale = transaction.execute(status -> authorRepository.findByName("Cached Author"));
+        Optional<Author> renamed = transaction.execute(status -> authorRepository.findByName("Renamed Author"));
+        assertThat(stale).isEmpty();
+        assertThat(renamed).isPresent();
+        assertThat(statistics.getQueryCacheHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    void statistics_shouldReportHitRatePerRegion() {
+        for (int i = 0; i < 4; i++) {
+            transaction.executeWithoutResult(status -> authorRepository.findById(authorId).orElseThrow());
+        }
+
+        CacheRegionStatsDto authors = cacheStatisticsService.getSecondLevelCacheStats().stream()
+                .filter(region -> region.getRegion().endsWith(Author.class.getName()))
+                .findFirst()
+                .orElseThrow();
+        assertThat(authors.getHits()).isEqualTo(3);
+        assertThat(authors.getMisses()).isEqualTo(1);
+        assertThat(authors.getHitRate()).isEqualTo(0.75);
+        assertThat(cacheStatisticsService.getSecondLevelCacheStats())
+                .extracting(CacheRegionStatsDto::getRegion)
+                .contains(CacheStatisticsService.QUERY_CACHE);
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.bookshop2.service;
+
+import com.example.bookshop2.dto.EndpointSqlStatsDto;
+import com.example.bookshop2.monitoring.RequestSqlStats;
+import com.example.bookshop2.monitoring.SqlStatementInspector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SqlStatsServiceTest {
+    private final SqlStatsService sqlStatsService = new SqlStatsService(3, Duration.ofSeconds(10));
+    private final SqlStatementInspector inspector = new SqlStatementInspector();
+
+    @AfterEach
+    void tearDown() {
+        RequestSqlStats.end();
+    }
+
+    @Test
+    void record_shouldAggregatePerEndpointAndCountRequestsOverBudget() {
+        simulateRequest("GET /books/{id}", 1);
+        simulateRequest("GET /books/{id}", 5);
+        simulateRequest("GET /authors", 2);
+
+        List<EndpointSqlStatsDto> stats = sqlStatsService.getAllStats();
+
+        EndpointSqlStatsDto books = stats.stream()
+                .filter(endpoint -> endpoint.getEndpoint().equals("GET /books/{id}"))
+                .findFirst()
+                .orElseThrow();
+        assertThat(books.getRequests()).isEqualTo(2);
+        assertThat(books.getStatements()).isEqualTo(6);
+        assertThat(books.getAvgStatements()).isEqualTo(3.0);
+        assertThat(books.getMaxStatements()).isEqualTo(5);
+        assertThat(books.getOverBudget()).isEqualTo(1);
+        assertThat(stats).extracting(EndpointSqlStatsDto::getEndpoint)
+                .containsExactlyInAnyOrder("GET /books/{id}", "GET /authors");
+    }
+
+    @Test
+    void reset_shouldDropAggregates() {
+        simulateRequest("GET /books", 1);
+
+        sqlStatsService.reset();
+
+        assertThat(sqlStatsService.getAllStats()).isEmpty();
+    }
+
+    private void simulateRequest(String endpoint, int statements) {
+        RequestSqlStats.begin(endpoint);
+        for (int i = 0; i < statements; i++) {
+            inspector.inspect("select * from books where id = ?");
+        }
+        sqlStatsService.record(RequestSqlStats.end());
+    }
+}